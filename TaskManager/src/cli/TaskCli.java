@@ -0,0 +1,414 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+import io.TaskFileValidator;
+import io.TaskFormatException;
+import io.TaskPipeline;
+import io.TaskStore;
+import io.ValidationResult;
+import model.Task;
+import model.TaskKey;
+import model.TaskList;
+
+/**
+ * Command-line entry point for batch jobs on task files, without starting the GUI
+ * Every command except validate copies Tasks from its inputs to its output through the same pipeline:
+ * filters, then dedup, then sort, each applied only if asked for, streaming one row at a time
+ * so files larger than the heap are handled, sorting spills sorted runs to disk
+ * Exit code 0 on success, 1 for invalid data, 2 for a usage error, 3 for an I/O error
+ * @author Luke Gentri
+ */
+public final class TaskCli {
+
+	/** Exit codes */
+	static final int OK = 0;
+	static final int INVALID = 1;
+	static final int USAGE = 2;
+	static final int IO_ERROR = 3;
+
+	/** Invalid lines listed per file by validate */
+	private static final int ERRORS_SHOWN = 10;
+
+	/** Printed after a usage error */
+	private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+			"Usage: TaskCli <command> <files> [options]",
+			"  validate <file>...          check every line, exit 1 if any is invalid",
+			"  filter <in> <out>           copy the Tasks matching the filter options",
+			"  sort <in> <out> --by KEY    sort by name or due date",
+			"  dedup <in> <out>            drop repeated Tasks, keeping the first",
+			"  merge <out> <in>...         concatenate files, dropping repeated Tasks",
+			"  convert <in> <out>          copy into the format the output name selects",
+			"  import <store> <in>...      add the Tasks of files to a task store (" + TaskStore.EXTENSION + ")",
+			"  export <store> <out>        copy a task store's Tasks to a file",
+			"Formats: " + TaskStore.EXTENSION + " task store, .gz compressed CSV, anything else CSV",
+			"Options, for every command but validate:",
+			"  --completed | --incomplete  keep only completed or incomplete Tasks (CSV has no completion, all are incomplete)",
+			"  --from DATE  --to DATE      keep Tasks due within the days given, inclusive, as YYYY-MM-DD",
+			"  --tag TAG                   keep Tasks carrying the tag, may be repeated",
+			"  --key name|due|all          fields that make Tasks repeats (dedup and merge default to all)",
+			"  --by name|due               sort order, names in the order of the default locale",
+			"  --run-size N                Tasks sorted in memory before spilling (default " + TaskPipeline.DEFAULT_RUN_SIZE + ")",
+			"  --temp DIR                  directory for sort runs");
+
+	/**
+	 * Not instantiated
+	 */
+	private TaskCli() {
+	}
+
+	/**
+	 * Main method for batch jobs
+	 * @param args command, files and options
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args, System.out, System.err));
+	}
+
+	/**
+	 * Runs one command
+	 * @param args command, files and options
+	 * @param out receives the summary
+	 * @param err receives problems
+	 * @return exit code
+	 */
+	static int run(String[] args, PrintStream out, PrintStream err) {
+		Options options;
+		try {
+			options = new Options(args);
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println(USAGE_TEXT);
+			return USAGE;
+		}
+
+		// Past parsing, an IllegalArgumentException comes from the data, such as a bad tag or date
+		try {
+			if (options.command.equals("validate")) {
+				return validate(options.files, out);
+			}
+			return copy(options, out);
+		} catch (DataFormatException | IllegalArgumentException | IllegalStateException e) {
+			err.println("Invalid data: " + describe(e));
+			return INVALID;
+		} catch (IOException | UncheckedIOException e) {
+			err.println("I/O error: " + describe(e));
+			return IO_ERROR;
+		}
+	}
+
+	/**
+	 * Checks every line of each file
+	 * @param files task files or stores
+	 * @param out receives a line per file and the first problems
+	 * @return OK if every file is valid, INVALID otherwise
+	 * @throws IOException if a file cannot be read
+	 */
+	private static int validate(List<File> files, PrintStream out) throws IOException {
+		int result = OK;
+		TaskFileValidator validator = new TaskFileValidator(ERRORS_SHOWN);
+		for (File file : files) {
+			try {
+				if (TaskPipeline.isStore(file)) {
+
+					// Opening a store checks every record, read-only so nothing is created or cut off
+					try (TaskStore store = new TaskStore(file, true)) {
+						out.println(file + ": " + store.size() + " Tasks, valid");
+					}
+					continue;
+				}
+				ValidationResult validation = validator.validate(file);
+				out.println(file + ": " + validation.getLineCount() + " lines, " + validation.getErrorCount() + " invalid");
+				for (TaskFormatException error : validation.getErrors()) {
+					out.println("  " + error.getMessage());
+				}
+				if (!validation.isValid()) {
+					result = INVALID;
+				}
+			} catch (DataFormatException e) {
+				out.println(file + ": " + e.getMessage());
+				result = INVALID;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Copies Tasks from the inputs to the output through the filters, dedup and sort asked for
+	 * @param options parsed arguments
+	 * @param out receives the number of Tasks written
+	 * @return OK
+	 * @throws DataFormatException if an input is invalid or a store cannot be created
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private static int copy(Options options, PrintStream out) throws DataFormatException, IOException {
+		TaskPipeline.Links links = new TaskPipeline.Links();
+		Stream<Task> tasks = TaskPipeline.concat(options.inputs, links);
+		try {
+			if (options.completed != null) {
+				final boolean completed = options.completed;
+				tasks = tasks.filter(task -> task.isCompleted() == completed);
+			}
+			if (options.from != null) {
+				final LocalDate from = options.from;
+				tasks = tasks.filter(task -> task.getDueDate() != null && !task.getDueDate().isBefore(from));
+			}
+			if (options.to != null) {
+				final LocalDate to = options.to;
+				tasks = tasks.filter(task -> task.getDueDate() != null && !task.getDueDate().isAfter(to));
+			}
+			for (final String tag : options.tags) {
+				tasks = tasks.filter(task -> task.hasTag(tag));
+			}
+			if (options.key != null) {
+				tasks = tasks.filter(TaskPipeline.distinct(options.key));
+			}
+			if (options.order != null) {
+				tasks = TaskPipeline.sort(tasks, options.order, options.runSize, options.temp);
+			}
+		} catch (IOException | RuntimeException e) {
+			tasks.close();
+			throw e;
+		}
+
+		// Import adds to the store, every other command replaces the output
+		long count = options.command.equals("import") ? TaskPipeline.append(tasks, options.output, links) : TaskPipeline.write(tasks, options.output, links);
+		out.println("Wrote " + count + " Tasks to " + options.output);
+		return OK;
+	}
+
+	/**
+	 * Message of a failure, with the message of its cause where that says more
+	 * @param e failure
+	 * @return message
+	 */
+	private static String describe(Exception e) {
+		Throwable cause = e.getCause();
+		return cause != null && cause.getMessage() != null ? e.getMessage() + ": " + cause.getMessage() : e.getMessage();
+	}
+
+	/**
+	 * Parsed command line
+	 */
+	private static final class Options {
+
+		/** Command name */
+		final String command;
+
+		/** Files in the order given */
+		final List<File> files = new ArrayList<>();
+
+		/** Files read, in order */
+		List<File> inputs;
+
+		/** File written */
+		File output;
+
+		/** Completion to keep, null for both */
+		Boolean completed;
+
+		/** First and last due dates to keep, null for no limit */
+		LocalDate from;
+		LocalDate to;
+
+		/** Tags every kept Task must carry */
+		final List<String> tags = new ArrayList<>();
+
+		/** Fields that make Tasks repeats, null for no dedup */
+		TaskKey key;
+
+		/** Sort order, null to keep the input order */
+		Comparator<Task> order;
+
+		/** Tasks sorted in memory at once */
+		int runSize = TaskPipeline.DEFAULT_RUN_SIZE;
+
+		/** Directory for sort runs, null for the default */
+		File temp;
+
+		/**
+		 * Parses arguments
+		 * @param args command, files and options
+		 * @throws IllegalArgumentException if the arguments do not make a valid command
+		 */
+		Options(String[] args) {
+			if (args.length == 0) {
+				throw new IllegalArgumentException("No command given");
+			}
+			command = args[0];
+			String keyName = null;
+			for (int i = 1; i < args.length; i++) {
+				String arg = args[i];
+				if (!arg.startsWith("--")) {
+					files.add(new File(arg));
+				} else if (arg.equals("--completed") || arg.equals("--incomplete")) {
+					completed = arg.equals("--completed");
+				} else if (i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing value for " + arg);
+				} else {
+					String value = args[++i];
+					switch (arg) {
+						case "--from":
+							from = parseDate(value);
+							break;
+						case "--to":
+							to = parseDate(value);
+							break;
+						case "--tag":
+							tags.add(Task.normalizeTag(value));
+							break;
+						case "--key":
+							keyName = value;
+							break;
+						case "--by":
+							order = parseOrder(value);
+							break;
+						case "--run-size":
+							runSize = parseRunSize(value);
+							break;
+						case "--temp":
+							temp = new File(value);
+							break;
+						default:
+							throw new IllegalArgumentException("Unknown option " + arg);
+					}
+				}
+			}
+			if (keyName != null) {
+				key = parseKey(keyName);
+			}
+			checkFiles(keyName);
+		}
+
+		/**
+		 * Sets the inputs and output from the files of a command
+		 * @param keyName value of --key, or null
+		 * @throws IllegalArgumentException if the command is unknown or has the wrong number of files
+		 */
+		private void checkFiles(String keyName) {
+			switch (command) {
+				case "validate":
+					requireFiles(1, Integer.MAX_VALUE);
+					return;
+				case "filter":
+				case "convert":
+				case "export":
+				case "sort":
+				case "dedup":
+					requireFiles(2, 2);
+					inputs = files.subList(0, 1);
+					output = files.get(1);
+					break;
+				case "merge":
+				case "import":
+					requireFiles(2, Integer.MAX_VALUE);
+					inputs = files.subList(1, files.size());
+					output = files.get(0);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown command " + command);
+			}
+			if (command.equals("sort") && order == null) {
+				throw new IllegalArgumentException("sort needs --by name or --by due");
+			}
+			if ((command.equals("dedup") || command.equals("merge")) && keyName == null) {
+				key = TaskKey.ALL_FIELDS;
+			}
+			if ((command.equals("import") || command.equals("export")) && !TaskPipeline.isStore(files.get(0))) {
+				throw new IllegalArgumentException(command + " needs a task store (" + TaskStore.EXTENSION + ") as its first file");
+			}
+		}
+
+		/**
+		 * Checks the number of files
+		 * @param min fewest files
+		 * @param max most files
+		 * @throws IllegalArgumentException if there are too few or too many
+		 */
+		private void requireFiles(int min, int max) {
+			if (files.size() < min || files.size() > max) {
+				throw new IllegalArgumentException(command + " takes " + (min == max ? String.valueOf(min) : "at least " + min) + " files");
+			}
+		}
+
+		/**
+		 * Parses a date option
+		 * @param value YYYY-MM-DD
+		 * @return date
+		 * @throws IllegalArgumentException if the date is invalid
+		 */
+		private static LocalDate parseDate(String value) {
+			try {
+				return LocalDate.parse(value);
+			} catch (DateTimeParseException e) {
+				throw new IllegalArgumentException("Invalid date '" + value + "', expected YYYY-MM-DD");
+			}
+		}
+
+		/**
+		 * Parses a sort order, the same orders as the GUI's sort buttons with undated Tasks last
+		 * @param value name or due
+		 * @return comparator
+		 * @throws IllegalArgumentException if the order is unknown
+		 */
+		private static Comparator<Task> parseOrder(String value) {
+			switch (value) {
+				case "name":
+					return TaskList.nameOrder(Locale.getDefault());
+				case "due":
+					return Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()));
+				default:
+					throw new IllegalArgumentException("Unknown sort order '" + value + "', expected name or due");
+			}
+		}
+
+		/**
+		 * Parses a dedup key
+		 * @param value name, due or all
+		 * @return key
+		 * @throws IllegalArgumentException if the key is unknown
+		 */
+		private static TaskKey parseKey(String value) {
+			switch (value) {
+				case "name":
+					return TaskKey.NAME;
+				case "due":
+					return TaskKey.NAME_AND_DUE_DATE;
+				case "all":
+					return TaskKey.ALL_FIELDS;
+				default:
+					throw new IllegalArgumentException("Unknown key '" + value + "', expected name, due or all");
+			}
+		}
+
+		/**
+		 * Parses a run size
+		 * @param value positive number
+		 * @return run size
+		 * @throws IllegalArgumentException if the value is not a positive number
+		 */
+		private static int parseRunSize(String value) {
+			try {
+				int size = Integer.parseInt(value);
+				if (size > 0) {
+					return size;
+				}
+			} catch (NumberFormatException e) {
+
+				// Reported below
+			}
+			throw new IllegalArgumentException("Invalid run size '" + value + "'");
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package gui;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import model.MemoryStats;
+
+/**
+ * Estimated heap held by the parts of a TaskManagerGUI, for the debug panel and for JMX
+ * The parts are counted on the calling thread, which the GUI keeps off the event thread, with one Counter so
+ * Tasks and strings shared between parts are counted once
+ * The GUI changes the parts while they are counted, so figures are estimates and a count that fails is skipped
+ * A snapshot is reused for a second, so a JMX console reading every attribute counts the parts once
+ * @author Luke Gentri
+ */
+public class MemoryMonitor implements MemoryMonitorMXBean {
+
+    /**
+     * Parts to count
+     */
+    interface Source {
+
+        /**
+         * Counts every part, called off the event thread while the parts may be changing
+         * @param counter counter shared by the parts
+         * @return figures for each part, the current TaskList first
+         */
+        List<MemoryStats> memoryStats(MemoryStats.Counter counter);
+    }
+
+    /** Name the monitor is registered under */
+    static final String OBJECT_NAME = "TaskManager:type=Memory";
+
+    /** Milliseconds a snapshot is reused for */
+    private static final long SNAPSHOT_MILLIS = 1000;
+
+    /** Parts to count */
+    private final Source source;
+
+    /** Reused between snapshots so its table does not grow again */
+    private final MemoryStats.Counter counter = new MemoryStats.Counter();
+
+    /** Latest figures for each part */
+    private List<MemoryStats> parts = Collections.emptyList();
+
+    /** Total of parts */
+    private MemoryStats total = MemoryStats.total("Total", parts);
+
+    /** When parts were counted, 0 before the first snapshot */
+    private long takenAt;
+
+    /** Name the monitor is registered under, null if it is not */
+    private ObjectName registered;
+
+    /**
+     * Constructor
+     * @param source parts to count
+     */
+    MemoryMonitor(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Registers with the platform MBean server, does nothing if another monitor is registered
+     */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registered = name;
+            }
+        } catch (JMException | SecurityException e) {
+
+            // Monitoring is optional, the GUI works without it
+        }
+    }
+
+    /**
+     * Unregisters from the platform MBean server
+     */
+    void unregister() {
+        if (registered != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            } catch (JMException e) {
+
+                // Already gone
+            }
+            registered = null;
+        }
+    }
+
+    /**
+     * Figures for each part, counted again if the last snapshot is over a second old
+     * The lock is not held while counting, so readers of the latest figures do not wait for a count
+     * @return figures for each part
+     */
+    List<MemoryStats> snapshot() {
+        synchronized (this) {
+            if (takenAt != 0 && System.currentTimeMillis() - takenAt < SNAPSHOT_MILLIS) {
+                return parts;
+            }
+        }
+        List<MemoryStats> counted = count();
+        synchronized (this) {
+            if (counted != null) {
+                parts = counted;
+                total = MemoryStats.total("Total", parts);
+                takenAt = System.currentTimeMillis();
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Counts every part on this thread, one count at a time since the Counter is shared
+     * The parts may change while they are read, a count that trips over a change is dropped
+     * @return figures for each part, null if the count failed
+     */
+    private List<MemoryStats> count() {
+        synchronized (counter) {
+            try {
+                return new ArrayList<>(source.memoryStats(counter));
+            } catch (RuntimeException e) {
+
+                // The previous figures are kept
+                return null;
+            } finally {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * getTotal
+     * @return total of the latest snapshot
+     */
+    MemoryStats getTotal() {
+        snapshot();
+        synchronized (this) {
+            return total;
+        }
+    }
+
+    @Override
+    public MemoryStats[] getParts() {
+        return snapshot().toArray(new MemoryStats[0]);
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return getTotal().getRetainedBytes();
+    }
+
+    @Override
+    public long getTasks() {
+        List<MemoryStats> latest = snapshot();
+        return latest.isEmpty() ? 0 : latest.get(0).getTasks();
+    }
+
+    @Override
+    public long getBytesPerTask() {
+        long tasks = getTasks();
+        return tasks == 0 ? 0 : getRetainedBytes() / tasks;
+    }
+
+    @Override
+    public long getStringBytes() {
+        return getTotal().getStringBytes();
+    }
+
+    @Override
+    public long getSharedStringBytes() {
+        return getTotal().getSharedStringBytes();
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,53 @@
+package gui;
+
+import model.MemoryStats;
+
+/**
+ * Management interface of MemoryMonitor, registered as TaskManager:type=Memory
+ * Every figure comes from the same snapshot, refreshed at most once a second however often it is read
+ * @author Luke Gentri
+ */
+public interface MemoryMonitorMXBean {
+
+    /**
+     * getParts
+     * @return figures for each part, the TaskList, the undo history and the list model
+     */
+    MemoryStats[] getParts();
+
+    /**
+     * getRetainedBytes
+     * @return estimated bytes held by every part together
+     */
+    long getRetainedBytes();
+
+    /**
+     * getTasks
+     * @return Tasks in the current TaskList
+     */
+    long getTasks();
+
+    /**
+     * getBytesPerTask
+     * @return estimated bytes held by every part per Task of the current TaskList
+     */
+    long getBytesPerTask();
+
+    /**
+     * getStringBytes
+     * @return bytes of distinct strings
+     */
+    long getStringBytes();
+
+    /**
+     * getSharedStringBytes
+     * @return bytes of string references to strings counted elsewhere, what copies would have cost
+     */
+    long getSharedStringBytes();
+
+    /**
+     * getHeapUsedBytes
+     * @return heap in use by the whole JVM, to compare against the estimates
+     */
+    long getHeapUsedBytes();
+}
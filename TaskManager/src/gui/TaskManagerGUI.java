@@ -1,21 +1,59 @@
 package gui;
 
+import model.MemoryStats;
 import model.Task;
+import model.TaskKey;
+import model.Priority;
+import model.Recurrence;
+import model.TagQuery;
+import model.Reminder;
+import model.ReminderListener;
+import model.ReminderScheduler;
 import model.TaskList;
+import model.TaskListEvent;
+import model.TaskListListener;
+import model.TaskStats;
 
 import javax.swing.*;
 
+import io.AsyncTaskReader;
+import io.MappedTaskList;
+import io.Replicator;
+import io.StoredTaskList;
+import io.ShardedTaskStore;
+import io.TaskFileValidator;
+import io.TaskFileWatcher;
+import io.TaskFormatException;
+import io.TaskMerger;
 import io.TaskReader;
+import io.UndoHistory;
+import io.ValidationResult;
+import io.Workspace;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
-import java.util.Stack;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.zip.DataFormatException;
 
 /**
@@ -26,6 +64,9 @@ import java.util.zip.DataFormatException;
  * Has the following buttons at the bottom:
  * Add Task, Remove Task, Mark Completed, Clear List, Sort By Due Date, Sort by Name (each of these operations can be undone)
  * Show Completed, Show Incomplete, Show All Tasks, Undo (these operations cannot be directly undone)
+ * The list model follows TaskList change events, so only changed rows are updated
+ * With File > Watch File checked, changes other programs make to the loaded file are picked up automatically
+ * Sync > Share Tasks and Sync > Connect keep the list the same as other running instances
  */
 @SuppressWarnings("serial")
 public class TaskManagerGUI extends JFrame {
@@ -34,7 +75,7 @@ public class TaskManagerGUI extends JFrame {
     private TaskList taskList;
     
     /** List model */
-    private DefaultListModel<Task> listModel;
+    private TaskListModel listModel;
     
     /** JList */
     private JList<Task> taskJList;
@@ -48,8 +89,108 @@ public class TaskManagerGUI extends JFrame {
     /** Task Due Date */
     private JTextField taskDueDate;
     
-    /** Stack for storing/restoring Task List */
-    private Stack<TaskList> undoStack;
+    /** Task repeat choice */
+    private JComboBox<String> taskRepeat;
+    
+    /** Choices in taskRepeat, in order */
+    private static final String[] REPEAT_CHOICES = { "Does not repeat", "Daily", "Weekly", "Monthly", "Every N days" };
+    
+    /** Task tags, separated by spaces */
+    private JTextField taskTags;
+    
+    /** Task priority choice */
+    private JComboBox<Priority> taskPriority;
+    
+    /** Number of Tasks listed by Show Next */
+    private static final int NEXT_TASKS_SHOWN = 10;
+    
+    /** Undo history for storing/restoring Task List, older states are kept on disk */
+    private UndoHistory undoHistory;
+    
+    /** Number of months after the current one loaded from an archive */
+    private static final int ARCHIVE_MONTHS_AHEAD = 3;
+    
+    /** Number of invalid lines listed when a file fails to load */
+    private static final int VALIDATION_ERRORS_SHOWN = 10;
+    
+    /** Open archive, null when working on a single file */
+    private ShardedTaskStore archive;
+    
+    /** First month loaded from the archive */
+    private YearMonth archiveFrom;
+    
+    /** Last month loaded from the archive */
+    private YearMonth archiveTo;
+    
+    /** Task file loaded with Load Tasks, null for archives and databases */
+    private File loadedFile;
+    
+    /** Watches loadedFile for changes, null when not watching */
+    private TaskFileWatcher watcher;
+    
+    /** Turns watching the loaded file on and off */
+    private JCheckBoxMenuItem watchMenuItem;
+    
+    /** Which Tasks the list model currently shows */
+    private enum View { ALL, COMPLETED, INCOMPLETE, UNBLOCKED, NEXT, FILTERED }
+    
+    /** Tag filter shown in the filtered view */
+    private TagQuery filter;
+    
+    /** Current view */
+    private View view = View.ALL;
+    
+    /** Fires reminders as Tasks come due */
+    private ReminderScheduler reminders;
+    
+    /** Number of reminders listed in one notification */
+    private static final int REMINDERS_SHOWN = 10;
+    
+    /** Shares the TaskList with other instances, null when not sharing */
+    private Replicator replicator;
+    
+    /** Loads and saves task files without blocking the event thread */
+    private final AsyncTaskReader asyncReader = new AsyncTaskReader(AsyncTaskReader.DEFAULT_MAX_OPEN_FILES);
+    
+    /** Task files open side by side, loaded on demand and evicted when idle */
+    private final Workspace workspace = new Workspace(WORKSPACE_IDLE_MILLIS);
+    
+    /** Milliseconds a workspace list not shown may stay loaded */
+    private static final long WORKSPACE_IDLE_MILLIS = 10 * 60 * 1000;
+    
+    /** Number of matches listed for a cross-list query */
+    private static final int MATCHES_SHOWN = 50;
+    
+    /** Shows the TaskList's counts above the list */
+    private JLabel statsLabel;
+    
+    /** Number of days in the due date histogram of the stats panel */
+    private static final int HISTOGRAM_DAYS = 14;
+    
+    /** Milliseconds between stats panel refreshes, so overdue counts follow the date */
+    private static final int STATS_REFRESH_MILLIS = 60 * 1000;
+    
+    /** Estimates the heap held by the TaskList, the undo history and the list model, for the debug panel and JMX, counted off the event thread */
+    private final MemoryMonitor memoryMonitor = new MemoryMonitor(new MemoryMonitor.Source() {
+        @Override
+        public List<MemoryStats> memoryStats(MemoryStats.Counter counter) {
+        	
+        	// TaskList first, so the undo history and list model count what they share with it as shared
+            return Arrays.asList(taskList.memoryStats(counter), undoHistory.memoryStats(counter), listModel.memoryStats(counter));
+        }
+    });
+    
+    /** Milliseconds between refreshes of the memory usage dialog */
+    private static final int MEMORY_REFRESH_MILLIS = 2000;
+    
+    /** Keeps the list model in step with the TaskList */
+    private final TaskListListener listModelUpdater = new TaskListListener() {
+        @Override
+        public void taskListChanged(TaskListEvent event) {
+            updateListModel(event); // Private helper method for operation
+            updateStats(); // Counts are kept by the TaskList, reading them does not scan
+        }
+    };
 
     /**
      * Constructor
@@ -58,12 +199,30 @@ public class TaskManagerGUI extends JFrame {
     	
     	// Initialize TaskList
         taskList = new TaskList();
+        taskList.addTaskListListener(listModelUpdater);
+        
+        // Remind the user when Tasks come due
+        reminders = new ReminderScheduler(taskList, Clock.systemDefaultZone(), new ReminderListener() {
+            @Override
+            public void remindersFired(final List<Reminder> fired) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showReminders(fired);
+                    }
+                });
+            }
+        });
+        reminders.start();
         
-        // Initialize Stack
-        undoStack = new Stack<>();
+        // Initialize undo history
+        undoHistory = new UndoHistory();
         
         // Initialize UI
         initializeUI();
+        
+        // Publish memory figures over JMX
+        memoryMonitor.register();
     }
 
     /**
@@ -82,15 +241,28 @@ public class TaskManagerGUI extends JFrame {
         // Default closing operation
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
+        // Save edited workspace lists before exiting
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                memoryMonitor.unregister();
+                try {
+                    workspace.close();
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(TaskManagerGUI.this, "An error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        
         // Default location
         setLocationRelativeTo(null);
         
         // Default list model
-        listModel = new DefaultListModel<>();
+        listModel = new TaskListModel();
         
-        // Single selection JList
+        // Multiple selection JList, Remove Task and Mark Completed act on every selected Task
         taskJList = new JList<>(listModel);
-        taskJList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        taskJList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         taskJList.setCellRenderer(new TaskRenderer());
         taskJList.setFixedCellHeight(80); // Set click-able area for selecting tasks
         
@@ -115,6 +287,16 @@ public class TaskManagerGUI extends JFrame {
         });
         fileMenu.add(loadMenuItem);
 
+        // Add "Merge Tasks" option within "File" button
+        JMenuItem mergeMenuItem = new JMenuItem("Merge Tasks");
+        mergeMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                mergeTasks(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(mergeMenuItem);
+
         // Add "Save Tasks" option within "File" button
         JMenuItem saveMenuItem = new JMenuItem("Save Tasks");
         saveMenuItem.addActionListener(new ActionListener() {
@@ -124,10 +306,156 @@ public class TaskManagerGUI extends JFrame {
             }
         });
         fileMenu.add(saveMenuItem);
+        
+        // Add "Open Archive" option within "File" button
+        JMenuItem openArchiveMenuItem = new JMenuItem("Open Archive");
+        openArchiveMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openArchive(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(openArchiveMenuItem);
+        
+        // Add "Save Archive" option within "File" button
+        JMenuItem saveArchiveMenuItem = new JMenuItem("Save Archive");
+        saveArchiveMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                saveArchive(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(saveArchiveMenuItem);
+        
+        // Add "Open Task Database" option within "File" button
+        JMenuItem openDatabaseMenuItem = new JMenuItem("Open Task Database");
+        openDatabaseMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openDatabase(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(openDatabaseMenuItem);
+        
+        // Add "Open Task Store" option within "File" button
+        JMenuItem openStoreMenuItem = new JMenuItem("Open Task Store");
+        openStoreMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openStore(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(openStoreMenuItem);
+        
+        // Add "Watch File" option within "File" button
+        watchMenuItem = new JCheckBoxMenuItem("Watch File");
+        watchMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                restartWatcher(); // Private helper method for operation
+            }
+        });
+        fileMenu.add(watchMenuItem);
+        
+        // Add "Sync" button to menu bar
+        JMenu syncMenu = new JMenu("Sync");
+        menuBar.add(syncMenu);
+        
+        // Add "Share Tasks" option within "Sync" button
+        JMenuItem shareMenuItem = new JMenuItem("Share Tasks");
+        shareMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                shareTasks(); // Private helper method for operation
+            }
+        });
+        syncMenu.add(shareMenuItem);
+        
+        // Add "Connect" option within "Sync" button
+        JMenuItem connectMenuItem = new JMenuItem("Connect");
+        connectMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                connectToPeer(); // Private helper method for operation
+            }
+        });
+        syncMenu.add(connectMenuItem);
+        
+        // Add "Stop Sharing" option within "Sync" button
+        JMenuItem stopSharingMenuItem = new JMenuItem("Stop Sharing");
+        stopSharingMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                stopSharing(); // Private helper method for operation
+            }
+        });
+        syncMenu.add(stopSharingMenuItem);
+        
+        // Add "Workspace" button to menu bar
+        JMenu workspaceMenu = new JMenu("Workspace");
+        menuBar.add(workspaceMenu);
+        
+        // Add "Add File to Workspace" option within "Workspace" button
+        JMenuItem addToWorkspaceMenuItem = new JMenuItem("Add File to Workspace");
+        addToWorkspaceMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                addToWorkspace(); // Private helper method for operation
+            }
+        });
+        workspaceMenu.add(addToWorkspaceMenuItem);
+        
+        // Add "Switch List" option within "Workspace" button
+        JMenuItem switchListMenuItem = new JMenuItem("Switch List");
+        switchListMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                switchList(); // Private helper method for operation
+            }
+        });
+        workspaceMenu.add(switchListMenuItem);
+        
+        // Add "Overdue Across Lists" option within "Workspace" button
+        JMenuItem overdueMenuItem = new JMenuItem("Overdue Across Lists");
+        overdueMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    showMatches("Overdue", workspace.getOverdue(LocalDate.now()));
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(TaskManagerGUI.this, "An error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        workspaceMenu.add(overdueMenuItem);
+        
+        // Add "Search Across Lists" option within "Workspace" button
+        JMenuItem searchMenuItem = new JMenuItem("Search Across Lists");
+        searchMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                searchWorkspace(); // Private helper method for operation
+            }
+        });
+        workspaceMenu.add(searchMenuItem);
+        
+        // Add "Debug" button to menu bar
+        JMenu debugMenu = new JMenu("Debug");
+        menuBar.add(debugMenu);
+        
+        // Add "Memory Usage" option within "Debug" button
+        JMenuItem memoryMenuItem = new JMenuItem("Memory Usage");
+        memoryMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showMemoryUsage(); // Private helper method for operation
+            }
+        });
+        debugMenu.add(memoryMenuItem);
 
         // Set up input area for adding Tasks
         JPanel inputPanel = new JPanel();
-        inputPanel.setLayout(new GridLayout(8, 4));
+        inputPanel.setLayout(new GridLayout(9, 4));
 
         // Task Name text field
         inputPanel.add(new JLabel("Task Name:"));
@@ -143,13 +471,28 @@ public class TaskManagerGUI extends JFrame {
         inputPanel.add(new JLabel("Task Due Date (YYYY-MM-DD):"));
         taskDueDate = new JTextField();
         inputPanel.add(taskDueDate);
+        
+        // Task repeat choice
+        inputPanel.add(new JLabel("Repeat:"));
+        taskRepeat = new JComboBox<>(REPEAT_CHOICES);
+        inputPanel.add(taskRepeat);
+        
+        // Task priority choice
+        inputPanel.add(new JLabel("Priority:"));
+        taskPriority = new JComboBox<>(Priority.values());
+        inputPanel.add(taskPriority);
+        
+        // Task tags text field
+        inputPanel.add(new JLabel("Tags (space separated):"));
+        taskTags = new JTextField();
+        inputPanel.add(taskTags);
 
         // Task Name button
         JButton addButton = new JButton("Add Task");
         addButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
                 addTask(); // Private helper method for operation
             }
         });
@@ -160,7 +503,7 @@ public class TaskManagerGUI extends JFrame {
         sortByDueDate.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
                 sortByDueDate(); // Private helper method for operation
             }
         });
@@ -171,7 +514,7 @@ public class TaskManagerGUI extends JFrame {
         removeButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
                 removeTask(); // Private helper method for operation
             }
         });
@@ -182,7 +525,7 @@ public class TaskManagerGUI extends JFrame {
         sortByName.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
                 sortByName(); // Private helper method for operation
             } 
         });
@@ -193,7 +536,7 @@ public class TaskManagerGUI extends JFrame {
         markCompleted.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
             	markCompleted(); // Private helper method for operation
             }
         });
@@ -214,7 +557,7 @@ public class TaskManagerGUI extends JFrame {
         clearList.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-            	saveState(); // Save list on Stack before operation (in case of undo)
+            	saveState(); // Save list to undo history before operation (in case of undo)
             	clearList(); // Private helper method for operation
             }
         });
@@ -245,48 +588,517 @@ public class TaskManagerGUI extends JFrame {
         showAllTasksButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                displayTasks();
+                displayTasks();
+            }
+        });
+        inputPanel.add(showAllTasksButton);
+        
+        // Blocked By button
+        JButton blockedByButton = new JButton("Blocked By");
+        blockedByButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+            	saveState(); // Save list to undo history before operation (in case of undo)
+                addDependency(); // Private helper method for operation
+            }
+        });
+        inputPanel.add(blockedByButton);
+        
+        // Show Unblocked button
+        JButton showUnblockedButton = new JButton("Show Unblocked");
+        showUnblockedButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showUnblocked(); // Private helper method for operation
+            }
+        });
+        inputPanel.add(showUnblockedButton);
+        
+        // Show Next button
+        JButton showNextButton = new JButton("Show Next");
+        showNextButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showNext(); // Private helper method for operation
+            }
+        });
+        inputPanel.add(showNextButton);
+        
+        // Filter by Tags button
+        JButton filterButton = new JButton("Filter by Tags");
+        filterButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                filterByTags(); // Private helper method for operation
+            }
+        });
+        inputPanel.add(filterButton);
+        
+        // Place buttons bottom-center
+        getContentPane().add(listScrollPane, BorderLayout.CENTER);
+        
+        // Stats panel top, refreshed on every change and once a minute for the date
+        statsLabel = new JLabel();
+        statsLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        getContentPane().add(statsLabel, BorderLayout.NORTH);
+        updateStats();
+        new Timer(STATS_REFRESH_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateStats();
+            }
+        }).start();
+        getContentPane().add(inputPanel, BorderLayout.SOUTH);
+    }
+    
+    /**
+     * Displays Tasks on GUI
+     */
+    private void displayTasks() {
+    	
+    	// Show every Task from now on
+        view = View.ALL;
+        
+        // Show the TaskList's own list, task databases and paged files are read only for the rows painted
+        listModel.setRows(taskList.getAllTasks(), true);
+    }
+    
+    /**
+     * Applies a TaskList change to the list model
+     * In the full view only the affected rows change, filtered views are re-filtered
+     * @param event change reported by the TaskList
+     */
+    private void updateListModel(TaskListEvent event) {
+    	
+    	// Filtered views may gain or lose rows on any change
+        if (view == View.COMPLETED) {
+            showCompleted();
+            return;
+        } else if (view == View.INCOMPLETE) {
+            showIncomplete();
+            return;
+        } else if (view == View.UNBLOCKED) {
+            showUnblocked();
+            return;
+        } else if (view == View.NEXT) {
+            showNext();
+            return;
+        } else if (view == View.FILTERED) {
+            showFiltered();
+            return;
+        }
+        
+        switch (event.getType()) {
+        case INSERTED:
+        	
+        	// Indices refer to the new list, announce in ascending order
+            for (int i = 0; i < event.size(); i++) {
+                listModel.rowInserted(event.getIndex(i));
+            }
+            break;
+        case REMOVED:
+        	
+        	// Indices refer to the old list, announce from the end so earlier ones stay valid
+            for (int i = event.size() - 1; i >= 0; i--) {
+                listModel.rowRemoved(event.getIndex(i));
+            }
+            
+            // Rows the event reports as renumbered show new ids, they are read again when painted
+            if (event.getRenumberedFrom() != TaskListEvent.NOT_RENUMBERED) {
+                listModel.rowsChanged(event.getRenumberedFrom(), listModel.getSize() - 1);
+            }
+            break;
+        case UPDATED:
+        	
+        	// Repaint only the edited rows
+            for (int i = 0; i < event.size(); i++) {
+                listModel.rowsChanged(event.getIndex(i), event.getIndex(i));
+            }
+            break;
+        case CLEARED:
+            listModel.setRows(taskList.getAllTasks(), true);
+            break;
+        default:
+        	
+        	// Order or mixed batch, rebuild
+            displayTasks();
+            break;
+        }
+    }
+    
+    /**
+     * Replaces the current TaskList, moving the list model listener to it
+     * @param newList TaskList to show
+     */
+    private void setTaskList(TaskList newList) {
+        taskList.removeTaskListListener(listModelUpdater);
+        
+        // A workspace list no longer shown may be evicted, showWorkspaceList pins the new one
+        workspace.setCurrent(null);
+        setTitle("Task Manager");
+        
+        // Close a task database or store being replaced, its edits are already on disk
+        if (taskList instanceof Closeable && taskList != newList) {
+            try {
+                ((Closeable) taskList).close();
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        taskList = newList;
+        taskList.addTaskListListener(listModelUpdater);
+        
+        // Task databases hand out snapshots that cannot be followed by identity, so they get no reminders
+        reminders.setTaskList(taskList instanceof MappedTaskList ? new TaskList() : taskList);
+        
+        // Task databases do not store tags
+        taskTags.setEnabled(!(taskList instanceof MappedTaskList));
+        
+        // Other instances receive the difference between the old and new lists, databases cannot be shared
+        if (replicator != null) {
+            if (taskList instanceof MappedTaskList) {
+                stopSharing();
+                JOptionPane.showMessageDialog(this, "Task databases cannot be shared, sharing stopped.");
+            } else {
+                replicator.setTaskList(taskList);
+            }
+        }
+        displayTasks();
+        updateStats();
+    }
+    
+    /**
+     * Shows the TaskList's counts and the number of tasks due on each of the next days
+     * Reads the counts kept by TaskStats, so this does not scan the list
+     */
+    private void updateStats() {
+        TaskStats stats = taskList.getStats();
+        StringBuilder text = new StringBuilder("<html>");
+        text.append(String.format("Total: %d &nbsp; Completed: %d &nbsp; Incomplete: %d &nbsp; Overdue: %d &nbsp; Due this week: %d",
+                stats.getTotal(), stats.getCompleted(), stats.getIncomplete(), stats.getOverdue(), stats.getDueThisWeek()));
+        
+        // One entry per day, starting today
+        LocalDate today = LocalDate.now();
+        int[] histogram = stats.getHistogram(today, HISTOGRAM_DAYS);
+        text.append("<br>Due:");
+        for (int i = 0; i < histogram.length; i++) {
+            LocalDate day = today.plusDays(i);
+            text.append(String.format(" &nbsp;%s %d: %d", day.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault()), day.getDayOfMonth(), histogram[i]));
+        }
+        statsLabel.setText(text.append("</html>").toString());
+    }
+    
+    /**
+     * Starts sharing the TaskList if not already sharing
+     * Changes from other instances are applied on the event thread
+     * @return false if the TaskList cannot be shared
+     */
+    private boolean startSharing() {
+        if (taskList instanceof MappedTaskList) {
+            JOptionPane.showMessageDialog(this, "Task databases cannot be shared.", "Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        if (replicator == null) {
+            replicator = new Replicator(taskList, new SecureRandom().nextInt(), new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    SwingUtilities.invokeLater(command);
+                }
+            });
+        }
+        return true;
+    }
+    
+    /**
+     * Accept connections from other instances on a port
+     * Without a secret only instances on this computer can connect
+     */
+    private void shareTasks() {
+        String port = JOptionPane.showInputDialog(this, "Port to share on:", Replicator.DEFAULT_PORT);
+        if (port == null) {
+            return;
+        }
+        String secret = JOptionPane.showInputDialog(this, "Secret for other computers (blank to share on this computer only):", "");
+        if (secret == null || !startSharing()) {
+            return;
+        }
+        try {
+            int bound;
+            if (secret.isEmpty()) {
+                bound = replicator.listen(Integer.parseInt(port.trim()));
+                JOptionPane.showMessageDialog(this, "Sharing tasks on port " + bound + " of this computer.");
+            } else {
+                bound = replicator.listen(null, Integer.parseInt(port.trim()), secret);
+                JOptionPane.showMessageDialog(this, "Sharing tasks on port " + bound + " with instances given the secret.");
+            }
+        } catch (NumberFormatException | IOException e) {
+            JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Connect to another instance, each side is sent the changes it is missing
+     */
+    private void connectToPeer() {
+        String address = JOptionPane.showInputDialog(this, "Instance to connect to (host:port):", "localhost:" + Replicator.DEFAULT_PORT);
+        if (address == null) {
+            return;
+        }
+        String secret = JOptionPane.showInputDialog(this, "Secret it shares with (blank for none):", "");
+        if (secret == null || !startSharing()) {
+            return;
+        }
+        int colon = address.lastIndexOf(':');
+        try {
+            if (colon == -1) {
+                replicator.connect(address.trim(), Replicator.DEFAULT_PORT, secret);
+            } else {
+                replicator.connect(address.substring(0, colon).trim(), Integer.parseInt(address.substring(colon + 1).trim()), secret);
+            }
+        } catch (NumberFormatException | IOException e) {
+            JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Stop sharing and close every connection
+     */
+    private void stopSharing() {
+        if (replicator != null) {
+            replicator.close();
+            replicator = null;
+        }
+    }
+    
+    /**
+     * Add a task file to the workspace under its file name and show it
+     */
+    private void addToWorkspace() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        try {
+            workspace.open(file.getName(), file);
+            showWorkspaceList(file.getName());
+        } catch (IllegalArgumentException | IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Show another list of the workspace
+     */
+    private void switchList() {
+        List<String> names = workspace.getNames();
+        if (names.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "The workspace is empty, add a file to it first.");
+            return;
+        }
+        Object name = JOptionPane.showInputDialog(this, "List to show:", "Switch List", JOptionPane.PLAIN_MESSAGE, null, names.toArray(), names.get(0));
+        if (name != null) {
+            try {
+                showWorkspaceList((String) name);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+    
+    /**
+     * Shows a workspace list, it is kept loaded while shown
+     * Edits are saved by the workspace, so the list is not tied to Save Tasks or the file watcher
+     * @param name name in the workspace
+     * @throws IOException if the list cannot be loaded
+     */
+    private void showWorkspaceList(String name) throws IOException {
+        setTaskList(workspace.get(name));
+        workspace.setCurrent(name);
+        archive = null;
+        loadedFile = null;
+        restartWatcher();
+        setTitle("Task Manager - " + name);
+    }
+    
+    /**
+     * Search names and descriptions in every list of the workspace
+     */
+    private void searchWorkspace() {
+        String text = JOptionPane.showInputDialog(this, "Text to search for:");
+        if (text == null || text.trim().isEmpty()) {
+            return;
+        }
+        try {
+            showMatches("Search results", workspace.search(text.trim()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Lists the Tasks found by a cross-list query
+     * @param title dialog title
+     * @param matches matches in order
+     */
+    private void showMatches(String title, List<Workspace.Match> matches) {
+        if (matches.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No tasks found.", title, JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < matches.size() && i < MATCHES_SHOWN; i++) {
+            Task task = matches.get(i).getTask();
+            message.append(matches.get(i).getListName()).append(": ").append(task.getName());
+            if (task.getDueDate() != null) {
+                message.append(" (due ").append(task.getDueDate()).append(')');
+            }
+            message.append('\n');
+        }
+        if (matches.size() > MATCHES_SHOWN) {
+            message.append("and ").append(matches.size() - MATCHES_SHOWN).append(" more\n");
+        }
+        JOptionPane.showMessageDialog(this, new JScrollPane(new JTextArea(message.toString(), Math.min(matches.size(), 20) + 1, 50)), title, JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    /**
+     * Shows the estimated heap held by each part in a window refreshed every few seconds until closed
+     * The parts are counted in the background, so a large list or undo history does not hold up the GUI
+     */
+    private void showMemoryUsage() {
+        final JTextArea text = new JTextArea(8, 90);
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        text.setText("Counting...");
+        final Timer refresh = new Timer(MEMORY_REFRESH_MILLIS, new ActionListener() {
+            
+            /** True while a count is running, so slow counts do not pile up */
+            private boolean counting;
+            
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (counting) {
+                    return;
+                }
+                counting = true;
+                new SwingWorker<String, Void>() {
+                    @Override
+                    protected String doInBackground() {
+                        return formatMemoryUsage();
+                    }
+                    
+                    @Override
+                    protected void done() {
+                        counting = false;
+                        try {
+                            text.setText(get());
+                        } catch (InterruptedException | ExecutionException e) {
+                            text.setText("Memory usage could not be counted: " + e.getMessage());
+                        }
+                    }
+                }.execute();
             }
         });
-        inputPanel.add(showAllTasksButton);
+        refresh.setInitialDelay(0);
         
-        // Place buttons bottom-center
-        getContentPane().add(listScrollPane, BorderLayout.CENTER);
-        getContentPane().add(inputPanel, BorderLayout.SOUTH);
+        // Not modal, so the figures can be watched while using the list
+        JDialog dialog = new JDialog(this, "Memory Usage", false);
+        dialog.getContentPane().add(new JScrollPane(text));
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refresh.stop();
+            }
+        });
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+        refresh.start();
     }
     
     /**
-     * Displays Tasks on GUI
+     * Table of the memory figures, one row per part and a total
+     * @return text for the memory usage window
      */
-    private void displayTasks() {
-    	
-    	// Clear List Model
-        listModel.clear();
-        
-        // Update List Model with TaskList
-        for (Task task : taskList.getAllTasks()) {
-            listModel.addElement(task);
+    private String formatMemoryUsage() {
+        List<MemoryStats> parts = memoryMonitor.snapshot();
+        List<MemoryStats> rows = new ArrayList<>(parts);
+        rows.add(MemoryStats.total("Total", parts));
+        String format = "%-14s %10s %14s %14s %14s %14s %10s %14s%n";
+        StringBuilder table = new StringBuilder(String.format(format,
+                "Part", "Tasks", "Retained", "Tasks", "Strings", "Structures", "Per task", "Shared strings"));
+        for (MemoryStats row : rows) {
+            table.append(String.format(format, row.getName(), String.format("%,d", row.getTasks()),
+                    String.format("%,d", row.getRetainedBytes()), String.format("%,d", row.getTaskBytes()),
+                    String.format("%,d", row.getStringBytes()), String.format("%,d", row.getStructureBytes()),
+                    String.format("%,d", row.getBytesPerTask()), String.format("%,d", row.getSharedStringBytes())));
+        }
+        table.append(String.format("%nEstimated bytes. JVM heap in use: %,d bytes", memoryMonitor.getHeapUsedBytes()));
+        return table.toString();
+    }
+    
+    /**
+     * Notify the user of Tasks that came due or became overdue
+     * @param fired reminders fired together
+     */
+    private void showReminders(List<Reminder> fired) {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < fired.size() && i < REMINDERS_SHOWN; i++) {
+            message.append(fired.get(i)).append('\n');
         }
+        if (fired.size() > REMINDERS_SHOWN) {
+            message.append("and ").append(fired.size() - REMINDERS_SHOWN).append(" more\n");
+        }
+        JOptionPane.showMessageDialog(this, message.toString(), "Reminders", JOptionPane.INFORMATION_MESSAGE);
     }
     
     /**
-     * Saves TaskList to Stack (popped in case of undo)
+     * Saves TaskList to undo history (popped in case of undo)
+     * Task databases and stores are edited in place on disk and are not copied into the history
      */
     private void saveState() {
-        undoStack.push(new TaskList(taskList));
+        if (isEditedOnDisk()) {
+            return;
+        }
+        pushState(new TaskList(taskList));
+    }
+    
+    /**
+     * Whether the current TaskList writes its own edits to disk
+     * Such lists are not replaced by undo, which would detach them from their file
+     * @return true for task databases and stores
+     */
+    private boolean isEditedOnDisk() {
+        return taskList instanceof MappedTaskList || taskList instanceof StoredTaskList;
+    }
+    
+    /**
+     * Adds a copy of a TaskList to undo history
+     * @param state copy to restore on undo
+     */
+    private void pushState(TaskList state) {
+        try {
+            undoHistory.push(state);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Cannot save undo history: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
     }
     
     /**
-     * Restores previous TaskList from Stack
+     * Restores previous TaskList from undo history
      */
     private void undo() {
     	
-    	// Retrieve TaskList
-        if (!undoStack.isEmpty()) {
-            taskList = undoStack.pop();
-            displayTasks();
+    	// Retrieve TaskList, reading it back from disk if it is an old one
+        if (!undoHistory.isEmpty()) {
+            try {
+                setTaskList(undoHistory.pop());
+            } catch (DataFormatException | IOException e) {
+                JOptionPane.showMessageDialog(this, "Cannot read undo history: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
             
-        // If Stack is empty, no operations can be undone
+        // If history is empty, no operations can be undone
         } else {
             JOptionPane.showMessageDialog(this, "Nothing to undo.");
         }
@@ -300,19 +1112,311 @@ public class TaskManagerGUI extends JFrame {
     	// Allow user to choose file
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-        	File loadFile = fileChooser.getSelectedFile();
-        	TaskReader reader = new TaskReader();
+        	final File loadFile = fileChooser.getSelectedFile();
+        	
+        	// Load file off the event thread, then update display on it
+        	asyncReader.load(loadFile).whenComplete(new BiConsumer<TaskList, Throwable>() {
+        	    @Override
+        	    public void accept(final TaskList loaded, final Throwable error) {
+        	        SwingUtilities.invokeLater(new Runnable() {
+        	            @Override
+        	            public void run() {
+        	                loadFinished(loadFile, loaded, error);
+        	            }
+        	        });
+        	    }
+        	});
+        }
+    }
+    
+    /**
+     * Show a TaskList loaded by loadTasks, or report why it could not be loaded
+     * @param loadFile file loaded
+     * @param loaded new TaskList, null if loading failed
+     * @param error reason loading failed, null if it succeeded
+     */
+    private void loadFinished(File loadFile, TaskList loaded, Throwable error) {
+        if (error == null) {
+            setTaskList(loaded);
+            archive = null;
+            loadedFile = loadFile;
+            restartWatcher();
+            
+        // If some lines are invalid, offer to load the rest
+        } else if (error instanceof TaskFormatException) {
+            loadValidTasks(loadFile);
+            
+        // If invalid file, display error message to user specified by TaskReader
+        } else {
+            JOptionPane.showMessageDialog(null, error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Merge Tasks from several files into TaskList, skipping duplicates
+     * The user picks which fields make two Tasks duplicates
+     */
+    private void mergeTasks() {
+    	
+    	// Allow user to choose files
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setMultiSelectionEnabled(true);
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        // Ask which fields make Tasks duplicates
+        TaskKey key = (TaskKey) JOptionPane.showInputDialog(this, "Treat Tasks as duplicates when they share:", "Merge Tasks",
+                JOptionPane.QUESTION_MESSAGE, null, TaskKey.values(), TaskKey.NAME_AND_DUE_DATE);
+        if (key == null) {
+            return;
+        }
+        
+        // Merge as one undoable change, nothing is added if a file is invalid
+        TaskList before = isEditedOnDisk() ? null : new TaskList(taskList);
+        TaskMerger merger = new TaskMerger(key);
+        try {
+            int added = merger.mergeInto(Arrays.asList(fileChooser.getSelectedFiles()), taskList);
+            if (before != null) {
+                pushState(before);
+            }
+            JOptionPane.showMessageDialog(this, "Added " + added + " tasks, skipped " + merger.getDuplicateCount() + " duplicates.");
+        } catch (DataFormatException | IOException | IllegalArgumentException | IllegalStateException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Report every invalid line of a file and offer to load only the valid lines
+     * The file is checked off the event thread without writing anything, and only once the user agrees
+     * are the valid lines loaded, also off the event thread, with the invalid lines saved unchanged
+     * next to the file with a .rejected extension
+     * @param loadFile file that failed to load
+     */
+    private void loadValidTasks(final File loadFile) {
+    	
+    	// List the first few problems
+    	final TaskFileValidator validator = new TaskFileValidator(VALIDATION_ERRORS_SHOWN);
+    	new SwingWorker<ValidationResult, Void>() {
+    	    @Override
+    	    protected ValidationResult doInBackground() throws DataFormatException, IOException {
+    	        return validator.validate(loadFile);
+    	    }
+    	    
+    	    @Override
+    	    protected void done() {
+    	        try {
+    	            askLoadValidTasks(validator, loadFile, get());
+    	        } catch (InterruptedException | ExecutionException e) {
+    	            showWorkerError(e);
+    	        }
+    	    }
+    	}.execute();
+    }
+    
+    /**
+     * Show the problems found by loadValidTasks and load the valid lines if the user agrees
+     * @param validator validator that checked the file
+     * @param loadFile file that failed to load
+     * @param result problems found, nothing loaded yet
+     */
+    private void askLoadValidTasks(final TaskFileValidator validator, final File loadFile, ValidationResult result) {
+    	final File quarantine = new File(loadFile.getPath() + ".rejected");
+    	StringBuilder message = new StringBuilder();
+    	message.append(result.getErrorCount()).append(" of ").append(result.getLineCount()).append(" lines are invalid:\n");
+    	for (TaskFormatException error : result.getErrors()) {
+    		message.append(error.getMessage()).append('\n');
+    	}
+    	if (result.isTruncated()) {
+    		message.append("...\n");
+    	}
+    	message.append("\nLoad the ").append(result.getLineCount() - result.getErrorCount())
+    			.append(" valid tasks? Invalid lines will be saved to ").append(quarantine.getName());
+    	
+    	int response = JOptionPane.showConfirmDialog(this, message.toString(), "Invalid Lines", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+    	if (response != JOptionPane.YES_OPTION) {
+    		return;
+    	}
+    	
+    	// Load off the event thread, then show the Tasks on it
+    	new SwingWorker<ValidationResult, Void>() {
+    	    @Override
+    	    protected ValidationResult doInBackground() throws DataFormatException, IOException {
+    	        return validator.load(loadFile, quarantine);
+    	    }
+    	    
+    	    @Override
+    	    protected void done() {
+    	        try {
+    	            setTaskList(get().getTasks());
+    	            archive = null;
+    	            loadedFile = loadFile;
+    	            restartWatcher();
+    	        } catch (InterruptedException | ExecutionException e) {
+    	            showWorkerError(e);
+    	        }
+    	    }
+    	}.execute();
+    }
+    
+    /**
+     * Report why background work failed
+     * @param e exception from SwingWorker.get
+     */
+    private void showWorkerError(Exception e) {
+    	Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+    	JOptionPane.showMessageDialog(this, cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Starts or stops watching the loaded file to match the Watch File option
+     * Appended lines are added to the list, other changes replace it with a fresh load
+     */
+    private void restartWatcher() {
+    	
+    	// Stop watching the previous file
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // Nothing left to watch
+            }
+            watcher = null;
+        }
+        if (!watchMenuItem.isSelected() || loadedFile == null) {
+            return;
+        }
+        
+        // Changes arrive on the watcher's thread, apply them on the event thread
+        try {
+            watcher = new TaskFileWatcher(loadedFile, new TaskFileWatcher.Listener() {
+                @Override
+                public void tasksAppended(final List<Task> tasks) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            taskList.addTasks(tasks);
+                        }
+                    });
+                }
+                
+                @Override
+                public void fileReloaded(final TaskList tasks) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            setTaskList(tasks);
+                        }
+                    });
+                }
+                
+                @Override
+                public void watchFailed(final Exception e) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            JOptionPane.showMessageDialog(TaskManagerGUI.this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+                }
+            });
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Cannot watch file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Open a sharded archive directory
+     * Only the current month and the next few are loaded
+     */
+    private void openArchive() {
+    	
+    	// Allow user to choose directory
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
             	
-            	// Load file using TaskReader class
-                taskList = reader.loadFromFile(loadFile);
+            	// Load the months around today
+                archive = new ShardedTaskStore(chooser.getSelectedFile(), ShardedTaskStore.DEFAULT_HOT_SHARDS);
+                archiveFrom = YearMonth.now();
+                archiveTo = archiveFrom.plusMonths(ARCHIVE_MONTHS_AHEAD);
+                setTaskList(archive.load(archiveFrom, archiveTo));
+                loadedFile = null;
+                restartWatcher();
                 
-                // Update display
-                displayTasks();
+            // If invalid archive, display error message
+            } catch (DataFormatException | IOException e) {
+                archive = null;
+                JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+    
+    /**
+     * Save TaskList back into the open archive
+     * Creates a new archive from the current list if none is open
+     */
+    private void saveArchive() {
+        try {
+        	
+        	// Write back only the loaded months
+            if (archive != null) {
+                archive.save(taskList, archiveFrom, archiveTo);
+                return;
+            }
+            
+            // Partition the whole list into a new archive directory
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                ShardedTaskStore.create(taskList, chooser.getSelectedFile());
+            }
+        } catch (DataFormatException | IOException e) {
+            JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Open (or create) a memory-mapped task database
+     * Edits are saved to the database as they happen and cannot be undone
+     */
+    private void openDatabase() {
+    	
+    	// Allow user to choose file
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                setTaskList(new MappedTaskList(chooser.getSelectedFile()));
+                archive = null;
+                loadedFile = null;
+                restartWatcher();
+                
+            // If not a task database, display error message
+            } catch (DataFormatException | IOException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+    
+    /**
+     * Open (or create) a log-structured task store
+     * Each edit is appended to the store as it happens and cannot be undone
+     */
+    private void openStore() {
+    	
+    	// Allow user to choose file
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                setTaskList(new StoredTaskList(chooser.getSelectedFile()));
+                archive = null;
+                loadedFile = null;
+                restartWatcher();
                 
-            // If invalid file, display error message to user specified by TaskReader
-            } catch (DataFormatException | FileNotFoundException e) {
-            	 JOptionPane.showMessageDialog(null, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            // If not a task store, display error message
+            } catch (DataFormatException | IOException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
@@ -338,16 +1442,40 @@ public class TaskManagerGUI extends JFrame {
                 	saveTasks();
                 }
             }
-            TaskReader reader = new TaskReader();
-            try {
-            	
-            	// Save TaskList to file using TaskReader
-                reader.saveToFile(taskList, saveFile);
-                
-            // This should not happen
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            
+            // Our own save is not a change to pick up, stop the watcher reading it before the write starts
+            final TaskFileWatcher saving = watcher != null && watcher.getFile().equals(saveFile.getAbsoluteFile()) ? watcher : null;
+            if (saving != null) {
+                saving.suspend();
             }
+            
+            // Save TaskList to file off the event thread, the Tasks are copied first
+            asyncReader.save(taskList, saveFile).whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable error) {
+                    
+                    // Still on the save's thread, take the saved file as loaded before telling the event thread
+                    if (saving != null) {
+                        try {
+                            saving.resume();
+                        } catch (IOException e) {
+                            if (error == null) {
+                                error = e;
+                            }
+                        }
+                    }
+                    if (error == null) {
+                        return;
+                    }
+                    final String message = error.getMessage();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            JOptionPane.showMessageDialog(TaskManagerGUI.this, "An error occurred: " + message, "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+                }
+            });
         }
     }
 
@@ -385,12 +1513,34 @@ public class TaskManagerGUI extends JFrame {
                 
                 // Create Task with user-specified fields
                 Task task = new Task(0, name, description, dueDate);
+                task.setPriority((Priority) taskPriority.getSelectedItem());
                 
-                // Add to TaskList
-                taskList.addTask(task);
+                // Tags are typed with spaces between them
+                String tags = taskTags.getText().trim();
+                if (!tags.isEmpty() && taskTags.isEnabled()) {
+                    try {
+                        task.setTags(Arrays.asList(tags.split("\\s+")));
+                    } catch (IllegalArgumentException e) {
+                        JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                }
                 
-                // Update display
-                displayTasks();
+                // Repeating Tasks store only their rule
+                if (taskRepeat.getSelectedIndex() > 0) {
+                    Recurrence recurrence = askRecurrence();
+                    if (recurrence == null) {
+                        return;
+                    }
+                    task.setRecurrence(recurrence);
+                }
+                
+                // Add to TaskList (display updates through listener), some lists refuse fields they cannot store
+                try {
+                    taskList.addTask(task);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
             }
            
         // Task Name cannot be empty    
@@ -400,38 +1550,105 @@ public class TaskManagerGUI extends JFrame {
     }
 
     /**
-     * Remove a Task from the TaskList
+     * Ask for the details of the chosen repeat rule
+     * @return rule, or null if the user cancelled or entered invalid details
+     */
+    private Recurrence askRecurrence() {
+        Recurrence.Frequency frequency;
+        int interval = 1;
+        switch (taskRepeat.getSelectedIndex()) {
+            case 1:
+                frequency = Recurrence.Frequency.DAILY;
+                break;
+            case 2:
+                frequency = Recurrence.Frequency.WEEKLY;
+                break;
+            case 3:
+                frequency = Recurrence.Frequency.MONTHLY;
+                break;
+            default:
+                
+                // Ask for the number of days between occurrences
+                frequency = Recurrence.Frequency.DAILY;
+                String days = JOptionPane.showInputDialog(this, "Repeat every how many days?", "2");
+                if (days == null) {
+                    return null;
+                }
+                try {
+                    interval = Integer.parseInt(days.trim());
+                } catch (NumberFormatException e) {
+                    interval = 0;
+                }
+                if (interval < 1) {
+                    JOptionPane.showMessageDialog(this, "Please enter a whole number of days.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return null;
+                }
+                break;
+        }
+        
+        // Ask for an optional end date
+        String until = JOptionPane.showInputDialog(this, "Repeat until (YYYY-MM-DD), leave empty to repeat forever:", "");
+        if (until == null) {
+            return null;
+        }
+        try {
+            return new Recurrence(frequency, interval, until.trim().isEmpty() ? null : LocalDate.parse(until.trim()));
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Invalid date. Please enter the date in format YYYY-MM-DD.", "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    /**
+     * Remove the selected Tasks from the TaskList in one step
      */
     private void removeTask() {
     	
     	// Make sure user has a Task selected
         if (taskJList.getSelectedIndex() != -1) {
-            Task task = taskList.getAllTasks().get(taskJList.getSelectedIndex());
-            
-            // Remove selected Task
-            taskList.removeTask(task);
+            List<Task> tasks = taskJList.getSelectedValuesList();
             
-            // Update display
-            displayTasks();
+            // Remove selected Tasks (display updates through listener)
+            taskList.removeTasks(tasks);
         } else {
             JOptionPane.showMessageDialog(this, "Please select a task.");
         }
     }
     
     /**
-     * Mark a Task as completed
+     * Mark the selected Tasks as completed in one step
+     * Repeating Tasks have only their next occurrence from today marked, lists that cannot store that say so
      */
     private void markCompleted() {
     	
     	// Make sure user has a Task selected
         if (taskJList.getSelectedIndex() != -1) {
-            Task task = taskList.getAllTasks().get(taskJList.getSelectedIndex());
-            
-            // Mark the selected Task as completed
-            task.setCompleted(true);
+            List<Task> tasks = taskJList.getSelectedValuesList();
+            List<Task> oneOff = new ArrayList<>();
+            String error = null;
             
-            // Update display
-            displayTasks();
+            // Mark the selected Tasks as completed (display updates through listener)
+            taskList.beginBatch();
+            try {
+                for (Task task : tasks) {
+                    LocalDate next = task.isRecurring() ? task.getNextOccurrence(LocalDate.now()) : null;
+                    if (next == null) {
+                        oneOff.add(task);
+                        continue;
+                    }
+                    try {
+                        taskList.setCompleted(task, next, true);
+                    } catch (UnsupportedOperationException e) {
+                        error = e.getMessage();
+                    }
+                }
+                taskList.setCompleted(oneOff, true);
+            } finally {
+                taskList.endBatch();
+            }
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, error + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            }
         } else {
             JOptionPane.showMessageDialog(this, "Please select a task.");
         }
@@ -446,11 +1663,8 @@ public class TaskManagerGUI extends JFrame {
         int response = JOptionPane.showConfirmDialog(this, "Are you sure you want to clear the list?", "Confirm", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
         if (response == JOptionPane.YES_OPTION) {
         	
-        	// Clear the list
+        	// Clear the list (display updates through listener)
             taskList.clear();
-            
-            // Update display
-            displayTasks();
         }
     }
 
@@ -461,11 +1675,8 @@ public class TaskManagerGUI extends JFrame {
     	
         if (taskList != null) {
         	
-        	// Call TaskList method for sorting
+        	// Call TaskList method for sorting (display updates through listener)
             taskList.sortByDueDate();
-            
-            // Update display
-            displayTasks();
         }
     }
 
@@ -476,11 +1687,8 @@ public class TaskManagerGUI extends JFrame {
     	
         if (taskList != null) {
         	
-        	// Call TaskList method for sorting
+        	// Call TaskList method for sorting (display updates through listener)
             taskList.sortByName();
-            
-            // Update display
-            displayTasks();
         }
     }
 
@@ -489,15 +1697,11 @@ public class TaskManagerGUI extends JFrame {
      */
     private void showCompleted() {
     	
-    	// Clear List Model
-        listModel.clear();
+    	// Keep showing completed Tasks as the list changes
+        view = View.COMPLETED;
         
         // Use TaskList method for getting completed tasks
-        for (Task task : taskList.getCompletedTasks()) {
-        	
-        	// Update display
-            listModel.addElement(task);
-        }
+        listModel.setRows(taskList.getCompletedTasks(), false);
     }
     
     /**
@@ -505,14 +1709,213 @@ public class TaskManagerGUI extends JFrame {
      */
     private void showIncomplete() {
     	
-    	// Clear List Model
-        listModel.clear();
+    	// Keep showing incomplete Tasks as the list changes
+        view = View.INCOMPLETE;
         
         // Use TaskList method for getting incomplete tasks
-        for (Task task : taskList.getIncompleteTasks()) {
+        listModel.setRows(taskList.getIncompleteTasks(), false);
+    }
+
+    /**
+     * Make the selected Task wait for another Task chosen by the user
+     */
+    private void addDependency() {
+    	
+    	// Make sure user has a Task selected
+        Task task = taskJList.getSelectedValue();
+        if (task == null) {
+            JOptionPane.showMessageDialog(this, "Please select a task.");
+            return;
+        }
+        
+        // Offer every other Task as the blocker
+        List<Task> choices = new ArrayList<>(taskList.getAllTasks());
+        choices.remove(task);
+        if (choices.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "There are no other tasks.");
+            return;
+        }
+        String[] labels = new String[choices.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = choices.get(i).getId() + ". " + choices.get(i).getName();
+        }
+        Object chosen = JOptionPane.showInputDialog(this, "'" + task.getName() + "' is blocked by:", "Blocked By",
+                JOptionPane.QUESTION_MESSAGE, null, labels, labels[0]);
+        if (chosen == null) {
+            return;
+        }
+        Task blocker = choices.get(Arrays.asList(labels).indexOf(chosen));
+        
+        // Cycles are refused (display updates through listener)
+        try {
+            taskList.addDependency(task, blocker);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Show incomplete tasks that are not waiting for any other task
+     */
+    private void showUnblocked() {
+    	
+    	// Keep showing unblocked Tasks as the list changes
+        view = View.UNBLOCKED;
+        
+        // Use TaskList method for getting unblocked tasks, in list order
+        List<Task> unblocked = taskList.getUnblockedTasks();
+        Collections.sort(unblocked, new Comparator<Task>() {
+            @Override
+            public int compare(Task t1, Task t2) {
+                return Integer.compare(t1.getId(), t2.getId());
+            }
+        });
+        listModel.setRows(unblocked, false);
+    }
+
+    /**
+     * Show the most urgent tasks that are ready to start, by priority and then due date
+     */
+    private void showNext() {
+    	
+    	// Keep showing the next Tasks as the list changes
+        view = View.NEXT;
+        
+        // Use TaskList method for getting the next tasks, already in order
+        listModel.setRows(taskList.getNextTasks(NEXT_TASKS_SHOWN), false);
+    }
+
+    /**
+     * Ask for a tag filter and show the tasks matching it
+     */
+    private void filterByTags() {
+    	
+    	// Suggest the tags in use
+        StringBuilder prompt = new StringBuilder("Filter, e.g. #backend AND #urgent AND NOT completed");
+        Set<String> tags = taskList.getTags();
+        if (!tags.isEmpty()) {
+            prompt.append("\nTags in use:");
+            for (String tag : tags) {
+                prompt.append(" #").append(tag);
+            }
+        }
+        String text = JOptionPane.showInputDialog(this, prompt.toString(), filter == null ? "" : filter.toString());
+        if (text == null || text.trim().isEmpty()) {
+            return;
+        }
+        try {
+            filter = TagQuery.parse(text);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid filter: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        showFiltered();
+    }
+    
+    /**
+     * Show the tasks matching the current tag filter
+     */
+    private void showFiltered() {
+    	
+    	// Keep showing matching Tasks as the list changes
+        view = View.FILTERED;
+        
+        // Use TaskList method for filtering, in list order
+        listModel.setRows(taskList.filter(filter), false);
+    }
+
+    /**
+     * List model showing a list of Tasks without copying it, and reporting the heap it holds
+     * The full view shows the TaskList's own list, so task databases and paged files are read only for the rows painted
+     * The list may change before the model is told, so the model reports the size it last announced
+     */
+    private static class TaskListModel extends AbstractListModel<Task> {
+        
+        /** Rows shown */
+        private List<Task> rows = Collections.emptyList();
+        
+        /** Number of rows last announced to the JList */
+        private int size;
+        
+        /** True if rows is the TaskList's own list, so the model holds nothing of its own */
+        private boolean shared;
+        
+        /**
+         * Shows other rows
+         * @param newRows rows to show, not copied
+         * @param shared true if newRows is the TaskList's own list
+         */
+        void setRows(List<Task> newRows, boolean shared) {
+            if (size > 0) {
+                int last = size - 1;
+                size = 0;
+                fireIntervalRemoved(this, 0, last);
+            }
+            rows = newRows;
+            this.shared = shared;
+            size = rows.size();
+            if (size > 0) {
+                fireIntervalAdded(this, 0, size - 1);
+            }
+        }
+        
+        /**
+         * Announces a row added to the rows
+         * @param index index in the rows after the insertion
+         */
+        void rowInserted(int index) {
+            size++;
+            fireIntervalAdded(this, index, index);
+        }
+        
+        /**
+         * Announces a row taken from the rows
+         * @param index index in the rows before the removal
+         */
+        void rowRemoved(int index) {
+            size--;
+            fireIntervalRemoved(this, index, index);
+        }
+        
+        /**
+         * Announces rows whose contents changed
+         * @param first first row
+         * @param last last row, nothing is announced if before first
+         */
+        void rowsChanged(int first, int last) {
+            if (first <= last) {
+                fireContentsChanged(this, first, last);
+            }
+        }
+        
+        @Override
+        public int getSize() {
+            return size;
+        }
+        
+        @Override
+        public Task getElementAt(int index) {
+            return rows.get(index);
+        }
+        
+        /**
+         * Estimated heap held by the model, Tasks the TaskList holds as well were counted with it
+         * @param counter counter shared with the other parts being measured
+         * @return figures for the model
+         */
+        MemoryStats memoryStats(MemoryStats.Counter counter) {
         	
-        	// Update display
-            listModel.addElement(task);
+        	// A filtered view holds its own list of Tasks
+            if (!shared) {
+                for (Task task : rows) {
+                    counter.addTask(task);
+                }
+                counter.addStructure(MemoryStats.objectBytes(2 * 4) + MemoryStats.arrayBytes(rows.size(), 4));
+            }
+            
+            // Model and its listener list
+            counter.addStructure(MemoryStats.objectBytes(3 * 4 + 4));
+            return counter.finish("List model");
         }
     }
 
@@ -555,10 +1958,31 @@ public class TaskManagerGUI extends JFrame {
          */
         private String formatTask(Task task) {
         	
+        	// Tasks with a priority show it after their name
+            String name = task.getPriority() == Priority.NONE ? task.getName()
+                    : task.getName() + " [" + task.getPriority().getLabel() + "]";
+            
+            // Tagged Tasks list their tags after the name
+            for (String tag : task.getTags()) {
+                name += " #" + tag;
+            }
+        	
+        	// Repeating Tasks show their next open occurrence and rule
+            if (task.isRecurring()) {
+                LocalDate next = task.getNextOccurrence(LocalDate.now());
+                return String.format("%d. %s\nDescription: %s\nNext Due Date: %s (repeats %s)\n%s\n",
+                        task.getId(),
+                        name,
+                        task.getDescription(),
+                        next == null ? "none" : next.toString(),
+                        task.getRecurrence().toString().toLowerCase(),
+                        next == null ? "Completed." : "Incomplete.");
+            }
+            
         	// Format using String format method
             return String.format("%d. %s\nDescription: %s\nDue Date: %s\n%s\n",
                     task.getId(),
-                    task.getName(),
+                    name,
                     task.getDescription(),
                     task.getDueDate().toString(),
                     task.isCompleted() ? "Completed." : "Incomplete.");
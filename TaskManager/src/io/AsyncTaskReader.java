@@ -0,0 +1,661 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Non-blocking counterpart of TaskReader, loads and saves return at once with a CompletableFuture
+ * Plain files are read and written in BUFFER_SIZE chunks on an AsynchronousFileChannel, so no thread
+ * waits on the disk and each file in flight holds one buffer
+ * At most maxOpenFiles files are open at a time, further loads and saves wait in a queue without
+ * holding a file handle or a buffer, so loading many files at once cannot exhaust handles or memory
+ * Cancelling a future closes its file at once, a cancelled save leaves the old file untouched
+ * Compressed files are decoded on the reader's threads, a line at a time, since gzip cannot be
+ * inflated from arbitrary chunks
+ * Futures complete on the reader's threads, GUIs must hand results back to their event thread
+ * @author Luke Gentri
+ */
+public class AsyncTaskReader implements Closeable {
+
+	/** Files open at once by default */
+	public static final int DEFAULT_MAX_OPEN_FILES = 16;
+
+	/** Runs completions, compressed files and the final move of saved files */
+	private final ExecutorService executor;
+
+	/** One permit per file that may be open */
+	private final Semaphore permits;
+
+	/** Loads and saves waiting for a permit, in submission order */
+	private final Queue<Pending> waiting = new ConcurrentLinkedQueue<>();
+
+	/** Futures of the operations holding a permit */
+	private final Set<CompletableFuture<?>> running = Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<?>, Boolean>());
+
+	/** Permits given at construction */
+	private final int maxOpenFiles;
+
+	/** Set once closed */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor with one thread per processor
+	 * @param maxOpenFiles files open at once
+	 */
+	public AsyncTaskReader(int maxOpenFiles) {
+		this(maxOpenFiles, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 * @param maxOpenFiles files open at once
+	 * @param threads threads running completions
+	 */
+	public AsyncTaskReader(int maxOpenFiles, int threads) {
+		if (maxOpenFiles < 1 || threads < 1) {
+			throw new IllegalArgumentException("Need at least one open file and one thread");
+		}
+		this.maxOpenFiles = maxOpenFiles;
+		this.permits = new Semaphore(maxOpenFiles);
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "async-task-io");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Loads a TaskList from a file, in the same format and with the same errors as TaskReader.loadFromFile
+	 * @param file task file
+	 * @return future completing with a new TaskList, or exceptionally with a DataFormatException
+	 * (a TaskFormatException for an invalid line), FileNotFoundException or IOException
+	 */
+	public CompletableFuture<TaskList> load(final File file) {
+		final CompletableFuture<TaskList> future = new CompletableFuture<>();
+		return submit(future, () -> {
+			try {
+				if (TaskReader.isGzipFile(file)) {
+					loadCompressed(file, future);
+				} else {
+					new Load(file, future).start();
+				}
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * Loads many files, at most maxOpenFiles at a time
+	 * @param files task files
+	 * @return future completing with one TaskList per file in the same order, or exceptionally
+	 * once every file is done if any failed
+	 */
+	public CompletableFuture<List<TaskList>> loadAll(List<File> files) {
+		final List<CompletableFuture<TaskList>> loads = new ArrayList<>(files.size());
+		for (File file : files) {
+			loads.add(load(file));
+		}
+		CompletableFuture<List<TaskList>> future = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			List<TaskList> lists = new ArrayList<>(loads.size());
+			for (CompletableFuture<TaskList> load : loads) {
+				lists.add(load.join());
+			}
+			return lists;
+		});
+
+		// Cancelling the whole load cancels every file still loading
+		future.whenComplete((lists, error) -> {
+			if (error instanceof CancellationException) {
+				for (CompletableFuture<TaskList> load : loads) {
+					load.cancel(false);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Saves a TaskList to a file, in the same format as TaskReader.saveToFile
+	 * The Tasks are copied before this returns, so the list may be changed while the save runs
+	 * The file is written beside its destination and moved over it once complete
+	 * @param taskList TaskList to save, read on the calling thread
+	 * @param file task file, compressed if the name ends in .gz
+	 * @return future completing once the file is in place, or exceptionally with an IOException
+	 */
+	public CompletableFuture<Void> save(TaskList taskList, final File file) {
+
+		// Copy the Tasks and their blockers' rows now, the list belongs to the caller
+		List<Task> all = taskList.getAllTasks();
+		final List<Task> tasks = new ArrayList<>(all.size());
+		final int[][] after = taskList.getDependencyCount() > 0 ? new int[all.size()][] : null;
+		Map<Task, Integer> rows = new IdentityHashMap<>();
+		for (Task task : all) {
+			tasks.add(new Task(task));
+			rows.put(task, rows.size() + 1);
+		}
+		for (int i = 0; after != null && i < all.size(); i++) {
+			List<Task> blockers = taskList.getBlockers(all.get(i));
+			after[i] = new int[blockers.size()];
+			for (int j = 0; j < after[i].length; j++) {
+				after[i][j] = rows.get(blockers.get(j));
+			}
+		}
+
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		return submit(future, () -> {
+			try {
+				new Save(file, tasks, after, future).start();
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * getOpenFiles
+	 * @return number of files being read or written
+	 */
+	public int getOpenFiles() {
+		return maxOpenFiles - permits.availablePermits();
+	}
+
+	/**
+	 * getWaiting
+	 * @return number of loads and saves waiting for a file to close
+	 */
+	public int getWaiting() {
+		return waiting.size();
+	}
+
+	/**
+	 * Fails every waiting load and save and stops the threads
+	 * Operations in flight are cancelled, which closes their files
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Pending next;
+		while ((next = waiting.poll()) != null) {
+			next.future.completeExceptionally(new IOException("Reader is closed"));
+		}
+		executor.shutdownNow();
+		for (CompletableFuture<?> future : running) {
+			future.cancel(false);
+		}
+	}
+
+	/**
+	 * Queues an operation until a file may be opened
+	 * The permit is returned when the future completes, however it completes
+	 * @param future future of the operation
+	 * @param start opens the file and starts the operation, run on the reader's threads
+	 * @return future
+	 */
+	private <T> CompletableFuture<T> submit(CompletableFuture<T> future, Runnable start) {
+		if (closed) {
+			future.completeExceptionally(new IOException("Reader is closed"));
+			return future;
+		}
+		waiting.add(new Pending(future, start));
+		drain();
+		return future;
+	}
+
+	/**
+	 * Starts waiting operations while permits are free
+	 * Operations cancelled while waiting are dropped without opening anything
+	 */
+	private void drain() {
+		while (!waiting.isEmpty() && permits.tryAcquire()) {
+			final Pending next = waiting.poll();
+			if (next == null || next.future.isDone()) {
+				permits.release();
+				continue;
+			}
+			running.add(next.future);
+			next.future.whenComplete((result, error) -> {
+				running.remove(next.future);
+				permits.release();
+				drain();
+			});
+			try {
+				executor.execute(next.start);
+			} catch (RejectedExecutionException e) {
+				next.future.completeExceptionally(new IOException("Reader is closed"));
+			}
+		}
+	}
+
+	/**
+	 * Loads a compressed file on the calling thread a line at a time, stopping once the future is cancelled
+	 * @param file gzip task file
+	 * @param future future to complete
+	 * @throws IOException if the file cannot be opened
+	 */
+	private static void loadCompressed(File file, CompletableFuture<TaskList> future) throws IOException {
+		final BufferedReader reader;
+		try {
+			reader = TaskReader.openReader(file);
+		} catch (DataFormatException e) {
+			future.completeExceptionally(e);
+			return;
+		}
+		future.whenComplete((result, error) -> TaskReader.closeQuietly(reader));
+		try {
+			Rows rows = new Rows();
+			String line;
+			while (!future.isDone() && (line = reader.readLine()) != null) {
+				rows.add(line);
+			}
+			if (!future.isDone()) {
+				future.complete(rows.toTaskList());
+			}
+		} catch (DataFormatException e) {
+			future.completeExceptionally(e);
+		} catch (IOException e) {
+
+			// A cancelled load sees its reader closed under it
+			if (!future.isDone()) {
+				future.completeExceptionally(e instanceof ZipException || e instanceof EOFException
+						? new DataFormatException("Invalid compressed file") : e);
+			}
+		}
+	}
+
+	/**
+	 * A load or save waiting for a permit
+	 */
+	private static final class Pending {
+
+		/** Future of the operation */
+		final CompletableFuture<?> future;
+
+		/** Opens the file and starts the operation */
+		final Runnable start;
+
+		/**
+		 * Constructor
+		 * @param future future of the operation
+		 * @param start opens the file and starts the operation
+		 */
+		Pending(CompletableFuture<?> future, Runnable start) {
+			this.future = future;
+			this.start = start;
+		}
+	}
+
+	/**
+	 * Tasks parsed so far, in file order, with the dependencies to add once every row is read
+	 */
+	private static final class Rows {
+
+		/** Tasks in file order */
+		final List<Task> tasks = new ArrayList<>();
+
+		/** Blocker rows of the line being parsed */
+		final List<Integer> blockers = new ArrayList<>();
+
+		/** (row, blocker row) pairs */
+		int[] edges = new int[0];
+
+		/** Number of ints used in edges */
+		int edgeCount;
+
+		/**
+		 * Parses one line
+		 * @param line CSV line without its line break
+		 * @throws TaskFormatException if the line is invalid, with its line number
+		 */
+		void add(String line) throws TaskFormatException {
+			blockers.clear();
+			try {
+				tasks.add(TaskReader.parseTask(line, blockers));
+			} catch (TaskFormatException e) {
+				throw e.atLine(tasks.size() + 1);
+			}
+			if (edgeCount + 2 * blockers.size() > edges.length) {
+				edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + 2 * blockers.size())));
+			}
+			for (int blocker : blockers) {
+				edges[edgeCount++] = tasks.size();
+				edges[edgeCount++] = blocker;
+			}
+		}
+
+		/**
+		 * Builds the TaskList
+		 * @return new TaskList holding every row
+		 * @throws DataFormatException if there are no rows or a dependency is invalid
+		 */
+		TaskList toTaskList() throws DataFormatException {
+			if (tasks.isEmpty()) {
+				throw new DataFormatException("Empty file");
+			}
+			TaskList list = new TaskList();
+			list.beginBatch();
+			try {
+				for (Task task : tasks) {
+					list.addTask(task);
+				}
+				TaskReader.addDependencies(list, tasks, edges, edgeCount);
+			} finally {
+				list.endBatch();
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Reads a plain file chunk by chunk, each completed read parses the whole lines it finished
+	 */
+	private final class Load implements CompletionHandler<Integer, Void> {
+
+		/** File being read */
+		private final File file;
+
+		/** Future to complete */
+		private final CompletableFuture<TaskList> future;
+
+		/** Open file */
+		private final AsynchronousFileChannel channel;
+
+		/** Bytes read and not yet decoded */
+		private final ByteBuffer bytes = ByteBuffer.allocate(TaskReader.BUFFER_SIZE);
+
+		/** Decoded characters of the current chunk */
+		private final CharBuffer chars = CharBuffer.allocate(TaskReader.BUFFER_SIZE);
+
+		/** UTF-8 decoder, malformed bytes are replaced as InputStreamReader does */
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		/** Start of the line cut off by the end of a chunk */
+		private final StringBuilder line = new StringBuilder();
+
+		/** Rows parsed so far */
+		private final Rows rows = new Rows();
+
+		/** File position of the next read */
+		private long position;
+
+		/** True if the last character seen was a carriage return */
+		private boolean afterReturn;
+
+		/**
+		 * Constructor, opens the file
+		 * @param file plain task file
+		 * @param future future to complete
+		 * @throws IOException if the file cannot be opened
+		 */
+		Load(File file, CompletableFuture<TaskList> future) throws IOException {
+			this.file = file;
+			this.future = future;
+			try {
+				this.channel = AsynchronousFileChannel.open(file.toPath(), EnumSet.of(StandardOpenOption.READ), executor);
+			} catch (NoSuchFileException e) {
+				throw new FileNotFoundException(file.getPath());
+			}
+
+			// Cancelling closes the file, the pending read then fails and is ignored
+			future.whenComplete((result, error) -> TaskReader.closeQuietly(channel));
+		}
+
+		/**
+		 * Issues the first read
+		 */
+		void start() {
+			if (file.length() == 0) {
+				future.completeExceptionally(new DataFormatException("Empty file"));
+				return;
+			}
+			channel.read(bytes, position, null, this);
+		}
+
+		@Override
+		public void completed(Integer read, Void attachment) {
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				bytes.flip();
+				decoder.decode(bytes, chars, read < 0);
+				if (read < 0) {
+					decoder.flush(chars);
+				}
+				bytes.compact();
+				chars.flip();
+				split();
+				chars.clear();
+				if (read >= 0) {
+					position += read;
+					channel.read(bytes, position, null, this);
+					return;
+				}
+
+				// Last line may have no line break
+				if (line.length() > 0) {
+					rows.add(line.toString());
+				}
+				future.complete(rows.toTaskList());
+			} catch (DataFormatException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void failed(Throwable error, Void attachment) {
+			future.completeExceptionally(error);
+		}
+
+		/**
+		 * Parses every line ended in the decoded characters, keeping the rest for the next chunk
+		 * Line breaks are \n, \r or \r\n as for BufferedReader
+		 * @throws TaskFormatException if a line is invalid
+		 */
+		private void split() throws TaskFormatException {
+			while (chars.hasRemaining()) {
+				char c = chars.get();
+				if (c == '\n' && afterReturn) {
+					afterReturn = false;
+				} else if (c == '\n' || c == '\r') {
+					afterReturn = c == '\r';
+					rows.add(line.toString());
+					line.setLength(0);
+				} else {
+					afterReturn = false;
+					line.append(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a file chunk by chunk, formatting the next chunk's lines once the previous write completes
+	 */
+	private final class Save implements CompletionHandler<Integer, Void> {
+
+		/** Destination */
+		private final File file;
+
+		/** File written, moved over the destination once complete */
+		private final File temp;
+
+		/** Copies of the Tasks to write */
+		private final List<Task> tasks;
+
+		/** Rows of each Task's blockers, or null if there are no dependencies */
+		private final int[][] after;
+
+		/** Future to complete */
+		private final CompletableFuture<Void> future;
+
+		/** Open temporary file */
+		private final AsynchronousFileChannel channel;
+
+		/** Encoded bytes of the chunk being formatted */
+		private final Chunk chunk = new Chunk();
+
+		/** Formats lines into chunk, compressing if needed */
+		private final Writer writer;
+
+		/** Chunk being written */
+		private ByteBuffer out;
+
+		/** Next Task to format */
+		private int next;
+
+		/** File position of the next write */
+		private long position;
+
+		/** True once the last chunk was formatted */
+		private boolean finished;
+
+		/**
+		 * Constructor, creates the temporary file
+		 * @param file destination
+		 * @param tasks copies of the Tasks to write
+		 * @param after rows of each Task's blockers, or null
+		 * @param future future to complete
+		 * @throws IOException if the temporary file cannot be created
+		 */
+		Save(File file, List<Task> tasks, int[][] after, CompletableFuture<Void> future) throws IOException {
+			this.file = file;
+			this.tasks = tasks;
+			this.after = after;
+			this.future = future;
+			File directory = file.getAbsoluteFile().getParentFile();
+			this.temp = File.createTempFile(file.getName(), ".tmp", directory);
+			this.channel = AsynchronousFileChannel.open(temp.toPath(), EnumSet.of(StandardOpenOption.WRITE), executor);
+			OutputStream sink = TaskReader.isCompressed(file) ? new GZIPOutputStream(chunk, TaskReader.BUFFER_SIZE) : chunk;
+			this.writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+
+			// Cancelling or failing closes and deletes the temporary file
+			future.whenComplete((result, error) -> {
+				TaskReader.closeQuietly(channel);
+				if (error != null) {
+					temp.delete();
+				}
+			});
+		}
+
+		/**
+		 * Formats and writes the first chunk
+		 */
+		void start() {
+			writeNext();
+		}
+
+		@Override
+		public void completed(Integer written, Void attachment) {
+			if (future.isDone()) {
+				return;
+			}
+			position += written;
+			if (out.hasRemaining()) {
+				channel.write(out, position, null, this);
+			} else {
+				chunk.reset();
+				writeNext();
+			}
+		}
+
+		@Override
+		public void failed(Throwable error, Void attachment) {
+			future.completeExceptionally(error);
+		}
+
+		/**
+		 * Formats lines until a chunk is full and writes it, or puts the file in place once every line is written
+		 */
+		private void writeNext() {
+			try {
+				if (finished) {
+					channel.force(true);
+					channel.close();
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+					future.complete(null);
+					return;
+				}
+				while (chunk.size() < TaskReader.BUFFER_SIZE && next < tasks.size()) {
+					writer.write(TaskReader.formatTask(tasks.get(next), after == null ? null : after[next]));
+					next++;
+				}
+				if (next == tasks.size()) {
+					writer.close();
+					finished = true;
+				} else {
+					writer.flush();
+				}
+				out = chunk.toByteBuffer();
+				channel.write(out, position, null, this);
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Byte sink whose contents are handed to the channel without copying
+	 */
+	private static final class Chunk extends ByteArrayOutputStream {
+
+		/**
+		 * Constructor
+		 */
+		Chunk() {
+			super(TaskReader.BUFFER_SIZE + 1024);
+		}
+
+		/**
+		 * Bytes written since the last reset
+		 * The buffer is only valid until the next write or reset
+		 * @return buffer over the bytes
+		 */
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
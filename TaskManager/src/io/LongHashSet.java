@@ -0,0 +1,112 @@
+package io;
+
+/**
+ * Set of longs stored in one open-addressing array, without boxing
+ * Used for fingerprint sets where a HashSet of Long would cost several objects per entry
+ * @author Luke Gentri
+ */
+class LongHashSet {
+
+	/** Marks an empty slot, the value 0 itself is tracked separately */
+	private static final long EMPTY = 0;
+
+	/** Slots, size is a power of two */
+	private long[] table;
+
+	/** Whether 0 is in the set */
+	private boolean hasZero;
+
+	/** Number of values stored in table */
+	private int size;
+
+	/**
+	 * Constructor
+	 * @param expected number of values expected, so the table does not need to grow
+	 */
+	LongHashSet(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected * 2, 16) - 1) << 1;
+		table = new long[capacity];
+	}
+
+	/**
+	 * Adds a value
+	 * @param value value to add
+	 * @return true if it was not already in the set
+	 */
+	boolean add(long value) {
+		if (value == EMPTY) {
+			boolean added = !hasZero;
+			hasZero = true;
+			return added;
+		}
+		int mask = table.length - 1;
+		int slot = spread(value) & mask;
+		while (table[slot] != EMPTY) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		if (++size * 2 > table.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks for a value
+	 * @param value value to look for
+	 * @return true if it is in the set
+	 */
+	boolean contains(long value) {
+		if (value == EMPTY) {
+			return hasZero;
+		}
+		int mask = table.length - 1;
+		int slot = spread(value) & mask;
+		while (table[slot] != EMPTY) {
+			if (table[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * size
+	 * @return number of values in the set
+	 */
+	int size() {
+		return size + (hasZero ? 1 : 0);
+	}
+
+	/**
+	 * Doubles the table and re-inserts every value
+	 */
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length * 2];
+		int mask = table.length - 1;
+		for (long value : old) {
+			if (value != EMPTY) {
+				int slot = spread(value) & mask;
+				while (table[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = value;
+			}
+		}
+	}
+
+	/**
+	 * Mixes the high bits into the low bits used for the slot
+	 * @param value value to place
+	 * @return hash
+	 */
+	private static int spread(long value) {
+		long hash = value * 0x9e3779b97f4a7c15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
@@ -0,0 +1,969 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+
+import model.MemoryStats;
+import model.Priority;
+import model.Recurrence;
+import model.Task;
+import model.TaskList;
+import model.TaskListEvent;
+
+/**
+ * TaskList stored off-heap in a memory-mapped file, for task sets larger than the heap
+ * The file has a header, a region of fixed-width records and an append-only string region
+ * Each record holds id, epoch-day due date, completion and priority flags and the offset and lengths of its
+ * name, description and repeat rule bytes (UTF-8) in the string region
+ * Edits are written in place and the file is the persisted state, there is no separate save step
+ * Tags, dependencies and completed occurrences of repeating Tasks are not stored, Tasks with tags are refused
+ * The record region is one mapping addressed by int positions, so a database holds at most MAX_RECORDS Tasks
+ * Counts and the tag index keep no state per record, so the heap held does not grow with the database
+ * Tasks returned by getAllTasks are snapshots identified by id, so after a removal or sort
+ * they should be read again, and edits to them are written back through updateTask
+ * @author Luke Gentri
+ */
+public class MappedTaskList extends TaskList implements Closeable {
+
+	/** Usual file extension */
+	public static final String EXTENSION = ".tasks";
+
+	/** Identifies task database files */
+	private static final int MAGIC = 0x544D4150;
+
+	/** File format version */
+	private static final int VERSION = 1;
+
+	/** Header bytes: magic, version, count, capacity, strings start, strings end */
+	private static final int HEADER_SIZE = 64;
+
+	/** Bytes per record */
+	private static final int RECORD_SIZE = 24;
+
+	/** Most records a database holds, the largest record region one mapping can cover */
+	public static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+	/** Record field offsets */
+	private static final int ID = 0;
+	private static final int DUE = 4;
+	private static final int FLAGS = 8;
+	private static final int NAME_LENGTH = 10;
+	private static final int DESCRIPTION_LENGTH = 12;
+	private static final int RULE_LENGTH = 14;
+	private static final int STRING_OFFSET = 16;
+
+	/** Completed flag bit */
+	private static final short COMPLETED = 1;
+
+	/** Position of the two priority bits in the flags, zero is Priority.NONE so older files read unchanged */
+	private static final int PRIORITY_SHIFT = 1;
+
+	/** Priority bits in the flags */
+	private static final short PRIORITY_MASK = 3 << PRIORITY_SHIFT;
+
+	/** Epoch day stored for a missing due date */
+	private static final int NO_DATE = Integer.MIN_VALUE;
+
+	/** Records reserved in a new file */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Size of each mapping over the string region */
+	private static final int SEGMENT_SIZE = 1 << 22;
+
+	/** Records copied per step when shifting the record region */
+	private static final int MOVE_RECORDS = 4096;
+
+	/** Backing file */
+	private final File file;
+
+	/** Open channel, replaced by compact */
+	private FileChannel channel;
+
+	/** Mapped header */
+	private MappedByteBuffer header;
+
+	/** Mapped record region */
+	private MappedByteBuffer records;
+
+	/** Mapped segments of the string region, created on first use */
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+	/** Number of records in use */
+	private int count;
+
+	/** Number of records the record region can hold */
+	private int capacity;
+
+	/** File offset of the string region */
+	private long stringsStart;
+
+	/** Bytes used in the string region */
+	private long stringsLength;
+
+	/** Reusable buffer for moving and swapping records */
+	private final byte[] scratch = new byte[MOVE_RECORDS * RECORD_SIZE];
+
+	/** List view handed out by getAllTasks */
+	private final List<Task> view = new AbstractList<Task>() {
+		@Override
+		public Task get(int index) {
+			if (index < 0 || index >= count) {
+				throw new IndexOutOfBoundsException("Index " + index);
+			}
+			return readTask(index);
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+	};
+
+	/**
+	 * Opens a task database file, creating it if it does not exist
+	 * @param file database file
+	 * @throws IOException if the file cannot be opened or mapped
+	 * @throws DataFormatException if the file is not a task database
+	 */
+	public MappedTaskList(File file) throws IOException, DataFormatException {
+		super(true);
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+		// New file, lay out an empty database
+		if (channel.size() == 0) {
+			capacity = INITIAL_CAPACITY;
+			stringsStart = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+			map();
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			writeHeader();
+			return;
+		}
+
+		// Existing file, check and read the header
+		ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(head, 0);
+		if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION) {
+			channel.close();
+			throw new DataFormatException("Invalid task database");
+		}
+		count = head.getInt(8);
+		capacity = head.getInt(12);
+		stringsStart = head.getLong(16);
+		stringsLength = head.getLong(24);
+		if (capacity < 0 || capacity > MAX_RECORDS || count < 0 || count > capacity
+				|| stringsStart != HEADER_SIZE + (long) capacity * RECORD_SIZE || stringsLength < 0) {
+			channel.close();
+			throw new DataFormatException("Invalid task database header");
+		}
+		map();
+	}
+
+	/**
+	 * getFile
+	 * @return database file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Return a list view of every record, each access reads a snapshot Task
+	 * @return read-only list of Tasks
+	 */
+	@Override
+	public List<Task> getAllTasks() {
+		return view;
+	}
+
+	/**
+	 * Bytes of the string region no longer referenced by any record
+	 * Used to decide when to call compact
+	 * @return unreferenced bytes
+	 */
+	public long getGarbageBytes() {
+		long used = 0;
+		for (int i = 0; i < count; i++) {
+			int pos = i * RECORD_SIZE;
+			used += stringBytes(pos);
+		}
+		return stringsLength - used;
+	}
+
+	/**
+	 * Appends a Task record
+	 * Sets id to the next position, the Task object is not linked to the record
+	 * @param task Task to store
+	 * @throws IllegalArgumentException if the Task has tags
+	 * @throws IllegalStateException if the database already holds MAX_RECORDS Tasks
+	 */
+	@Override
+	public void addTask(Task task) {
+		checkStorable(task);
+		ensureCapacity(count + 1);
+		task.setId(count + 1);
+		writeRecord(count, task, appendStrings(task));
+		count++;
+		writeHeader();
+		fireEvent(TaskListEvent.single(this, TaskListEvent.Type.INSERTED, count - 1, task));
+	}
+
+	/**
+	 * Appends many Task records, none if any Task has tags
+	 * @param tasks Tasks to store, in order
+	 * @throws IllegalArgumentException if a Task has tags
+	 * @throws IllegalStateException if the Tasks would not fit in MAX_RECORDS
+	 */
+	@Override
+	public void addTasks(Collection<Task> tasks) {
+		for (Task task : tasks) {
+			checkStorable(task);
+		}
+		checkRoom((long) count + tasks.size());
+		super.addTasks(tasks);
+	}
+
+	/**
+	 * Removes the record with the Task's id and renumbers the records after it
+	 * @param task Task to remove, matched by id
+	 */
+	@Override
+	public void removeTask(Task task) {
+		int index = indexOf(task);
+		if (index == -1) {
+			return;
+		}
+		Task removed = readTask(index);
+
+		// Shift the following records down one slot
+		moveRecords(index + 1, index, count - index - 1);
+		count--;
+		renumber(index);
+		writeHeader();
+		fireEvent(new TaskListEvent(this, TaskListEvent.Type.REMOVED, new int[] { index }, Collections.singletonList(removed), renumberedFrom(index)));
+	}
+
+	/**
+	 * Removes many records in one pass, renumbering once
+	 * @param tasks Tasks to remove, matched by id
+	 */
+	@Override
+	public void removeTasks(Collection<Task> tasks) {
+		Set<Integer> ids = new HashSet<>();
+		for (Task task : tasks) {
+			if (indexOf(task) != -1) {
+				ids.add(task.getId());
+			}
+		}
+		if (ids.isEmpty()) {
+			return;
+		}
+
+		// Compact the record region, keeping order
+		int[] indices = new int[ids.size()];
+		List<Task> removed = new ArrayList<>(ids.size());
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (ids.contains(i + 1)) {
+				indices[removed.size()] = i;
+				removed.add(readTask(i));
+			} else {
+				moveRecords(i, kept++, 1);
+			}
+		}
+		count = kept;
+		renumber(indices[0]);
+		writeHeader();
+		fireEvent(new TaskListEvent(this, TaskListEvent.Type.REMOVED, indices, removed, renumberedFrom(indices[0])));
+	}
+
+	/**
+	 * Removes every record and reclaims the string region
+	 * The CLEARED event does not list the removed Tasks, which may not fit on the heap
+	 */
+	@Override
+	public void clear() {
+		count = 0;
+		stringsLength = 0;
+		writeHeader();
+		fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.CLEARED, Collections.<Task>emptyList()));
+	}
+
+	/**
+	 * Flips the completion flag of a record in place
+	 * @param task Task to change, matched by id
+	 * @param isCompleted new completion status
+	 */
+	@Override
+	public void setCompleted(Task task, boolean isCompleted) {
+		task.setCompleted(isCompleted);
+		int index = indexOf(task);
+		if (index != -1) {
+			uncount(readTask(index));
+			writeFlags(index, task);
+			fireEvent(TaskListEvent.single(this, TaskListEvent.Type.UPDATED, index, task));
+		}
+	}
+
+	/**
+	 * Flips the completion flag of many records in place
+	 * @param tasks Tasks to change, matched by id
+	 * @param isCompleted new completion status
+	 */
+	@Override
+	public void setCompleted(Collection<Task> tasks, boolean isCompleted) {
+		beginBatch();
+		try {
+			for (Task task : tasks) {
+				setCompleted(task, isCompleted);
+			}
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Not supported, records have no room for completed occurrences
+	 * @param task ignored
+	 * @param date ignored
+	 * @param isCompleted ignored
+	 */
+	@Override
+	public void setCompleted(Task task, LocalDate date, boolean isCompleted) {
+		throw new UnsupportedOperationException("Task databases do not store completed occurrences of repeating tasks");
+	}
+
+	/**
+	 * Writes an edited Task back to its record
+	 * Name, description and rule bytes are only appended if they changed
+	 * Completed occurrences of a repeating Task are not stored
+	 * @param task edited Task, matched by id
+	 * @throws IllegalArgumentException if the Task has tags
+	 */
+	@Override
+	public void updateTask(Task task) {
+		checkStorable(task);
+		int index = indexOf(task);
+		if (index == -1) {
+			return;
+		}
+		int pos = index * RECORD_SIZE;
+		long offset = records.getLong(pos + STRING_OFFSET);
+
+		// Reuse the stored strings when they are unchanged
+		if (!Arrays.equals(strings(task), readBytes(offset, stringBytes(pos)))) {
+			offset = appendStrings(task);
+		}
+		uncount(readTask(index));
+		writeRecord(index, task, offset);
+		writeHeader();
+		fireEvent(TaskListEvent.single(this, TaskListEvent.Type.UPDATED, index, task));
+	}
+
+	/**
+	 * Not supported, records have no room for dependencies and Tasks are snapshots
+	 * @param task ignored
+	 * @param blocker ignored
+	 */
+	@Override
+	public void addDependency(Task task, Task blocker) {
+		throw new UnsupportedOperationException("Task databases do not store dependencies");
+	}
+
+	/**
+	 * Most urgent incomplete Tasks, found by scanning every record since no heap is kept
+	 * @param n most Tasks to return
+	 * @return new list, most urgent first
+	 */
+	@Override
+	public List<Task> getNextTasks(int n) {
+		return scanNextTasks(n);
+	}
+
+	/**
+	 * Sorts records in place by due date, without loading Tasks onto the heap
+	 * Unlike TaskList the order of equal due dates is not preserved
+	 */
+	@Override
+	public void sortByDueDate() {
+		sort(new RecordComparator() {
+			@Override
+			public int compare(int i, int j) {
+				return Integer.compare(records.getInt(i * RECORD_SIZE + DUE), records.getInt(j * RECORD_SIZE + DUE));
+			}
+		});
+	}
+
+	/**
+	 * Sorts records in place by name, comparing UTF-8 bytes
+	 * Unlike TaskList the order of equal names is not preserved
+	 */
+	@Override
+	public void sortByName() {
+		sort(new RecordComparator() {
+			@Override
+			public int compare(int i, int j) {
+				long a = records.getLong(i * RECORD_SIZE + STRING_OFFSET);
+				long b = records.getLong(j * RECORD_SIZE + STRING_OFFSET);
+				int aLength = records.getChar(i * RECORD_SIZE + NAME_LENGTH);
+				int bLength = records.getChar(j * RECORD_SIZE + NAME_LENGTH);
+				int length = Math.min(aLength, bLength);
+				for (int k = 0; k < length; k++) {
+					int diff = readByte(a + k) - readByte(b + k);
+					if (diff != 0) {
+						return diff;
+					}
+				}
+				return aLength - bLength;
+			}
+		});
+	}
+
+	/**
+	 * Not supported, collation keys would bring every name onto the heap, use sortByName for byte order
+	 */
+	@Override
+	public void sortByName(Locale locale) {
+		throw new UnsupportedOperationException("Collated sorting of a mapped task file");
+	}
+
+	/**
+	 * Estimated heap held by this list, records and strings stay in the mapped file so only the copy buffer,
+	 * the counts and the tag index while one is built count
+	 * @param counter counter shared with the other parts being measured
+	 * @return figures for this list
+	 */
+	@Override
+	public MemoryStats memoryStats(MemoryStats.Counter counter) {
+		counter.addStructure(MemoryStats.arrayBytes(scratch.length, 1) + getIndexBytes());
+		return counter.finish("Mapped task file");
+	}
+
+	/**
+	 * Rewrites the database without unreferenced string bytes
+	 * Needed after many name or description edits
+	 * The compacted copy is written next to the file and then moved over it, so a crash leaves one or the other whole
+	 * @throws IOException if the file cannot be written or replaced
+	 */
+	public void compact() throws IOException {
+		Path temp = new File(file.getPath() + ".compact").toPath();
+		long written = 0;
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+
+				// Copy the records a chunk at a time, packing their strings and pointing them at the copies
+				ByteBuffer chunk = ByteBuffer.wrap(scratch);
+				for (int first = 0; first < count; first += MOVE_RECORDS) {
+					int length = Math.min(count - first, MOVE_RECORDS);
+					ByteBuffer source = records.duplicate();
+					source.limit((first + length) * RECORD_SIZE).position(first * RECORD_SIZE);
+					chunk.clear();
+					chunk.put(source);
+					for (int i = 0; i < length; i++) {
+						int pos = i * RECORD_SIZE;
+						int bytes = chunk.getChar(pos + NAME_LENGTH) + chunk.getChar(pos + DESCRIPTION_LENGTH) + chunk.getChar(pos + RULE_LENGTH);
+						writeFully(out, ByteBuffer.wrap(readBytes(chunk.getLong(pos + STRING_OFFSET), bytes)), stringsStart + written);
+						chunk.putLong(pos + STRING_OFFSET, written);
+						written += bytes;
+					}
+					chunk.flip();
+					writeFully(out, chunk, HEADER_SIZE + (long) first * RECORD_SIZE);
+				}
+				writeFully(out, headerBytes(capacity, stringsStart, written), 0);
+				out.force(true);
+			}
+			replaceWith(temp);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		stringsLength = written;
+		map();
+	}
+
+	/**
+	 * Header of a copy of the database
+	 * @param newCapacity records the copy can hold
+	 * @param newStart file offset of its string region
+	 * @param newLength bytes used in its string region
+	 * @return header bytes ready to write
+	 */
+	private ByteBuffer headerBytes(int newCapacity, long newStart, long newLength) {
+		ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+		head.putInt(0, MAGIC);
+		head.putInt(4, VERSION);
+		head.putInt(8, count);
+		head.putInt(12, newCapacity);
+		head.putLong(16, newStart);
+		head.putLong(24, newLength);
+		return head;
+	}
+
+	/**
+	 * Moves a complete copy over the file and continues on it, so a crash leaves one or the other whole
+	 * The caller maps the new file
+	 * @param temp forced copy next to the file
+	 * @throws IOException if the file cannot be replaced or reopened
+	 */
+	private void replaceWith(Path temp) throws IOException {
+		try {
+			Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		FileChannel old = channel;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		old.close();
+	}
+
+	/**
+	 * Writes a whole buffer at a position
+	 * @param out destination
+	 * @param buffer bytes to write
+	 * @param position file position
+	 * @throws IOException if writing fails
+	 */
+	private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+		long at = position;
+		while (buffer.hasRemaining()) {
+			at += out.write(buffer, at);
+		}
+	}
+
+	/**
+	 * Forces pending changes to disk
+	 */
+	public void flush() {
+		header.force();
+		records.force();
+		for (MappedByteBuffer segment : segments) {
+			if (segment != null) {
+				segment.force();
+			}
+		}
+	}
+
+	/**
+	 * Flushes and closes the file, trimming unused mapped space
+	 * @throws IOException if closing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		try {
+			channel.truncate(stringsStart + stringsLength);
+		} catch (IOException e) {
+
+			// Some platforms refuse to truncate mapped files, the extra space is harmless
+		}
+		channel.close();
+	}
+
+	/**
+	 * Position of a Task's record
+	 * @param task Task with an id from this list
+	 * @return record index, or -1 if the id is out of range
+	 */
+	private int indexOf(Task task) {
+		int id = task.getId();
+		return id >= 1 && id <= count ? id - 1 : -1;
+	}
+
+	/**
+	 * Refuses a Task with fields records have no room for
+	 * @param task Task to store
+	 * @throws IllegalArgumentException if the Task has tags
+	 */
+	private static void checkStorable(Task task) {
+		if (!task.getTags().isEmpty()) {
+			throw new IllegalArgumentException("Task databases do not store tags");
+		}
+	}
+
+	/**
+	 * Reads a record into a new Task
+	 * @param index record index
+	 * @return snapshot Task
+	 */
+	private Task readTask(int index) {
+		int pos = index * RECORD_SIZE;
+		int day = records.getInt(pos + DUE);
+		int nameLength = records.getChar(pos + NAME_LENGTH);
+		int descriptionLength = records.getChar(pos + DESCRIPTION_LENGTH);
+		int ruleLength = records.getChar(pos + RULE_LENGTH);
+		byte[] strings = readBytes(records.getLong(pos + STRING_OFFSET), nameLength + descriptionLength + ruleLength);
+		Task task = new Task(records.getInt(pos + ID),
+				new String(strings, 0, nameLength, StandardCharsets.UTF_8),
+				new String(strings, nameLength, descriptionLength, StandardCharsets.UTF_8),
+				day == NO_DATE ? null : LocalDate.ofEpochDay(day));
+		short flags = records.getShort(pos + FLAGS);
+		task.setCompleted((flags & COMPLETED) != 0);
+		task.setPriority(Priority.values()[(flags & PRIORITY_MASK) >> PRIORITY_SHIFT]);
+		if (ruleLength > 0) {
+			task.setRecurrence(Recurrence.parse(new String(strings, nameLength + descriptionLength, ruleLength, StandardCharsets.UTF_8)));
+		}
+		return task;
+	}
+
+	/**
+	 * Writes every field of a record
+	 * @param index record index
+	 * @param task Task with the field values
+	 * @param stringOffset offset of its name and description bytes
+	 */
+	private void writeRecord(int index, Task task, long stringOffset) {
+		int pos = index * RECORD_SIZE;
+		records.putInt(pos + ID, task.getId());
+		records.putInt(pos + DUE, task.getDueDate() == null ? NO_DATE : (int) task.getDueDate().toEpochDay());
+		records.putChar(pos + NAME_LENGTH, (char) bytes(task.getName()).length);
+		records.putChar(pos + DESCRIPTION_LENGTH, (char) bytes(task.getDescription()).length);
+		records.putChar(pos + RULE_LENGTH, (char) bytes(rule(task)).length);
+		records.putLong(pos + STRING_OFFSET, stringOffset);
+		writeFlags(index, task);
+	}
+
+	/**
+	 * Writes the completion and priority flags of a record
+	 * @param index record index
+	 * @param task Task with the flag values
+	 */
+	private void writeFlags(int index, Task task) {
+		int flags = (task.isCompleted() ? COMPLETED : 0) | task.getPriority().ordinal() << PRIORITY_SHIFT;
+		records.putShort(index * RECORD_SIZE + FLAGS, (short) flags);
+	}
+
+	/**
+	 * Sets record ids to their position, from a record onwards
+	 * @param from first record to renumber
+	 */
+	private void renumber(int from) {
+		for (int i = from; i < count; i++) {
+			records.putInt(i * RECORD_SIZE + ID, i + 1);
+		}
+	}
+
+	/**
+	 * Copies records towards the start of the record region, in chunks through a fixed buffer
+	 * @param from first source record
+	 * @param to first destination record, not after from
+	 * @param length number of records
+	 */
+	private void moveRecords(int from, int to, int length) {
+		if (length <= 0 || from == to) {
+			return;
+		}
+		ByteBuffer source = records.duplicate();
+		ByteBuffer target = records.duplicate();
+		int done = 0;
+		while (done < length) {
+			int chunk = Math.min(length - done, MOVE_RECORDS);
+			source.limit((from + done + chunk) * RECORD_SIZE).position((from + done) * RECORD_SIZE);
+			source.get(scratch, 0, chunk * RECORD_SIZE);
+			target.position((to + done) * RECORD_SIZE);
+			target.put(scratch, 0, chunk * RECORD_SIZE);
+			done += chunk;
+		}
+	}
+
+	/**
+	 * Interface for comparing two records by index
+	 */
+	private interface RecordComparator {
+
+		/**
+		 * Compare records
+		 * @param i first record index
+		 * @param j second record index
+		 * @return negative, zero or positive like Comparator
+		 */
+		int compare(int i, int j);
+	}
+
+	/**
+	 * Sorts records in place with heapsort, then renumbers them
+	 * Uses no memory proportional to the number of records
+	 * @param comparator record ordering
+	 */
+	private void sort(RecordComparator comparator) {
+		for (int i = count / 2 - 1; i >= 0; i--) {
+			siftDown(comparator, i, count);
+		}
+		for (int end = count - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(comparator, 0, end);
+		}
+		renumber(0);
+		fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.REORDERED, Collections.<Task>emptyList()));
+	}
+
+	/**
+	 * Heapsort helper, restores the max-heap property below a record
+	 * @param comparator record ordering
+	 * @param root record to sift down
+	 * @param end number of records in the heap
+	 */
+	private void siftDown(RecordComparator comparator, int root, int end) {
+		while (2 * root + 1 < end) {
+			int child = 2 * root + 1;
+			if (child + 1 < end && comparator.compare(child, child + 1) < 0) {
+				child++;
+			}
+			if (comparator.compare(root, child) >= 0) {
+				return;
+			}
+			swap(root, child);
+			root = child;
+		}
+	}
+
+	/**
+	 * Swaps two records
+	 * @param i first record index
+	 * @param j second record index
+	 */
+	private void swap(int i, int j) {
+		ByteBuffer buffer = records.duplicate();
+		buffer.position(i * RECORD_SIZE);
+		buffer.get(scratch, 0, RECORD_SIZE);
+		buffer.position(j * RECORD_SIZE);
+		buffer.get(scratch, RECORD_SIZE, RECORD_SIZE);
+		buffer.position(i * RECORD_SIZE);
+		buffer.put(scratch, RECORD_SIZE, RECORD_SIZE);
+		buffer.position(j * RECORD_SIZE);
+		buffer.put(scratch, 0, RECORD_SIZE);
+	}
+
+	/**
+	 * Appends a Task's name, description and rule bytes to the string region
+	 * @param task Task with the strings
+	 * @return offset of the name bytes, the description and rule follow directly
+	 */
+	private long appendStrings(Task task) {
+		byte[] strings = strings(task);
+		long offset = stringsLength;
+		writeBytes(offset, strings);
+		stringsLength += strings.length;
+		return offset;
+	}
+
+	/**
+	 * Name, description and rule bytes of a Task, one after the other
+	 * @param task Task with the strings
+	 * @return encoded bytes
+	 */
+	private static byte[] strings(Task task) {
+		byte[] name = bytes(task.getName());
+		byte[] description = bytes(task.getDescription());
+		byte[] rule = bytes(rule(task));
+		if (name.length > Character.MAX_VALUE || description.length > Character.MAX_VALUE) {
+			throw new IllegalArgumentException("Name or description too long");
+		}
+		byte[] strings = Arrays.copyOf(name, name.length + description.length + rule.length);
+		System.arraycopy(description, 0, strings, name.length, description.length);
+		System.arraycopy(rule, 0, strings, name.length + description.length, rule.length);
+		return strings;
+	}
+
+	/**
+	 * Repeat rule of a Task as stored
+	 * @param task Task
+	 * @return rule text, null for a one-off Task
+	 */
+	private static String rule(Task task) {
+		return task.getRecurrence() == null ? null : task.getRecurrence().toString();
+	}
+
+	/**
+	 * Bytes a record references in the string region
+	 * @param pos record position
+	 * @return name, description and rule lengths added together
+	 */
+	private int stringBytes(int pos) {
+		return records.getChar(pos + NAME_LENGTH) + records.getChar(pos + DESCRIPTION_LENGTH) + records.getChar(pos + RULE_LENGTH);
+	}
+
+	/**
+	 * UTF-8 bytes of a string, empty for null
+	 * @param text string
+	 * @return encoded bytes
+	 */
+	private static byte[] bytes(String text) {
+		return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads one unsigned byte from the string region
+	 * @param offset offset within the string region
+	 * @return byte value 0 to 255
+	 */
+	private int readByte(long offset) {
+		return segment((int) (offset / SEGMENT_SIZE)).get((int) (offset % SEGMENT_SIZE)) & 0xFF;
+	}
+
+	/**
+	 * Reads bytes from the string region, across segment boundaries if needed
+	 * @param offset offset within the string region
+	 * @param length number of bytes
+	 * @return bytes read
+	 */
+	private byte[] readBytes(long offset, int length) {
+		byte[] result = new byte[length];
+		int done = 0;
+		while (done < length) {
+			long position = offset + done;
+			ByteBuffer segment = segment((int) (position / SEGMENT_SIZE)).duplicate();
+			segment.position((int) (position % SEGMENT_SIZE));
+			int chunk = Math.min(length - done, segment.remaining());
+			segment.get(result, done, chunk);
+			done += chunk;
+		}
+		return result;
+	}
+
+	/**
+	 * Writes bytes to the string region, across segment boundaries if needed
+	 * @param offset offset within the string region
+	 * @param bytes bytes to write
+	 */
+	private void writeBytes(long offset, byte[] bytes) {
+		int done = 0;
+		while (done < bytes.length) {
+			long position = offset + done;
+			ByteBuffer segment = segment((int) (position / SEGMENT_SIZE)).duplicate();
+			segment.position((int) (position % SEGMENT_SIZE));
+			int chunk = Math.min(bytes.length - done, segment.remaining());
+			segment.put(bytes, done, chunk);
+			done += chunk;
+		}
+	}
+
+	/**
+	 * Returns a string region segment, mapping it on first use
+	 * Mapping past the end of the file grows the file
+	 * @param number segment number
+	 * @return mapped segment
+	 */
+	private MappedByteBuffer segment(int number) {
+		while (segments.size() <= number) {
+			segments.add(null);
+		}
+		MappedByteBuffer segment = segments.get(number);
+		if (segment == null) {
+			try {
+				segment = channel.map(FileChannel.MapMode.READ_WRITE, stringsStart + (long) number * SEGMENT_SIZE, SEGMENT_SIZE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			segments.set(number, segment);
+		}
+		return segment;
+	}
+
+	/**
+	 * Refuses to grow past MAX_RECORDS
+	 * @param needed number of records required
+	 * @throws IllegalStateException if needed is over MAX_RECORDS
+	 */
+	private static void checkRoom(long needed) {
+		if (needed > MAX_RECORDS) {
+			throw new IllegalStateException("A task database holds at most " + MAX_RECORDS + " tasks");
+		}
+	}
+
+	/**
+	 * Grows the record region, moving the string region further into the file
+	 * The grown database is written next to the file and then moved over it, as compact does,
+	 * so a crash while the string region moves leaves the old file whole
+	 * @param needed number of records required
+	 * @throws IllegalStateException if needed is over MAX_RECORDS
+	 */
+	private void ensureCapacity(int needed) {
+		if (needed <= capacity) {
+			return;
+		}
+		checkRoom(needed);
+		int newCapacity = (int) Math.min(Math.max(needed, capacity * 2L), MAX_RECORDS);
+		long newStart = HEADER_SIZE + (long) newCapacity * RECORD_SIZE;
+		flush();
+		Path temp = new File(file.getPath() + ".grow").toPath();
+		try {
+			try {
+				try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+
+					// Records in use, then the string region at its new offset, then the header
+					ByteBuffer source = records.duplicate();
+					source.limit(count * RECORD_SIZE).position(0);
+					writeFully(out, source, HEADER_SIZE);
+					ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Math.max(stringsLength, 1), SEGMENT_SIZE));
+					for (long done = 0; done < stringsLength; done += buffer.limit()) {
+						buffer.clear().limit((int) Math.min(stringsLength - done, buffer.capacity()));
+						while (buffer.hasRemaining()) {
+							if (channel.read(buffer, stringsStart + done + buffer.position()) < 0) {
+								throw new IOException("Task database ends inside its string region");
+							}
+						}
+						buffer.flip();
+						writeFully(out, buffer, newStart + done);
+					}
+					writeFully(out, headerBytes(newCapacity, newStart, stringsLength), 0);
+					out.force(true);
+				}
+				replaceWith(temp);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		capacity = newCapacity;
+		stringsStart = newStart;
+		map();
+	}
+
+	/**
+	 * Maps the header and record region, string segments are mapped on demand
+	 */
+	private void map() {
+		try {
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			records = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, (long) capacity * RECORD_SIZE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		segments.clear();
+	}
+
+	/**
+	 * Writes the header fields
+	 */
+	private void writeHeader() {
+		header.putInt(8, count);
+		header.putInt(12, capacity);
+		header.putLong(16, stringsStart);
+		header.putLong(24, stringsLength);
+	}
+}
@@ -0,0 +1,430 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import model.MemoryStats;
+import model.Task;
+import model.TaskList;
+import model.TaskListEvent;
+
+/**
+ * Read-only TaskList view over a task file too large to load into memory
+ * Rows are read a page at a time through positioned FileChannel reads, using a TaskFileIndex to find each page
+ * Only a few pages are kept in memory, Task ids are row numbers starting at 1
+ * Every method that would change the list throws UnsupportedOperationException
+ * Counts and the tag index keep no state per row, so the heap held does not grow with the file
+ * @author Luke Gentri
+ */
+public class PagedTaskList extends TaskList implements Closeable {
+
+	/** Default number of rows per page */
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+
+	/** Number of pages kept in memory */
+	private static final int CACHED_PAGES = 8;
+
+	/** Read buffer size */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Task file */
+	private final File file;
+
+	/** Open channel for positioned reads */
+	private final FileChannel channel;
+
+	/** Line-offset index of the file */
+	private final TaskFileIndex index;
+
+	/** Rows per page */
+	private final int pageSize;
+
+	/** Number of rows visible through this view */
+	private long rowCount;
+
+	/** Recently read pages, least recently used first */
+	private final Map<Long, List<Task>> pages;
+
+	/** List view handed out by getAllTasks */
+	private final List<Task> rows;
+
+	/**
+	 * Opens a paged view with the default page size
+	 * @param file task file
+	 * @throws IOException if the file or its index cannot be read
+	 */
+	public PagedTaskList(File file) throws IOException {
+		this(file, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Opens a paged view
+	 * Builds or updates the file's index, without reading any rows
+	 * @param file task file
+	 * @param pageSize rows per page
+	 * @throws IOException if the file or its index cannot be read
+	 */
+	public PagedTaskList(File file, int pageSize) throws IOException {
+		super(true);
+		this.file = file;
+		this.pageSize = pageSize;
+		this.index = TaskFileIndex.open(file);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.rowCount = countRows();
+		this.pages = new LinkedHashMap<Long, List<Task>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<Task>> eldest) {
+				return size() > CACHED_PAGES;
+			}
+		};
+		this.rows = new AbstractList<Task>() {
+			@Override
+			public Task get(int row) {
+				return getTask(row);
+			}
+
+			@Override
+			public int size() {
+				return (int) Math.min(rowCount, Integer.MAX_VALUE);
+			}
+		};
+	}
+
+	/**
+	 * getFile
+	 * @return task file behind this view
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Return a list view of every row, pages are read as rows are accessed
+	 * @return read-only list of Tasks
+	 */
+	@Override
+	public List<Task> getAllTasks() {
+		return rows;
+	}
+
+	/**
+	 * Reads a range of rows
+	 * @param first first row, starting at 0
+	 * @param count maximum number of rows
+	 * @return Tasks in that range
+	 */
+	public List<Task> getPage(int first, int count) {
+		List<Task> result = new ArrayList<>(count);
+		for (int row = first; row < first + count && row < rowCount; row++) {
+			result.add(getTask(row));
+		}
+		return result;
+	}
+
+	/**
+	 * Picks up changes to the file since it was opened or last refreshed
+	 * If rows were only appended, just the new bytes are scanned and listeners receive one INSERTED event for them
+	 * If the file shrank or was rewritten the index is rebuilt, listeners receive CLEARED and then INSERTED for every row
+	 * @return number of rows reported as inserted
+	 * @throws IOException if the file or its index cannot be read
+	 */
+	public synchronized int refresh() throws IOException {
+		long before = rowCount;
+		int generation = index.getGeneration();
+		index.refresh();
+		pages.clear();
+		rowCount = countRows();
+
+		// Rows from before a rebuild are gone
+		if (index.getGeneration() != generation) {
+			fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.CLEARED, Collections.<Task>emptyList()));
+			before = 0;
+		}
+
+		// Report the new rows, read from the file by listeners that look at them
+		int added = (int) Math.max(0, rowCount - before);
+		if (added > 0) {
+			int[] indices = new int[added];
+			for (int i = 0; i < added; i++) {
+				indices[i] = (int) before + i;
+			}
+			fireEvent(new TaskListEvent(this, TaskListEvent.Type.INSERTED, indices, rows.subList((int) before, (int) before + added)));
+		}
+		return added;
+	}
+
+	/**
+	 * Closes the underlying file
+	 * @throws IOException if closing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns one row, reading its page if needed
+	 * @param row row number, starting at 0
+	 * @return Task for that row
+	 */
+	private synchronized Task getTask(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException("Row " + row);
+		}
+		long page = row / pageSize;
+		List<Task> tasks = pages.get(page);
+		if (tasks == null) {
+			try {
+				tasks = readPage(page);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (DataFormatException e) {
+				throw new IllegalStateException("Invalid file format near row " + (row + 1), e);
+			}
+			pages.put(page, tasks);
+		}
+		return tasks.get((int) (row - page * pageSize));
+	}
+
+	/**
+	 * Reads one page of rows with positioned reads
+	 * Starts at the closest index entry and skips forward to the first row of the page
+	 * @param page page number
+	 * @return Tasks on the page
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if a row is invalid
+	 */
+	private List<Task> readPage(long page) throws IOException, DataFormatException {
+		long firstRow = page * pageSize;
+		long entryLine = index.entryLineFor(firstRow);
+		long position = index.offsetOf(entryLine);
+		long skip = firstRow - entryLine;
+		long wanted = Math.min(pageSize, rowCount - firstRow);
+
+		List<Task> tasks = new ArrayList<>((int) wanted);
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long row = entryLine;
+
+		// Read until the page is full or the file ends
+		while (tasks.size() < wanted) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			position += read;
+			for (int i = 0; i < read && tasks.size() < wanted; i++) {
+				byte b = buffer.get(i);
+				if (b != '\n') {
+					if (row >= entryLine + skip) {
+						line.write(b);
+					}
+					continue;
+				}
+				if (row++ >= entryLine + skip) {
+					tasks.add(toTask(line, row));
+				}
+				line.reset();
+			}
+		}
+
+		// Final line without a line break
+		if (tasks.size() < wanted && line.size() > 0) {
+			tasks.add(toTask(line, row + 1));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Parses the bytes of one line
+	 * @param line bytes without the line break
+	 * @param id Task id (row number starting at 1)
+	 * @return new Task
+	 * @throws DataFormatException if the line is invalid
+	 */
+	private static Task toTask(ByteArrayOutputStream line, long id) throws DataFormatException {
+		String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+		if (text.endsWith("\r")) {
+			text = text.substring(0, text.length() - 1);
+		}
+		Task task = TaskReader.parseTask(text);
+		task.setId((int) id);
+		return task;
+	}
+
+	/**
+	 * Number of rows, complete lines plus a final line without a line break
+	 * @return row count
+	 * @throws IOException if the file cannot be read
+	 */
+	private long countRows() throws IOException {
+		return index.getLineCount() + (channel.size() > index.getIndexedLength() ? 1 : 0);
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 */
+	@Override
+	public void addTask(Task task) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 */
+	@Override
+	public void removeTask(Task task) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param tasks ignored
+	 */
+	@Override
+	public void removeTasks(Collection<Task> tasks) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 * @param isCompleted ignored
+	 */
+	@Override
+	public void setCompleted(Task task, boolean isCompleted) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param tasks ignored
+	 * @param isCompleted ignored
+	 */
+	@Override
+	public void setCompleted(Collection<Task> tasks, boolean isCompleted) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 * @param date ignored
+	 * @param isCompleted ignored
+	 */
+	@Override
+	public void setCompleted(Task task, LocalDate date, boolean isCompleted) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 */
+	@Override
+	public void updateTask(Task task) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 * @param blocker ignored
+	 */
+	@Override
+	public void addDependency(Task task, Task blocker) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 * @param task ignored
+	 * @param blocker ignored
+	 */
+	@Override
+	public void removeDependency(Task task, Task blocker) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Most urgent incomplete Tasks, found by scanning every record since no heap is kept
+	 * @param n most Tasks to return
+	 * @return new list, most urgent first
+	 */
+	@Override
+	public List<Task> getNextTasks(int n) {
+		return scanNextTasks(n);
+	}
+
+	/**
+	 * Estimated heap held by this view, the cached pages, the file's index, the counts and the tag index while one
+	 * is built, rows not cached cost nothing
+	 * @param counter counter shared with the other parts being measured
+	 * @return figures for this view
+	 */
+	@Override
+	public MemoryStats memoryStats(MemoryStats.Counter counter) {
+		for (List<Task> page : pages.values()) {
+			for (Task task : page) {
+				counter.addTask(task);
+			}
+			counter.addStructure(MemoryStats.arrayBytes(page.size(), 4));
+		}
+		counter.addStructure(index.getSizeInBytes() + getIndexBytes());
+		return counter.finish("Paged task file");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 */
+	@Override
+	public void sortByDueDate() {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 */
+	@Override
+	public void sortByName() {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+
+	/**
+	 * Not supported, this view is read-only
+	 */
+	@Override
+	public void sortByName(Locale locale) {
+		throw new UnsupportedOperationException("Read-only task file view");
+	}
+}
@@ -0,0 +1,168 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * OutputStream that gzip-compresses fixed-size blocks on several threads
+ * Each block is written as a complete gzip member, in order, so the result is a normal
+ * multi-member gzip file readable by GZIPInputStream and gunzip
+ * Only a bounded number of blocks are in flight, so memory use does not grow with the file
+ * @author Luke Gentri
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/** Default uncompressed bytes per block */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	/** Destination stream */
+	private final OutputStream out;
+
+	/** Compression threads */
+	private final ExecutorService executor;
+
+	/** Blocks being compressed, oldest first */
+	private final Queue<Future<byte[]>> pending = new ArrayDeque<>();
+
+	/** Maximum blocks in flight */
+	private final int maxPending;
+
+	/** Block being filled */
+	private byte[] block;
+
+	/** Bytes used in the current block */
+	private int used;
+
+	/** Set once closed */
+	private boolean closed;
+
+	/**
+	 * Constructor
+	 * @param out destination stream, closed with this stream
+	 * @param threads number of compression threads
+	 * @param blockSize uncompressed bytes per block
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+		this.out = out;
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "gzip-block");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxPending = threads * 2;
+		this.block = new byte[blockSize];
+	}
+
+	/**
+	 * Constructor using one thread per processor and the default block size
+	 * @param out destination stream, closed with this stream
+	 */
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (used == block.length) {
+			submitBlock();
+		}
+		block[used++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (used == block.length) {
+				submitBlock();
+			}
+			int chunk = Math.min(length, block.length - used);
+			System.arraycopy(bytes, offset, block, used, chunk);
+			used += chunk;
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Compresses the partial block and writes every finished block
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (used > 0) {
+			submitBlock();
+		}
+		while (!pending.isEmpty()) {
+			writeOldest();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the remaining blocks, stops the threads and closes the destination
+	 * @throws IOException if writing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			flush();
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+
+	/**
+	 * Hands the current block to a compression thread and starts a new one
+	 * Waits for the oldest block first if too many are in flight
+	 * @throws IOException if writing an older block fails
+	 */
+	private void submitBlock() throws IOException {
+		if (pending.size() >= maxPending) {
+			writeOldest();
+		}
+		final byte[] data = block;
+		final int length = used;
+		pending.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+					gzip.write(data, 0, length);
+				}
+				return compressed.toByteArray();
+			}
+		}));
+		block = new byte[block.length];
+		used = 0;
+	}
+
+	/**
+	 * Waits for the oldest block and writes it
+	 * @throws IOException if compression or writing fails
+	 */
+	private void writeOldest() throws IOException {
+		try {
+			out.write(pending.remove().get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			throw new IOException("Compression failed", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,1171 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import model.Task;
+import model.TaskList;
+import model.TaskListEvent;
+import model.TaskListListener;
+
+/**
+ * Class for keeping the TaskLists of several TaskManager instances the same by exchanging changes over TCP
+ * Every change to the list becomes an operation stamped with a Lamport clock and the replica that made it
+ * Tasks are matched across instances by a uid given when they are first shared, since TaskList ids are local
+ * Concurrent changes to one Task are resolved by last writer wins on (clock, replica), so every instance
+ * settles on the same fields whatever order operations arrive in
+ * Only the newest operation of each Task is kept, with a vector of how far each replica has been seen,
+ * so a peer that connects or reconnects is sent just the operations it is missing
+ * Operations waiting for a peer are sent together in one deflated frame
+ * Operations from peers are applied through the given Executor, the GUI passes one that runs on the event thread
+ * List order is not shared, Tasks from peers are added at the end
+ * Replication state lives in memory, so replica ids must not be reused by a later session
+ * Listening is on this computer only unless a shared secret is given, which every peer must prove it knows
+ * before anything is exchanged, the changes themselves are not encrypted
+ * Frames, operations and vectors from peers are checked against size limits before anything is allocated
+ * @author Luke Gentri
+ */
+public class Replicator implements Closeable {
+
+	/** Usual port */
+	public static final int DEFAULT_PORT = 7531;
+
+	/** Frame types */
+	private static final byte HELLO = 1;
+	private static final byte BATCH = 2;
+
+	/** Largest frame accepted from a peer */
+	private static final int MAX_FRAME_SIZE = 64 << 20;
+
+	/** Largest frame accepted from a peer once inflated */
+	private static final int MAX_INFLATED_SIZE = 64 << 20;
+
+	/** Largest encoded Task accepted from a peer */
+	private static final int MAX_TASK_SIZE = 1 << 20;
+
+	/** Bytes of an operation without its Task, so a frame cannot hold more than MAX_INFLATED_SIZE / OP_SIZE */
+	private static final int OP_SIZE = 32;
+
+	/** Bytes of a vector entry */
+	private static final int VECTOR_ENTRY_SIZE = 12;
+
+	/** Bytes of the random challenge each side sends when a secret is used */
+	private static final int CHALLENGE_SIZE = 16;
+
+	/** Milliseconds a peer has to prove it knows the secret */
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	/** Answers challenges */
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	/** Makes challenges */
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/** Position of the id in encoded Task bytes, blanked because ids are local */
+	private static final int ID_OFFSET = 1;
+
+	/**
+	 * Change to one Task made by one replica
+	 */
+	private static class Op {
+
+		/** Replica that made the change */
+		final int origin;
+
+		/** Position in the origin's sequence of changes, from 1 */
+		final long seq;
+
+		/** Lamport clock when the change was made */
+		final long clock;
+
+		/** Task the change is for */
+		final long uid;
+
+		/** Encoded Task fields, null for a removal */
+		final byte[] task;
+
+		/**
+		 * Constructor
+		 * @param origin replica that made the change
+		 * @param seq position in the origin's sequence
+		 * @param clock Lamport clock of the change
+		 * @param uid Task the change is for
+		 * @param task encoded Task fields, null for a removal
+		 */
+		Op(int origin, long seq, long clock, long uid, byte[] task) {
+			this.origin = origin;
+			this.seq = seq;
+			this.clock = clock;
+			this.uid = uid;
+			this.task = task;
+		}
+
+		/**
+		 * Whether this change wins over another to the same Task
+		 * @param other earlier winner
+		 * @return true if this change is later by (clock, replica)
+		 */
+		boolean isNewerThan(Op other) {
+			return clock != other.clock ? clock > other.clock : origin > other.origin;
+		}
+	}
+
+	/**
+	 * Replication state of one Task
+	 */
+	private static class Entry {
+
+		/** uid shared by every instance */
+		final long uid;
+
+		/** Task in this instance's list, null once removed */
+		Task task;
+
+		/** Winning change so far */
+		Op latest;
+
+		/**
+		 * Constructor
+		 * @param uid uid shared by every instance
+		 */
+		Entry(long uid) {
+			this.uid = uid;
+		}
+	}
+
+	/**
+	 * Connection to another instance, with a thread each for reading and writing
+	 */
+	private class Peer {
+
+		/** Connected socket */
+		private final Socket socket;
+
+		/** Secret the peer must prove it knows, or null */
+		private final byte[] secret;
+
+		/** Operations waiting to be sent */
+		private final List<Op> outbox = new ArrayList<>();
+
+		/** Vector to send after the outbox, ends a catch-up */
+		private Map<Integer, Long> outVector;
+
+		/** Vector sent first, so the other side knows what to catch up */
+		private final Map<Integer, Long> hello;
+
+		/** True once closed */
+		private boolean closed;
+
+		/**
+		 * Constructor
+		 * @param socket connected socket
+		 * @param secret secret the peer must prove it knows, or null
+		 * @param hello this replica's vector at connection time
+		 */
+		Peer(Socket socket, byte[] secret, Map<Integer, Long> hello) {
+			this.socket = socket;
+			this.secret = secret;
+			this.hello = hello;
+		}
+
+		/**
+		 * Starts the reading thread, which checks the secret before starting the writing thread
+		 * Operations queued meanwhile wait in the outbox
+		 */
+		void start() {
+			startThread(new Runnable() {
+				@Override
+				public void run() {
+					if (secret != null) {
+						try {
+							handshake();
+						} catch (IOException e) {
+							close();
+							return;
+						}
+					}
+					startThread(new Runnable() {
+						@Override
+						public void run() {
+							writeLoop();
+						}
+					}, "replicator-write");
+					readLoop();
+				}
+			}, "replicator-read");
+		}
+
+		/**
+		 * Each side sends a random challenge and answers the other's with an HMAC keyed by the secret
+		 * The answer covers both challenges in the answering side's order, so it cannot be sent back
+		 * @throws IOException if the peer does not know the secret or does not answer in time
+		 */
+		private void handshake() throws IOException {
+			socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			byte[] own = new byte[CHALLENGE_SIZE];
+			RANDOM.nextBytes(own);
+			out.write(own);
+			out.flush();
+			byte[] theirs = new byte[CHALLENGE_SIZE];
+			in.readFully(theirs);
+			if (Arrays.equals(own, theirs)) {
+				throw new IOException("Challenge sent back");
+			}
+			out.write(mac(secret, theirs, own));
+			out.flush();
+			byte[] expected = mac(secret, own, theirs);
+			byte[] answer = new byte[expected.length];
+			in.readFully(answer);
+			if (!MessageDigest.isEqual(expected, answer)) {
+				throw new IOException("Peer does not know the secret");
+			}
+			socket.setSoTimeout(0);
+		}
+
+		/**
+		 * Queues operations to send
+		 * @param ops operations in order
+		 * @param vector vector to send after them, or null
+		 */
+		synchronized void send(List<Op> ops, Map<Integer, Long> vector) {
+			outbox.addAll(ops);
+			if (vector != null) {
+				outVector = vector;
+			}
+			notifyAll();
+		}
+
+		/**
+		 * Closes the socket, which ends both threads
+		 */
+		void close() {
+			synchronized (this) {
+				closed = true;
+				notifyAll();
+			}
+			peers.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+
+		/**
+		 * Sends the hello, then everything queued, one frame per wake-up
+		 */
+		private void writeLoop() {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+				writeFrame(out, HELLO, Collections.<Op>emptyList(), hello);
+				while (true) {
+					List<Op> batch;
+					Map<Integer, Long> vector;
+					synchronized (this) {
+						while (!closed && outbox.isEmpty() && outVector == null) {
+							wait();
+						}
+						if (closed) {
+							return;
+						}
+						batch = new ArrayList<>(outbox);
+						outbox.clear();
+						vector = outVector;
+						outVector = null;
+					}
+					writeFrame(out, BATCH, batch, vector);
+				}
+			} catch (IOException | InterruptedException e) {
+				close();
+			}
+		}
+
+		/**
+		 * Answers the peer's hello with a catch-up and hands batches to the applier
+		 * Frames are inflated as they arrive, any invalid frame or failure closes the connection
+		 */
+		private void readLoop() {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+				while (true) {
+					int length = in.readInt();
+					if (length < 0 || length > MAX_FRAME_SIZE) {
+						throw new IOException("Invalid frame length " + length);
+					}
+					BoundedInputStream frame = new BoundedInputStream(in, length, null);
+					Inflater inflater = new Inflater();
+					try {
+						DataInputStream data = new DataInputStream(new BoundedInputStream(new InflaterInputStream(frame, inflater),
+								MAX_INFLATED_SIZE, "Frame inflates past " + MAX_INFLATED_SIZE + " bytes"));
+						byte type = data.readByte();
+						final List<Op> ops = readOps(data);
+						final Map<Integer, Long> vector = data.readBoolean() ? readVector(data) : null;
+						if (type == HELLO) {
+							if (vector == null) {
+								throw new IOException("Hello without a vector");
+							}
+							catchUp(this, vector);
+						} else if (type == BATCH) {
+							final Peer source = this;
+							applier.execute(new Runnable() {
+								@Override
+								public void run() {
+									receive(source, ops, vector);
+								}
+							});
+						} else {
+							throw new IOException("Invalid frame type " + type);
+						}
+						frame.drain();
+					} finally {
+						inflater.end();
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+
+				// Closed, or the peer sent something invalid
+			} finally {
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Stream that reads at most a number of bytes from another and leaves it open
+	 * It either ends there, for a frame of known length, or fails, for data that must not grow past a limit
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+
+		/** Bytes left before the limit */
+		private long remaining;
+
+		/** Message of the failure past the limit, or null to end there */
+		private final String overflow;
+
+		/**
+		 * Constructor
+		 * @param in stream to read from
+		 * @param limit bytes that may be read
+		 * @param overflow message of the failure past the limit, or null to end there
+		 */
+		BoundedInputStream(InputStream in, long limit, String overflow) {
+			super(in);
+			this.remaining = limit;
+			this.overflow = overflow;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining == 0) {
+				return end();
+			}
+			int b = in.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (remaining == 0) {
+				return end();
+			}
+			int read = in.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+
+			// The stream read from stays open
+		}
+
+		/**
+		 * Reads and drops whatever is left before the limit
+		 * @throws IOException if reading fails
+		 */
+		void drain() throws IOException {
+			byte[] buffer = new byte[512];
+			while (read(buffer, 0, buffer.length) > 0) {
+				// Dropped
+			}
+		}
+
+		/**
+		 * Result of reading at the limit
+		 * @return -1
+		 * @throws IOException if more data follows and the limit must not be passed
+		 */
+		private int end() throws IOException {
+			if (overflow != null && in.read() >= 0) {
+				throw new IOException(overflow);
+			}
+			return -1;
+		}
+	}
+
+	/** TaskList being shared */
+	private TaskList taskList;
+
+	/** This replica's id, unique among instances */
+	private final int replicaId;
+
+	/** Runs changes from peers on the thread that owns the TaskList */
+	private final Executor applier;
+
+	/** State of every Task ever shared, by uid */
+	private final Map<Long, Entry> entries = new HashMap<>();
+
+	/** State of every Task in the list */
+	private final Map<Task, Entry> byTask = new IdentityHashMap<>();
+
+	/** Winning operations of each replica by sequence, enough to catch up any peer */
+	private final Map<Integer, TreeMap<Long, Op>> log = new HashMap<>();
+
+	/** Highest sequence of each replica seen with nothing missing before it */
+	private final Map<Integer, Long> vector = new HashMap<>();
+
+	/** Lamport clock */
+	private long clock;
+
+	/** True while applying changes from peers, so they are not shared again */
+	private boolean applying;
+
+	/** True once closed */
+	private boolean closed;
+
+	/** Operations received from peers, for tests */
+	private long receivedCount;
+
+	/** Listening sockets */
+	private final List<ServerSocket> servers = new CopyOnWriteArrayList<>();
+
+	/** Open connections */
+	private final List<Peer> peers = new CopyOnWriteArrayList<>();
+
+	/** Turns list changes into operations */
+	private final TaskListListener changeListener = new TaskListListener() {
+		@Override
+		public void taskListChanged(TaskListEvent event) {
+			handle(event);
+		}
+	};
+
+	/**
+	 * Constructor, shares every Task already in the list
+	 * @param taskList TaskList to share
+	 * @param replicaId id unique among instances and not used by an earlier session
+	 * @param applier runs changes from peers on the thread that owns the TaskList
+	 */
+	public Replicator(TaskList taskList, int replicaId, Executor applier) {
+		this.taskList = taskList;
+		this.replicaId = replicaId;
+		this.applier = applier;
+		for (Task task : taskList.getAllTasks()) {
+			share(task, new ArrayList<Op>());
+		}
+		taskList.addTaskListListener(changeListener);
+	}
+
+	/**
+	 * getReplicaId
+	 * @return this replica's id
+	 */
+	public int getReplicaId() {
+		return replicaId;
+	}
+
+	/**
+	 * Accepts connections from other instances on this computer
+	 * @param port port to listen on, 0 for any free port
+	 * @return port listened on
+	 * @throws IOException if the port cannot be opened
+	 */
+	public int listen(int port) throws IOException {
+		return listen(InetAddress.getLoopbackAddress(), port, null);
+	}
+
+	/**
+	 * Accepts connections from other instances on an address
+	 * Listening beyond this computer needs a secret, peers that do not know it are closed before anything is sent
+	 * @param address local address to listen on, null for every address
+	 * @param port port to listen on, 0 for any free port
+	 * @param secret secret peers must know, or null for none
+	 * @return port listened on
+	 * @throws IllegalArgumentException if address is not a loopback address and there is no secret
+	 * @throws IOException if the port cannot be opened
+	 */
+	public int listen(InetAddress address, int port, String secret) throws IOException {
+		final byte[] key = toKey(secret);
+		if (key == null && (address == null || !address.isLoopbackAddress())) {
+			throw new IllegalArgumentException("A secret is needed to share beyond this computer");
+		}
+		final ServerSocket server = new ServerSocket(port, 50, address);
+		servers.add(server);
+		startThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						addPeer(server.accept(), key);
+					}
+				} catch (IOException e) {
+					servers.remove(server);
+				}
+			}
+		}, "replicator-accept");
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Connects to another instance listening without a secret, both sides then catch each other up
+	 * @param host host of the other instance
+	 * @param port port it listens on
+	 * @throws IOException if the connection fails
+	 */
+	public void connect(String host, int port) throws IOException {
+		connect(host, port, null);
+	}
+
+	/**
+	 * Connects to another instance, both sides then catch each other up
+	 * @param host host of the other instance
+	 * @param port port it listens on
+	 * @param secret secret it was given, or null for none
+	 * @throws IOException if the connection fails
+	 */
+	public void connect(String host, int port, String secret) throws IOException {
+		addPeer(new Socket(host, port), toKey(secret));
+	}
+
+	/**
+	 * Closes every connection but keeps listening and keeps the replication state,
+	 * so connecting again sends only what changed in between
+	 */
+	public void disconnect() {
+		for (Peer peer : peers) {
+			peer.close();
+		}
+	}
+
+	/**
+	 * getPeerCount
+	 * @return number of open connections
+	 */
+	public int getPeerCount() {
+		return peers.size();
+	}
+
+	/**
+	 * Shares another TaskList in place of the current one, as after undo or loading a file
+	 * Tasks are matched to the old ones by fields and then by id, so only real differences are sent
+	 * @param newList TaskList to share
+	 */
+	public synchronized void setTaskList(TaskList newList) {
+		taskList.removeTaskListListener(changeListener);
+		taskList = newList;
+
+		// Old Tasks by fields and by id
+		Map<Integer, Deque<Entry>> byFields = new HashMap<>();
+		Map<Integer, Entry> byId = new HashMap<>();
+		for (Entry entry : byTask.values()) {
+			int hash = Arrays.hashCode(entry.latest.task);
+			if (!byFields.containsKey(hash)) {
+				byFields.put(hash, new ArrayDeque<Entry>());
+			}
+			byFields.get(hash).add(entry);
+			byId.put(entry.task.getId(), entry);
+		}
+		Map<Task, Entry> unmatched = new IdentityHashMap<>(byTask);
+		byTask.clear();
+
+		// Match identical Tasks first, then Tasks with the same id
+		List<Task> rest = new ArrayList<>();
+		for (Task task : newList.getAllTasks()) {
+			byte[] fields = encode(task);
+			Entry match = null;
+			Deque<Entry> candidates = byFields.get(Arrays.hashCode(fields));
+			if (candidates != null) {
+				for (Entry candidate : candidates) {
+					if (unmatched.containsKey(candidate.task) && Arrays.equals(fields, candidate.latest.task)) {
+						match = candidate;
+						break;
+					}
+				}
+			}
+			if (match == null) {
+				rest.add(task);
+			} else {
+				bind(match, task, unmatched);
+			}
+		}
+		for (Task task : rest) {
+			Entry match = byId.get(task.getId());
+			if (match != null && unmatched.containsKey(match.task)) {
+				bind(match, task, unmatched);
+			}
+		}
+
+		// Send whatever differs
+		List<Op> created = new ArrayList<>();
+		for (Entry entry : unmatched.values()) {
+			entry.task = null;
+			record(entry, newOp(entry.uid, null));
+			created.add(entry.latest);
+		}
+		for (Task task : newList.getAllTasks()) {
+			share(task, created);
+		}
+		broadcast(created, null);
+		newList.addTaskListListener(changeListener);
+	}
+
+	/**
+	 * Stops listening, closes every connection and stops following the TaskList
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			taskList.removeTaskListListener(changeListener);
+		}
+		for (ServerSocket server : servers) {
+			try {
+				server.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+		disconnect();
+	}
+
+	/**
+	 * Copy of the vector
+	 * @return highest sequence seen of each replica
+	 */
+	synchronized Map<Integer, Long> getVector() {
+		return new HashMap<>(vector);
+	}
+
+	/**
+	 * getReceivedCount
+	 * @return operations received from peers
+	 */
+	synchronized long getReceivedCount() {
+		return receivedCount;
+	}
+
+	/**
+	 * Number of operations kept for catching up peers
+	 * @return one per Task ever shared
+	 */
+	synchronized int getLogSize() {
+		int size = 0;
+		for (TreeMap<Long, Op> ops : log.values()) {
+			size += ops.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Turns a change to the list into operations and sends them
+	 * @param event change to the list
+	 */
+	private synchronized void handle(TaskListEvent event) {
+		if (applying || closed) {
+			return;
+		}
+		List<Op> created = new ArrayList<>();
+		switch (event.getType()) {
+			case INSERTED:
+			case UPDATED:
+				for (Task task : event.getTasks()) {
+					share(task, created);
+				}
+				break;
+			case REMOVED:
+			case CLEARED:
+				for (Task task : event.getTasks()) {
+					unshare(task, created);
+				}
+				break;
+			default:
+
+				// Sorted, or a batch of mixed changes
+				Set<Task> present = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+				for (Task task : taskList.getAllTasks()) {
+					present.add(task);
+					share(task, created);
+				}
+				for (Task task : new ArrayList<>(byTask.keySet())) {
+					if (!present.contains(task)) {
+						unshare(task, created);
+					}
+				}
+				break;
+		}
+		broadcast(created, null);
+	}
+
+	/**
+	 * Makes an operation for a new or changed Task
+	 * @param task Task in the list
+	 * @param created receives the operation, if one was needed
+	 */
+	private void share(Task task, List<Op> created) {
+		Entry entry = byTask.get(task);
+		byte[] fields = encode(task);
+		if (entry != null && Arrays.equals(fields, entry.latest.task)) {
+			return;
+		}
+		long seq = nextSeq();
+		if (entry == null) {
+
+			// uid of a new Task is the replica and sequence that created it
+			entry = new Entry(((long) replicaId << 32) | (seq & 0xFFFFFFFFL));
+			entries.put(entry.uid, entry);
+			entry.task = task;
+			byTask.put(task, entry);
+		}
+		record(entry, new Op(replicaId, seq, ++clock, entry.uid, fields));
+		created.add(entry.latest);
+	}
+
+	/**
+	 * Makes an operation for a removed Task
+	 * @param task Task no longer in the list
+	 * @param created receives the operation
+	 */
+	private void unshare(Task task, List<Op> created) {
+		Entry entry = byTask.remove(task);
+		if (entry == null) {
+			return;
+		}
+		entry.task = null;
+		record(entry, newOp(entry.uid, null));
+		created.add(entry.latest);
+	}
+
+	/**
+	 * Moves an old Task's state to its replacement
+	 * @param entry state of the old Task
+	 * @param task new Task
+	 * @param unmatched old Tasks not yet replaced
+	 */
+	private void bind(Entry entry, Task task, Map<Task, Entry> unmatched) {
+		unmatched.remove(entry.task);
+		entry.task = task;
+		byTask.put(task, entry);
+	}
+
+	/**
+	 * Makes a local operation
+	 * @param uid Task the change is for
+	 * @param fields encoded Task fields, null for a removal
+	 * @return new operation
+	 */
+	private Op newOp(long uid, byte[] fields) {
+		return new Op(replicaId, nextSeq(), ++clock, uid, fields);
+	}
+
+	/**
+	 * Next sequence of this replica
+	 * @return sequence, from 1
+	 */
+	private long nextSeq() {
+		Long seen = vector.get(replicaId);
+		long seq = seen == null ? 1 : seen + 1;
+		vector.put(replicaId, seq);
+		return seq;
+	}
+
+	/**
+	 * Makes an operation its Task's winner, dropping the one it replaces from the log
+	 * @param entry Task state
+	 * @param op winning operation
+	 */
+	private void record(Entry entry, Op op) {
+		if (entry.latest != null) {
+			log.get(entry.latest.origin).remove(entry.latest.seq);
+		}
+		entry.latest = op;
+		TreeMap<Long, Op> ops = log.get(op.origin);
+		if (ops == null) {
+			ops = new TreeMap<>();
+			log.put(op.origin, ops);
+		}
+		ops.put(op.seq, op);
+	}
+
+	/**
+	 * Queues what a peer is missing, followed by this replica's vector
+	 * @param peer peer that said hello
+	 * @param peerVector what the peer has seen
+	 */
+	private synchronized void catchUp(Peer peer, Map<Integer, Long> peerVector) {
+		List<Op> missing = new ArrayList<>();
+		for (Map.Entry<Integer, TreeMap<Long, Op>> ops : log.entrySet()) {
+			Long seen = peerVector.get(ops.getKey());
+			missing.addAll(ops.getValue().tailMap(seen == null ? 0L : seen, false).values());
+		}
+		peer.send(missing, new HashMap<>(vector));
+	}
+
+	/**
+	 * Applies operations from a peer as one batch and passes the winners on to the other peers
+	 * @param source peer the operations came from
+	 * @param ops operations in order
+	 * @param peerVector vector ending a catch-up, or null
+	 */
+	private synchronized void receive(Peer source, List<Op> ops, Map<Integer, Long> peerVector) {
+		if (closed) {
+			return;
+		}
+		List<Op> accepted = new ArrayList<>();
+		applying = true;
+		taskList.beginBatch();
+		try {
+			for (Op op : ops) {
+				if (apply(op)) {
+					accepted.add(op);
+				}
+			}
+		} finally {
+			taskList.endBatch();
+			applying = false;
+		}
+		receivedCount += ops.size();
+
+		// After a catch-up, everything the peer had seen has been received or replaced
+		if (peerVector != null) {
+			for (Map.Entry<Integer, Long> seen : peerVector.entrySet()) {
+				Long own = vector.get(seen.getKey());
+				if (own == null || own < seen.getValue()) {
+					vector.put(seen.getKey(), seen.getValue());
+				}
+			}
+		}
+		broadcast(accepted, source);
+	}
+
+	/**
+	 * Applies one operation from a peer if it wins
+	 * @param op operation
+	 * @return true if it changed this replica
+	 */
+	private boolean apply(Op op) {
+		clock = Math.max(clock, op.clock);
+		Long seen = vector.get(op.origin);
+		if (op.seq == (seen == null ? 0 : seen) + 1) {
+			vector.put(op.origin, op.seq);
+		}
+		Entry entry = entries.get(op.uid);
+		if (entry != null && !op.isNewerThan(entry.latest)) {
+			return false;
+		}
+		if (entry == null) {
+			entry = new Entry(op.uid);
+			entries.put(op.uid, entry);
+		}
+		record(entry, op);
+
+		// Removed
+		if (op.task == null) {
+			if (entry.task != null) {
+				byTask.remove(entry.task);
+				taskList.removeTask(entry.task);
+				entry.task = null;
+			}
+			return true;
+		}
+
+		// Added or edited
+		Task incoming = decode(op.task);
+		if (entry.task == null) {
+			entry.task = incoming;
+			byTask.put(incoming, entry);
+			taskList.addTask(incoming);
+		} else {
+			Task task = entry.task;
+			task.setName(incoming.getName());
+			task.setDescription(incoming.getDescription());
+			task.setDueDate(incoming.getDueDate());
+			task.setCompleted(incoming.isCompleted());
+			task.setPriority(incoming.getPriority());
+			task.setTags(incoming.getTags());
+			task.setRecurrence(incoming.getRecurrence());
+			task.setCompletedOccurrences(incoming.getCompletedOccurrences());
+			taskList.updateTask(task);
+		}
+		return true;
+	}
+
+	/**
+	 * Queues operations for every peer except one
+	 * @param ops operations in order
+	 * @param source peer not to send to, or null
+	 */
+	private void broadcast(List<Op> ops, Peer source) {
+		if (ops.isEmpty()) {
+			return;
+		}
+		for (Peer peer : peers) {
+			if (peer != source) {
+				peer.send(ops, null);
+			}
+		}
+	}
+
+	/**
+	 * Starts a connection
+	 * @param socket connected socket
+	 * @param secret secret the peer must prove it knows, or null
+	 * @throws IOException if the socket cannot be set up
+	 */
+	private synchronized void addPeer(Socket socket, byte[] secret) throws IOException {
+		if (closed) {
+			socket.close();
+			return;
+		}
+		socket.setTcpNoDelay(true);
+		Peer peer = new Peer(socket, secret, new HashMap<>(vector));
+		peers.add(peer);
+		peer.start();
+	}
+
+	/**
+	 * Writes one deflated frame
+	 * @param out destination
+	 * @param type HELLO or BATCH
+	 * @param ops operations
+	 * @param frameVector vector, or null
+	 * @throws IOException if writing fails
+	 */
+	private static void writeFrame(DataOutputStream out, byte type, List<Op> ops, Map<Integer, Long> frameVector)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+			data.writeByte(type);
+			data.writeInt(ops.size());
+			for (Op op : ops) {
+				data.writeInt(op.origin);
+				data.writeLong(op.seq);
+				data.writeLong(op.clock);
+				data.writeLong(op.uid);
+				data.writeInt(op.task == null ? -1 : op.task.length);
+				if (op.task != null) {
+					data.write(op.task);
+				}
+			}
+			data.writeBoolean(frameVector != null);
+			if (frameVector != null) {
+				writeVector(frameVector, data);
+			}
+		} finally {
+			deflater.end();
+		}
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Reads the operations of a frame
+	 * @param in frame contents after the type
+	 * @return operations in order
+	 * @throws IOException if the frame is invalid
+	 */
+	private static List<Op> readOps(DataInput in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > MAX_INFLATED_SIZE / OP_SIZE) {
+			throw new IOException("Invalid operation count " + count);
+		}
+		List<Op> ops = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int origin = in.readInt();
+			long seq = in.readLong();
+			long opClock = in.readLong();
+			long uid = in.readLong();
+			int length = in.readInt();
+			if (length < -1 || length > MAX_TASK_SIZE) {
+				throw new IOException("Invalid task length " + length);
+			}
+			byte[] task = null;
+			if (length >= 0) {
+				task = new byte[length];
+				in.readFully(task);
+				decode(task);
+			}
+			ops.add(new Op(origin, seq, opClock, uid, task));
+		}
+		return ops;
+	}
+
+	/**
+	 * Writes a vector
+	 * @param frameVector vector to write
+	 * @param out destination
+	 * @throws IOException if writing fails
+	 */
+	private static void writeVector(Map<Integer, Long> frameVector, DataOutput out) throws IOException {
+		out.writeInt(frameVector.size());
+		for (Map.Entry<Integer, Long> seen : frameVector.entrySet()) {
+			out.writeInt(seen.getKey());
+			out.writeLong(seen.getValue());
+		}
+	}
+
+	/**
+	 * Reads a vector
+	 * @param in source
+	 * @return new vector
+	 * @throws IOException if reading fails
+	 */
+	private static Map<Integer, Long> readVector(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size < 0 || size > MAX_INFLATED_SIZE / VECTOR_ENTRY_SIZE) {
+			throw new IOException("Invalid vector size " + size);
+		}
+		Map<Integer, Long> frameVector = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			frameVector.put(in.readInt(), in.readLong());
+		}
+		return frameVector;
+	}
+
+	/**
+	 * Key made from a secret
+	 * @param secret secret, or null
+	 * @return key bytes, null for no secret or an empty one
+	 */
+	private static byte[] toKey(String secret) {
+		return secret == null || secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Answers a challenge
+	 * @param key key bytes
+	 * @param first challenge answered
+	 * @param second challenge of the answering side
+	 * @return HMAC of both challenges
+	 * @throws IOException if the algorithm is not available
+	 */
+	private static byte[] mac(byte[] key, byte[] first, byte[] second) throws IOException {
+		try {
+			Mac mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+			mac.update(first);
+			return mac.doFinal(second);
+		} catch (GeneralSecurityException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Encodes a Task's fields with its local id blanked
+	 * @param task Task to encode
+	 * @return encoded fields
+	 */
+	private static byte[] encode(Task task) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			TaskSerializer.writeTask(task, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		byte[] fields = bytes.toByteArray();
+		Arrays.fill(fields, ID_OFFSET, ID_OFFSET + 4, (byte) 0);
+		return fields;
+	}
+
+	/**
+	 * Decodes Task fields
+	 * @param fields encoded fields
+	 * @return new Task
+	 * @throws UncheckedIOException if the fields are invalid
+	 */
+	private static Task decode(byte[] fields) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(fields))) {
+			return TaskSerializer.readTask(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (DataFormatException e) {
+			throw new UncheckedIOException(new IOException(e.getMessage(), e));
+		}
+	}
+
+	/**
+	 * Starts a daemon thread
+	 * @param body thread body
+	 * @param name thread name
+	 */
+	private static void startThread(Runnable body, String name) {
+		Thread thread = new Thread(body, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -0,0 +1,530 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for storing a large TaskList as one CSV shard per due month
+ * A directory holds a manifest (month,file,count per line) and one shard file per month
+ * Each shard is a normal TaskReader CSV file, so dependencies are kept between Tasks due in the same month
+ * Shards are only read when a month is requested, the most recently used shards stay in memory,
+ * older ones are kept through soft references so the garbage collector can drop them under memory pressure
+ * @author Luke Gentri
+ */
+public class ShardedTaskStore {
+
+	/** Name of the manifest file inside the store directory */
+	public static final String MANIFEST_NAME = "manifest.csv";
+
+	/** Default number of shards kept strongly reachable */
+	public static final int DEFAULT_HOT_SHARDS = 6;
+
+	/** Edges of a shard without dependencies */
+	private static final int[] NO_EDGES = new int[0];
+
+	/** Store directory */
+	private final File directory;
+
+	/** Shard size per month, read from the manifest */
+	private final TreeMap<YearMonth, Integer> manifest;
+
+	/** Recently used shards, least recently used first */
+	private final LinkedHashMap<YearMonth, Shard> hotShards;
+
+	/** Shards pushed out of hotShards, reclaimable by the garbage collector */
+	private final Map<YearMonth, SoftReference<Shard>> coldShards;
+
+	/**
+	 * Opens a store directory, creating it if needed
+	 * Only the manifest is read
+	 * @param directory store directory
+	 * @param maxHotShards number of shards kept strongly reachable
+	 * @throws IOException if the directory or manifest cannot be read
+	 * @throws DataFormatException if the manifest is invalid
+	 */
+	public ShardedTaskStore(File directory, final int maxHotShards) throws IOException, DataFormatException {
+		this.directory = directory;
+		this.manifest = new TreeMap<>();
+		this.coldShards = new HashMap<>();
+
+		// Access-ordered map that demotes its eldest shard once over capacity
+		this.hotShards = new LinkedHashMap<YearMonth, Shard>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<YearMonth, Shard> eldest) {
+				if (size() > maxHotShards) {
+					coldShards.put(eldest.getKey(), new SoftReference<>(eldest.getValue()));
+					return true;
+				}
+				return false;
+			}
+		};
+
+		// New store
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+
+		// Read manifest if present
+		File manifestFile = new File(directory, MANIFEST_NAME);
+		if (manifestFile.exists()) {
+			readManifest(manifestFile);
+		}
+	}
+
+	/**
+	 * Writes a whole TaskList into a new or existing store directory
+	 * Existing shards for months present in the list are replaced
+	 * @param list TaskList to partition
+	 * @param directory store directory
+	 * @return store opened on the directory
+	 * @throws IllegalArgumentException if a Task waits for a Task due in another month, before anything is written
+	 * @throws IOException if a file cannot be written
+	 * @throws DataFormatException if an existing manifest is invalid
+	 */
+	public static ShardedTaskStore create(TaskList list, File directory) throws IOException, DataFormatException {
+		Map<YearMonth, List<Task>> groups = partition(list.getAllTasks());
+		Map<YearMonth, int[]> edges = new HashMap<>();
+		for (Map.Entry<YearMonth, List<Task>> entry : groups.entrySet()) {
+			edges.put(entry.getKey(), edgesOf(list, entry.getValue(), 0));
+		}
+		ShardedTaskStore store = new ShardedTaskStore(directory, DEFAULT_HOT_SHARDS);
+		for (Map.Entry<YearMonth, List<Task>> entry : groups.entrySet()) {
+			store.writeShard(entry.getKey(), entry.getValue(), edges.get(entry.getKey()));
+		}
+		store.writeManifest();
+		return store;
+	}
+
+	/**
+	 * getMonths
+	 * @return every month that has a shard, in order
+	 */
+	public synchronized SortedSet<YearMonth> getMonths() {
+		return new TreeSet<>(manifest.keySet());
+	}
+
+	/**
+	 * Number of Tasks in a month, answered from the manifest without loading
+	 * @param month due month
+	 * @return number of Tasks due that month
+	 */
+	public synchronized int getShardSize(YearMonth month) {
+		Integer count = manifest.get(month);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Total number of Tasks, answered from the manifest without loading
+	 * @return number of Tasks in every shard
+	 */
+	public synchronized int size() {
+		int total = 0;
+		for (int count : manifest.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Check whether a shard is currently in memory
+	 * @param month due month
+	 * @return true if the shard would be returned without reading its file
+	 */
+	public synchronized boolean isLoaded(YearMonth month) {
+		if (hotShards.containsKey(month)) {
+			return true;
+		}
+		SoftReference<Shard> ref = coldShards.get(month);
+		return ref != null && ref.get() != null;
+	}
+
+	/**
+	 * Returns the Tasks due in a month, reading the shard file on first use
+	 * The returned Tasks are shared with the cache and must not be modified
+	 * @param month due month
+	 * @return unmodifiable list of Tasks, empty if the month has no shard
+	 * @throws IOException if the shard cannot be read
+	 * @throws DataFormatException if the shard is invalid
+	 */
+	public synchronized List<Task> getShard(YearMonth month) throws IOException, DataFormatException {
+		Shard shard = shard(month);
+		return shard == null ? Collections.<Task>emptyList() : shard.tasks;
+	}
+
+	/**
+	 * Returns a month's shard with its dependencies, reading the file on first use
+	 * @param month due month
+	 * @return cached shard, null if the month has no shard
+	 * @throws IOException if the shard cannot be read
+	 * @throws DataFormatException if the shard is invalid
+	 */
+	private Shard shard(YearMonth month) throws IOException, DataFormatException {
+
+		// No shard for this month
+		if (!manifest.containsKey(month)) {
+			return null;
+		}
+
+		// Hot hit
+		Shard shard = hotShards.get(month);
+		if (shard != null) {
+			return shard;
+		}
+
+		// Cold hit, promote back to hot
+		SoftReference<Shard> ref = coldShards.remove(month);
+		shard = ref == null ? null : ref.get();
+
+		// Miss, read from disk
+		if (shard == null) {
+			shard = readShard(month);
+		}
+		hotShards.put(month, shard);
+		return shard;
+	}
+
+	/**
+	 * Loads the Tasks due between two months (inclusive) into a new TaskList
+	 * Only the shards in that range are read
+	 * @param from first month
+	 * @param to last month
+	 * @return new TaskList with copies of the Tasks and their dependencies, in month order
+	 * @throws IOException if a shard cannot be read
+	 * @throws DataFormatException if a shard is invalid
+	 */
+	public synchronized TaskList load(YearMonth from, YearMonth to) throws IOException, DataFormatException {
+		TaskList list = new TaskList();
+		list.beginBatch();
+		try {
+			for (YearMonth month : manifest.subMap(from, true, to, true).keySet()) {
+				Shard shard = shard(month);
+				List<Task> copies = new ArrayList<>(shard.tasks.size());
+				for (Task task : shard.tasks) {
+					Task copy = new Task(task);
+					copies.add(copy);
+					list.addTask(copy);
+				}
+				TaskReader.addDependencies(list, copies, shard.edges, shard.edges.length);
+			}
+		} finally {
+			list.endBatch();
+		}
+		return list;
+	}
+
+	/**
+	 * Saves a TaskList previously loaded for a range of months
+	 * Shards inside the range are replaced by the list's Tasks for those months,
+	 * Tasks whose due date moved outside the range are appended to their own shard and removed from the list,
+	 * since they no longer belong to the loaded range and would be appended again by the next save
+	 * @param list edited TaskList, loses the Tasks moved outside the range
+	 * @param from first month of the range
+	 * @param to last month of the range
+	 * @throws IllegalArgumentException if a Task waits for a Task due in another month, before anything is written
+	 * @throws IOException if a file cannot be written
+	 * @throws DataFormatException if an existing shard outside the range is invalid
+	 */
+	public synchronized void save(TaskList list, YearMonth from, YearMonth to) throws IOException, DataFormatException {
+		Map<YearMonth, List<Task>> groups = partition(list.getAllTasks());
+
+		// Shard rows of every dependency, checked before any file changes
+		Map<YearMonth, int[]> edges = new HashMap<>();
+		for (Map.Entry<YearMonth, List<Task>> entry : groups.entrySet()) {
+			YearMonth month = entry.getKey();
+			Shard existing = month.isBefore(from) || month.isAfter(to) ? shard(month) : null;
+			edges.put(month, edgesOf(list, entry.getValue(), existing == null ? 0 : existing.tasks.size()));
+		}
+
+		// Months in range that no longer have Tasks
+		List<YearMonth> emptied = new ArrayList<>();
+		for (YearMonth month : manifest.subMap(from, true, to, true).keySet()) {
+			if (!groups.containsKey(month)) {
+				emptied.add(month);
+			}
+		}
+
+		// Rewrite in-range shards, extend out-of-range ones
+		List<Task> moved = new ArrayList<>();
+		for (Map.Entry<YearMonth, List<Task>> entry : groups.entrySet()) {
+			YearMonth month = entry.getKey();
+			List<Task> tasks = entry.getValue();
+			int[] monthEdges = edges.get(month);
+			if (month.isBefore(from) || month.isAfter(to)) {
+				moved.addAll(tasks);
+				Shard existing = shard(month);
+				if (existing != null) {
+					List<Task> merged = new ArrayList<>(existing.tasks);
+					merged.addAll(tasks);
+					tasks = merged;
+					int[] mergedEdges = Arrays.copyOf(existing.edges, existing.edges.length + monthEdges.length);
+					System.arraycopy(monthEdges, 0, mergedEdges, existing.edges.length, monthEdges.length);
+					monthEdges = mergedEdges;
+				}
+			}
+			writeShard(month, tasks, monthEdges);
+		}
+
+		// The new manifest stops naming the emptied shards before their files go,
+		// so a failure at any point leaves a manifest whose shards all exist
+		Map<YearMonth, Integer> sizes = new HashMap<>();
+		for (YearMonth month : emptied) {
+			sizes.put(month, manifest.remove(month));
+		}
+		try {
+			writeManifest();
+		} catch (IOException e) {
+			manifest.putAll(sizes);
+			throw e;
+		}
+		for (YearMonth month : emptied) {
+			deleteShard(month);
+		}
+
+		// Moved Tasks now live in their own shard only
+		if (!moved.isEmpty()) {
+			list.removeTasks(moved);
+		}
+	}
+
+	/**
+	 * Drops every cached shard
+	 */
+	public synchronized void evictAll() {
+		hotShards.clear();
+		coldShards.clear();
+	}
+
+	/**
+	 * Groups Tasks by due month, keeping their order within each month
+	 * @param tasks Tasks to group
+	 * @return Tasks per month
+	 */
+	private static Map<YearMonth, List<Task>> partition(List<Task> tasks) {
+		Map<YearMonth, List<Task>> groups = new TreeMap<>();
+		for (Task task : tasks) {
+			YearMonth month = YearMonth.from(task.getDueDate());
+			List<Task> group = groups.get(month);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(month, group);
+			}
+			group.add(task);
+		}
+		return groups;
+	}
+
+	/**
+	 * Shard rows of the dependencies among the Tasks due in one month
+	 * @param list TaskList holding the dependencies
+	 * @param tasks Tasks due that month, in shard order
+	 * @param firstRow rows before the first Task in the shard
+	 * @return (row, blocker row) pairs in row order, rows from 1
+	 * @throws IllegalArgumentException if a Task waits for a Task due in another month
+	 */
+	private static int[] edgesOf(TaskList list, List<Task> tasks, int firstRow) {
+		if (list.getDependencyCount() == 0) {
+			return NO_EDGES;
+		}
+		Map<Task, Integer> rows = new IdentityHashMap<>();
+		for (Task task : tasks) {
+			rows.put(task, firstRow + rows.size() + 1);
+		}
+		int[] edges = NO_EDGES;
+		int edgeCount = 0;
+		for (Task task : tasks) {
+			for (Task blocker : list.getBlockers(task)) {
+				Integer row = rows.get(blocker);
+				if (row == null) {
+					throw new IllegalArgumentException("'" + task.getName() + "' waits for '" + blocker.getName() + "', which is due in another month");
+				}
+				if (edgeCount == edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(16, 2 * edges.length));
+				}
+				edges[edgeCount++] = rows.get(task);
+				edges[edgeCount++] = row;
+			}
+		}
+		return Arrays.copyOf(edges, edgeCount);
+	}
+
+	/**
+	 * Shard file for a month
+	 * @param month due month
+	 * @return file inside the store directory
+	 */
+	private File shardFile(YearMonth month) {
+		return new File(directory, "tasks-" + month + ".csv");
+	}
+
+	/**
+	 * Reads a shard file
+	 * @param month due month
+	 * @return shard with an unmodifiable list of its Tasks
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if a line is invalid
+	 */
+	private Shard readShard(YearMonth month) throws IOException, DataFormatException {
+		File file = shardFile(month);
+		if (!file.exists()) {
+			throw new FileNotFoundException("Missing shard " + file.getName());
+		}
+		List<Task> tasks = new ArrayList<>(getShardSize(month));
+		List<Integer> blockers = new ArrayList<>();
+		int[] edges = NO_EDGES;
+		int edgeCount = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				blockers.clear();
+				tasks.add(TaskReader.parseTask(line, blockers));
+				if (edgeCount + 2 * blockers.size() > edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + 2 * blockers.size())));
+				}
+				for (int blocker : blockers) {
+					edges[edgeCount++] = tasks.size();
+					edges[edgeCount++] = blocker;
+				}
+			}
+		}
+		return new Shard(Collections.unmodifiableList(tasks), Arrays.copyOf(edges, edgeCount));
+	}
+
+	/**
+	 * Writes a shard file and caches copies of its Tasks as hot
+	 * @param month due month
+	 * @param tasks Tasks due that month
+	 * @param edges (row, blocker row) pairs in row order, rows from 1
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeShard(YearMonth month, List<Task> tasks, int[] edges) throws IOException {
+		List<Task> copies = new ArrayList<>(tasks.size());
+		StringBuilder text = new StringBuilder();
+		int edge = 0;
+		for (int i = 0; i < tasks.size(); i++) {
+			int count = 0;
+			while (edge + 2 * count < edges.length && edges[edge + 2 * count] == i + 1) {
+				count++;
+			}
+			int[] after = new int[count];
+			for (int j = 0; j < count; j++) {
+				after[j] = edges[edge + 2 * j + 1];
+			}
+			edge += 2 * count;
+			copies.add(new Task(tasks.get(i)));
+			text.append(TaskReader.formatTask(tasks.get(i), after));
+		}
+		writeAtomically(shardFile(month), text);
+
+		manifest.put(month, tasks.size());
+		coldShards.remove(month);
+		hotShards.put(month, new Shard(Collections.unmodifiableList(copies), edges));
+	}
+
+	/**
+	 * Removes a shard file the manifest no longer names, and its cache entries
+	 * @param month due month
+	 * @throws IOException if the file cannot be deleted
+	 */
+	private void deleteShard(YearMonth month) throws IOException {
+		Files.deleteIfExists(shardFile(month).toPath());
+		hotShards.remove(month);
+		coldShards.remove(month);
+	}
+
+	/**
+	 * Reads the manifest
+	 * @param file manifest file
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if a line is invalid
+	 */
+	private void readManifest(File file) throws IOException, DataFormatException {
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields.length != 3) {
+					throw new DataFormatException("Invalid manifest");
+				}
+				try {
+					manifest.put(YearMonth.parse(fields[0]), Integer.parseInt(fields[2]));
+				} catch (DateTimeParseException | NumberFormatException e) {
+					throw new DataFormatException("Invalid manifest");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the manifest, after the shards it describes
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeManifest() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<YearMonth, Integer> entry : manifest.entrySet()) {
+			text.append(entry.getKey()).append(',').append(shardFile(entry.getKey()).getName()).append(',').append(entry.getValue()).append('\n');
+		}
+		writeAtomically(new File(directory, MANIFEST_NAME), text);
+	}
+
+	/**
+	 * Writes a file through a temporary file and a rename, so readers never see a partial file
+	 * @param file destination
+	 * @param text contents
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeAtomically(File file, CharSequence text) throws IOException {
+		File temp = new File(directory, file.getName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+			writer.append(text);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Cached Tasks of one month with the dependencies among them
+	 */
+	private static final class Shard {
+
+		/** Tasks in file order, unmodifiable */
+		final List<Task> tasks;
+
+		/** (row, blocker row) pairs in row order, rows from 1 */
+		final int[] edges;
+
+		/**
+		 * Constructor
+		 * @param tasks Tasks in file order
+		 * @param edges dependencies as row pairs
+		 */
+		Shard(List<Task> tasks, int[] edges) {
+			this.tasks = tasks;
+			this.edges = edges;
+		}
+	}
+}
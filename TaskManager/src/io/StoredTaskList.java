@@ -0,0 +1,184 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+import model.TaskList;
+import model.TaskListEvent;
+import model.TaskListListener;
+
+/**
+ * TaskList kept durable in a TaskStore
+ * Tasks are ordinary objects on the heap, and every change to the list is written to the store
+ * as it happens, so adding or editing one Task costs one record and there is no separate save step
+ * Each record also holds the ids of the Task's blockers
+ * Tasks are reloaded in id order, so sorting the list is not persisted
+ * Store failures are thrown as UncheckedIOException from the method that changed the list
+ * @author Luke Gentri
+ */
+public class StoredTaskList extends TaskList implements Closeable {
+
+	/** Store holding the Tasks */
+	private final TaskStore store;
+
+	/** Writes each change to the store */
+	private final TaskListListener storeWriter = new TaskListListener() {
+		@Override
+		public void taskListChanged(TaskListEvent event) {
+			try {
+				persist(event);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	};
+
+	/**
+	 * Opens a stored list, creating an empty one if the file does not exist
+	 * @param file store file
+	 * @throws IOException if the file cannot be read or written
+	 * @throws DataFormatException if the file is not a task store
+	 */
+	public StoredTaskList(File file) throws IOException, DataFormatException {
+		this(new TaskStore(file));
+	}
+
+	/**
+	 * Constructor
+	 * @param store open store to load from and write to
+	 * @throws IOException if the store cannot be read
+	 */
+	private StoredTaskList(TaskStore store) throws IOException {
+
+		// The copy constructor keeps the stored ids
+		super(load(store));
+		this.store = store;
+
+		// Restore dependencies before changes are written
+		Map<Integer, Task> byId = new HashMap<>();
+		for (Task task : getAllTasks()) {
+			byId.put(task.getId(), task);
+		}
+		try {
+			for (Task task : getAllTasks()) {
+				for (int blockerId : store.getBlockerIds(task.getId())) {
+					Task blocker = byId.get(blockerId);
+					if (blocker == null) {
+						throw new IOException("Task " + task.getId() + " is blocked by missing task " + blockerId);
+					}
+					addDependency(task, blocker);
+				}
+			}
+		} catch (IOException e) {
+			store.close();
+			throw e;
+		} catch (IllegalArgumentException e) {
+			store.close();
+			throw new IOException("Invalid dependency: " + e.getMessage(), e);
+		}
+		addTaskListListener(storeWriter);
+	}
+
+	/**
+	 * getStore
+	 * @return store holding the Tasks
+	 */
+	public TaskStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Stops writing changes and closes the store
+	 * @throws IOException if the store cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		removeTaskListListener(storeWriter);
+		store.close();
+	}
+
+	/**
+	 * Writes one change to the store and forces it to disk
+	 * @param event change to the list
+	 * @throws IOException if the store cannot be written
+	 */
+	private void persist(TaskListEvent event) throws IOException {
+		switch (event.getType()) {
+			case INSERTED:
+			case UPDATED:
+				for (Task task : event.getTasks()) {
+					put(task);
+				}
+				break;
+			case CLEARED:
+				store.clear();
+				break;
+			default:
+
+				// Removals renumber later Tasks, and a mixed batch can touch anything
+				// One batch record, so a crash cannot leave the Tasks half renumbered
+				List<Task> tasks = getAllTasks();
+				List<int[]> blockerIds = new ArrayList<>(tasks.size());
+				for (Task task : tasks) {
+					blockerIds.add(getBlockerIds(task));
+				}
+				store.replaceAll(tasks, blockerIds);
+				break;
+		}
+		store.sync();
+	}
+
+	/**
+	 * Writes a Task and the ids of its blockers
+	 * @param task Task to write
+	 * @throws IOException if the store cannot be written
+	 */
+	private void put(Task task) throws IOException {
+		store.put(task, getBlockerIds(task));
+	}
+
+	/**
+	 * Ids of the Tasks one Task waits for
+	 * @param task Task in the list
+	 * @return blocker ids
+	 */
+	private int[] getBlockerIds(Task task) {
+		List<Task> blockers = getBlockers(task);
+		int[] blockerIds = new int[blockers.size()];
+		for (int i = 0; i < blockerIds.length; i++) {
+			blockerIds[i] = blockers.get(i).getId();
+		}
+		return blockerIds;
+	}
+
+	/**
+	 * Reads every stored Task into a list the copy constructor can take
+	 * Closes the store if reading fails
+	 * @param store store to read
+	 * @return TaskList wrapping the stored Tasks
+	 * @throws IOException if the store cannot be read
+	 */
+	private static TaskList load(TaskStore store) throws IOException {
+		final List<Task> tasks;
+		try {
+			tasks = store.scan(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		} catch (IOException e) {
+			store.close();
+			throw e;
+		}
+		return new TaskList() {
+			@Override
+			public List<Task> getAllTasks() {
+				return tasks;
+			}
+		};
+	}
+}
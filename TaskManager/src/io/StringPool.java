@@ -0,0 +1,65 @@
+package io;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import model.Task;
+
+/**
+ * Pool of shared string instances, so equal names, descriptions and tags loaded from many files
+ * are held once on the heap
+ * Entries are weak, a string no longer used by any Task is dropped by the garbage collector,
+ * so lists can be evicted without the pool keeping their strings alive
+ * Thread-safe
+ * @author Luke Gentri
+ */
+class StringPool {
+
+	/** Each pooled string, weakly keyed and weakly referenced so neither side keeps it alive */
+	private final Map<String, WeakReference<String>> pool = new WeakHashMap<>();
+
+	/**
+	 * Shared instance of a string
+	 * @param text string to look up, may be null
+	 * @return the pooled string equal to text, text itself if it was not pooled yet
+	 */
+	synchronized String intern(String text) {
+		if (text == null) {
+			return null;
+		}
+		WeakReference<String> reference = pool.get(text);
+		String pooled = reference == null ? null : reference.get();
+		if (pooled == null) {
+			pool.put(text, new WeakReference<>(text));
+			pooled = text;
+		}
+		return pooled;
+	}
+
+	/**
+	 * Replaces a Task's name, description and tags with their shared instances
+	 * @param task Task to change in place
+	 */
+	void intern(Task task) {
+		task.setName(intern(task.getName()));
+		task.setDescription(intern(task.getDescription()));
+		if (!task.getTags().isEmpty()) {
+			List<String> tags = new ArrayList<>(task.getTags().size());
+			for (String tag : task.getTags()) {
+				tags.add(intern(tag));
+			}
+			task.setTags(tags);
+		}
+	}
+
+	/**
+	 * size
+	 * @return number of strings pooled and still in use
+	 */
+	synchronized int size() {
+		return pool.size();
+	}
+}
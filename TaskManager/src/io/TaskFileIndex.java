@@ -0,0 +1,370 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Class for a sparse line-offset index over a task file
+ * Stores the byte offset of every stride-th line so any line can be reached with one positioned read
+ * The index is saved next to the file (file name + ".idx") and reused on the next open
+ * If the file has only been appended to since, just the new bytes are scanned, if it shrank or was rewritten
+ * the index is rebuilt and its generation goes up
+ * A saved index whose fields do not fit together is rebuilt as well
+ * Only complete lines (ending in a line break) are indexed
+ * @author Luke Gentri
+ */
+public class TaskFileIndex {
+
+	/** Suffix of the index file */
+	public static final String SUFFIX = ".idx";
+
+	/** Default number of lines between index entries */
+	public static final int DEFAULT_STRIDE = 1024;
+
+	/** Identifies index files */
+	private static final int MAGIC = 0x54494458;
+
+	/** Index file version */
+	private static final int VERSION = 1;
+
+	/** Bytes before the indexed end that are checksummed to detect rewrites */
+	private static final int TAIL_CHECK_BYTES = 4096;
+
+	/** Read buffer size for scanning */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Bytes of a saved index before its entries: magic, version, stride, line count, length, checksum, entry count */
+	private static final int FILE_HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+
+	/** Indexed task file */
+	private final File file;
+
+	/** Lines between entries */
+	private final int stride;
+
+	/** Byte offset of lines 0, stride, 2 * stride, ... */
+	private long[] offsets;
+
+	/** Number of entries in use */
+	private int entryCount;
+
+	/** Number of complete lines indexed */
+	private long lineCount;
+
+	/** Bytes covered by the index, always just after a line break */
+	private long indexedLength;
+
+	/** Checksum of the bytes just before indexedLength */
+	private long tailChecksum;
+
+	/** Number of times refresh found the file shrunk or rewritten and rebuilt the index */
+	private int generation;
+
+	/**
+	 * Constructor for an empty index
+	 * @param file task file
+	 * @param stride lines between entries
+	 */
+	private TaskFileIndex(File file, int stride) {
+		this.file = file;
+		this.stride = stride;
+		this.offsets = new long[16];
+	}
+
+	/**
+	 * Opens the index for a task file with the default stride
+	 * @param file task file
+	 * @return up to date index
+	 * @throws IOException if the file cannot be read or the index cannot be saved
+	 */
+	public static TaskFileIndex open(File file) throws IOException {
+		return open(file, DEFAULT_STRIDE);
+	}
+
+	/**
+	 * Opens the index for a task file
+	 * Reuses the saved index if it is still valid, scans only appended bytes,
+	 * and rebuilds from scratch if the file was rewritten
+	 * @param file task file
+	 * @param stride lines between entries, used when the index has to be rebuilt
+	 * @return up to date index
+	 * @throws IOException if the file cannot be read or the index cannot be saved
+	 */
+	public static TaskFileIndex open(File file, int stride) throws IOException {
+		File indexFile = indexFileFor(file);
+		TaskFileIndex index = null;
+
+		// Try the saved index first
+		if (indexFile.exists()) {
+			index = read(file, indexFile);
+			if (index != null && !index.isPrefixOf(file)) {
+				index = null;
+			}
+		}
+
+		// Nothing reusable, start over
+		if (index == null) {
+			index = new TaskFileIndex(file, stride);
+			index.addEntry(0);
+		}
+
+		// Scan whatever is new and save if anything changed
+		if (index.scanFrom(index.indexedLength)) {
+			index.write(indexFile);
+		}
+		return index;
+	}
+
+	/**
+	 * Index file used for a task file
+	 * @param file task file
+	 * @return index file next to it
+	 */
+	public static File indexFileFor(File file) {
+		return new File(file.getPath() + SUFFIX);
+	}
+
+	/**
+	 * getLineCount
+	 * @return number of complete lines indexed
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * getIndexedLength
+	 * @return number of bytes covered by the index
+	 */
+	public long getIndexedLength() {
+		return indexedLength;
+	}
+
+	/**
+	 * getGeneration
+	 * Goes up each time refresh rebuilds the index, after which earlier line numbers mean nothing
+	 * @return number of rebuilds since the index was opened
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * getStride
+	 * @return lines between entries
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * Approximate heap used by the offsets
+	 * @return bytes
+	 */
+	long getSizeInBytes() {
+		return 16 + offsets.length * 8L;
+	}
+
+	/**
+	 * Line number of the closest entry at or before a line
+	 * @param line line number, starting at 0
+	 * @return line number that has an exact offset
+	 */
+	public long entryLineFor(long line) {
+		return Math.min(line / stride, entryCount - 1) * stride;
+	}
+
+	/**
+	 * Byte offset of an entry line
+	 * @param entryLine line returned by entryLineFor
+	 * @return byte offset where that line starts
+	 */
+	public long offsetOf(long entryLine) {
+		return offsets[(int) (entryLine / stride)];
+	}
+
+	/**
+	 * Rescans the task file after it has changed
+	 * Only the appended bytes are read if the indexed part is unchanged,
+	 * if the file shrank or the indexed part changed the index is rebuilt and the generation goes up
+	 * @return true if the index changed
+	 * @throws IOException if the file cannot be read or the index cannot be saved
+	 */
+	public boolean refresh() throws IOException {
+		boolean changed;
+		if (isPrefixOf(file)) {
+			changed = scanFrom(indexedLength);
+		} else {
+
+			// Shrunk or rewritten, rebuild from the start
+			entryCount = 0;
+			lineCount = 0;
+			indexedLength = 0;
+			tailChecksum = 0;
+			addEntry(0);
+			scanFrom(0);
+			generation++;
+			changed = true;
+		}
+		if (changed) {
+			write(indexFileFor(file));
+		}
+		return changed;
+	}
+
+	/**
+	 * Scans complete lines starting at a byte offset and records entries
+	 * @param start offset just after a line break (or 0)
+	 * @return true if any line was added
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean scanFrom(long start) throws IOException {
+		long before = lineCount;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long position = start;
+			while (channel.read(buffer, position) > 0) {
+				buffer.flip();
+				int limit = buffer.limit();
+				for (int i = 0; i < limit; i++) {
+					if (buffer.get(i) == '\n') {
+						lineCount++;
+						indexedLength = position + i + 1;
+
+						// Next line starts an entry
+						if (lineCount % stride == 0) {
+							addEntry(indexedLength);
+						}
+					}
+				}
+				position += limit;
+				buffer.clear();
+			}
+		}
+		if (lineCount != before) {
+			tailChecksum = checksumBefore(indexedLength);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check the indexed bytes are still the start of the file
+	 * @param target task file
+	 * @return true if the file only grew since indexing
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean isPrefixOf(File target) throws IOException {
+		return target.length() >= indexedLength && checksumBefore(indexedLength) == tailChecksum;
+	}
+
+	/**
+	 * Checksum of up to TAIL_CHECK_BYTES before an offset
+	 * @param end offset to stop at
+	 * @return CRC32 of the bytes
+	 * @throws IOException if the file cannot be read
+	 */
+	private long checksumBefore(long end) throws IOException {
+		int length = (int) Math.min(end, TAIL_CHECK_BYTES);
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, end - length + buffer.position()) < 0) {
+					return -1;
+				}
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Appends an entry offset
+	 * @param offset byte offset of the entry line
+	 */
+	private void addEntry(long offset) {
+		if (entryCount == offsets.length) {
+			offsets = Arrays.copyOf(offsets, entryCount * 2);
+		}
+		offsets[entryCount++] = offset;
+	}
+
+	/**
+	 * Reads a saved index
+	 * The fields are checked against each other before anything is allocated, so a damaged file is rebuilt
+	 * rather than failing
+	 * @param file task file
+	 * @param indexFile saved index
+	 * @return index, or null if the saved index is unreadable or inconsistent
+	 */
+	private static TaskFileIndex read(File file, File indexFile) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			int stride = in.readInt();
+			long lineCount = in.readLong();
+			long indexedLength = in.readLong();
+			long tailChecksum = in.readLong();
+			int count = in.readInt();
+
+			// One entry for line 0 and one per stride lines, each stored as a long
+			if (stride < 1 || lineCount < 0 || indexedLength < lineCount || (lineCount == 0) != (indexedLength == 0)
+					|| lineCount / stride + 1 != count || indexFile.length() != FILE_HEADER_SIZE + 8L * count) {
+				return null;
+			}
+			TaskFileIndex index = new TaskFileIndex(file, stride);
+			index.lineCount = lineCount;
+			index.indexedLength = indexedLength;
+			index.tailChecksum = tailChecksum;
+			index.offsets = new long[Math.max(count, 16)];
+			for (int i = 0; i < count; i++) {
+				index.offsets[i] = in.readLong();
+
+				// Entries start at 0 and rise, each line is at least its line break
+				long least = i == 0 ? 0 : index.offsets[i - 1] + stride;
+				if (index.offsets[i] < least || index.offsets[i] > indexedLength || (i == 0 && index.offsets[0] != 0)) {
+					return null;
+				}
+			}
+			index.entryCount = count;
+			return index;
+		} catch (IOException e) {
+
+			// Damaged index files are simply rebuilt
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the index
+	 * @param indexFile destination
+	 * @throws IOException if the file cannot be written
+	 */
+	private void write(File indexFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(stride);
+			out.writeLong(lineCount);
+			out.writeLong(indexedLength);
+			out.writeLong(tailChecksum);
+			out.writeInt(entryCount);
+			for (int i = 0; i < entryCount; i++) {
+				out.writeLong(offsets[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+
+/**
+ * Spliterator that parses Tasks lazily from a byte range of an uncompressed task file
+ * A spliterator owns every line that starts inside its range, so ranges can be split
+ * at any byte and each line is still parsed exactly once
+ * Reads through positioned FileChannel reads with a fixed buffer, so memory use is constant
+ * Used by TaskReader.stream and TaskFileValidator
+ * @author Luke Gentri
+ */
+class TaskFileSpliterator implements Spliterator<Task> {
+
+	/** Ranges smaller than this are not split further */
+	private static final long MIN_SPLIT = 64 * 1024;
+
+	/** Read buffer size */
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	/** Shared channel, positioned reads are safe across threads */
+	private final FileChannel channel;
+
+	/** File offset where the next line to return starts, -1 before the first line is found */
+	private long position;
+
+	/** Start of the owned range */
+	private long start;
+
+	/** End of the owned range (exclusive) */
+	private long end;
+
+	/** Read buffer, allocated on first read */
+	private ByteBuffer buffer;
+
+	/** File offset of the first byte in buffer */
+	private long bufferStart;
+
+	/** Bytes of the line being assembled */
+	private byte[] line = new byte[256];
+
+	/**
+	 * Constructor
+	 * @param channel open channel
+	 * @param start first owned byte
+	 * @param end end of the owned range (exclusive)
+	 */
+	TaskFileSpliterator(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.start = start;
+		this.end = end;
+		this.position = -1;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Task> action) {
+		try {
+			long lineStart = position;
+			String text = nextLine();
+			if (text == null) {
+				return false;
+			}
+			action.accept(parse(text, lineStart < 0 ? start : lineStart));
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the next line owned by this range
+	 * Also used by TaskFileValidator to scan chunks of a file
+	 * @return line without the line break, or null when the range is done
+	 * @throws IOException if the file cannot be read
+	 */
+	String nextLine() throws IOException {
+
+		// Find where the first owned line starts
+		if (position < 0) {
+			position = start == 0 ? 0 : nextLineStart(start - 1);
+		}
+
+		// Past the owned range
+		if (position >= end) {
+			return null;
+		}
+
+		// Read one line
+		int length = 0;
+		long offset = position;
+		int b;
+		while ((b = byteAt(offset)) >= 0 && b != '\n') {
+			if (length == line.length) {
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = (byte) b;
+			offset++;
+		}
+		position = b < 0 ? Long.MAX_VALUE : offset + 1;
+
+		// Trailing empty remainder is not a line
+		if (b < 0 && length == 0) {
+			return null;
+		}
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		return new String(line, 0, length, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public Spliterator<Task> trySplit() {
+
+		// Split the part not yet read in half
+		long from = position < 0 ? start : position;
+		if (from >= end || end - from < MIN_SPLIT) {
+			return null;
+		}
+		long middle = from + (end - from) / 2;
+
+		// Ordered spliterators hand out the prefix and keep the suffix
+		TaskFileSpliterator prefix = new TaskFileSpliterator(channel, from, middle);
+		prefix.position = position;
+		start = middle;
+		position = -1;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		long from = position < 0 ? start : position;
+		return Math.max(0, end - from) / 32;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+
+	/**
+	 * Finds the start of the first line after the line break at or after an offset
+	 * @param offset offset to search from
+	 * @return offset just after that line break, or Long.MAX_VALUE if there is none
+	 * @throws IOException if the file cannot be read
+	 */
+	private long nextLineStart(long offset) throws IOException {
+		int b;
+		while ((b = byteAt(offset)) >= 0) {
+			if (b == '\n') {
+				return offset + 1;
+			}
+			offset++;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Reads one byte through the buffer
+	 * @param offset file offset
+	 * @return byte value, or -1 at end of file
+	 * @throws IOException if the file cannot be read
+	 */
+	private int byteAt(long offset) throws IOException {
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.limit(0);
+		}
+		if (offset < bufferStart || offset >= bufferStart + buffer.limit()) {
+			buffer.clear();
+			bufferStart = offset;
+			if (channel.read(buffer, offset) <= 0) {
+				buffer.limit(0);
+				return -1;
+			}
+			buffer.flip();
+		}
+		return buffer.get((int) (offset - bufferStart)) & 0xFF;
+	}
+
+	/**
+	 * Parses a line, reporting invalid lines with their byte offset
+	 * @param text line without the line break
+	 * @param offset file offset of the line
+	 * @return new Task
+	 */
+	private static Task parse(String text, long offset) {
+		try {
+			return TaskReader.parseTask(text);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Invalid file format at byte " + offset, e);
+		}
+	}
+}
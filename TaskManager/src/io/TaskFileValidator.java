@@ -0,0 +1,326 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for checking a whole task file in one pass and reporting every invalid line
+ * Each problem has its line number, column and reason, up to a configurable limit
+ * Large uncompressed files are split into chunks that are scanned in parallel
+ * Can also load every valid line while writing invalid lines to a quarantine file
+ * Dependencies of loaded lines are kept, with rows renumbered past the skipped lines
+ * @author Luke Gentri
+ */
+public class TaskFileValidator {
+
+	/** Default number of problems listed */
+	public static final int DEFAULT_MAX_ERRORS = 1000;
+
+	/** Files smaller than this are scanned on one thread */
+	static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+
+	/** Chunks per processor for large files */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** Maximum number of problems listed */
+	private final int maxErrors;
+
+	/**
+	 * Constructor listing up to DEFAULT_MAX_ERRORS problems
+	 */
+	public TaskFileValidator() {
+		this(DEFAULT_MAX_ERRORS);
+	}
+
+	/**
+	 * Constructor
+	 * @param maxErrors maximum number of problems listed, later ones are only counted
+	 */
+	public TaskFileValidator(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Checks every line of a task file
+	 * @param file task file, compressed or not
+	 * @return line count and problems
+	 * @throws FileNotFoundException if the file does not exist
+	 * @throws DataFormatException if the file is empty or its compression is invalid
+	 * @throws IOException if the file cannot be read
+	 */
+	public ValidationResult validate(File file) throws DataFormatException, IOException {
+		return scan(file, false, null);
+	}
+
+	/**
+	 * Loads every valid line of a task file, skipping invalid ones
+	 * A dependency on a skipped line, a missing row or one that would form a cycle is dropped
+	 * @param file task file, compressed or not
+	 * @param quarantine file to receive the invalid lines unchanged, or null to drop them
+	 * @return line count, problems and a TaskList of the valid Tasks
+	 * @throws FileNotFoundException if the file does not exist
+	 * @throws DataFormatException if the file is empty or its compression is invalid
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public ValidationResult load(File file, File quarantine) throws DataFormatException, IOException {
+		return scan(file, true, quarantine);
+	}
+
+	/**
+	 * Interface for a source of lines
+	 */
+	private interface LineSource {
+
+		/**
+		 * Next line
+		 * @return line without the line break, or null at the end
+		 * @throws IOException if reading fails
+		 */
+		String nextLine() throws IOException;
+	}
+
+	/**
+	 * Results for one chunk of the file, line numbers relative to the chunk
+	 */
+	private static class Chunk {
+
+		/** Lines in the chunk */
+		long lines;
+
+		/** Invalid lines in the chunk */
+		long errorCount;
+
+		/** First problems in the chunk */
+		final List<TaskFormatException> errors = new ArrayList<>();
+
+		/** Valid Tasks, when loading */
+		final List<Task> tasks = new ArrayList<>();
+
+		/** Invalid lines, when quarantining */
+		final List<String> rejected = new ArrayList<>();
+
+		/** (index in tasks, blocker row in the file) pairs, when loading */
+		int[] edges = new int[0];
+
+		/** Number of ints used in edges */
+		int edgeCount;
+
+		/** Line numbers of the invalid lines, when loading */
+		long[] invalidLines = new long[0];
+
+		/** Number of longs used in invalidLines */
+		int invalidCount;
+	}
+
+	/**
+	 * Scans a file in one or more chunks and combines the results
+	 * @param file task file
+	 * @param keepTasks true to collect valid Tasks
+	 * @param quarantine file for invalid lines, or null
+	 * @return combined result
+	 * @throws DataFormatException if the file is empty or its compression is invalid
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private ValidationResult scan(File file, boolean keepTasks, File quarantine) throws DataFormatException, IOException {
+
+		// Same empty file rule as loading
+		if (file.exists() && file.length() == 0) {
+			throw new DataFormatException("Empty file");
+		}
+
+		List<Chunk> chunks;
+		if (TaskReader.isGzipFile(file)) {
+
+			// Compressed files can only be read front to back
+			try (BufferedReader reader = TaskReader.openReader(file)) {
+				chunks = Collections.singletonList(scanChunk(reader::readLine, keepTasks, quarantine != null));
+			}
+		} else {
+			chunks = scanChunks(file, keepTasks, quarantine != null);
+		}
+
+		// Combine chunks in file order
+		long lines = 0;
+		long errorCount = 0;
+		List<TaskFormatException> errors = new ArrayList<>();
+		TaskList tasks = keepTasks ? new TaskList() : null;
+		List<Task> loaded = new ArrayList<>();
+		int[] edges = new int[0];
+		int edgeCount = 0;
+		long[] invalidLines = new long[0];
+		int invalidCount = 0;
+		if (tasks != null) {
+			tasks.beginBatch();
+		}
+		for (Chunk chunk : chunks) {
+			for (TaskFormatException error : chunk.errors) {
+				if (errors.size() < maxErrors) {
+					errors.add(error.atLine(lines + error.getLine()));
+				}
+			}
+			if (tasks != null) {
+
+				// Chunk indexes and line numbers become file-wide
+				if (edgeCount + chunk.edgeCount > edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + chunk.edgeCount)));
+				}
+				for (int i = 0; i < chunk.edgeCount; i += 2) {
+					edges[edgeCount++] = loaded.size() + chunk.edges[i];
+					edges[edgeCount++] = chunk.edges[i + 1];
+				}
+				if (invalidCount + chunk.invalidCount > invalidLines.length) {
+					invalidLines = Arrays.copyOf(invalidLines, Math.max(16, 2 * (invalidCount + chunk.invalidCount)));
+				}
+				for (int i = 0; i < chunk.invalidCount; i++) {
+					invalidLines[invalidCount++] = lines + chunk.invalidLines[i];
+				}
+				for (Task task : chunk.tasks) {
+					tasks.addTask(task);
+					loaded.add(task);
+				}
+			}
+			lines += chunk.lines;
+			errorCount += chunk.errorCount;
+		}
+		if (tasks != null) {
+			addDependencies(tasks, loaded, edges, edgeCount, invalidLines, invalidCount);
+			tasks.endBatch();
+		}
+
+		// Write the invalid lines as they were
+		if (quarantine != null && errorCount > 0) {
+			try (Writer writer = TaskReader.openWriter(quarantine, false)) {
+				for (Chunk chunk : chunks) {
+					for (String line : chunk.rejected) {
+						writer.write(line);
+						writer.write('\n');
+					}
+				}
+			}
+		}
+		return new ValidationResult(lines, errorCount, errors, tasks);
+	}
+
+	/**
+	 * Adds the dependencies of the loaded Tasks, renumbering blocker rows past the invalid lines
+	 * Dependencies that cannot be added are dropped, the Tasks are kept
+	 * @param list TaskList holding the loaded Tasks
+	 * @param loaded loaded Tasks in file order
+	 * @param edges (index in loaded, blocker row in the file) pairs, rows from 1
+	 * @param edgeCount number of ints used in edges
+	 * @param invalidLines line numbers of the invalid lines, ascending
+	 * @param invalidCount number of longs used in invalidLines
+	 */
+	private static void addDependencies(TaskList list, List<Task> loaded, int[] edges, int edgeCount, long[] invalidLines, int invalidCount) {
+		for (int i = 0; i < edgeCount; i += 2) {
+			int row = edges[i + 1];
+			int skipped = Arrays.binarySearch(invalidLines, 0, invalidCount, row);
+			if (skipped >= 0) {
+
+				// The blocker was not loaded
+				continue;
+			}
+			int index = row - 1 - (-skipped - 1);
+			if (index < 0 || index >= loaded.size()) {
+				continue;
+			}
+			try {
+				list.addDependency(loaded.get(edges[i]), loaded.get(index));
+			} catch (IllegalArgumentException e) {
+
+				// Would form a cycle, the Task waits for nothing new
+			}
+		}
+	}
+
+	/**
+	 * Splits an uncompressed file by byte range and scans the chunks in parallel
+	 * @param file task file
+	 * @param keepTasks true to collect valid Tasks
+	 * @param keepRejected true to collect invalid lines
+	 * @return chunk results in file order
+	 * @throws IOException if the file cannot be read
+	 */
+	private List<Chunk> scanChunks(File file, final boolean keepTasks, final boolean keepRejected) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			final int count = size < PARALLEL_THRESHOLD ? 1 : Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD;
+			try {
+				return IntStream.range(0, count).parallel().mapToObj(i -> {
+					TaskFileSpliterator range = new TaskFileSpliterator(channel, size * i / count, size * (i + 1) / count);
+					try {
+						return scanChunk(range::nextLine, keepTasks, keepRejected);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}).collect(Collectors.toList());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Scans lines, recording problems with line numbers relative to the chunk
+	 * @param source lines of the chunk
+	 * @param keepTasks true to collect valid Tasks
+	 * @param keepRejected true to collect invalid lines
+	 * @return chunk result
+	 * @throws IOException if reading fails
+	 */
+	private Chunk scanChunk(LineSource source, boolean keepTasks, boolean keepRejected) throws IOException {
+		Chunk chunk = new Chunk();
+		List<Integer> blockers = keepTasks ? new ArrayList<>() : null;
+		String line;
+		while ((line = source.nextLine()) != null) {
+			chunk.lines++;
+			try {
+				if (blockers != null) {
+					blockers.clear();
+				}
+				Task task = TaskReader.parseTask(line, blockers);
+				if (keepTasks) {
+					if (chunk.edgeCount + 2 * blockers.size() > chunk.edges.length) {
+						chunk.edges = Arrays.copyOf(chunk.edges, Math.max(16, 2 * (chunk.edgeCount + 2 * blockers.size())));
+					}
+					for (int blocker : blockers) {
+						chunk.edges[chunk.edgeCount++] = chunk.tasks.size();
+						chunk.edges[chunk.edgeCount++] = blocker;
+					}
+					chunk.tasks.add(task);
+				}
+			} catch (TaskFormatException e) {
+				chunk.errorCount++;
+				if (chunk.errors.size() < maxErrors) {
+					chunk.errors.add(e.atLine(chunk.lines));
+				}
+				if (keepRejected) {
+					chunk.rejected.add(line);
+				}
+				if (keepTasks) {
+					if (chunk.invalidCount == chunk.invalidLines.length) {
+						chunk.invalidLines = Arrays.copyOf(chunk.invalidLines, Math.max(16, 2 * chunk.invalidCount));
+					}
+					chunk.invalidLines[chunk.invalidCount++] = chunk.lines;
+				}
+			}
+		}
+		return chunk;
+	}
+}
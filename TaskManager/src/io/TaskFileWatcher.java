@@ -0,0 +1,420 @@
+package io;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for watching a loaded task file for changes made by other programs
+ * When lines are appended only the new bytes are parsed, any other change reloads the whole file
+ * Runs on its own daemon thread and waits for bursts of changes to settle before reading
+ * Listener methods are called on that thread, so a GUI must hand the results to its own thread
+ * @author Luke Gentri
+ */
+public class TaskFileWatcher implements Closeable {
+
+	/** Default quiet time before a burst of changes is handled */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	/** Bytes before the known end that are checksummed to detect rewrites */
+	private static final int TAIL_CHECK_BYTES = 4096;
+
+	/**
+	 * Interface for receiving changes to a watched file
+	 */
+	public interface Listener {
+
+		/**
+		 * Complete lines were appended to the file
+		 * @param tasks new Tasks in file order, with id 0
+		 */
+		void tasksAppended(List<Task> tasks);
+
+		/**
+		 * The file was changed in some other way and has been loaded again
+		 * @param tasks every Task in the file
+		 */
+		void fileReloaded(TaskList tasks);
+
+		/**
+		 * The file could not be read or is invalid, watching continues
+		 * @param e the problem
+		 */
+		void watchFailed(Exception e);
+	}
+
+	/** Watched task file */
+	private final File file;
+
+	/** Receives changes */
+	private final Listener listener;
+
+	/** Quiet time before handling changes */
+	private final long debounceMillis;
+
+	/** Watches the directory holding the file */
+	private final WatchService service;
+
+	/** Thread waiting for changes */
+	private final Thread thread;
+
+	/** Bytes already handled, always just after a line break unless the file ends without one */
+	private long knownLength;
+
+	/** Checksum of the bytes just before knownLength */
+	private long knownChecksum;
+
+	/** Modification time when knownLength was recorded */
+	private long knownModified;
+
+	/** Writes in progress that changes must not be reported for */
+	private int suspended;
+
+	/**
+	 * Starts watching with the default quiet time
+	 * @param file task file that is currently loaded
+	 * @param listener receives changes
+	 * @throws IOException if the file cannot be watched
+	 */
+	public TaskFileWatcher(File file, Listener listener) throws IOException {
+		this(file, listener, DEFAULT_DEBOUNCE_MILLIS);
+	}
+
+	/**
+	 * Starts watching
+	 * The file's current contents are taken as already loaded
+	 * @param file task file that is currently loaded
+	 * @param listener receives changes
+	 * @param debounceMillis quiet time before a burst of changes is handled
+	 * @throws IOException if the file cannot be watched
+	 */
+	public TaskFileWatcher(File file, Listener listener, long debounceMillis) throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.listener = listener;
+		this.debounceMillis = debounceMillis;
+		resync();
+
+		// Files cannot be watched directly, watch their directory
+		Path directory = this.file.getParentFile().toPath();
+		this.service = directory.getFileSystem().newWatchService();
+		directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "task-file-watcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * getFile
+	 * @return watched file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Takes the file's current contents as already loaded
+	 * Call after writing the watched file so the write is not reported back as a change, suspend and resume
+	 * around the write also keep a check during it from reporting a partial file
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized void resync() throws IOException {
+		knownModified = file.lastModified();
+		knownLength = file.length();
+		knownChecksum = checksumBefore(knownLength);
+	}
+
+	/**
+	 * Ignores changes until resume, call before writing the watched file
+	 * Suspending before the write starts keeps a debounced check from reading a partly written save as a change
+	 * Calls nest, every call must be matched by resume (use try/finally)
+	 */
+	public synchronized void suspend() {
+		suspended++;
+	}
+
+	/**
+	 * Ends a suspend, taking the file's current contents as already loaded once the last one ends
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized void resume() throws IOException {
+		if (--suspended == 0) {
+			resync();
+		}
+	}
+
+	/**
+	 * Stops watching
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+		thread.interrupt();
+	}
+
+	/**
+	 * Waits for changes to the file until closed
+	 */
+	private void watch() {
+		String name = file.getName();
+		try {
+			while (true) {
+
+				// Wait for a change to the file
+				WatchKey key = service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW || name.equals(String.valueOf(event.context()))) {
+						changed = true;
+					}
+				}
+				key.reset();
+				if (!changed) {
+					continue;
+				}
+
+				// Let a burst of writes settle
+				while ((key = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					key.pollEvents();
+					key.reset();
+				}
+
+				try {
+					check();
+				} catch (IOException | DataFormatException e) {
+					listener.watchFailed(e);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed
+		}
+	}
+
+	/**
+	 * Compares the file with what has been handled and reports any change
+	 * Called by the watch thread, package-private so tests can call it directly
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if the file is invalid
+	 */
+	synchronized void check() throws IOException, DataFormatException {
+
+		// Our own write in progress, or wait for a deleted file to come back
+		if (suspended > 0 || !file.exists()) {
+			return;
+		}
+		long length = file.length();
+		long modified = file.lastModified();
+		boolean prefixKept = length >= knownLength && checksumBefore(knownLength) == knownChecksum;
+
+		// Unchanged
+		if (prefixKept && length == knownLength && modified == knownModified) {
+			return;
+		}
+
+		// Appended to after a complete line, compressed files are always reloaded
+		if (prefixKept && length > knownLength && !TaskReader.isGzipFile(file)) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				if (knownLength == 0 || endsLine(channel, knownLength)) {
+					readAppended(channel, length);
+					return;
+				}
+			}
+		}
+		reload();
+	}
+
+	/**
+	 * Parses the complete lines between knownLength and the end of the file
+	 * A final line without a line break is left for the next change
+	 * Falls back to a full reload if a new line is invalid, so the problem is reported with its line number,
+ * or if a new line waits for other rows, so the dependency is linked
+	 * @param channel open channel
+	 * @param length current file length
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if the file is invalid
+	 */
+	private void readAppended(FileChannel channel, long length) throws IOException, DataFormatException {
+		long end = lastLineEnd(channel, knownLength, length);
+		if (end <= knownLength) {
+			return;
+		}
+		List<Task> tasks = new ArrayList<>();
+		List<Integer> blockers = new ArrayList<>();
+		TaskFileSpliterator lines = new TaskFileSpliterator(channel, knownLength, end);
+		String line;
+		try {
+			while ((line = lines.nextLine()) != null) {
+				tasks.add(TaskReader.parseTask(line, blockers));
+			}
+		} catch (TaskFormatException e) {
+			reload();
+			return;
+		}
+
+		// Dependencies name rows of the whole file, only a reload can link them
+		if (!blockers.isEmpty()) {
+			reload();
+			return;
+		}
+		knownLength = end;
+		knownChecksum = checksumBefore(end);
+		knownModified = file.lastModified();
+		listener.tasksAppended(tasks);
+	}
+
+	/**
+	 * Loads the whole file again and reports it
+	 * Only lines complete when the reload starts are read, later appends are picked up by the next change
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if the file is empty or invalid
+	 */
+	private void reload() throws IOException, DataFormatException {
+		long modified = file.lastModified();
+		TaskList tasks;
+		long end;
+		if (TaskReader.isGzipFile(file)) {
+			end = file.length();
+			tasks = new TaskReader().loadFromFile(file);
+		} else {
+			tasks = new TaskList();
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long length = channel.size();
+				if (length == 0) {
+					throw new DataFormatException("Empty file");
+				}
+				end = lastLineEnd(channel, 0, length);
+				if (end == 0) {
+					end = length;
+				}
+
+				// Same rules as TaskReader.loadInto, one event for the whole file
+				TaskFileSpliterator lines = new TaskFileSpliterator(channel, 0, end);
+				long lineNumber = 0;
+				tasks.beginBatch();
+				try {
+					List<Task> loaded = new ArrayList<>();
+					List<Integer> blockers = new ArrayList<>();
+					int[] edges = new int[0];
+					int edgeCount = 0;
+					String line;
+					while ((line = lines.nextLine()) != null) {
+						lineNumber++;
+						blockers.clear();
+						Task task = TaskReader.parseTask(line, blockers);
+						tasks.addTask(task);
+						loaded.add(task);
+						if (edgeCount + 2 * blockers.size() > edges.length) {
+							edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + 2 * blockers.size())));
+						}
+						for (int blocker : blockers) {
+							edges[edgeCount++] = loaded.size();
+							edges[edgeCount++] = blocker;
+						}
+					}
+					TaskReader.addDependencies(tasks, loaded, edges, edgeCount);
+				} catch (TaskFormatException e) {
+					throw e.getLine() > 0 ? e : e.atLine(lineNumber);
+				} finally {
+					tasks.endBatch();
+				}
+			}
+		}
+		knownLength = end;
+		knownChecksum = checksumBefore(end);
+		knownModified = modified;
+		listener.fileReloaded(tasks);
+	}
+
+	/**
+	 * Checks the byte before an offset is a line break
+	 * @param channel open channel
+	 * @param offset offset after the byte
+	 * @return true if a line ends just before offset
+	 * @throws IOException if the file cannot be read
+	 */
+	private static boolean endsLine(FileChannel channel, long offset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(1);
+		return channel.read(buffer, offset - 1) == 1 && buffer.get(0) == '\n';
+	}
+
+	/**
+	 * Finds the end of the last complete line in a range
+	 * @param channel open channel
+	 * @param from start of the range
+	 * @param to end of the range (exclusive)
+	 * @return offset just after the last line break, or from if there is none
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long lastLineEnd(FileChannel channel, long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(TaskReader.BUFFER_SIZE);
+		long position = to;
+		while (position > from) {
+			int length = (int) Math.min(buffer.capacity(), position - from);
+			buffer.clear().limit(length);
+			long start = position - length;
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					break;
+				}
+			}
+			for (int i = buffer.position() - 1; i >= 0; i--) {
+				if (buffer.get(i) == '\n') {
+					return start + i + 1;
+				}
+			}
+			position = start;
+		}
+		return from;
+	}
+
+	/**
+	 * Checksum of up to TAIL_CHECK_BYTES before an offset
+	 * @param end offset to stop at
+	 * @return CRC32 of the bytes, -1 if the file is shorter
+	 * @throws IOException if the file cannot be read
+	 */
+	private long checksumBefore(long end) throws IOException {
+		int length = (int) Math.min(end, TAIL_CHECK_BYTES);
+		if (length == 0 || !file.exists()) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, end - length + buffer.position()) < 0) {
+					return -1;
+				}
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, length);
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,79 @@
+package io;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * DataFormatException for a single invalid line of a task file
+ * Records where the problem is (line and column, both starting at 1) and why
+ * Thrown by TaskReader when loading and collected by TaskFileValidator
+ * @author Luke Gentri
+ */
+public class TaskFormatException extends DataFormatException {
+
+	/** Serial version */
+	private static final long serialVersionUID = 1L;
+
+	/** Line number, 0 if not known */
+	private final long line;
+
+	/** Column number */
+	private final int column;
+
+	/** Description of the problem */
+	private final String reason;
+
+	/**
+	 * Constructor for a problem whose line is not yet known
+	 * @param column column number
+	 * @param reason description of the problem
+	 */
+	public TaskFormatException(int column, String reason) {
+		this(0, column, reason);
+	}
+
+	/**
+	 * Constructor
+	 * @param line line number
+	 * @param column column number
+	 * @param reason description of the problem
+	 */
+	public TaskFormatException(long line, int column, String reason) {
+		super("Invalid file format: " + (line > 0 ? "line " + line + ", " : "") + "column " + column + ": " + reason);
+		this.line = line;
+		this.column = column;
+		this.reason = reason;
+	}
+
+	/**
+	 * Copy of this problem at a known line
+	 * @param lineNumber line number
+	 * @return new exception with the line set
+	 */
+	public TaskFormatException atLine(long lineNumber) {
+		return new TaskFormatException(lineNumber, column, reason);
+	}
+
+	/**
+	 * getLine
+	 * @return line number, 0 if not known
+	 */
+	public long getLine() {
+		return line;
+	}
+
+	/**
+	 * getColumn
+	 * @return column number
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	/**
+	 * getReason
+	 * @return description of the problem
+	 */
+	public String getReason() {
+		return reason;
+	}
+}
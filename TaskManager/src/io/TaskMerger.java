@@ -0,0 +1,243 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
+
+import model.Task;
+import model.TaskKey;
+import model.TaskList;
+
+/**
+ * Class for importing several task files into one TaskList without duplicates
+ * Files are parsed in parallel, then Tasks are kept in file order, skipping any whose
+ * TaskKey fingerprint has been seen before, so the merge is linear in the total number of rows
+ * The first copy of a duplicate wins, and dependencies naming a duplicate move to the copy kept
+ * @author Luke Gentri
+ */
+public class TaskMerger {
+
+	/** Fields that make Tasks duplicates */
+	private final TaskKey key;
+
+	/** Rows read by the last merge */
+	private long rowCount;
+
+	/** Duplicates skipped by the last merge */
+	private long duplicateCount;
+
+	/**
+	 * Constructor
+	 * @param key fields that make two Tasks duplicates
+	 */
+	public TaskMerger(TaskKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Merges files into a new TaskList
+	 * @param files task files, compressed or not, earlier files win duplicates
+	 * @return new TaskList with one copy of each Task
+	 * @throws DataFormatException if a file is invalid, naming the file and line
+	 * @throws IOException if a file cannot be read
+	 */
+	public TaskList merge(List<File> files) throws DataFormatException, IOException {
+		TaskList list = new TaskList();
+		mergeInto(files, list);
+		return list;
+	}
+
+	/**
+	 * Merges files into an existing TaskList, skipping Tasks it already has
+	 * Nothing is added if any file is invalid, listeners receive one coalesced event
+	 * Dependencies that would only form a cycle once duplicates are merged are left out
+	 * @param files task files, compressed or not, earlier files win duplicates
+	 * @param list TaskList to add to
+	 * @return number of Tasks added
+	 * @throws DataFormatException if a file is invalid, naming the file and line
+	 * @throws IOException if a file cannot be read
+	 */
+	public int mergeInto(List<File> files, TaskList list) throws DataFormatException, IOException {
+
+		// Parse and fingerprint every file at once
+		final int count = files.size();
+		final List<ParsedFile> parsed = new ArrayList<>(count);
+		final long[][] fingerprints = new long[count][];
+		final Exception[] failures = new Exception[count];
+		for (int i = 0; i < count; i++) {
+			parsed.add(null);
+		}
+		IntStream.range(0, count).parallel().forEach(i -> {
+			try {
+				ParsedFile file = read(files.get(i));
+				long[] prints = new long[file.tasks.size()];
+				for (int j = 0; j < prints.length; j++) {
+					prints[j] = key.fingerprint(file.tasks.get(j));
+				}
+				parsed.set(i, file);
+				fingerprints[i] = prints;
+			} catch (DataFormatException | IOException e) {
+				failures[i] = e;
+			}
+		});
+
+		// Report the first failure in file order
+		int total = 0;
+		boolean linked = false;
+		for (int i = 0; i < count; i++) {
+			if (failures[i] instanceof IOException) {
+				throw (IOException) failures[i];
+			}
+			if (failures[i] != null) {
+				throw new DataFormatException(files.get(i).getName() + ": " + failures[i].getMessage());
+			}
+			total += fingerprints[i].length;
+			linked |= parsed.get(i).edges.length > 0;
+		}
+
+		// Keep the first Task with each fingerprint, starting with those already in the list,
+		// and remember which Task each fingerprint kept only if a dependency must be moved to it
+		List<Task> existing = list.getAllTasks();
+		LongHashSet seen = new LongHashSet(existing.size() + total);
+		Map<Long, Task> kept = linked ? new HashMap<Long, Task>() : null;
+		for (Task task : existing) {
+			long fingerprint = key.fingerprint(task);
+			if (seen.add(fingerprint) && kept != null) {
+				kept.put(fingerprint, task);
+			}
+		}
+		List<Task> added = new ArrayList<>(total);
+		for (int i = 0; i < count; i++) {
+			List<Task> tasks = parsed.get(i).tasks;
+			for (int j = 0; j < tasks.size(); j++) {
+				if (seen.add(fingerprints[i][j])) {
+					added.add(tasks.get(j));
+					if (kept != null) {
+						kept.put(fingerprints[i][j], tasks.get(j));
+					}
+				}
+			}
+		}
+		list.beginBatch();
+		try {
+			list.addTasks(added);
+			for (int i = 0; kept != null && i < count; i++) {
+				int[] edges = parsed.get(i).edges;
+				for (int j = 0; j < edges.length; j += 2) {
+					Task task = kept.get(fingerprints[i][edges[j] - 1]);
+					Task blocker = kept.get(fingerprints[i][edges[j + 1] - 1]);
+					if (task == blocker) {
+						continue;
+					}
+					try {
+						list.addDependency(task, blocker);
+					} catch (IllegalArgumentException e) {
+
+						// Duplicates from different files closed a cycle, the Task waits for nothing new
+					}
+				}
+			}
+		} finally {
+			list.endBatch();
+		}
+
+		rowCount = total;
+		duplicateCount = total - added.size();
+		return added.size();
+	}
+
+	/**
+	 * getRowCount
+	 * @return rows read by the last merge
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * getDuplicateCount
+	 * @return duplicate rows skipped by the last merge
+	 */
+	public long getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	/**
+	 * Parses every line of one file with its after fields, an empty file has no Tasks
+	 * Dependencies are checked on copies of the Tasks, so a file whose own rows form a cycle is invalid
+	 * @param file task file
+	 * @return Tasks in file order and their dependencies
+	 * @throws DataFormatException if a line, a dependency or the compression is invalid
+	 * @throws IOException if the file cannot be read
+	 */
+	private static ParsedFile read(File file) throws DataFormatException, IOException {
+		List<Task> tasks = new ArrayList<>();
+		List<Integer> blockers = new ArrayList<>();
+		int[] edges = new int[0];
+		int edgeCount = 0;
+		if (file.exists() && file.length() == 0) {
+			return new ParsedFile(tasks, edges);
+		}
+		long lineNumber = 0;
+		try (BufferedReader reader = TaskReader.openReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				blockers.clear();
+				tasks.add(TaskReader.parseTask(line, blockers));
+				if (edgeCount + 2 * blockers.size() > edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + 2 * blockers.size())));
+				}
+				for (int blocker : blockers) {
+					edges[edgeCount++] = tasks.size();
+					edges[edgeCount++] = blocker;
+				}
+			}
+		} catch (TaskFormatException e) {
+			throw e.atLine(lineNumber);
+		} catch (ZipException | EOFException e) {
+			throw new DataFormatException("Invalid compressed file");
+		}
+		if (edgeCount > 0) {
+			TaskList check = new TaskList();
+			List<Task> copies = new ArrayList<>(tasks.size());
+			for (Task task : tasks) {
+				copies.add(new Task(task));
+			}
+			check.addTasks(copies);
+			TaskReader.addDependencies(check, copies, edges, edgeCount);
+		}
+		return new ParsedFile(tasks, Arrays.copyOf(edges, edgeCount));
+	}
+
+	/**
+	 * Tasks of one file with the dependencies among them
+	 */
+	private static final class ParsedFile {
+
+		/** Tasks in file order */
+		final List<Task> tasks;
+
+		/** (row, blocker row) pairs, rows from 1 */
+		final int[] edges;
+
+		/**
+		 * Constructor
+		 * @param tasks Tasks in file order
+		 * @param edges dependencies as row pairs
+		 */
+		ParsedFile(List<Task> tasks, int[] edges) {
+			this.tasks = tasks;
+			this.edges = edges;
+		}
+	}
+}
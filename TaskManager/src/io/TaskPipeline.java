@@ -0,0 +1,819 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+import model.TaskKey;
+
+/**
+ * Streaming stages for batch jobs over task files, used by the command-line tool
+ * Sources, filters and sinks pass one Task at a time, so files larger than the heap go through
+ * in constant memory, only sorting holds rows and it spills sorted runs to disk beyond a limit
+ * The file format follows the extension: .log is a TaskStore, anything else is CSV, gzip-compressed
+ * when the name ends in .gz (and detected by its magic bytes when read)
+ * CSV keeps no completion state, dependencies go from source to sink through a Links table given to both,
+ * which renumbers them to the rows or ids written
+ * @author Luke Gentri
+ */
+public final class TaskPipeline {
+
+	/** Rows sorted in memory before a run is spilled, by default */
+	public static final int DEFAULT_RUN_SIZE = 200000;
+
+	/** Runs merged at once, more runs are merged in several passes to bound open files */
+	static final int MAX_FAN_IN = 64;
+
+	/** Ids read from a TaskStore per scan */
+	private static final int SCAN_BATCH = 1024;
+
+	/**
+	 * Not instantiated
+	 */
+	private TaskPipeline() {
+	}
+
+	/**
+	 * Checks whether a file name selects a TaskStore
+	 * @param file task file
+	 * @return true if the name ends in .log
+	 */
+	public static boolean isStore(File file) {
+		return file.getName().toLowerCase().endsWith(TaskStore.EXTENSION);
+	}
+
+	/**
+	 * Lazily reads the Tasks of a file, in file order for CSV and id order for a TaskStore
+	 * The file stays open until the stream is closed, use try-with-resources
+	 * An invalid CSV line ends the stream with an IllegalStateException
+	 * @param file task file
+	 * @return Stream of Tasks
+	 * @throws DataFormatException if the file is empty, or not a valid store or compressed file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static Stream<Task> open(File file) throws DataFormatException, IOException {
+		if (isStore(file)) {
+			return openStore(file);
+		}
+		if (file.exists() && file.length() == 0) {
+			throw new DataFormatException("Empty file");
+		}
+		return new TaskReader().stream(file);
+	}
+
+	/**
+	 * Lazily reads several files one after another, each opened once the previous one is used up
+	 * @param files task files, in order
+	 * @return Stream of every file's Tasks, closing it closes the open file
+	 */
+	public static Stream<Task> concat(List<File> files) {
+		return concat(files, null);
+	}
+
+	/**
+	 * Lazily reads several files one after another, recording their dependencies
+	 * Each Task gets an id unique across the files, and links receives its blockers by those ids
+	 * An after field naming a row past the end of its file ends the stream with an IllegalStateException
+	 * @param files task files, in order
+	 * @param links table for a sink to write the dependencies from, or null to drop them
+	 * @return Stream of every file's Tasks, closing it closes the open file
+	 */
+	public static Stream<Task> concat(List<File> files, Links links) {
+		final FileSequence sequence = new FileSequence(files, links);
+		return StreamSupport.stream(sequence, false).onClose(() -> sequence.closeCurrent());
+	}
+
+	/**
+	 * Filter keeping the first Task with each fingerprint, for Stream.filter
+	 * Holds 8 bytes per distinct Task, not the Tasks themselves
+	 * @param key fields that make two Tasks duplicates
+	 * @return stateful predicate, for one sequential stream
+	 */
+	public static Predicate<Task> distinct(final TaskKey key) {
+		final LongHashSet seen = new LongHashSet(1024);
+		return task -> seen.add(key.fingerprint(task));
+	}
+
+	/**
+	 * Sorts a stream that may not fit in memory, keeping equal Tasks in their original order
+	 * Sorts runs of runSize Tasks in memory, spills each to a temporary file and merges the runs,
+	 * in several passes if there are more than MAX_FAN_IN, input that fits in one run never touches disk
+	 * The input is read completely before this returns, the result must be closed to delete the runs
+	 * @param tasks Tasks to sort, closed once read
+	 * @param order comparator
+	 * @param runSize Tasks sorted in memory at once
+	 * @param directory directory for the runs, or null for the default temporary directory
+	 * @return sorted Stream of Tasks
+	 * @throws IOException if a run cannot be written or read
+	 */
+	public static Stream<Task> sort(Stream<Task> tasks, final Comparator<Task> order, int runSize, File directory) throws IOException {
+		final List<File> runs = new ArrayList<>();
+		List<Task> run = new ArrayList<>();
+		try {
+			Iterator<Task> input = tasks.iterator();
+			while (input.hasNext()) {
+				run.add(input.next());
+				if (run.size() == runSize) {
+					runs.add(spill(run, order, directory));
+					run = new ArrayList<>();
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			deleteAll(runs);
+			throw e;
+		} finally {
+			tasks.close();
+		}
+
+		// Small inputs stay in memory
+		if (runs.isEmpty()) {
+			run.sort(order);
+			return run.stream();
+		}
+		try {
+			if (!run.isEmpty()) {
+				runs.add(spill(run, order, directory));
+			}
+
+			// Merge neighbouring groups of runs into longer runs until one pass can merge the rest,
+			// each merged run takes the place of its group so ties still go to the earlier run
+			while (runs.size() > MAX_FAN_IN) {
+				for (int start = 0; start < runs.size(); start++) {
+					List<File> group = runs.subList(start, Math.min(start + MAX_FAN_IN, runs.size()));
+					File merged = File.createTempFile("run", ".bin", directory);
+					try (Merge merge = new Merge(group, order); DataOutputStream out = openRun(merged)) {
+						while (merge.hasNext()) {
+							out.writeBoolean(true);
+							TaskSerializer.writeTask(merge.next(), out);
+						}
+						out.writeBoolean(false);
+					} catch (IOException | RuntimeException e) {
+						merged.delete();
+						throw e;
+					}
+					deleteAll(group);
+					group.clear();
+					runs.add(start, merged);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			deleteAll(runs);
+			throw e;
+		}
+		final Merge merge = new Merge(runs, order);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> {
+					merge.close();
+					deleteAll(runs);
+				});
+	}
+
+	/**
+	 * Writes a stream to a file in the format its name selects, replacing the file once complete
+	 * Tasks written to a TaskStore are numbered from 1 in stream order
+	 * @param tasks Tasks to write, closed once written
+	 * @param file destination
+	 * @return number of Tasks written
+	 * @throws IOException if the file cannot be written
+	 * @throws DataFormatException if a store cannot be created
+	 */
+	public static long write(Stream<Task> tasks, File file) throws IOException, DataFormatException {
+		return write(tasks, file, null);
+	}
+
+	/**
+	 * Writes a stream to a file in the format its name selects with the dependencies among the Tasks written
+	 * @param tasks Tasks to write, closed once written
+	 * @param file destination
+	 * @param links dependencies recorded by the source, or null
+	 * @return number of Tasks written
+	 * @throws IOException if the file cannot be written
+	 * @throws DataFormatException if a store cannot be created
+	 */
+	public static long write(Stream<Task> tasks, File file, Links links) throws IOException, DataFormatException {
+
+		// Written beside the destination so the source may be the destination, ending in the same extension
+		File temp = File.createTempFile("tmp", "-" + file.getName(), file.getAbsoluteFile().getParentFile());
+		long count;
+		try {
+			count = isStore(file) ? append(tasks, temp, links) : writeText(tasks, temp, links);
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+		return count;
+	}
+
+	/**
+	 * Adds a stream's Tasks to a TaskStore after the Tasks already in it
+	 * @param tasks Tasks to add, closed once written
+	 * @param file store, created if it does not exist
+	 * @return number of Tasks added
+	 * @throws IOException if the store cannot be written
+	 * @throws DataFormatException if the file is not a task store
+	 */
+	public static long append(Stream<Task> tasks, File file) throws IOException, DataFormatException {
+		return append(tasks, file, null);
+	}
+
+	/**
+	 * Adds a stream's Tasks to a TaskStore after the Tasks already in it, with the dependencies among them
+	 * Tasks that wait for others are stored again with their blockers once every Task is in
+	 * @param tasks Tasks to add, closed once written
+	 * @param file store, created if it does not exist
+	 * @param links dependencies recorded by the source, or null
+	 * @return number of Tasks added
+	 * @throws IOException if the store cannot be written
+	 * @throws DataFormatException if the file is not a task store
+	 */
+	public static long append(Stream<Task> tasks, File file, Links links) throws IOException, DataFormatException {
+		File order = links == null ? null : File.createTempFile("ids", ".bin", file.getAbsoluteFile().getParentFile());
+		long count = 0;
+		try (TaskStore store = new TaskStore(file); Stream<Task> input = tasks) {
+			int firstId = store.size() == 0 ? 0 : store.ids().last();
+			int id = firstId;
+			try (DataOutputStream ids = order == null ? null : openRun(order)) {
+				Iterator<Task> iterator = input.iterator();
+				while (iterator.hasNext()) {
+					Task task = new Task(iterator.next());
+					if (ids != null) {
+						ids.writeInt(task.getId());
+					}
+					task.setId(++id);
+					store.put(task);
+					count++;
+				}
+			}
+
+			// Row n of this append is stored under id firstId + n
+			long[] pairs = links == null ? new long[0] : links.resolve(order);
+			int end = 0;
+			for (int start = 0; start < pairs.length; start = end) {
+				int row = (int) (pairs[start] >>> 32);
+				while (end < pairs.length && (int) (pairs[end] >>> 32) == row) {
+					end++;
+				}
+				int[] blockerIds = new int[end - start];
+				for (int i = start; i < end; i++) {
+					blockerIds[i - start] = firstId + (int) pairs[i];
+				}
+				store.put(store.get(firstId + row), blockerIds);
+			}
+			store.sync();
+		} finally {
+			if (order != null) {
+				order.delete();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes Tasks as CSV lines
+	 * With dependencies the source ids are logged beside the file in row order, and once every row is known
+	 * the file is copied again with the after fields added
+	 * @param tasks Tasks to write, closed once written
+	 * @param file file written, compressed if the name ends in .gz
+	 * @param links dependencies recorded by the source, or null
+	 * @return number of Tasks written
+	 * @throws IOException if the file cannot be written
+	 */
+	private static long writeText(Stream<Task> tasks, File file, Links links) throws IOException {
+		File order = links == null ? null : File.createTempFile("ids", ".bin", file.getAbsoluteFile().getParentFile());
+		try {
+			long count = 0;
+			try (Stream<Task> input = tasks; Writer writer = TaskReader.openWriter(file, false);
+					DataOutputStream ids = order == null ? null : openRun(order)) {
+				Iterator<Task> iterator = input.iterator();
+				while (iterator.hasNext()) {
+					Task task = iterator.next();
+					writer.write(TaskReader.formatTask(task));
+					if (ids != null) {
+						ids.writeInt(task.getId());
+					}
+					count++;
+				}
+			}
+			long[] pairs = links == null ? new long[0] : links.resolve(order);
+			if (pairs.length > 0) {
+				addAfterFields(file, pairs);
+			}
+			return count;
+		} finally {
+			if (order != null) {
+				order.delete();
+			}
+		}
+	}
+
+	/**
+	 * Rewrites a CSV file with after fields, rows without blockers are copied as written
+	 * @param file file written by writeText, compressed if the name ends in .gz
+	 * @param pairs (row, blocker row) pairs packed as longs, ascending
+	 * @throws IOException if the file cannot be rewritten
+	 */
+	private static void addAfterFields(File file, long[] pairs) throws IOException {
+		File lines = File.createTempFile("tmp", ".csv", file.getAbsoluteFile().getParentFile());
+		try {
+			Files.move(file.toPath(), lines.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			try (BufferedReader reader = TaskReader.openReader(lines); Writer writer = TaskReader.openWriter(file, false)) {
+				String line;
+				int row = 0;
+				int next = 0;
+				while ((line = reader.readLine()) != null) {
+					row++;
+					int end = next;
+					while (end < pairs.length && (int) (pairs[end] >>> 32) == row) {
+						end++;
+					}
+					if (end == next) {
+						writer.write(line);
+						writer.write('\n');
+						continue;
+					}
+					int[] after = new int[end - next];
+					for (int i = next; i < end; i++) {
+						after[i - next] = (int) pairs[i];
+					}
+					next = end;
+					writer.write(TaskReader.formatTask(TaskReader.parseTask(line), after));
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Damaged temporary file", e);
+			}
+		} finally {
+			lines.delete();
+		}
+	}
+
+	/**
+	 * Streams a TaskStore in id order, a batch of ids at a time
+	 * The store is opened read-only, so a missing input fails instead of being created
+	 * @param file store
+	 * @return Stream of Tasks, closing it closes the store
+	 * @throws IOException if the store does not exist or cannot be read
+	 * @throws DataFormatException if the file is not a task store
+	 */
+	private static Stream<Task> openStore(File file) throws IOException, DataFormatException {
+		return openStore(file, null);
+	}
+
+	/**
+	 * Streams a TaskStore in id order, recording the blockers of each Task
+	 * Ids are shifted past those links has given out, so they stay unique across files
+	 * @param file store
+	 * @param links table receiving the dependencies, or null
+	 * @return Stream of Tasks, closing it closes the store
+	 * @throws IOException if the store does not exist or cannot be read
+	 * @throws DataFormatException if the file is not a task store
+	 */
+	private static Stream<Task> openStore(File file, final Links links) throws IOException, DataFormatException {
+		final TaskStore store = new TaskStore(file, true);
+		final int base = links == null ? 0 : links.reserve(store.size() == 0 ? 0 : store.ids().last());
+		final Iterator<Integer> ids = store.ids().iterator();
+		Iterator<Task> tasks = new Iterator<Task>() {
+
+			/** Tasks of the current batch */
+			Iterator<Task> batch = new ArrayList<Task>().iterator();
+
+			@Override
+			public boolean hasNext() {
+				if (!batch.hasNext() && ids.hasNext()) {
+					int from = ids.next();
+					int to = from;
+					for (int i = 1; i < SCAN_BATCH && ids.hasNext(); i++) {
+						to = ids.next();
+					}
+					try {
+						batch = store.scan(from, to).iterator();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return batch.hasNext();
+			}
+
+			@Override
+			public Task next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Task task = batch.next();
+				if (links != null) {
+					try {
+						for (int blockerId : store.getBlockerIds(task.getId())) {
+							links.add(base + task.getId(), base + blockerId);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					task.setId(base + task.getId());
+				}
+				return task;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tasks, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> TaskReader.closeQuietly(store));
+	}
+
+	/**
+	 * Reads a CSV file front to back, numbering its rows after the ids links has given out
+	 * and recording the rows each one waits for
+	 * @param file task file
+	 * @param links table receiving the dependencies
+	 * @return Stream of Tasks, closing it closes the file
+	 * @throws DataFormatException if the file is empty, or looks compressed but its header is invalid
+	 * @throws IOException if the file cannot be opened
+	 */
+	private static Stream<Task> openText(File file, final Links links) throws DataFormatException, IOException {
+		if (file.exists() && file.length() == 0) {
+			throw new DataFormatException("Empty file");
+		}
+		final BufferedReader reader = TaskReader.openReader(file);
+		final int base = links.reserve(0);
+		Spliterator<Task> lines = new Spliterators.AbstractSpliterator<Task>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			/** Blocker rows of the current line */
+			final List<Integer> blockers = new ArrayList<>();
+
+			/** Rows read */
+			int row;
+
+			/** Highest row an after field names, and the row naming it */
+			int lastBlocker;
+			int lastBlockerRow;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Task> action) {
+				try {
+					String line = reader.readLine();
+					if (line == null) {
+						if (lastBlocker > row) {
+							throw new TaskFormatException(lastBlockerRow, 1, "Blocked by row " + lastBlocker + " but the file has " + row + " rows");
+						}
+						return false;
+					}
+					blockers.clear();
+					Task task = TaskReader.parseTask(line, blockers);
+					row++;
+					links.reserve(1);
+					task.setId(base + row);
+					for (int blocker : blockers) {
+						links.add(base + row, base + blocker);
+						if (blocker > lastBlocker) {
+							lastBlocker = blocker;
+							lastBlockerRow = row;
+						}
+					}
+					action.accept(task);
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (TaskFormatException e) {
+					throw new IllegalStateException("Invalid file format", e.getLine() > 0 ? e : e.atLine(row + 1));
+				}
+			}
+		};
+		return StreamSupport.stream(lines, false).onClose(() -> TaskReader.closeQuietly(reader));
+	}
+
+	/**
+	 * Sorts a run and writes it to a temporary file
+	 * Each Task is preceded by true and the run ends with false
+	 * @param run Tasks to sort
+	 * @param order comparator
+	 * @param directory directory for the file, or null
+	 * @return run file
+	 * @throws IOException if the file cannot be written
+	 */
+	private static File spill(List<Task> run, Comparator<Task> order, File directory) throws IOException {
+		run.sort(order);
+		File file = File.createTempFile("run", ".bin", directory);
+		try (DataOutputStream out = openRun(file)) {
+			for (Task task : run) {
+				out.writeBoolean(true);
+				TaskSerializer.writeTask(task, out);
+			}
+			out.writeBoolean(false);
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+		return file;
+	}
+
+	/**
+	 * Opens a run file for writing
+	 * @param file run file
+	 * @return buffered stream
+	 * @throws IOException if the file cannot be created
+	 */
+	private static DataOutputStream openRun(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), TaskReader.BUFFER_SIZE));
+	}
+
+	/**
+	 * Deletes temporary files
+	 * @param files files to delete
+	 */
+	private static void deleteAll(List<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Dependencies of the Tasks in a stream, filled by concat and written by write or append
+	 * Holds two ints per dependency, writers log the ids they write to a temporary file to number them
+	 * Dependencies on Tasks that are not written, filtered out or dropped as duplicates, are left out
+	 */
+	public static final class Links {
+
+		/** Highest id given out */
+		private int lastId;
+
+		/** (id, blocker id) pairs */
+		private int[] edges = new int[16];
+
+		/** Number of ints used in edges */
+		private int edgeCount;
+
+		/**
+		 * Number of dependencies recorded
+		 * @return dependency count
+		 */
+		public int size() {
+			return edgeCount / 2;
+		}
+
+		/**
+		 * Gives out a range of ids
+		 * @param count ids needed
+		 * @return id before the first one given out
+		 */
+		int reserve(int count) {
+			int base = lastId;
+			lastId += count;
+			return base;
+		}
+
+		/**
+		 * Records that a Task waits for another
+		 * @param id Task id
+		 * @param blockerId id of the Task it waits for
+		 */
+		void add(int id, int blockerId) {
+			if (edgeCount == edges.length) {
+				edges = Arrays.copyOf(edges, 2 * edges.length);
+			}
+			edges[edgeCount++] = id;
+			edges[edgeCount++] = blockerId;
+		}
+
+		/**
+		 * Dependencies between written Tasks, by the rows they were written at
+		 * @param order source ids of the Tasks written, one int per row
+		 * @return (row, blocker row) pairs packed as longs, ascending, rows from 1
+		 * @throws IOException if the ids cannot be read
+		 */
+		long[] resolve(File order) throws IOException {
+			if (edgeCount == 0) {
+				return new long[0];
+			}
+
+			// Rows of just the Tasks some dependency names
+			int[] named = Arrays.copyOf(edges, edgeCount);
+			Arrays.sort(named);
+			int namedCount = 0;
+			for (int i = 0; i < named.length; i++) {
+				if (namedCount == 0 || named[i] != named[namedCount - 1]) {
+					named[namedCount++] = named[i];
+				}
+			}
+			named = Arrays.copyOf(named, namedCount);
+			int[] rows = new int[namedCount];
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(order), TaskReader.BUFFER_SIZE))) {
+				long length = order.length() / 4;
+				for (int row = 1; row <= length; row++) {
+					int index = Arrays.binarySearch(named, in.readInt());
+					if (index >= 0) {
+						rows[index] = row;
+					}
+				}
+			}
+			long[] pairs = new long[size()];
+			int count = 0;
+			for (int i = 0; i < edgeCount; i += 2) {
+				int row = rows[Arrays.binarySearch(named, edges[i])];
+				int blockerRow = rows[Arrays.binarySearch(named, edges[i + 1])];
+				if (row > 0 && blockerRow > 0) {
+					pairs[count++] = (long) row << 32 | blockerRow;
+				}
+			}
+			pairs = Arrays.copyOf(pairs, count);
+			Arrays.sort(pairs);
+			return pairs;
+		}
+	}
+
+	/**
+	 * Tasks of several files in turn, with one file open at a time
+	 */
+	private static final class FileSequence extends Spliterators.AbstractSpliterator<Task> {
+
+		/** Files to read */
+		private final List<File> files;
+
+		/** Table receiving the dependencies, or null */
+		private final Links links;
+
+		/** Next file to open */
+		private int next;
+
+		/** Stream of the open file, null between files */
+		private Stream<Task> open;
+
+		/** Tasks of the open file */
+		private Iterator<Task> current;
+
+		/**
+		 * Constructor
+		 * @param files files to read, in order
+		 * @param links table receiving the dependencies, or null
+		 */
+		FileSequence(List<File> files, Links links) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.files = files;
+			this.links = links;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Task> action) {
+			while (current == null || !current.hasNext()) {
+				closeCurrent();
+				if (next == files.size()) {
+					return false;
+				}
+				File file = files.get(next++);
+				try {
+					if (links == null) {
+						open = open(file);
+					} else {
+						open = isStore(file) ? openStore(file, links) : openText(file, links);
+					}
+				} catch (DataFormatException e) {
+					throw new IllegalStateException(file.getName() + ": " + e.getMessage(), e);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				current = open.iterator();
+			}
+			action.accept(current.next());
+			return true;
+		}
+
+		/**
+		 * Closes the open file
+		 */
+		void closeCurrent() {
+			if (open != null) {
+				open.close();
+				open = null;
+				current = null;
+			}
+		}
+	}
+
+	/**
+	 * One run being merged, with its next Task
+	 */
+	private static final class Run {
+
+		/** Position among the merged runs, breaks ties so the sort stays stable */
+		final int index;
+
+		/** Run file */
+		final DataInputStream in;
+
+		/** Next Task, null once the run is used up */
+		Task head;
+
+		/**
+		 * Constructor, reads the first Task
+		 * @param index position among the merged runs
+		 * @param file run file
+		 * @throws IOException if the file cannot be read
+		 */
+		Run(int index, File file) throws IOException {
+			this.index = index;
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), TaskReader.BUFFER_SIZE));
+			advance();
+		}
+
+		/**
+		 * Reads the next Task
+		 * @throws IOException if the file cannot be read or is damaged
+		 */
+		void advance() throws IOException {
+			try {
+				head = in.readBoolean() ? TaskSerializer.readTask(in) : null;
+			} catch (DataFormatException | EOFException e) {
+				throw new IOException("Damaged sort run", e);
+			}
+		}
+	}
+
+	/**
+	 * K-way merge of sorted runs with a heap of their next Tasks
+	 */
+	private static final class Merge implements Iterator<Task>, Closeable {
+
+		/** Runs with Tasks left, smallest head first */
+		private final PriorityQueue<Run> heap;
+
+		/** Every opened run, for closing */
+		private final List<Run> runs = new ArrayList<>();
+
+		/**
+		 * Constructor, opens every run
+		 * @param files run files
+		 * @param order comparator of the runs
+		 * @throws IOException if a run cannot be read
+		 */
+		Merge(List<File> files, final Comparator<Task> order) throws IOException {
+			heap = new PriorityQueue<>(Math.max(1, files.size()), (r1, r2) -> {
+				int result = order.compare(r1.head, r2.head);
+				return result != 0 ? result : Integer.compare(r1.index, r2.index);
+			});
+			try {
+				for (File file : files) {
+					Run run = new Run(runs.size(), file);
+					runs.add(run);
+					if (run.head != null) {
+						heap.add(run);
+					}
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heap.isEmpty();
+		}
+
+		@Override
+		public Task next() {
+			Run run = heap.poll();
+			if (run == null) {
+				throw new NoSuchElementException();
+			}
+			Task task = run.head;
+			try {
+				run.advance();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (run.head != null) {
+				heap.add(run);
+			}
+			return task;
+		}
+
+		@Override
+		public void close() {
+			for (Run run : runs) {
+				TaskReader.closeQuietly(run.in);
+			}
+		}
+	}
+}
@@ -1,14 +1,45 @@
 package io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 
+import model.Priority;
+import model.Recurrence;
 import model.Task;
 import model.TaskList;
 
@@ -16,10 +47,33 @@ import model.TaskList;
  * Class for reading and writing TaskList objects in CSV format
  * Built in error checking when reading Tasks from files
  * Outputs TaskLists in valid CSV format
+ * Files are gzip-compressed when their name ends in .gz, compressed files are detected
+ * on load by their magic bytes, and both directions stream without holding the file in memory
  * @author Luke Gentri
  */
 public class TaskReader {
 	
+	/** File extension that selects gzip compression on save */
+	public static final String GZIP_EXTENSION = ".gz";
+	
+	/** Buffer size for file streams */
+	static final int BUFFER_SIZE = 64 * 1024;
+	
+	/** Key of the optional field holding a repeat rule */
+	static final String REPEAT_FIELD = "repeat";
+	
+	/** Key of the optional field holding a priority other than NONE */
+	static final String PRIORITY_FIELD = "priority";
+	
+	/** Key of the optional field listing a Task's tags */
+	static final String TAGS_FIELD = "tags";
+	
+	/** Key of the optional field listing the rows of a Task's blockers */
+	static final String AFTER_FIELD = "after";
+	
+	/** Separates rows in the after field and tags in the tags field */
+	private static final char ROW_SEPARATOR = ';';
+	
 	/**
 	 * Loads a TaskList from a valid file
 	 * Files must have a Task object on each line in the following format: (name),(description),(YYYY-MM-DD)
@@ -33,83 +87,458 @@ public class TaskReader {
 	 */
 	public TaskList loadFromFile(File file) throws DataFormatException, FileNotFoundException, DateTimeParseException {
 		
-		// Declare empty list
-		TaskList list = new TaskList();
+		// Declare empty list and fill it
+		return loadInto(file, new TaskList());
+	}
+	
+	/**
+	 * Loads Tasks from a valid file into an existing TaskList
+	 * Works with any TaskList implementation, listeners receive one event for the whole file
+	 * @param file File to load, same format as loadFromFile
+	 * @param list TaskList to add the Tasks to
+	 * @return list, for chaining
+	 * @throws DataFormatException if file is empty or any Task is invalid
+	 * @throws FileNotFoundException if file does not exist
+	 */
+	public TaskList loadInto(File file, TaskList list) throws DataFormatException, FileNotFoundException {
 		
-		// Initialize file scanner
-		Scanner scanner = new Scanner(file);
+		// Initialize file reader, decompressing if needed
+		BufferedReader reader = openReader(file);
 		
 		// Check for empty file, throw to GUI
 		if (file.length() == 0) {
-			scanner.close();
+			closeQuietly(reader);
 			throw new DataFormatException("Empty file");
 		}
 		
-		// Iterate through file line by line
-		while (scanner.hasNextLine()) {
-			
-			// Separate CSV line into name, date, and description strings
-			String[] line = scanner.nextLine().split(",");
-			
-			// Check for valid fields
-			if (line.length != 3 || line[0].isEmpty() || line[0].length() >= 50 || line[1].length() >= 50 || line[2].isEmpty()) {
-				scanner.close();
-				throw new DataFormatException("Invalid file format");
+		// Iterate through file line by line, as one batch of changes
+		list.beginBatch();
+		long lineNumber = 0;
+		try {
+			List<Task> loaded = new ArrayList<>();
+			List<Integer> blockers = new ArrayList<>();
+			int[] edges = new int[0];
+			int edgeCount = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				
+				// Create Task object from CSV line and add it to list
+				blockers.clear();
+				Task task = parseTask(line, blockers);
+				list.addTask(task);
+				loaded.add(task);
+				
+				// Remember dependencies as (row, blocker row) pairs until every row is read
+				if (edgeCount + 2 * blockers.size() > edges.length) {
+					edges = Arrays.copyOf(edges, Math.max(16, 2 * (edgeCount + 2 * blockers.size())));
+				}
+				for (int blocker : blockers) {
+					edges[edgeCount++] = loaded.size();
+					edges[edgeCount++] = blocker;
+				}
 			}
 			
-			// Set each field as its own variable for Task creation
-			String name = line[0];
-			String description = line[1];
-			String date = line[2];
+			// Blockers may be on later rows
+			addDependencies(list, loaded, edges, edgeCount);
+		} catch (TaskFormatException e) {
 			
-			// Convert String date to LocalDate object
-			LocalDate dueDate;
+			// Report where the first invalid line is
+			throw e.getLine() > 0 ? e : e.atLine(lineNumber);
+		} catch (ZipException | EOFException e) {
+			throw new DataFormatException("Invalid compressed file");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
 			
+			// Close file after reading, listeners are notified once
+			closeQuietly(reader);
+			list.endBatch();
+		}
+		
+		// Return TaskList with Tasks from file
+		return list;
+		
+	}
+	
+	/**
+	 * Adds the dependencies read from after fields, once every row is in the list
+	 * @param list TaskList holding the rows
+	 * @param rows Tasks in file order
+	 * @param edges (row, blocker row) pairs, rows from 1
+	 * @param edgeCount number of ints used in edges
+	 * @throws TaskFormatException if a blocker row does not exist, would form a cycle or the list cannot hold
+	 * dependencies, at the line waiting for it
+	 */
+	static void addDependencies(TaskList list, List<Task> rows, int[] edges, int edgeCount) throws TaskFormatException {
+		for (int i = 0; i < edgeCount; i += 2) {
+			if (edges[i + 1] > rows.size()) {
+				throw new TaskFormatException(edges[i], 1, "Blocked by row " + edges[i + 1] + " but the file has " + rows.size() + " rows");
+			}
 			try {
-			
-			dueDate = LocalDate.parse(date);
-			
-			} catch (DateTimeParseException e) {
-				scanner.close();
-				throw new DataFormatException("Invalid file format");
+				list.addDependency(rows.get(edges[i] - 1), rows.get(edges[i + 1] - 1));
+			} catch (UnsupportedOperationException e) {
+				throw new TaskFormatException(edges[i], 1, "Blocked by row " + edges[i + 1] + " but the list cannot hold dependencies: " + e.getMessage());
+			} catch (IllegalArgumentException e) {
+				throw new TaskFormatException(edges[i], 1, "Invalid dependency on row " + edges[i + 1] + ": " + e.getMessage());
 			}
-			
-			// Create Task object
-			Task task = new Task(0, name, description, dueDate);
-			
-			// Add Task to list
-			list.addTask(task);
-			
 		}
+	}
+	
+	/**
+	 * Returns a lazily parsed Stream of the Tasks in a file, without building a TaskList
+	 * Lines are parsed as the stream is consumed, using constant memory, and Tasks keep id 0
+	 * Uncompressed files split by byte range, so .parallel() spreads parsing over every processor,
+	 * compressed files are read sequentially
+	 * The file stays open until the stream is closed, use try-with-resources
+	 * An invalid line ends the stream with an IllegalStateException
+	 * @param file task file, same format as loadFromFile
+	 * @return Stream of Tasks in file order
+	 * @throws FileNotFoundException if the file does not exist
+	 * @throws DataFormatException if the file looks compressed but its header is invalid
+	 * @throws IOException if the file cannot be opened
+	 */
+	public Stream<Task> stream(File file) throws DataFormatException, IOException {
 		
-		// Close file after reading
-		scanner.close();
-		
-		// Return new TaskList with Tasks from file
-		return list;
+		// Compressed files can only be read front to back
+		if (isGzipFile(file)) {
+			final BufferedReader reader = openReader(file);
+			Spliterator<Task> lines = new Spliterators.AbstractSpliterator<Task>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super Task> action) {
+					try {
+						String line = reader.readLine();
+						if (line == null) {
+							return false;
+						}
+						action.accept(parseTask(line));
+						return true;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					} catch (DataFormatException e) {
+						throw new IllegalStateException("Invalid file format", e);
+					}
+				}
+			};
+			return StreamSupport.stream(lines, false).onClose(() -> closeQuietly(reader));
+		}
 		
+		// Plain files split by byte range over one shared channel
+		final FileChannel channel;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		return StreamSupport.stream(new TaskFileSpliterator(channel, 0, channel.size()), false).onClose(() -> closeQuietly(channel));
 	}
 	
 	/**
 	 * Saves current TaskList to file in valid format
+	 * Compressed with gzip if the file name ends in .gz
 	 * @param taskList current TaskList
 	 * @param file File to save to
 	 * @throws IOException Won't be thrown 
 	 */
 	public void saveToFile(TaskList taskList, File file) throws IOException {
+		saveToFile(taskList, file, false);
+	}
+	
+	/**
+	 * Saves current TaskList to file in valid format
+	 * Compressed with gzip if the file name ends in .gz
+	 * @param taskList current TaskList
+	 * @param file File to save to
+	 * @param parallel true to compress blocks on every processor (only used for .gz files)
+	 * @throws IOException if the file cannot be written
+	 */
+	public void saveToFile(TaskList taskList, File file, boolean parallel) throws IOException {
 		
-		// Initialize file writer
-		FileWriter writer = new FileWriter(file);
+		// Initialize file writer, compressing if needed
+		Writer writer = openWriter(file, parallel);
+		
+		// Rows of Tasks, for writing dependencies
+		Map<Task, Integer> rows = null;
+		if (taskList.getDependencyCount() > 0) {
+			rows = new IdentityHashMap<>();
+			for (Task task : taskList.getAllTasks()) {
+				rows.put(task, rows.size() + 1);
+			}
+		}
 		
 		// Iterate through TaskList
 		for (Task task : taskList.getAllTasks()) {
 			
 			// Write each object to file in specified format
-			writer.write(task.getName() + "," + task.getDescription() + "," + task.getDueDate() + "\n");
+			if (rows == null) {
+				writer.write(formatTask(task));
+			} else {
+				List<Task> blockers = taskList.getBlockers(task);
+				int[] after = new int[blockers.size()];
+				for (int i = 0; i < after.length; i++) {
+					after[i] = rows.get(blockers.get(i));
+				}
+				writer.write(formatTask(task, after));
+			}
 		}
 		
 		// Close file after writing
 		writer.close();
 	}
+	
+	/**
+	 * Parses a single CSV line into a Task with id 0
+	 * Shared by every reader of the CSV format, dependencies are checked but dropped
+	 * @param text line in the format (name),(description),(YYYY-MM-DD)[,key=value]...
+	 * @return new Task with fields from the line
+	 * @throws TaskFormatException if the line does not match the format, with the column and reason
+	 */
+	static Task parseTask(String text) throws TaskFormatException {
+		return parseTask(text, null);
+	}
+	
+	/**
+	 * Parses a single CSV line into a Task with id 0
+	 * Optional key=value fields may follow the due date: repeat=(rule) as written by Recurrence.toString,
+	 * priority=(low|medium|high), tags=(tag);(tag)... and after=(row);(row)... giving the rows, from 1,
+	 * of the Tasks this one waits for
+	 * @param text line in the format (name),(description),(YYYY-MM-DD)[,key=value]...
+	 * @param blockers receives the rows of the after field, or null to drop them
+	 * @return new Task with fields from the line
+	 * @throws TaskFormatException if the line does not match the format, with the column and reason
+	 */
+	static Task parseTask(String text, List<Integer> blockers) throws TaskFormatException {
+		
+		// Separate CSV line into name, date, and description strings
+		String[] line = text.split(",");
+		
+		// Check for valid fields
+		if (line.length < 3) {
+			throw new TaskFormatException(text.length() + 1, "Expected 3 fields (name,description,due date) but found " + line.length);
+		} else if (line[0].isEmpty()) {
+			throw new TaskFormatException(1, "Name is empty");
+		} else if (line[0].length() >= 50) {
+			throw new TaskFormatException(1, "Name is longer than 49 characters");
+		} else if (line[1].length() >= 50) {
+			throw new TaskFormatException(columnOf(text, 1), "Description is longer than 49 characters");
+		} else if (line[2].isEmpty()) {
+			throw new TaskFormatException(columnOf(text, 2), "Due date is empty");
+		}
+		
+		// Set each field as its own variable for Task creation
+		String name = line[0];
+		String description = line[1];
+		String date = line[2];
+		
+		// Convert String date to LocalDate object
+		LocalDate dueDate;
+		
+		try {
+		
+		dueDate = LocalDate.parse(date);
+		
+		} catch (DateTimeParseException e) {
+			throw new TaskFormatException(columnOf(text, 2), "Invalid due date '" + date + "', expected YYYY-MM-DD");
+		}
+		
+		// Create Task object
+		Task task = new Task(0, name, description, dueDate);
+		
+		// Optional key=value fields after the due date
+		for (int field = 3; field < line.length; field++) {
+			int equals = line[field].indexOf('=');
+			if (equals < 0) {
+				throw new TaskFormatException(columnOf(text, field), "Unexpected field after due date");
+			}
+			String key = line[field].substring(0, equals);
+			String value = line[field].substring(equals + 1);
+			if (key.equals(REPEAT_FIELD)) {
+				try {
+					task.setRecurrence(Recurrence.parse(value));
+				} catch (IllegalArgumentException e) {
+					throw new TaskFormatException(columnOf(text, field) + equals + 1, "Invalid repeat rule: " + e.getMessage());
+				}
+			} else if (key.equals(PRIORITY_FIELD)) {
+				try {
+					task.setPriority(Priority.parse(value));
+				} catch (IllegalArgumentException e) {
+					throw new TaskFormatException(columnOf(text, field) + equals + 1, "Invalid priority '" + value + "'");
+				}
+			} else if (key.equals(TAGS_FIELD)) {
+				try {
+					task.setTags(Arrays.asList(value.split(String.valueOf(ROW_SEPARATOR))));
+				} catch (IllegalArgumentException e) {
+					throw new TaskFormatException(columnOf(text, field) + equals + 1, "Invalid tags: " + e.getMessage());
+				}
+			} else if (key.equals(AFTER_FIELD)) {
+				int column = columnOf(text, field) + equals + 1;
+				for (String row : value.split(String.valueOf(ROW_SEPARATOR))) {
+					try {
+						int number = Integer.parseInt(row);
+						if (number < 1) {
+							throw new NumberFormatException();
+						}
+						if (blockers != null) {
+							blockers.add(number);
+						}
+					} catch (NumberFormatException e) {
+						throw new TaskFormatException(column, "Invalid row '" + row + "' in after field");
+					}
+					column += row.length() + 1;
+				}
+			} else {
+				throw new TaskFormatException(columnOf(text, field), "Unknown field '" + key + "'");
+			}
+		}
+		return task;
+	}
+	
+	/**
+	 * Column where a field starts
+	 * @param text CSV line
+	 * @param field field number, starting at 0
+	 * @return column number, starting at 1
+	 */
+	private static int columnOf(String text, int field) {
+		int index = 0;
+		for (int i = 0; i < field && index >= 0; i++) {
+			index = text.indexOf(',', index) + 1;
+		}
+		return index + 1;
+	}
+	
+	/**
+	 * Formats a Task as a single CSV line, including the line break
+	 * Shared by every writer of the CSV format
+	 * @param task Task to format
+	 * @return line in the format (name),(description),(YYYY-MM-DD)[,key=value]...
+	 */
+	static String formatTask(Task task) {
+		return formatTask(task, null);
+	}
+	
+	/**
+	 * Formats a Task as a single CSV line with the rows of its blockers, including the line break
+	 * @param task Task to format
+	 * @param after rows of the Tasks it waits for, from 1, or null
+	 * @return line in the format (name),(description),(YYYY-MM-DD)[,key=value]...
+	 */
+	static String formatTask(Task task, int[] after) {
+		StringBuilder line = new StringBuilder(64);
+		line.append(task.getName()).append(',').append(task.getDescription()).append(',').append(task.getDueDate());
+		if (task.getRecurrence() != null) {
+			line.append(',').append(REPEAT_FIELD).append('=').append(task.getRecurrence());
+		}
+		if (task.getPriority() != Priority.NONE) {
+			line.append(',').append(PRIORITY_FIELD).append('=').append(task.getPriority().name().toLowerCase());
+		}
+		List<String> tags = task.getTags();
+		if (!tags.isEmpty()) {
+			line.append(',').append(TAGS_FIELD).append('=').append(tags.get(0));
+			for (int i = 1; i < tags.size(); i++) {
+				line.append(ROW_SEPARATOR).append(tags.get(i));
+			}
+		}
+		if (after != null && after.length > 0) {
+			line.append(',').append(AFTER_FIELD).append('=').append(after[0]);
+			for (int i = 1; i < after.length; i++) {
+				line.append(ROW_SEPARATOR).append(after[i]);
+			}
+		}
+		return line.append('\n').toString();
+	}
+	
+	/**
+	 * Opens a task file for reading, decompressing gzip files detected by their magic bytes
+	 * Shared by every reader of task files
+	 * @param file task file
+	 * @return buffered UTF-8 reader
+	 * @throws FileNotFoundException if the file does not exist
+	 * @throws DataFormatException if the file looks compressed but its header is invalid
+	 */
+	static BufferedReader openReader(File file) throws FileNotFoundException, DataFormatException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		try {
+			if (isGzip(in)) {
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+			}
+		} catch (ZipException | EOFException e) {
+			closeQuietly(in);
+			throw new DataFormatException("Invalid compressed file");
+		} catch (IOException e) {
+			closeQuietly(in);
+			throw new UncheckedIOException(e);
+		}
+		return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+	
+	/**
+	 * Opens a task file for writing, compressing if the name ends in .gz
+	 * Shared by every writer of task files
+	 * @param file task file
+	 * @param parallel true to compress blocks on every processor
+	 * @return buffered UTF-8 writer
+	 * @throws IOException if the file cannot be created
+	 */
+	static Writer openWriter(File file, boolean parallel) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (isCompressed(file)) {
+			out = parallel ? new ParallelGzipOutputStream(out) : new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+	
+	/**
+	 * Check whether a file name selects compression
+	 * @param file task file
+	 * @return true if the name ends in .gz
+	 */
+	public static boolean isCompressed(File file) {
+		return file.getName().toLowerCase().endsWith(GZIP_EXTENSION);
+	}
+	
+	/**
+	 * Checks a file's first bytes for the gzip magic number
+	 * @param file task file
+	 * @return true if the file is gzip-compressed
+	 * @throws FileNotFoundException if the file does not exist
+	 */
+	static boolean isGzipFile(File file) throws FileNotFoundException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), 2);
+		try {
+			return isGzip(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Peeks at the first two bytes of a stream for the gzip magic number
+	 * @param in stream supporting mark and reset
+	 * @return true if the stream starts with a gzip header
+	 * @throws IOException if the stream cannot be read
+	 */
+	private static boolean isGzip(InputStream in) throws IOException {
+		in.mark(2);
+		int first = in.read();
+		int second = in.read();
+		in.reset();
+		return first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+	}
+	
+	/**
+	 * Closes a stream, ignoring errors (used on paths that already report one)
+	 * @param closeable stream to close
+	 */
+	static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			
+			// Nothing more to report
+		}
+	}
 
 }
@@ -0,0 +1,244 @@
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import model.Priority;
+import model.Recurrence;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for a compact binary form of a TaskList, keeping every field including ids,
+ * completion, priority, tags, repeat rules and dependencies
+ * Used where the CSV format would lose state, such as undo history
+ * @author Luke Gentri
+ */
+public class TaskSerializer {
+
+	/** Identifies serialized lists */
+	private static final int MAGIC = 0x54534552;
+
+	/** Format version */
+	private static final int VERSION = 2;
+
+	/** Flag bits */
+	private static final int COMPLETED = 1;
+	private static final int HAS_DATE = 2;
+	private static final int HAS_RULE = 4;
+	private static final int HAS_OCCURRENCES = 8;
+	private static final int HAS_TAGS = 64;
+
+	/** Position of the two priority bits in the flags, zero is Priority.NONE */
+	private static final int PRIORITY_SHIFT = 4;
+	private static final int PRIORITY_MASK = 3 << PRIORITY_SHIFT;
+
+	/** Largest completed occurrence bits accepted, over 20,000 years of daily occurrences */
+	private static final int MAX_OCCURRENCE_BYTES = 1 << 20;
+
+	/**
+	 * Writes every Task of a list
+	 * @param list TaskList to write
+	 * @param out destination
+	 * @throws IOException if writing fails
+	 */
+	public static void write(TaskList list, DataOutput out) throws IOException {
+		List<Task> tasks = list.getAllTasks();
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeInt(tasks.size());
+		for (Task task : tasks) {
+			writeTask(task, out);
+		}
+		
+		// Dependencies as (position, blocker position) pairs
+		out.writeInt(list.getDependencyCount());
+		if (list.getDependencyCount() > 0) {
+			Map<Task, Integer> positions = new IdentityHashMap<>();
+			for (Task task : tasks) {
+				positions.put(task, positions.size());
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				for (Task blocker : list.getBlockers(tasks.get(i))) {
+					out.writeInt(i);
+					out.writeInt(positions.get(blocker));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes one Task
+	 * Shared with TaskStore records
+	 * @param task Task to write
+	 * @param out destination
+	 * @throws IOException if writing fails
+	 */
+	static void writeTask(Task task, DataOutput out) throws IOException {
+		BitSet occurrences = task.getCompletedOccurrences();
+		int flags = (task.isCompleted() ? COMPLETED : 0)
+				| (task.getDueDate() != null ? HAS_DATE : 0)
+				| (task.getRecurrence() != null ? HAS_RULE : 0)
+				| (!occurrences.isEmpty() ? HAS_OCCURRENCES : 0)
+				| task.getPriority().ordinal() << PRIORITY_SHIFT
+				| (!task.getTags().isEmpty() ? HAS_TAGS : 0);
+		out.writeByte(flags);
+		out.writeInt(task.getId());
+		out.writeUTF(task.getName());
+		out.writeUTF(task.getDescription());
+		if (task.getDueDate() != null) {
+			out.writeInt((int) task.getDueDate().toEpochDay());
+		}
+		if (task.getRecurrence() != null) {
+			out.writeUTF(task.getRecurrence().toString());
+		}
+		if (!occurrences.isEmpty()) {
+			byte[] bits = occurrences.toByteArray();
+			out.writeInt(bits.length);
+			out.write(bits);
+		}
+		if (!task.getTags().isEmpty()) {
+			out.writeShort(task.getTags().size());
+			for (String tag : task.getTags()) {
+				out.writeUTF(tag);
+			}
+		}
+	}
+
+	/**
+	 * Reads a list written by write, keeping the stored ids
+	 * @param in source
+	 * @return new TaskList
+	 * @throws IOException if reading fails
+	 * @throws DataFormatException if the data is not a serialized list
+	 */
+	public static TaskList read(DataInput in) throws IOException, DataFormatException {
+		if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+			throw new DataFormatException("Invalid serialized task list");
+		}
+		int count = in.readInt();
+		final List<Task> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			tasks.add(readTask(in));
+		}
+
+		// The copy constructor keeps ids, addTask would renumber them
+		TaskList list = new TaskList(new TaskList() {
+			@Override
+			public List<Task> getAllTasks() {
+				return tasks;
+			}
+		});
+		int edges = in.readInt();
+		List<Task> copies = list.getAllTasks();
+		for (int i = 0; i < edges; i++) {
+			int task = in.readInt();
+			int blocker = in.readInt();
+			if (task < 0 || task >= count || blocker < 0 || blocker >= count) {
+				throw new DataFormatException("Invalid dependency");
+			}
+			try {
+				list.addDependency(copies.get(task), copies.get(blocker));
+			} catch (IllegalArgumentException e) {
+				throw new DataFormatException("Invalid dependency: " + e.getMessage());
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Reads one Task written by writeTask, keeping its id
+	 * Shared with TaskStore records
+	 * @param in source
+	 * @return new Task
+	 * @throws IOException if reading fails
+	 * @throws DataFormatException if the Task's repeat rule, completed occurrences or tags are invalid
+	 */
+	static Task readTask(DataInput in) throws IOException, DataFormatException {
+		int flags = in.readByte();
+		int id = in.readInt();
+		String name = in.readUTF();
+		String description = in.readUTF();
+		LocalDate dueDate = (flags & HAS_DATE) != 0 ? LocalDate.ofEpochDay(in.readInt()) : null;
+		Task task = new Task(id, name, description, dueDate);
+		task.setCompleted((flags & COMPLETED) != 0);
+		task.setPriority(Priority.values()[(flags & PRIORITY_MASK) >> PRIORITY_SHIFT]);
+		if ((flags & HAS_RULE) != 0) {
+			try {
+				task.setRecurrence(Recurrence.parse(in.readUTF()));
+			} catch (IllegalArgumentException e) {
+				throw new DataFormatException("Invalid repeat rule: " + e.getMessage());
+			}
+		}
+		if ((flags & HAS_OCCURRENCES) != 0) {
+			int length = in.readInt();
+			if (length < 0 || length > MAX_OCCURRENCE_BYTES) {
+				throw new DataFormatException("Invalid completed occurrences length " + length);
+			}
+			byte[] bits = new byte[length];
+			in.readFully(bits);
+			task.setCompletedOccurrences(BitSet.valueOf(bits));
+		}
+		if ((flags & HAS_TAGS) != 0) {
+			String[] tags = new String[in.readUnsignedShort()];
+			for (int i = 0; i < tags.length; i++) {
+				tags[i] = in.readUTF();
+			}
+			try {
+				task.setTags(Arrays.asList(tags));
+			} catch (IllegalArgumentException e) {
+				throw new DataFormatException("Invalid tag: " + e.getMessage());
+			}
+		}
+		return task;
+	}
+
+	/**
+	 * Serializes and compresses a list
+	 * @param list TaskList to write
+	 * @return compressed bytes
+	 */
+	public static byte[] toBytes(TaskList list) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+			write(list, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decompresses and reads a list written by toBytes
+	 * @param bytes compressed bytes
+	 * @return new TaskList
+	 * @throws DataFormatException if the bytes are not a compressed serialized list
+	 */
+	public static TaskList fromBytes(byte[] bytes) throws DataFormatException {
+		try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+			return read(in);
+		} catch (IOException e) {
+			throw new DataFormatException("Invalid compressed task list");
+		}
+	}
+}
@@ -0,0 +1,752 @@
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+import model.Task;
+
+/**
+ * Class for an embedded log-structured key-value store of Tasks keyed by id, each with the ids of its blockers
+ * Every put or delete appends one checksummed record to the log, and a sorted in-memory index
+ * maps each id to its latest record, so a single-task change costs one append and O(log n) index work
+ * On open the log is replayed and a torn last record left by a crash is cut off, so the store always
+ * reopens in the state of the last complete write, sync forces writes to disk
+ * A damaged record anywhere else fails the open and the file is left as it is
+ * replaceAll writes many changes as one batch record, which replay applies all or nothing
+ * A store opened read-only never creates, writes or truncates its file
+ * Old versions of records are removed by compact, which rewrites the live records to a new file
+ * and swaps it in atomically
+ * @author Luke Gentri
+ */
+public class TaskStore implements Closeable {
+
+	/** Usual file extension */
+	public static final String EXTENSION = ".log";
+
+	/** Identifies store files */
+	private static final int MAGIC = 0x54534C47;
+
+	/** File format version */
+	private static final int VERSION = 1;
+
+	/** Bytes of the file header: magic, version */
+	private static final int HEADER_SIZE = 8;
+
+	/** Bytes before each record body: body length, CRC32 of the body */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** Record operations */
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final byte BATCH = 3;
+
+	/** Largest PUT or DELETE body accepted when replaying */
+	private static final int MAX_BODY_SIZE = 1 << 20;
+
+	/** Largest BATCH body accepted when replaying */
+	private static final int MAX_BATCH_SIZE = Integer.MAX_VALUE - RECORD_HEADER_SIZE;
+
+	/** Bytes of a BATCH body before its records: operation, record count */
+	private static final int BATCH_HEADER_SIZE = 5;
+
+	/** Bytes read at a time when checking large records */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** Blocker ids of a Task that waits for nothing */
+	private static final int[] NO_BLOCKERS = new int[0];
+
+	/** Garbage that sync always leaves alone */
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+	/**
+	 * Where the latest record of an id is
+	 */
+	private static class Location {
+
+		/** File offset of the record */
+		final long offset;
+
+		/** Record size including its header */
+		final int size;
+
+		/** CRC32 of the record body, to skip rewriting identical Tasks */
+		final int crc;
+
+		/** True if the Task waits for other Tasks */
+		final boolean hasBlockers;
+
+		/**
+		 * Constructor
+		 * @param offset file offset of the record
+		 * @param size record size including its header
+		 * @param crc CRC32 of the record body
+		 * @param hasBlockers true if the Task waits for other Tasks
+		 */
+		Location(long offset, int size, int crc, boolean hasBlockers) {
+			this.offset = offset;
+			this.size = size;
+			this.crc = crc;
+			this.hasBlockers = hasBlockers;
+		}
+	}
+
+	/** Log file */
+	private final File file;
+
+	/** Open channel to the log */
+	private FileChannel channel;
+
+	/** Latest record of every live id, in id order */
+	private final TreeMap<Integer, Location> index = new TreeMap<>();
+
+	/** End of the last complete record */
+	private long end;
+
+	/** Bytes of records that have been replaced or deleted */
+	private long garbage;
+
+	/** True if the file is never written */
+	private final boolean readOnly;
+
+	/**
+	 * Opens a store, creating it if the file does not exist
+	 * @param file log file
+	 * @throws IOException if the file cannot be read or written
+	 * @throws DataFormatException if the file is not a task store or a record before the last is damaged
+	 */
+	public TaskStore(File file) throws IOException, DataFormatException {
+		this(file, false);
+	}
+
+	/**
+	 * Opens a store
+	 * @param file log file
+	 * @param readOnly true to only read an existing store, leaving a torn last record in the file,
+	 *        false to create the file if it does not exist
+	 * @throws FileNotFoundException if readOnly and the file does not exist
+	 * @throws IOException if the file cannot be read or written
+	 * @throws DataFormatException if the file is not a task store or a record before the last is damaged
+	 */
+	public TaskStore(File file, boolean readOnly) throws IOException, DataFormatException {
+		this.file = file;
+		this.readOnly = readOnly;
+		if (readOnly) {
+			if (!file.isFile()) {
+				throw new FileNotFoundException(file.getPath() + " (No such file)");
+			}
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} else {
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		}
+		try {
+			if (channel.size() == 0 && !readOnly) {
+				writeHeader(channel);
+				channel.force(true);
+				end = HEADER_SIZE;
+			} else {
+				replay();
+			}
+		} catch (IOException | DataFormatException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * isReadOnly
+	 * @return true if the file is never written
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * getFile
+	 * @return log file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reads the latest version of a Task
+	 * @param id Task id
+	 * @return new Task, or null if the id is not stored
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized Task get(int id) throws IOException {
+		Location location = index.get(id);
+		return location == null ? null : readTask(location);
+	}
+
+	/**
+	 * Reads the ids of the Tasks a Task waits for
+	 * @param id Task id
+	 * @return blocker ids, empty if none or the id is not stored
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized int[] getBlockerIds(int id) throws IOException {
+		Location location = index.get(id);
+		if (location == null || !location.hasBlockers) {
+			return NO_BLOCKERS;
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBody(location)))) {
+			in.skipBytes(5);
+			int[] blockerIds = new int[in.readInt()];
+			for (int i = 0; i < blockerIds.length; i++) {
+				blockerIds[i] = in.readInt();
+			}
+			return blockerIds;
+		}
+	}
+
+	/**
+	 * Stores a Task that waits for nothing under its id, replacing any earlier version
+	 * Nothing is written if the stored version is identical
+	 * @param task Task to store
+	 * @return true if a record was written
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized boolean put(Task task) throws IOException {
+		return put(task, NO_BLOCKERS);
+	}
+
+	/**
+	 * Stores a Task and the ids of its blockers under its id, replacing any earlier version
+	 * Nothing is written if the stored version is identical
+	 * @param task Task to store
+	 * @param blockerIds ids of the Tasks it waits for
+	 * @return true if a record was written
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized boolean put(Task task, int[] blockerIds) throws IOException {
+		checkWritable();
+		byte[] body = encode(PUT, task.getId(), task, blockerIds);
+		int crc = crc(body);
+		Location old = index.get(task.getId());
+		if (old != null && old.crc == crc && old.size == body.length + RECORD_HEADER_SIZE) {
+			return false;
+		}
+		index.put(task.getId(), append(body, crc, blockerIds.length > 0));
+		if (old != null) {
+			garbage += old.size;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes an id
+	 * @param id Task id
+	 * @return true if the id was stored
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized boolean delete(int id) throws IOException {
+		checkWritable();
+		Location old = index.remove(id);
+		if (old == null) {
+			return false;
+		}
+		byte[] body = encode(DELETE, id, null, NO_BLOCKERS);
+		Location tombstone = append(body, crc(body), false);
+		garbage += old.size + tombstone.size;
+		return true;
+	}
+
+	/**
+	 * Makes the store hold exactly some Tasks, as one batch record that replay applies all or nothing
+	 * Used when a change renumbers many Tasks, so a crash cannot leave them half renumbered
+	 * Tasks whose stored record is unchanged are not written again
+	 * @param tasks every Task to keep, with distinct ids
+	 * @param blockerIds ids of the Tasks each one waits for, in the same order
+	 * @return true if a record was written
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized boolean replaceAll(List<Task> tasks, List<int[]> blockerIds) throws IOException {
+		checkWritable();
+
+		// Changed Tasks, then ids no longer used
+		List<byte[]> bodies = new ArrayList<>();
+		Set<Integer> kept = new HashSet<>();
+		for (int i = 0; i < tasks.size(); i++) {
+			Task task = tasks.get(i);
+			kept.add(task.getId());
+			byte[] body = encode(PUT, task.getId(), task, blockerIds.get(i));
+			Location old = index.get(task.getId());
+			if (old == null || old.crc != crc(body) || old.size != body.length + RECORD_HEADER_SIZE) {
+				bodies.add(body);
+			}
+		}
+		for (Integer id : index.keySet()) {
+			if (!kept.contains(id)) {
+				bodies.add(encode(DELETE, id, null, NO_BLOCKERS));
+			}
+		}
+		if (bodies.isEmpty()) {
+			return false;
+		}
+
+		// Each change is laid out like a record of its own, so the index can point into the batch
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(BATCH);
+			out.writeInt(bodies.size());
+			for (byte[] body : bodies) {
+				out.writeInt(body.length);
+				out.writeInt(crc(body));
+				out.write(body);
+			}
+		}
+		byte[] batch = bytes.toByteArray();
+		Location record = append(batch, crc(batch), false);
+		garbage += RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+		long offset = record.offset + RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+		for (byte[] body : bodies) {
+			ByteBuffer view = ByteBuffer.wrap(body);
+			apply(view.get(0), view.getInt(1), new Location(offset, RECORD_HEADER_SIZE + body.length, crc(body), view.get(0) == PUT && view.getInt(5) > 0));
+			offset += RECORD_HEADER_SIZE + body.length;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads every Task with an id in a range, in id order
+	 * @param fromId first id (inclusive)
+	 * @param toId last id (inclusive)
+	 * @return new Tasks
+	 * @throws IOException if the file cannot be read
+	 */
+	public synchronized List<Task> scan(int fromId, int toId) throws IOException {
+		List<Task> tasks = new ArrayList<>();
+		if (fromId > toId) {
+			return tasks;
+		}
+		for (Location location : index.subMap(fromId, true, toId, true).values()) {
+			tasks.add(readTask(location));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Stored ids
+	 * @return copy of the ids in order
+	 */
+	public synchronized NavigableSet<Integer> ids() {
+		return new TreeMap<>(index).navigableKeySet();
+	}
+
+	/**
+	 * size
+	 * @return number of stored ids
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * getGarbageBytes
+	 * @return bytes of replaced and deleted records that compact would free
+	 */
+	public synchronized long getGarbageBytes() {
+		return garbage;
+	}
+
+	/**
+	 * Removes every id at once by starting a new empty log
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void clear() throws IOException {
+		checkWritable();
+		channel.truncate(HEADER_SIZE);
+		channel.force(true);
+		index.clear();
+		end = HEADER_SIZE;
+		garbage = 0;
+	}
+
+	/**
+	 * Forces every write so far to disk, then compacts if more than half the log is garbage
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void sync() throws IOException {
+		if (readOnly) {
+			return;
+		}
+		channel.force(false);
+		if (garbage > MIN_COMPACT_BYTES && garbage > end - garbage) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrites the live records in id order to a new log and replaces the old one atomically
+	 * A crash part way through leaves the old log in place
+	 * @throws IOException if a file cannot be written
+	 */
+	public synchronized void compact() throws IOException {
+		checkWritable();
+		File temp = new File(file.getPath() + ".compact");
+		Map<Integer, Location> moved = new TreeMap<>();
+		try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeHeader(out);
+			long position = HEADER_SIZE;
+			for (Map.Entry<Integer, Location> entry : index.entrySet()) {
+				Location location = entry.getValue();
+				ByteBuffer record = ByteBuffer.allocate(location.size);
+				readFully(record, location.offset);
+				record.flip();
+				while (record.hasRemaining()) {
+					out.write(record, position + record.position());
+				}
+				moved.put(entry.getKey(), new Location(position, location.size, location.crc, location.hasBlockers));
+				position += location.size;
+			}
+			out.force(true);
+		}
+
+		// Swap the files, then use the new offsets
+		channel.close();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		index.clear();
+		index.putAll(moved);
+		end = channel.size();
+		garbage = 0;
+	}
+
+	/**
+	 * Forces writes to disk and closes the log
+	 * @throws IOException if the file cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel.isOpen()) {
+			if (!readOnly) {
+				channel.force(false);
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the log, cutting off a torn last record
+	 * A record is torn if it runs past the end of the file, or fails its checksum and either ends the file
+	 * or is followed only by zeros, as a crash during an append leaves it
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if the file is not a task store or a record before the last is damaged
+	 */
+	private void replay() throws IOException, DataFormatException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		if (channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new DataFormatException("Invalid task store");
+		}
+		long size = channel.size();
+		long position = HEADER_SIZE;
+		ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE + BATCH_HEADER_SIZE);
+		while (position < size) {
+			if (position + RECORD_HEADER_SIZE > size) {
+				break;
+			}
+			recordHeader.clear().limit(RECORD_HEADER_SIZE);
+			readFully(recordHeader, position);
+			int length = recordHeader.getInt(0);
+			int crc = recordHeader.getInt(4);
+			if (length < 5 || length > MAX_BATCH_SIZE) {
+				if (isZeroFrom(position, size)) {
+					break;
+				}
+				throw damaged(position);
+			}
+			long next = position + RECORD_HEADER_SIZE + length;
+			if (next > size) {
+				break;
+			}
+			if (crcOf(position + RECORD_HEADER_SIZE, length) != crc) {
+				if (next == size || isZeroFrom(next, size)) {
+					break;
+				}
+				throw damaged(position);
+			}
+
+			// Apply the record
+			recordHeader.clear().limit(RECORD_HEADER_SIZE + Math.min(length, BATCH_HEADER_SIZE));
+			readFully(recordHeader, position);
+			byte operation = recordHeader.get(RECORD_HEADER_SIZE);
+			if (operation == BATCH) {
+				replayBatch(position, length);
+			} else if ((operation == PUT || operation == DELETE) && length <= MAX_BODY_SIZE) {
+				replayRecord(position, length, crc);
+			} else {
+				throw damaged(position);
+			}
+			position = next;
+		}
+
+		// Anything after the last complete record was a write cut short
+		if (position < size && !readOnly) {
+			channel.truncate(position);
+			channel.force(true);
+		}
+		end = position;
+	}
+
+	/**
+	 * Applies a checked PUT or DELETE record found by replay
+	 * @param position file offset of the record
+	 * @param length body length
+	 * @param crc CRC32 of the body
+	 * @throws IOException if the file cannot be read
+	 */
+	private void replayRecord(long position, int length, int crc) throws IOException {
+		ByteBuffer body = ByteBuffer.allocate(Math.min(length, 9));
+		readFully(body, position + RECORD_HEADER_SIZE);
+		boolean hasBlockers = body.get(0) == PUT && length >= 9 && body.getInt(5) > 0;
+		apply(body.get(0), body.getInt(1), new Location(position, RECORD_HEADER_SIZE + length, crc, hasBlockers));
+	}
+
+	/**
+	 * Applies every record inside a checked BATCH record found by replay
+	 * @param position file offset of the batch record
+	 * @param length batch body length
+	 * @throws IOException if the file cannot be read
+	 * @throws DataFormatException if the records do not fill the batch exactly
+	 */
+	private void replayBatch(long position, int length) throws IOException, DataFormatException {
+		ByteBuffer count = ByteBuffer.allocate(4);
+		readFully(count, position + RECORD_HEADER_SIZE + 1);
+		long offset = position + RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+		long end = position + RECORD_HEADER_SIZE + length;
+		ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		garbage += RECORD_HEADER_SIZE + BATCH_HEADER_SIZE;
+		for (int i = count.getInt(0); i > 0; i--) {
+			if (offset + RECORD_HEADER_SIZE > end) {
+				throw damaged(position);
+			}
+			recordHeader.clear();
+			readFully(recordHeader, offset);
+			int bodyLength = recordHeader.getInt(0);
+			if (bodyLength < 5 || bodyLength > MAX_BODY_SIZE || offset + RECORD_HEADER_SIZE + bodyLength > end) {
+				throw damaged(position);
+			}
+			replayRecord(offset, bodyLength, recordHeader.getInt(4));
+			offset += RECORD_HEADER_SIZE + bodyLength;
+		}
+		if (offset != end) {
+			throw damaged(position);
+		}
+	}
+
+	/**
+	 * Makes a record the latest for its id and counts what it replaces as garbage
+	 * @param operation PUT or DELETE
+	 * @param id Task id
+	 * @param location where the record is
+	 */
+	private void apply(byte operation, int id, Location location) {
+		Location old;
+		if (operation == PUT) {
+			old = index.put(id, location);
+		} else {
+			old = index.remove(id);
+			garbage += location.size;
+		}
+		if (old != null) {
+			garbage += old.size;
+		}
+	}
+
+	/**
+	 * Error for a damaged record that is not the last
+	 * @param position file offset of the record
+	 * @return exception to throw
+	 */
+	private static DataFormatException damaged(long position) {
+		return new DataFormatException("Damaged task store record at byte " + position);
+	}
+
+	/**
+	 * CRC32 of a range of the log, read a chunk at a time
+	 * @param position file offset
+	 * @param length bytes to check
+	 * @return checksum
+	 * @throws IOException if the file cannot be read
+	 */
+	private int crcOf(long position, int length) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer chunk = ByteBuffer.allocate(Math.min(length, CHUNK_SIZE));
+		long done = 0;
+		while (done < length) {
+			chunk.clear().limit((int) Math.min(chunk.capacity(), length - done));
+			readFully(chunk, position + done);
+			crc.update(chunk.array(), 0, chunk.limit());
+			done += chunk.limit();
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Checks the rest of the log holds only zeros, as a file grown by a write that never landed does
+	 * @param position file offset
+	 * @param size file size
+	 * @return true if every byte from position on is zero
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean isZeroFrom(long position, long size) throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+		for (long at = position; at < size; at += chunk.limit()) {
+			chunk.clear().limit((int) Math.min(CHUNK_SIZE, size - at));
+			readFully(chunk, at);
+			for (int i = 0; i < chunk.limit(); i++) {
+				if (chunk.get(i) != 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Refuses writes to a store opened read-only
+	 * @throws IOException if the store is read-only
+	 */
+	private void checkWritable() throws IOException {
+		if (readOnly) {
+			throw new IOException("Task store " + file.getName() + " is open read-only");
+		}
+	}
+
+	/**
+	 * Appends one record at the end of the log
+	 * @param body record body
+	 * @param crc CRC32 of the body
+	 * @param hasBlockers true if the record lists blockers
+	 * @return location of the new record
+	 * @throws IOException if the file cannot be written
+	 */
+	private Location append(byte[] body, int crc, boolean hasBlockers) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+		record.putInt(body.length).putInt(crc).put(body).flip();
+		long offset = end;
+		while (record.hasRemaining()) {
+			channel.write(record, offset + record.position());
+		}
+		end += record.capacity();
+		return new Location(offset, record.capacity(), crc, hasBlockers);
+	}
+
+	/**
+	 * Reads and decodes the Task in a PUT record
+	 * @param location record location
+	 * @return new Task
+	 * @throws IOException if the file cannot be read or the record is damaged
+	 */
+	private Task readTask(Location location) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBody(location)))) {
+			in.skipBytes(5);
+			in.skipBytes(4 * in.readInt());
+			return TaskSerializer.readTask(in);
+		} catch (DataFormatException e) {
+			throw new IOException("Damaged record at byte " + location.offset, e);
+		}
+	}
+
+	/**
+	 * Reads and checks the body of a record
+	 * @param location record location
+	 * @return body bytes
+	 * @throws IOException if the file cannot be read or the record is damaged
+	 */
+	private byte[] readBody(Location location) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(location.size);
+		readFully(record, location.offset);
+		byte[] body = new byte[location.size - RECORD_HEADER_SIZE];
+		System.arraycopy(record.array(), RECORD_HEADER_SIZE, body, 0, body.length);
+		if (crc(body) != location.crc) {
+			throw new IOException("Damaged record at byte " + location.offset);
+		}
+		return body;
+	}
+
+	/**
+	 * Builds a record body: operation, id, then for a PUT the blocker ids and the Task
+	 * @param operation PUT or DELETE
+	 * @param id Task id
+	 * @param task Task for a PUT, null for a DELETE
+	 * @param blockerIds ids of the Tasks it waits for
+	 * @return body bytes
+	 * @throws IOException if encoding fails
+	 */
+	private static byte[] encode(byte operation, int id, Task task, int[] blockerIds) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(operation);
+			out.writeInt(id);
+			if (task != null) {
+				out.writeInt(blockerIds.length);
+				for (int blockerId : blockerIds) {
+					out.writeInt(blockerId);
+				}
+				TaskSerializer.writeTask(task, out);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * CRC32 of some bytes
+	 * @param bytes bytes to check
+	 * @return checksum
+	 */
+	private static int crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Writes the file header
+	 * @param target channel to write to
+	 * @throws IOException if writing fails
+	 */
+	private static void writeHeader(FileChannel target) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).flip();
+		while (header.hasRemaining()) {
+			target.write(header, header.position());
+		}
+	}
+
+	/**
+	 * Fills a buffer from the log
+	 * @param buffer buffer to fill
+	 * @param position file offset
+	 * @throws IOException if the file ends early
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of task store");
+			}
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import model.MemoryStats;
+import model.TaskList;
+
+/**
+ * Class for undo history that keeps heap use bounded however long the session runs
+ * The newest states stay in memory, older ones are compressed with TaskSerializer and appended
+ * to a temporary file, and are read back one at a time only when undo reaches them
+ * Each record in the file is followed by its length, so the file is read from the end like a stack
+ * and no per-state offsets are kept on the heap
+ * @author Luke Gentri
+ */
+public class UndoHistory implements Closeable {
+
+	/** Default number of states kept in memory */
+	public static final int DEFAULT_MEMORY_STATES = 10;
+
+	/** Bytes of the length written after each record */
+	private static final int TRAILER_SIZE = 4;
+
+	/** Number of states kept in memory */
+	private final int memoryStates;
+
+	/** Newest states, oldest first */
+	private final Deque<TaskList> recent = new ArrayDeque<>();
+
+	/** Temporary file for older states, created on first use */
+	private File spillFile;
+
+	/** Open channel to spillFile */
+	private FileChannel spill;
+
+	/** End of the last record in spillFile */
+	private long spillEnd;
+
+	/** Number of states in spillFile */
+	private int spilledCount;
+
+	/**
+	 * Constructor keeping DEFAULT_MEMORY_STATES states in memory
+	 */
+	public UndoHistory() {
+		this(DEFAULT_MEMORY_STATES);
+	}
+
+	/**
+	 * Constructor
+	 * @param memoryStates number of newest states kept in memory, at least 1
+	 */
+	public UndoHistory(int memoryStates) {
+		this.memoryStates = Math.max(1, memoryStates);
+	}
+
+	/**
+	 * Adds the newest state
+	 * The oldest state in memory is written to disk if there are too many
+	 * @param state TaskList to keep, not copied so pass a copy
+	 * @throws IOException if the temporary file cannot be written
+	 */
+	public void push(TaskList state) throws IOException {
+		recent.addLast(state);
+		if (recent.size() > memoryStates) {
+			spillOldest();
+		}
+	}
+
+	/**
+	 * Removes and returns the newest state
+	 * States on disk are read back once every state in memory has been undone
+	 * @return newest state, null if there is none
+	 * @throws IOException if the temporary file cannot be read
+	 * @throws DataFormatException if the temporary file is damaged
+	 */
+	public TaskList pop() throws IOException, DataFormatException {
+		if (!recent.isEmpty()) {
+			return recent.removeLast();
+		}
+		if (spilledCount == 0) {
+			return null;
+		}
+
+		// Read the last record's length, then the record
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		readFully(trailer, spillEnd - TRAILER_SIZE);
+		int length = trailer.getInt(0);
+		ByteBuffer record = ByteBuffer.allocate(length);
+		long start = spillEnd - TRAILER_SIZE - length;
+		readFully(record, start);
+		spillEnd = start;
+		spilledCount--;
+
+		// Give the space back once the file is empty
+		if (spilledCount == 0) {
+			spill.truncate(0);
+		}
+		return TaskSerializer.fromBytes(record.array());
+	}
+
+	/**
+	 * isEmpty
+	 * @return true if there is nothing to undo
+	 */
+	public boolean isEmpty() {
+		return recent.isEmpty() && spilledCount == 0;
+	}
+
+	/**
+	 * size
+	 * @return number of states, in memory and on disk
+	 */
+	public int size() {
+		return recent.size() + spilledCount;
+	}
+
+	/**
+	 * getSpilledCount
+	 * @return number of states on disk
+	 */
+	public int getSpilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * Estimated heap held by the states in memory, states on disk cost nothing
+	 * @return figures for the history alone
+	 */
+	public MemoryStats memoryStats() {
+		MemoryStats.Counter counter = new MemoryStats.Counter();
+		MemoryStats result = memoryStats(counter);
+		counter.reset();
+		return result;
+	}
+
+	/**
+	 * Estimated heap held by the states in memory, leaving out Tasks and strings the counter has already seen,
+	 * so strings a state shares with the current list count as shared
+	 * @param counter counter shared with the other parts being measured
+	 * @return figures for the history
+	 */
+	public MemoryStats memoryStats(MemoryStats.Counter counter) {
+		List<MemoryStats> states = new ArrayList<>(recent.size());
+		for (TaskList state : recent) {
+			states.add(state.memoryStats(counter));
+		}
+		return MemoryStats.total("Undo history", states);
+	}
+
+	/**
+	 * Removes every state
+	 * @throws IOException if the temporary file cannot be truncated
+	 */
+	public void clear() throws IOException {
+		recent.clear();
+		if (spill != null) {
+			spill.truncate(0);
+		}
+		spillEnd = 0;
+		spilledCount = 0;
+	}
+
+	/**
+	 * Deletes the temporary file
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		recent.clear();
+		spilledCount = 0;
+		if (spill != null) {
+			spill.close();
+			spill = null;
+			spillFile.delete();
+		}
+	}
+
+	/**
+	 * Moves the oldest state in memory to the end of the temporary file
+	 * @throws IOException if the file cannot be written
+	 */
+	private void spillOldest() throws IOException {
+		if (spill == null) {
+			spillFile = File.createTempFile("undo", ".bin");
+			spillFile.deleteOnExit();
+			spill = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		byte[] bytes = TaskSerializer.toBytes(recent.removeFirst());
+		ByteBuffer record = ByteBuffer.allocate(bytes.length + TRAILER_SIZE);
+		record.put(bytes).putInt(bytes.length).flip();
+		while (record.hasRemaining()) {
+			spillEnd += spill.write(record, spillEnd);
+		}
+		spilledCount++;
+	}
+
+	/**
+	 * Fills a buffer from the temporary file
+	 * @param buffer buffer to fill
+	 * @param position file offset
+	 * @throws IOException if the file ends early
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (spill.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Undo history file is truncated");
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package io;
+
+import java.util.Collections;
+import java.util.List;
+
+import model.TaskList;
+
+/**
+ * Class holding the outcome of a TaskFileValidator pass
+ * Has the number of lines and problems, the first problems in line order (up to the validator's limit),
+ * and, when loading, the valid Tasks
+ * @author Luke Gentri
+ */
+public class ValidationResult {
+
+	/** Lines scanned */
+	private final long lineCount;
+
+	/** Invalid lines found, including those past the limit */
+	private final long errorCount;
+
+	/** First problems in line order */
+	private final List<TaskFormatException> errors;
+
+	/** Valid Tasks, null when only validating */
+	private final TaskList tasks;
+
+	/**
+	 * Constructor
+	 * @param lineCount lines scanned
+	 * @param errorCount invalid lines found
+	 * @param errors first problems in line order
+	 * @param tasks valid Tasks, or null
+	 */
+	ValidationResult(long lineCount, long errorCount, List<TaskFormatException> errors, TaskList tasks) {
+		this.lineCount = lineCount;
+		this.errorCount = errorCount;
+		this.errors = Collections.unmodifiableList(errors);
+		this.tasks = tasks;
+	}
+
+	/**
+	 * isValid
+	 * @return true if every line is valid
+	 */
+	public boolean isValid() {
+		return errorCount == 0;
+	}
+
+	/**
+	 * getLineCount
+	 * @return number of lines scanned
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * getErrorCount
+	 * @return number of invalid lines, including those not listed
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * getErrors
+	 * @return first problems in line order, each with line, column and reason
+	 */
+	public List<TaskFormatException> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * isTruncated
+	 * @return true if more problems were found than are listed
+	 */
+	public boolean isTruncated() {
+		return errorCount > errors.size();
+	}
+
+	/**
+	 * getTasks
+	 * @return valid Tasks in file order, or null if the file was only validated
+	 */
+	public TaskList getTasks() {
+		return tasks;
+	}
+}
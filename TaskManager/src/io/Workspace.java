@@ -0,0 +1,619 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.DataFormatException;
+
+import model.TagQuery;
+import model.Task;
+import model.TaskList;
+import model.TaskListEvent;
+import model.TaskListListener;
+
+/**
+ * Many named TaskLists open at once, such as one task file per project
+ * Lists opened from files are loaded on first use and evicted again, saved first if edited, once they
+ * have been idle for a while; eviction happens lazily at the start of the next workspace call
+ * Strings of every loaded Task go through one shared StringPool, so names and tags repeated across
+ * projects are held once
+ * A summary of each evicted list (its tags and its earliest incomplete due date) is kept, so
+ * cross-list queries skip evicted lists that cannot match instead of loading them
+ * Cross-list queries run one list per ForkJoin task, each list's matches are sorted and the halves
+ * are merged on the way back up, giving matches ordered by due date then list name
+ * Lists handed out by get must only be changed on the thread calling the workspace
+ * @author Luke Gentri
+ */
+public class Workspace implements Closeable {
+
+	/**
+	 * One Task found by a cross-list query
+	 */
+	public static final class Match {
+
+		/** Name of the list holding the Task */
+		private final String listName;
+
+		/** Task found */
+		private final Task task;
+
+		/**
+		 * Constructor
+		 * @param listName name of the list holding the Task
+		 * @param task Task found
+		 */
+		Match(String listName, Task task) {
+			this.listName = listName;
+			this.task = task;
+		}
+
+		/**
+		 * getListName
+		 * @return name of the list holding the Task
+		 */
+		public String getListName() {
+			return listName;
+		}
+
+		/**
+		 * getTask
+		 * @return Task found
+		 */
+		public Task getTask() {
+			return task;
+		}
+	}
+
+	/** Orders matches by due date (undated last), then list name, then position in the list */
+	private static final Comparator<Match> ORDER = new Comparator<Match>() {
+		@Override
+		public int compare(Match m1, Match m2) {
+			LocalDate d1 = m1.task.getDueDate();
+			LocalDate d2 = m2.task.getDueDate();
+			if (d1 == null || d2 == null) {
+				if (d1 != d2) {
+					return d1 == null ? 1 : -1;
+				}
+			} else if (!d1.equals(d2)) {
+				return d1.compareTo(d2);
+			}
+			int result = m1.listName.compareTo(m2.listName);
+			return result != 0 ? result : Integer.compare(m1.task.getId(), m2.task.getId());
+		}
+	};
+
+	/**
+	 * Query run on each list by the ForkJoin tasks
+	 */
+	private interface ListQuery {
+
+		/**
+		 * Whether an evicted list could have matches, judged from its summary
+		 * @param entry evicted list with a summary
+		 * @return false if the list can be skipped without loading it
+		 */
+		boolean mayMatch(Entry entry);
+
+		/**
+		 * Matching Tasks of one list
+		 * @param list loaded list
+		 * @return new list of matching Tasks
+		 */
+		List<Task> run(TaskList list);
+	}
+
+	/**
+	 * One named list and what is known about it while evicted
+	 */
+	private final class Entry {
+
+		/** Name in the workspace */
+		final String name;
+
+		/** File the list is loaded from and saved to, null for a list only held in memory */
+		final File file;
+
+		/** Loaded list, null while evicted */
+		TaskList list;
+
+		/** Clock millis of the last use */
+		long lastUsed;
+
+		/** True if the list changed since it was loaded or saved */
+		boolean dirty;
+
+		/** True once the list has been loaded and evicted, so the summary below is valid */
+		boolean summarized;
+
+		/** Tags in use when evicted */
+		Set<String> tags;
+
+		/** Earliest due date of an incomplete Task when evicted, null if none */
+		LocalDate earliestDue;
+
+		/** Marks the list dirty on every change */
+		final TaskListListener tracker = new TaskListListener() {
+			@Override
+			public void taskListChanged(TaskListEvent event) {
+				dirty = true;
+				lastUsed = clock.millis();
+			}
+		};
+
+		/**
+		 * Constructor
+		 * @param name name in the workspace
+		 * @param file backing file, or null
+		 * @param list loaded list, or null to load from the file on first use
+		 */
+		Entry(String name, File file, TaskList list) {
+			this.name = name;
+			this.file = file;
+			this.lastUsed = clock.millis();
+			if (list != null) {
+				attach(list);
+			}
+		}
+
+		/**
+		 * Loaded list, loading it from the file if evicted
+		 * May run on a ForkJoin thread, each entry is loaded by one thread at a time
+		 * @return list
+		 * @throws IOException if the file cannot be read or is invalid
+		 */
+		synchronized TaskList load() throws IOException {
+			lastUsed = clock.millis();
+			if (list != null) {
+				return list;
+			}
+			TaskList loaded = new TaskList();
+			if (file.exists() && file.length() > 0) {
+				try {
+					reader.loadInto(file, loaded);
+				} catch (DataFormatException e) {
+					throw new IOException("Cannot load '" + name + "': " + e.getMessage(), e);
+				}
+			}
+			for (Task task : loaded.getAllTasks()) {
+				strings.intern(task);
+			}
+			attach(loaded);
+			return loaded;
+		}
+
+		/**
+		 * Starts tracking a loaded list
+		 * @param loaded list
+		 */
+		private void attach(TaskList loaded) {
+			list = loaded;
+			dirty = false;
+			list.addTaskListListener(tracker);
+		}
+
+		/**
+		 * Writes the list to its file if it changed
+		 * @throws IOException if the file cannot be written
+		 */
+		synchronized void save() throws IOException {
+			if (list != null && file != null && dirty) {
+				reader.saveToFile(list, file);
+				dirty = false;
+			}
+		}
+
+		/**
+		 * Saves the list and drops it, keeping a summary for queries
+		 * @throws IOException if the file cannot be written, the list is then kept
+		 */
+		synchronized void evict() throws IOException {
+			save();
+			tags = list.getTags();
+			earliestDue = null;
+			for (Task task : list.getAllTasks()) {
+				LocalDate due = task.getDueDate();
+				if (!task.isCompleted() && due != null && (earliestDue == null || due.isBefore(earliestDue))) {
+					earliestDue = due;
+				}
+			}
+			summarized = true;
+			list.removeTaskListListener(tracker);
+			list = null;
+		}
+	}
+
+	/**
+	 * Runs a query on a range of lists, splitting the range in half until one list is left
+	 */
+	private final class QueryTask extends RecursiveTask<List<Match>> {
+
+		/** Serial version */
+		private static final long serialVersionUID = 1L;
+
+		/** Lists to query */
+		private final List<Entry> entries;
+
+		/** Query to run */
+		private final ListQuery query;
+
+		/** Range of entries, from inclusive and to exclusive */
+		private final int from;
+		private final int to;
+
+		/**
+		 * Constructor
+		 * @param entries lists to query
+		 * @param query query to run
+		 * @param from first entry
+		 * @param to entry after the last
+		 */
+		QueryTask(List<Entry> entries, ListQuery query, int from, int to) {
+			this.entries = entries;
+			this.query = query;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Match> compute() {
+			if (to - from == 1) {
+				return queryOne(entries.get(from));
+			}
+
+			// Query both halves at once and merge their sorted matches
+			int middle = (from + to) >>> 1;
+			QueryTask left = new QueryTask(entries, query, from, middle);
+			left.fork();
+			List<Match> right = new QueryTask(entries, query, middle, to).compute();
+			return merge(left.join(), right);
+		}
+
+		/**
+		 * Runs the query on one list
+		 * @param entry list to query
+		 * @return sorted matches
+		 */
+		private List<Match> queryOne(Entry entry) {
+			List<Match> matches = new ArrayList<>();
+			synchronized (entry) {
+				if (entry.list == null && entry.summarized && !query.mayMatch(entry)) {
+					return matches;
+				}
+			}
+			try {
+				for (Task task : query.run(entry.load())) {
+					matches.add(new Match(entry.name, task));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			Collections.sort(matches, ORDER);
+			return matches;
+		}
+	}
+
+	/** Reads and writes the task files */
+	private final TaskReader reader = new TaskReader();
+
+	/** Shared strings of every loaded Task */
+	private final StringPool strings = new StringPool();
+
+	/** Lists by name, in name order */
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	/** Milliseconds a list opened from a file may go unused before it is evicted */
+	private final long idleMillis;
+
+	/** Runs cross-list queries */
+	private final ForkJoinPool pool;
+
+	/** Source of the time for idle checks */
+	private final Clock clock;
+
+	/** Name of the list never evicted because it is being shown, or null */
+	private String current;
+
+	/**
+	 * Constructor using the common ForkJoinPool and the system clock
+	 * @param idleMillis milliseconds a list opened from a file may go unused before it is evicted
+	 */
+	public Workspace(long idleMillis) {
+		this(idleMillis, ForkJoinPool.commonPool(), Clock.systemUTC());
+	}
+
+	/**
+	 * Constructor
+	 * @param idleMillis milliseconds a list opened from a file may go unused before it is evicted
+	 * @param pool runs cross-list queries
+	 * @param clock source of the time for idle checks
+	 */
+	public Workspace(long idleMillis, ForkJoinPool pool, Clock clock) {
+		this.idleMillis = idleMillis;
+		this.pool = pool;
+		this.clock = clock;
+	}
+
+	/**
+	 * Adds a list backed by a task file, loaded on first use
+	 * A file that does not exist yet is an empty list, created when the list is saved
+	 * @param name name in the workspace
+	 * @param file task file
+	 * @throws IllegalArgumentException if the name is already used
+	 */
+	public synchronized void open(String name, File file) {
+		add(new Entry(name, file, null));
+	}
+
+	/**
+	 * Adds a list held only in memory, never evicted
+	 * @param name name in the workspace
+	 * @param list list to add
+	 * @throws IllegalArgumentException if the name is already used
+	 */
+	public synchronized void add(String name, TaskList list) {
+		add(new Entry(name, null, list));
+	}
+
+	/**
+	 * Removes a list, saving it first if it changed
+	 * @param name name in the workspace
+	 * @throws IOException if the list cannot be saved, it is then kept
+	 */
+	public synchronized void remove(String name) throws IOException {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			return;
+		}
+		entry.save();
+		if (entry.list != null) {
+			entry.list.removeTaskListListener(entry.tracker);
+		}
+		entries.remove(name);
+		if (name.equals(current)) {
+			current = null;
+		}
+	}
+
+	/**
+	 * Names of every list
+	 * @return new list of names, sorted
+	 */
+	public synchronized List<String> getNames() {
+		return new ArrayList<>(entries.keySet());
+	}
+
+	/**
+	 * A list by name, loading it if evicted
+	 * @param name name in the workspace
+	 * @return list
+	 * @throws IOException if the list cannot be loaded or an idle list cannot be saved
+	 * @throws IllegalArgumentException if there is no such list
+	 */
+	public synchronized TaskList get(String name) throws IOException {
+		evictIdle();
+		return entry(name).load();
+	}
+
+	/**
+	 * Marks the list being shown, it is never evicted while current
+	 * @param name name in the workspace, or null for none
+	 * @throws IllegalArgumentException if there is no such list
+	 */
+	public synchronized void setCurrent(String name) {
+		if (name != null) {
+			entry(name).lastUsed = clock.millis();
+		}
+		current = name;
+	}
+
+	/**
+	 * Checks whether a list is loaded
+	 * @param name name in the workspace
+	 * @return false if the list is evicted or has not been loaded yet
+	 */
+	public synchronized boolean isLoaded(String name) {
+		return entry(name).list != null;
+	}
+
+	/**
+	 * Saves and drops every list opened from a file that has been idle too long, except the current one
+	 * Called at the start of get and of every query
+	 * @return number of lists evicted
+	 * @throws IOException if a list cannot be saved, lists before it are still evicted
+	 */
+	public synchronized int evictIdle() throws IOException {
+		long now = clock.millis();
+		int evicted = 0;
+		for (Entry entry : entries.values()) {
+			if (entry.list != null && entry.file != null && !entry.name.equals(current) && now - entry.lastUsed >= idleMillis) {
+				entry.evict();
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Writes every changed list to its file
+	 * @throws IOException if a list cannot be saved
+	 */
+	public synchronized void saveAll() throws IOException {
+		for (Entry entry : entries.values()) {
+			entry.save();
+		}
+	}
+
+	/**
+	 * Incomplete Tasks due before a day, across every list
+	 * @param today first day that is not overdue
+	 * @return matches by due date, then list name
+	 * @throws IOException if a list cannot be loaded or saved
+	 */
+	public List<Match> getOverdue(final LocalDate today) throws IOException {
+		return query(new ListQuery() {
+			@Override
+			public boolean mayMatch(Entry entry) {
+				return entry.earliestDue != null && entry.earliestDue.isBefore(today);
+			}
+
+			@Override
+			public List<Task> run(TaskList list) {
+				List<Task> overdue = new ArrayList<>();
+				for (Task task : list.getAllTasks()) {
+					if (!task.isCompleted() && task.getDueDate() != null && task.getDueDate().isBefore(today)) {
+						overdue.add(task);
+					}
+				}
+				return overdue;
+			}
+		});
+	}
+
+	/**
+	 * Tasks whose name or description contains some text, ignoring case, across every list
+	 * @param text text to look for
+	 * @return matches by due date, then list name
+	 * @throws IOException if a list cannot be loaded or saved
+	 */
+	public List<Match> search(String text) throws IOException {
+		final String lower = text.toLowerCase(Locale.ROOT);
+		return query(new ListQuery() {
+			@Override
+			public boolean mayMatch(Entry entry) {
+				return true;
+			}
+
+			@Override
+			public List<Task> run(TaskList list) {
+				List<Task> found = new ArrayList<>();
+				for (Task task : list.getAllTasks()) {
+					if (task.getName().toLowerCase(Locale.ROOT).contains(lower)
+							|| task.getDescription().toLowerCase(Locale.ROOT).contains(lower)) {
+						found.add(task);
+					}
+				}
+				return found;
+			}
+		});
+	}
+
+	/**
+	 * Tasks matching a tag filter, across every list
+	 * Evicted lists missing a tag the filter needs are not loaded
+	 * @param query tag filter
+	 * @return matches by due date, then list name
+	 * @throws IOException if a list cannot be loaded or saved
+	 */
+	public List<Match> filter(final TagQuery query) throws IOException {
+		final Set<String> required = query.getRequiredTags();
+		return query(new ListQuery() {
+			@Override
+			public boolean mayMatch(Entry entry) {
+				return entry.tags.containsAll(required);
+			}
+
+			@Override
+			public List<Task> run(TaskList list) {
+				return list.filter(query);
+			}
+		});
+	}
+
+	/**
+	 * getPooledStrings
+	 * @return number of distinct strings shared by loaded Tasks
+	 */
+	public int getPooledStrings() {
+		return strings.size();
+	}
+
+	/**
+	 * Saves every changed list
+	 * @throws IOException if a list cannot be saved
+	 */
+	@Override
+	public void close() throws IOException {
+		saveAll();
+	}
+
+	/**
+	 * Runs a query on every list in parallel
+	 * @param query query to run
+	 * @return sorted matches of every list
+	 * @throws IOException if a list cannot be loaded or saved
+	 */
+	private synchronized List<Match> query(ListQuery query) throws IOException {
+		evictIdle();
+		List<Entry> all = new ArrayList<>(entries.values());
+		if (all.isEmpty()) {
+			return new ArrayList<>();
+		}
+		try {
+			return pool.invoke(new QueryTask(all, query, 0, all.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Adds an entry
+	 * @param entry entry to add
+	 * @throws IllegalArgumentException if the name is already used
+	 */
+	private void add(Entry entry) {
+		if (entries.containsKey(entry.name)) {
+			throw new IllegalArgumentException("A list named '" + entry.name + "' is already open");
+		}
+		entries.put(entry.name, entry);
+	}
+
+	/**
+	 * Entry by name
+	 * @param name name in the workspace
+	 * @return entry
+	 * @throws IllegalArgumentException if there is no such list
+	 */
+	private Entry entry(String name) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new IllegalArgumentException("No list named '" + name + "'");
+		}
+		return entry;
+	}
+
+	/**
+	 * Merges two sorted lists of matches
+	 * @param first sorted matches
+	 * @param second sorted matches
+	 * @return new sorted list of both
+	 */
+	private static List<Match> merge(List<Match> first, List<Match> second) {
+		List<Match> merged = new ArrayList<>(first.size() + second.size());
+		int i = 0;
+		int j = 0;
+		while (i < first.size() && j < second.size()) {
+			if (ORDER.compare(first.get(i), second.get(j)) <= 0) {
+				merged.add(first.get(i++));
+			} else {
+				merged.add(second.get(j++));
+			}
+		}
+		merged.addAll(first.subList(i, first.size()));
+		merged.addAll(second.subList(j, second.size()));
+		return merged;
+	}
+}
@@ -0,0 +1,453 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Directed graph of "blocked by" edges between the Tasks of a TaskList
+ * Keeps a topological order up to date with the Pearce-Kelly algorithm, so adding an edge only
+ * reorders the Tasks between its two ends, and an edge that would close a cycle is found on the way
+ * Also keeps the incomplete Tasks with no incomplete blockers in an IndexedHeap, most urgent first,
+ * so they are listed in O(k), the next one is found in O(1) and a change moves one Task in O(log n)
+ * Urgency is priority, then the first open occurrence from the due date, Tasks with no due date last
+ * Tasks are matched by identity, like TaskList
+ * Not thread-safe
+ * @author Luke Gentri
+ */
+class DependencyGraph {
+
+    /**
+     * One Task and its edges
+     */
+    private static class Node {
+
+        /** Task this node is for */
+        final Task task;
+
+        /** Position in the topological order, blockers always have lower positions */
+        int order;
+
+        /** Tasks that must be completed first */
+        final List<Node> blockers = new ArrayList<>(2);
+
+        /** Tasks waiting for this one */
+        final List<Node> dependents = new ArrayList<>(2);
+
+        /** Number of blockers not yet completed */
+        int openBlockers;
+
+        /** Completion status when last seen */
+        boolean completed;
+
+        /** Priority when last seen */
+        Priority priority;
+
+        /** Epoch day of the first open occurrence when last seen, Long.MAX_VALUE if none */
+        long due;
+
+        /** Marks nodes reached by a search */
+        boolean visited;
+
+        /**
+         * Constructor
+         * @param task Task this node is for
+         * @param order position in the topological order
+         */
+        Node(Task task, int order) {
+            this.task = task;
+            this.order = order;
+            this.completed = task.isCompleted();
+            this.priority = task.getPriority();
+            this.due = dueKey(task);
+        }
+    }
+
+    /** Orders nodes by topological position */
+    private static final Comparator<Node> BY_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node n1, Node n2) {
+            return Integer.compare(n1.order, n2.order);
+        }
+    };
+
+    /** Orders nodes by urgency, most urgent first */
+    private static final Comparator<Node> BY_URGENCY = new Comparator<Node>() {
+        @Override
+        public int compare(Node n1, Node n2) {
+            int result = n2.priority.compareTo(n1.priority);
+            return result != 0 ? result : Long.compare(n1.due, n2.due);
+        }
+    };
+
+    /** Orders Tasks by urgency like the heap, for lists that do not keep one */
+    static final Comparator<Task> TASKS_BY_URGENCY = new Comparator<Task>() {
+        @Override
+        public int compare(Task t1, Task t2) {
+            int result = t2.getPriority().compareTo(t1.getPriority());
+            return result != 0 ? result : Long.compare(dueKey(t1), dueKey(t2));
+        }
+    };
+
+    /** Node of every Task */
+    private final Map<Task, Node> nodes = new IdentityHashMap<>();
+
+    /** Incomplete Tasks with no incomplete blockers, most urgent first */
+    private final IndexedHeap<Node> unblocked = new IndexedHeap<>(BY_URGENCY);
+
+    /** Position given to the next Task added */
+    private int nextOrder;
+
+    /** Number of edges */
+    private int edgeCount;
+
+    /**
+     * Adds a Task with no edges, after every other Task in the order
+     * @param task Task to add
+     */
+    void add(Task task) {
+        if (nodes.containsKey(task)) {
+            return;
+        }
+        Node node = new Node(task, nextOrder++);
+        nodes.put(task, node);
+        refresh(node);
+    }
+
+    /**
+     * Removes a Task and its edges, Tasks it blocked may become unblocked
+     * @param task Task to remove
+     */
+    void remove(Task task) {
+        Node node = nodes.remove(task);
+        if (node == null) {
+            return;
+        }
+        for (Node blocker : node.blockers) {
+            blocker.dependents.remove(node);
+        }
+        for (Node dependent : node.dependents) {
+            dependent.blockers.remove(node);
+            if (!node.completed) {
+                dependent.openBlockers--;
+                refresh(dependent);
+            }
+        }
+        edgeCount -= node.blockers.size() + node.dependents.size();
+        unblocked.remove(node);
+    }
+
+    /**
+     * Removes every Task
+     */
+    void clear() {
+        nodes.clear();
+        unblocked.clear();
+        nextOrder = 0;
+        edgeCount = 0;
+    }
+
+    /**
+     * Notes a change to a Task, moving it by urgency and updating the Tasks it blocks if its completion changed
+     * @param task Task that changed
+     */
+    void updated(Task task) {
+        Node node = nodes.get(task);
+        if (node == null) {
+            return;
+        }
+        node.priority = task.getPriority();
+        node.due = dueKey(task);
+        unblocked.update(node);
+        if (node.completed == task.isCompleted()) {
+            return;
+        }
+        node.completed = task.isCompleted();
+        int change = node.completed ? -1 : 1;
+        for (Node dependent : node.dependents) {
+            dependent.openBlockers += change;
+            refresh(dependent);
+        }
+        refresh(node);
+    }
+
+    /**
+     * Checks for a Task
+     * @param task Task to look for
+     * @return true if the Task is in the graph
+     */
+    boolean contains(Task task) {
+        return nodes.containsKey(task);
+    }
+
+    /**
+     * Adds an edge, moving Tasks in the order only between its two ends
+     * @param task Task that must wait
+     * @param blocker Task to complete first
+     * @return false if the edge already exists
+     * @throws IllegalArgumentException if either Task is missing or the edge would make a cycle
+     */
+    boolean addEdge(Task task, Task blocker) {
+        Node to = node(task);
+        Node from = node(blocker);
+        if (from == to) {
+            throw new IllegalArgumentException("A task cannot block itself");
+        }
+        if (to.blockers.contains(from)) {
+            return false;
+        }
+        if (from.order > to.order) {
+            reorder(from, to);
+        }
+        to.blockers.add(from);
+        from.dependents.add(to);
+        edgeCount++;
+        if (!from.completed) {
+            to.openBlockers++;
+            refresh(to);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an edge
+     * @param task Task that waited
+     * @param blocker Task it waited for
+     * @return false if there was no such edge
+     */
+    boolean removeEdge(Task task, Task blocker) {
+        Node to = nodes.get(task);
+        Node from = nodes.get(blocker);
+        if (to == null || from == null || !to.blockers.remove(from)) {
+            return false;
+        }
+        from.dependents.remove(to);
+        edgeCount--;
+        if (!from.completed) {
+            to.openBlockers--;
+            refresh(to);
+        }
+        return true;
+    }
+
+    /**
+     * Tasks a Task waits for
+     * @param task Task to look up
+     * @return new list of blockers, empty if none
+     */
+    List<Task> getBlockers(Task task) {
+        Node node = nodes.get(task);
+        return node == null ? new ArrayList<Task>() : tasksOf(node.blockers);
+    }
+
+    /**
+     * Tasks waiting for a Task
+     * @param task Task to look up
+     * @return new list of dependents, empty if none
+     */
+    List<Task> getDependents(Task task) {
+        Node node = nodes.get(task);
+        return node == null ? new ArrayList<Task>() : tasksOf(node.dependents);
+    }
+
+    /**
+     * Whether a Task waits for an incomplete Task
+     * @param task Task to check
+     * @return true if blocked
+     */
+    boolean isBlocked(Task task) {
+        Node node = nodes.get(task);
+        return node != null && node.openBlockers > 0;
+    }
+
+    /**
+     * Incomplete Tasks with no incomplete blockers, in O(k)
+     * @return new list, in no particular order
+     */
+    List<Task> getUnblocked() {
+        return tasksOf(unblocked.toList());
+    }
+
+    /**
+     * Most urgent unblocked Tasks, in O(n log n) for n Tasks returned
+     * @param n most Tasks to return
+     * @return new list, most urgent first
+     */
+    List<Task> getMostUrgent(int n) {
+        return tasksOf(unblocked.smallest(n));
+    }
+
+    /**
+     * Every Task, each after all of its blockers
+     * @return new list in topological order
+     */
+    List<Task> getOrder() {
+        List<Node> sorted = new ArrayList<>(nodes.values());
+        Collections.sort(sorted, BY_ORDER);
+        return tasksOf(sorted);
+    }
+
+    /**
+     * getEdgeCount
+     * @return number of edges
+     */
+    int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Approximate memory used by the nodes, their edge lists and the heap, without visiting them
+     * @return bytes
+     */
+    long getSizeInBytes() {
+
+        // Node, its two edge lists at their starting capacity and its map entry
+        long node = MemoryStats.objectBytes(7 * MemoryStats.REFERENCE + 8 + 2) + 2 * (MemoryStats.objectBytes(3 * 4)
+                + MemoryStats.arrayBytes(2, MemoryStats.REFERENCE)) + MemoryStats.IDENTITY_MAP_ENTRY;
+
+        // Heap slot, position entry and boxed position
+        long heapEntry = MemoryStats.REFERENCE + MemoryStats.IDENTITY_MAP_ENTRY + MemoryStats.objectBytes(4);
+        return nodes.size() * node + edgeCount * 2L * MemoryStats.REFERENCE + unblocked.size() * heapEntry;
+    }
+
+    /**
+     * Moves the Tasks between a new edge's ends so the blocker comes first (Pearce-Kelly)
+     * Only Tasks ordered between the two ends are searched and renumbered
+     * @param from blocker, currently after to
+     * @param to Task that must wait
+     * @throws IllegalArgumentException if to already leads to from, so the edge would make a cycle
+     */
+    private void reorder(Node from, Node to) {
+        int lower = to.order;
+        int upper = from.order;
+        List<Node> forward = new ArrayList<>();
+        List<Node> backward = new ArrayList<>();
+        try {
+
+            // Tasks that wait on to and are ordered before from, reaching from means a cycle
+            Deque<Node> stack = new ArrayDeque<>();
+            visit(to, stack, forward);
+            while (!stack.isEmpty()) {
+                for (Node next : stack.pop().dependents) {
+                    if (next == from) {
+                        throw new IllegalArgumentException("'" + from.task.getName() + "' already waits for '"
+                                + to.task.getName() + "'");
+                    }
+                    if (!next.visited && next.order < upper) {
+                        visit(next, stack, forward);
+                    }
+                }
+            }
+
+            // Tasks that from waits on and are ordered after to
+            visit(from, stack, backward);
+            while (!stack.isEmpty()) {
+                for (Node next : stack.pop().blockers) {
+                    if (!next.visited && next.order > lower) {
+                        visit(next, stack, backward);
+                    }
+                }
+            }
+        } finally {
+            for (Node node : forward) {
+                node.visited = false;
+            }
+            for (Node node : backward) {
+                node.visited = false;
+            }
+        }
+
+        // Give the same positions back, backward Tasks first, each group keeping its order
+        Collections.sort(forward, BY_ORDER);
+        Collections.sort(backward, BY_ORDER);
+        int[] orders = new int[forward.size() + backward.size()];
+        int i = 0;
+        for (Node node : backward) {
+            orders[i++] = node.order;
+        }
+        for (Node node : forward) {
+            orders[i++] = node.order;
+        }
+        Arrays.sort(orders);
+        i = 0;
+        for (Node node : backward) {
+            node.order = orders[i++];
+        }
+        for (Node node : forward) {
+            node.order = orders[i++];
+        }
+    }
+
+    /**
+     * Marks a node found by a search
+     * @param node node found
+     * @param stack nodes still to search from
+     * @param found nodes found so far
+     */
+    private static void visit(Node node, Deque<Node> stack, List<Node> found) {
+        node.visited = true;
+        stack.push(node);
+        found.add(node);
+    }
+
+    /**
+     * Node of a Task in the graph
+     * @param task Task to look up
+     * @return node
+     * @throws IllegalArgumentException if the Task is not in the graph
+     */
+    private Node node(Task task) {
+        Node node = nodes.get(task);
+        if (node == null) {
+            throw new IllegalArgumentException("Task is not in this list");
+        }
+        return node;
+    }
+
+    /**
+     * Adds a node to or removes it from unblocked as its state requires
+     * @param node node that changed
+     */
+    private void refresh(Node node) {
+        if (!node.completed && node.openBlockers == 0) {
+            if (!unblocked.contains(node)) {
+                unblocked.add(node);
+            }
+        } else {
+            unblocked.remove(node);
+        }
+    }
+
+    /**
+     * Urgency date of a Task, the first open occurrence on or after its due date
+     * @param task Task to look up
+     * @return epoch day, Long.MAX_VALUE if the Task has no due date or no open occurrence
+     */
+    static long dueKey(Task task) {
+        LocalDate due = task.getDueDate();
+        if (due != null && task.isRecurring()) {
+            due = task.getNextOccurrence(due);
+        }
+        return due == null ? Long.MAX_VALUE : due.toEpochDay();
+    }
+
+    /**
+     * Tasks of some nodes
+     * @param list nodes
+     * @return new list of their Tasks
+     */
+    private static List<Task> tasksOf(List<Node> list) {
+        List<Task> tasks = new ArrayList<>(list.size());
+        for (Node node : list) {
+            tasks.add(node.task);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,195 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Package-private accumulator used by TaskList while a batch is open
+ * Coalesces the events of a batch into a single TaskListEvent
+ * Inserts, removals and updates of one type are merged, mixed changes become REORDERED,
+ * and a clear replaces everything before it
+ * @author Luke Gentri
+ */
+class EventBatch {
+
+    /** Type of the coalesced change, null until the first event */
+    private TaskListEvent.Type type;
+
+    /** Coalesced indices, ascending */
+    private int[] indices = new int[8];
+
+    /** Number of indices in use */
+    private int count;
+
+    /** Tasks matching indices (removed Tasks for CLEARED) */
+    private List<Task> tasks = new ArrayList<>();
+
+    /** First index after the batch from which Tasks have new ids */
+    private int renumberedFrom = TaskListEvent.NOT_RENUMBERED;
+
+    /**
+     * isEmpty
+     * @return true if no event has been added
+     */
+    boolean isEmpty() {
+        return type == null;
+    }
+
+    /**
+     * Adds an event that happened after every event already added
+     * @param event later event
+     */
+    void add(TaskListEvent event) {
+        TaskListEvent.Type next = event.getType();
+
+        // First event of the batch
+        if (type == null) {
+            type = next;
+            renumberedFrom = event.getRenumberedFrom();
+            append(event);
+            return;
+        }
+
+        // A clear makes everything before it irrelevant
+        if (next == TaskListEvent.Type.CLEARED) {
+            type = next;
+            count = 0;
+            tasks = new ArrayList<>(event.getTasks());
+            return;
+        }
+
+        // Different kinds of change cannot be described precisely
+        if (type != next || type == TaskListEvent.Type.REORDERED || type == TaskListEvent.Type.CLEARED) {
+            type = TaskListEvent.Type.REORDERED;
+            count = 0;
+            tasks.clear();
+            return;
+        }
+
+        // Common case, later change is past every earlier index (appends, forward updates)
+        if (type != TaskListEvent.Type.REMOVED && (count == 0 || event.getIndex(0) > indices[count - 1])) {
+            append(event);
+            return;
+        }
+
+        // General case, bring both index lists into one space and merge
+        int[] earlier = new int[count];
+        System.arraycopy(indices, 0, earlier, 0, count);
+        int[] later = event.getIndices();
+        if (type == TaskListEvent.Type.INSERTED) {
+
+            // Later inserts push earlier inserted Tasks to the right
+            shift(earlier, later);
+        } else if (type == TaskListEvent.Type.REMOVED) {
+
+            // Earlier renumbered rows move up past the later removals before them
+            if (renumberedFrom != TaskListEvent.NOT_RENUMBERED) {
+                int before = 0;
+                while (before < later.length && later[before] < renumberedFrom) {
+                    before++;
+                }
+                renumberedFrom -= before;
+            }
+            renumberedFrom = earliest(renumberedFrom, event.getRenumberedFrom());
+
+            // Later removals are relative to the list without the earlier ones
+            shift(later, earlier);
+        }
+        merge(earlier, new ArrayList<>(tasks), later, event.getTasks());
+    }
+
+    /**
+     * Builds the coalesced event
+     * @param source TaskList that changed
+     * @return single event for the whole batch
+     */
+    TaskListEvent toEvent(TaskList source) {
+        int[] result = new int[count];
+        System.arraycopy(indices, 0, result, 0, count);
+        return new TaskListEvent(source, type, result, type == TaskListEvent.Type.REORDERED ? Collections.<Task>emptyList() : tasks,
+                type == TaskListEvent.Type.REMOVED && renumberedFrom < source.size() ? renumberedFrom : TaskListEvent.NOT_RENUMBERED);
+    }
+
+    /**
+     * Earlier of two renumbered indices
+     * @param first index or NOT_RENUMBERED
+     * @param second index or NOT_RENUMBERED
+     * @return smaller index, NOT_RENUMBERED only if both are
+     */
+    private static int earliest(int first, int second) {
+        if (first == TaskListEvent.NOT_RENUMBERED) {
+            return second;
+        }
+        return second == TaskListEvent.NOT_RENUMBERED ? first : Math.min(first, second);
+    }
+
+    /**
+     * Appends the indices and Tasks of an event
+     * @param event event to append
+     */
+    private void append(TaskListEvent event) {
+        ensureCapacity(count + event.size());
+        for (int i = 0; i < event.size(); i++) {
+            indices[count++] = event.getIndex(i);
+        }
+        tasks.addAll(event.getTasks());
+    }
+
+    /**
+     * Moves each index right past every occupied slot at or before it
+     * Both arrays are ascending, so this is a single linear pass
+     * @param moved indices to shift in place
+     * @param slots ascending indices occupying slots
+     */
+    private static void shift(int[] moved, int[] slots) {
+        int j = 0;
+        for (int i = 0; i < moved.length; i++) {
+            int index = moved[i] + j;
+            while (j < slots.length && slots[j] <= index) {
+                index++;
+                j++;
+            }
+            moved[i] = index;
+        }
+    }
+
+    /**
+     * Merges two ascending index lists into this batch, later Tasks win on duplicate indices
+     * @param a earlier indices
+     * @param aTasks earlier Tasks
+     * @param b later indices
+     * @param bTasks later Tasks
+     */
+    private void merge(int[] a, List<Task> aTasks, int[] b, List<Task> bTasks) {
+        count = 0;
+        tasks = new ArrayList<>(a.length + b.length);
+        ensureCapacity(a.length + b.length);
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                indices[count++] = a[i];
+                tasks.add(aTasks.get(i++));
+            } else {
+                if (i < a.length && a[i] == b[j]) {
+                    i++;
+                }
+                indices[count++] = b[j];
+                tasks.add(bTasks.get(j++));
+            }
+        }
+    }
+
+    /**
+     * Grows the index array if needed
+     * @param capacity required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > indices.length) {
+            int[] grown = new int[Math.max(capacity, indices.length * 2)];
+            System.arraycopy(indices, 0, grown, 0, count);
+            indices = grown;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Binary min-heap that also knows where each element is, so any element can be removed
+ * or moved after a change in O(log n) instead of the O(n) search of PriorityQueue.remove
+ * Elements are matched by identity, like Tasks in TaskList
+ * Not thread-safe
+ * @author Luke Gentri
+ * @param <E> element type
+ */
+class IndexedHeap<E> {
+
+    /** Orders elements, smallest first */
+    private final Comparator<? super E> comparator;
+
+    /** Heap array */
+    private final List<E> heap = new ArrayList<>();
+
+    /** Position of each element in heap */
+    private final Map<E, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Constructor
+     * @param comparator orders elements, smallest first
+     */
+    IndexedHeap(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Replaces the contents with many elements at once in O(n)
+     * @param elements elements to hold
+     */
+    void rebuild(Collection<? extends E> elements) {
+        heap.clear();
+        positions.clear();
+        for (E element : elements) {
+            positions.put(element, heap.size());
+            heap.add(element);
+        }
+        for (int i = heap.size() / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Adds an element, or moves it if it is already held
+     * @param element element to add
+     */
+    void add(E element) {
+        Integer position = positions.get(element);
+        if (position != null) {
+            update(position);
+            return;
+        }
+        positions.put(element, heap.size());
+        heap.add(element);
+        siftUp(heap.size() - 1);
+    }
+
+    /**
+     * Restores the order after an element's sort key changed
+     * @param element element that changed
+     * @return false if the element is not held
+     */
+    boolean update(E element) {
+        Integer position = positions.get(element);
+        if (position == null) {
+            return false;
+        }
+        update(position);
+        return true;
+    }
+
+    /**
+     * Removes an element
+     * @param element element to remove
+     * @return false if the element is not held
+     */
+    boolean remove(E element) {
+        Integer position = positions.remove(element);
+        if (position == null) {
+            return false;
+        }
+
+        // Fill the gap with the last element and move it into place
+        E last = heap.remove(heap.size() - 1);
+        if (position < heap.size()) {
+            set(position, last);
+            update(position);
+        }
+        return true;
+    }
+
+    /**
+     * Smallest element
+     * @return smallest element, null if empty
+     */
+    E peek() {
+        return heap.isEmpty() ? null : heap.get(0);
+    }
+
+    /**
+     * Removes the smallest element
+     * @return smallest element, null if empty
+     */
+    E poll() {
+        E first = peek();
+        if (first != null) {
+            remove(first);
+        }
+        return first;
+    }
+
+    /**
+     * Smallest elements in order, without removing them or sorting the whole heap
+     * Searches outward from the root, only children of elements already taken can be next,
+     * so this costs O(n log n) however many elements are held
+     * @param n most elements to return
+     * @return new list of at most n elements, smallest first
+     */
+    List<E> smallest(int n) {
+        List<E> result = new ArrayList<>(Math.min(n, heap.size()));
+        if (n <= 0 || heap.isEmpty()) {
+            return result;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer p1, Integer p2) {
+                return comparator.compare(heap.get(p1), heap.get(p2));
+            }
+        });
+        frontier.add(0);
+        while (result.size() < n && !frontier.isEmpty()) {
+            int position = frontier.poll();
+            result.add(heap.get(position));
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < heap.size(); child++) {
+                frontier.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks for an element
+     * @param element element to look for
+     * @return true if held
+     */
+    boolean contains(E element) {
+        return positions.containsKey(element);
+    }
+
+    /**
+     * size
+     * @return number of elements
+     */
+    int size() {
+        return heap.size();
+    }
+
+    /**
+     * isEmpty
+     * @return true if there are no elements
+     */
+    boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Elements in heap order, not sorted
+     * @return new list of the elements
+     */
+    List<E> toList() {
+        return new ArrayList<>(heap);
+    }
+
+    /**
+     * Removes every element
+     */
+    void clear() {
+        heap.clear();
+        positions.clear();
+    }
+
+    /**
+     * Moves the element at a position up or down as needed
+     * @param position heap position
+     */
+    private void update(int position) {
+        if (position > 0 && comparator.compare(heap.get(position), heap.get((position - 1) / 2)) < 0) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Moves an element towards the root while it is smaller than its parent
+     * @param position heap position
+     */
+    private void siftUp(int position) {
+        E element = heap.get(position);
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (comparator.compare(element, heap.get(parent)) >= 0) {
+                break;
+            }
+            set(position, heap.get(parent));
+            position = parent;
+        }
+        set(position, element);
+    }
+
+    /**
+     * Moves an element towards the leaves while it is larger than a child
+     * @param position heap position
+     */
+    private void siftDown(int position) {
+        E element = heap.get(position);
+        int half = heap.size() / 2;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < heap.size() && comparator.compare(heap.get(child + 1), heap.get(child)) < 0) {
+                child++;
+            }
+            if (comparator.compare(element, heap.get(child)) <= 0) {
+                break;
+            }
+            set(position, heap.get(child));
+            position = child;
+        }
+        set(position, element);
+    }
+
+    /**
+     * Places an element and records its position
+     * @param position heap position
+     * @param element element to place
+     */
+    private void set(int position, E element) {
+        heap.set(position, element);
+        positions.put(element, position);
+    }
+}
@@ -0,0 +1,346 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Estimated heap retained by one part of the application, to find what makes an instance large
+ * Sizes are worked out from field counts for a 64-bit JVM with compressed references, not measured,
+ * so they are good for comparing parts and watching growth but are not exact
+ * Tasks, strings and arrays reached from several places are counted once, by the first part counted
+ * with the same Counter, the strings count as shared for every later reference
+ * @author Luke Gentri
+ */
+public final class MemoryStats {
+
+    /** Bytes of an object header */
+    static final int OBJECT_HEADER = 12;
+
+    /** Bytes of an array header */
+    static final int ARRAY_HEADER = 16;
+
+    /** Bytes of a reference */
+    static final int REFERENCE = 4;
+
+    /** Bytes of a HashMap entry with its share of the table */
+    static final int MAP_ENTRY = 40;
+
+    /** Bytes of an IdentityHashMap entry, two table slots at two-thirds full */
+    static final int IDENTITY_MAP_ENTRY = 12;
+
+    /** Part the figures are for */
+    private final String name;
+
+    /** Task references held */
+    private final long tasks;
+
+    /** Tasks first counted here and what only they hold, strings aside */
+    private final long taskBytes;
+
+    /** Strings first counted here */
+    private final long stringBytes;
+
+    /** Strings referenced here that were already counted */
+    private final long sharedStringBytes;
+
+    /** Lists, indexes and caches */
+    private final long structureBytes;
+
+    /**
+     * Constructor
+     * @param name part the figures are for
+     * @param tasks Task references held
+     * @param taskBytes Tasks first counted here and what only they hold, strings aside
+     * @param stringBytes strings first counted here
+     * @param sharedStringBytes strings referenced here that were already counted
+     * @param structureBytes lists, indexes and caches
+     */
+    public MemoryStats(String name, long tasks, long taskBytes, long stringBytes, long sharedStringBytes, long structureBytes) {
+        this.name = name;
+        this.tasks = tasks;
+        this.taskBytes = taskBytes;
+        this.stringBytes = stringBytes;
+        this.sharedStringBytes = sharedStringBytes;
+        this.structureBytes = structureBytes;
+    }
+
+    /**
+     * Sum of several parts
+     * @param name name of the sum
+     * @param parts parts counted with the same Counter, so nothing is in two of them
+     * @return new MemoryStats
+     */
+    public static MemoryStats total(String name, List<MemoryStats> parts) {
+        long tasks = 0;
+        long taskBytes = 0;
+        long stringBytes = 0;
+        long sharedStringBytes = 0;
+        long structureBytes = 0;
+        for (MemoryStats part : parts) {
+            tasks += part.tasks;
+            taskBytes += part.taskBytes;
+            stringBytes += part.stringBytes;
+            sharedStringBytes += part.sharedStringBytes;
+            structureBytes += part.structureBytes;
+        }
+        return new MemoryStats(name, tasks, taskBytes, stringBytes, sharedStringBytes, structureBytes);
+    }
+
+    /**
+     * getName
+     * @return part the figures are for
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * getTasks
+     * @return Task references held, including Tasks counted by an earlier part
+     */
+    public long getTasks() {
+        return tasks;
+    }
+
+    /**
+     * getTaskBytes
+     * @return bytes of Tasks first counted here with their dates, tags arrays and keys, strings aside
+     */
+    public long getTaskBytes() {
+        return taskBytes;
+    }
+
+    /**
+     * getStringBytes
+     * @return bytes of strings first counted here
+     */
+    public long getStringBytes() {
+        return stringBytes;
+    }
+
+    /**
+     * getSharedStringBytes
+     * @return bytes of strings referenced here but already counted, what copies would have cost
+     */
+    public long getSharedStringBytes() {
+        return sharedStringBytes;
+    }
+
+    /**
+     * getStructureBytes
+     * @return bytes of lists, indexes and caches
+     */
+    public long getStructureBytes() {
+        return structureBytes;
+    }
+
+    /**
+     * getRetainedBytes
+     * @return estimated bytes freed if this part were dropped, shared strings aside
+     */
+    public long getRetainedBytes() {
+        return taskBytes + stringBytes + structureBytes;
+    }
+
+    /**
+     * getBytesPerTask
+     * @return retained bytes per Task reference, 0 without Tasks
+     */
+    public long getBytesPerTask() {
+        return tasks == 0 ? 0 : getRetainedBytes() / tasks;
+    }
+
+    /**
+     * toString
+     * @return one line with every figure
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %,d tasks, %,d bytes retained (%,d tasks, %,d strings, %,d structures), %,d bytes per task, %,d string bytes shared",
+                name, tasks, getRetainedBytes(), taskBytes, stringBytes, structureBytes, getBytesPerTask(), sharedStringBytes);
+    }
+
+    /**
+     * Size of an object rounded up to the 8 byte alignment
+     * @param fieldBytes bytes of its fields
+     * @return bytes
+     */
+    public static long objectBytes(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Size of an array rounded up to the 8 byte alignment
+     * @param length number of elements
+     * @param elementBytes bytes per element, REFERENCE for objects
+     * @return bytes
+     */
+    public static long arrayBytes(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    /**
+     * Size of a string, one byte per character if every character fits in Latin-1, otherwise two
+     * @param text string
+     * @return bytes of the String and its array
+     */
+    public static long stringBytes(String text) {
+        int width = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                width = 2;
+                break;
+            }
+        }
+        return objectBytes(REFERENCE + 4 + 2) + arrayBytes(text.length(), width);
+    }
+
+    /**
+     * Rounds up to the 8 byte alignment
+     * @param bytes bytes
+     * @return bytes
+     */
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Adds up the parts of one or more components, remembering what was counted so nothing is counted twice
+     * Reuse one Counter across polls with reset, so its table does not have to grow again
+     * Not thread-safe
+     */
+    public static final class Counter {
+
+        /** Objects counted so far, an open-addressing table compared by identity */
+        private Object[] seen = new Object[1024];
+
+        /** Number of objects in seen */
+        private int seenCount;
+
+        /** Figures of the part being counted */
+        private long tasks;
+        private long taskBytes;
+        private long stringBytes;
+        private long sharedStringBytes;
+        private long structureBytes;
+
+        /**
+         * Counts a Task, with its fields the first time it is seen
+         * @param task Task referenced by the part
+         */
+        public void addTask(Task task) {
+            tasks++;
+            if (add(task)) {
+                task.countMemory(this);
+            }
+        }
+
+        /**
+         * Counts a string the first time it is seen, as shared afterwards
+         * @param text string, may be null
+         */
+        public void addString(String text) {
+            if (text == null) {
+                return;
+            }
+            long bytes = stringBytes(text);
+            if (add(text)) {
+                stringBytes += bytes;
+            } else {
+                sharedStringBytes += bytes;
+            }
+        }
+
+        /**
+         * Counts lists, indexes or caches of the part
+         * @param bytes estimated bytes
+         */
+        public void addStructure(long bytes) {
+            structureBytes += bytes;
+        }
+
+        /**
+         * Counts the Task being counted itself
+         * @param bytes its size
+         */
+        void addTaskBytes(long bytes) {
+            taskBytes += bytes;
+        }
+
+        /**
+         * Counts an object held by a Task the first time it is seen
+         * @param object object, may be null
+         * @param bytes its size
+         */
+        void addTaskObject(Object object, long bytes) {
+            if (object != null && add(object)) {
+                taskBytes += bytes;
+            }
+        }
+
+        /**
+         * Ends the part being counted, later parts see its objects as already counted
+         * @param name part the figures are for
+         * @return figures of the part
+         */
+        public MemoryStats finish(String name) {
+            MemoryStats stats = new MemoryStats(name, tasks, taskBytes, stringBytes, sharedStringBytes, structureBytes);
+            tasks = 0;
+            taskBytes = 0;
+            stringBytes = 0;
+            sharedStringBytes = 0;
+            structureBytes = 0;
+            return stats;
+        }
+
+        /**
+         * Forgets every object counted, keeping the table
+         * Call once done, so the Counter does not keep objects alive
+         */
+        public void reset() {
+            Arrays.fill(seen, null);
+            seenCount = 0;
+            finish(null);
+        }
+
+        /**
+         * Adds an object to the table
+         * @param object object
+         * @return true if it was not there
+         */
+        private boolean add(Object object) {
+            if ((seenCount + 1) * 2 > seen.length) {
+                grow();
+            }
+            int mask = seen.length - 1;
+            for (int i = System.identityHashCode(object) * 0x9E3779B9 & mask; ; i = (i + 1) & mask) {
+                if (seen[i] == null) {
+                    seen[i] = object;
+                    seenCount++;
+                    return true;
+                }
+                if (seen[i] == object) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Doubles the table
+         */
+        private void grow() {
+            Object[] old = seen;
+            seen = new Object[old.length * 2];
+            int mask = seen.length - 1;
+            for (Object object : old) {
+                if (object != null) {
+                    int i = System.identityHashCode(object) * 0x9E3779B9 & mask;
+                    while (seen[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    seen[i] = object;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Class for one occurrence of a Task in a date window
+ * A one-off Task has a single occurrence on its due date, a repeating Task has one per date of its rule
+ * Occurrences are created on demand by TaskList.getOccurrences and are not stored
+ * @author Luke Gentri
+ */
+public class Occurrence {
+
+    /** Task the occurrence belongs to */
+    private final Task task;
+
+    /** Date of the occurrence */
+    private final LocalDate date;
+
+    /**
+     * Constructor
+     * @param task Task the occurrence belongs to
+     * @param date date of the occurrence
+     */
+    public Occurrence(Task task, LocalDate date) {
+        this.task = task;
+        this.date = date;
+    }
+
+    /**
+     * getTask
+     * @return Task the occurrence belongs to
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * getDate
+     * @return date of the occurrence
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * isCompleted
+     * @return true if this occurrence, or the whole Task, is completed
+     */
+    public boolean isCompleted() {
+        return task.isCompleted(date);
+    }
+
+    @Override
+    public String toString() {
+        return task.getName() + " (" + date + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+/**
+ * Enum for how urgent a Task is
+ * Constants are declared from least to most urgent, NONE is the default so files written before
+ * priorities existed read as NONE
+ * @author Luke Gentri
+ */
+public enum Priority {
+
+    /** No priority set */
+    NONE,
+
+    /** Low priority */
+    LOW,
+
+    /** Medium priority */
+    MEDIUM,
+
+    /** High priority */
+    HIGH;
+
+    /**
+     * Name for display, such as "High"
+     * @return name with only the first letter upper case
+     */
+    public String getLabel() {
+        return name().charAt(0) + name().substring(1).toLowerCase();
+    }
+
+    /**
+     * Reads a priority from its name, ignoring case
+     * @param text name of a priority
+     * @return priority
+     * @throws IllegalArgumentException if text is not the name of a priority
+     */
+    public static Priority parse(String text) {
+        for (Priority priority : values()) {
+            if (priority.name().equalsIgnoreCase(text.trim())) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown priority '" + text + "'");
+    }
+}
@@ -0,0 +1,200 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for the rule of a repeating Task: every N days, weeks or months, optionally until an end date
+ * Occurrences are numbered from 0 (the Task's due date) and worked out on demand from the rule,
+ * so a series is never stored as one Task per occurrence
+ * Monthly occurrences are counted from the first due date, so the 31st falls on the last day of
+ * shorter months without drifting
+ * Immutable
+ * @author Luke Gentri
+ */
+public final class Recurrence {
+
+    /** How often a Task repeats */
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    /** Unit of the interval */
+    private final Frequency frequency;
+
+    /** Number of units between occurrences, at least 1 */
+    private final int interval;
+
+    /** Last day an occurrence may fall on, null to repeat forever */
+    private final LocalDate until;
+
+    /**
+     * Constructor
+     * @param frequency unit of the interval
+     * @param interval number of units between occurrences, at least 1
+     * @param until last day an occurrence may fall on, null to repeat forever
+     * @throws IllegalArgumentException if interval is less than 1
+     */
+    public Recurrence(Frequency frequency, int interval, LocalDate until) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+    }
+
+    /**
+     * Parses a rule written by toString
+     * @param text rule in the format FREQUENCY/interval[/YYYY-MM-DD], such as WEEKLY/2 or DAILY/1/2026-12-31
+     * @return parsed rule
+     * @throws IllegalArgumentException if the text is not a valid rule
+     */
+    public static Recurrence parse(String text) {
+        String[] parts = text.split("/");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Expected FREQUENCY/interval[/end date] but found '" + text + "'");
+        }
+        try {
+            return new Recurrence(Frequency.valueOf(parts[0]), Integer.parseInt(parts[1]),
+                    parts.length == 3 ? LocalDate.parse(parts[2]) : null);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid end date '" + parts[2] + "'");
+        }
+    }
+
+    /**
+     * getFrequency
+     * @return unit of the interval
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * getInterval
+     * @return number of units between occurrences
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * getUntil
+     * @return last day an occurrence may fall on, null if the series does not end
+     */
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * Date of one occurrence
+     * @param start due date of the first occurrence
+     * @param index occurrence number, starting at 0
+     * @return date of that occurrence, or null if the series has ended by then
+     */
+    public LocalDate occurrence(LocalDate start, long index) {
+        LocalDate date;
+        switch (frequency) {
+            case DAILY:
+                date = start.plusDays(index * interval);
+                break;
+            case WEEKLY:
+                date = start.plusWeeks(index * interval);
+                break;
+            default:
+                date = start.plusMonths(index * interval);
+                break;
+        }
+        return until != null && date.isAfter(until) ? null : date;
+    }
+
+    /**
+     * Number of the first occurrence on or after a date, without stepping through earlier ones
+     * @param start due date of the first occurrence
+     * @param date date to search from
+     * @return occurrence number, which may be past the end of the series
+     */
+    public long firstIndexFrom(LocalDate start, LocalDate date) {
+        if (!date.isAfter(start)) {
+            return 0;
+        }
+        switch (frequency) {
+            case DAILY:
+                return ceilDiv(ChronoUnit.DAYS.between(start, date), interval);
+            case WEEKLY:
+                return ceilDiv(ChronoUnit.DAYS.between(start, date), 7L * interval);
+            default:
+
+                // Month lengths vary, so step past the estimate's remaining short months
+                long index = ChronoUnit.MONTHS.between(start, date) / interval;
+                while (start.plusMonths(index * interval).isBefore(date)) {
+                    index++;
+                }
+                return index;
+        }
+    }
+
+    /**
+     * Number of the occurrence on a date
+     * @param start due date of the first occurrence
+     * @param date date to look up
+     * @return occurrence number, or -1 if no occurrence falls on that date
+     */
+    public long indexOf(LocalDate start, LocalDate date) {
+        long index = firstIndexFrom(start, date);
+        return date.equals(occurrence(start, index)) ? index : -1;
+    }
+
+    /**
+     * Dates of the occurrences within a window
+     * Only the occurrences in the window are worked out
+     * @param start due date of the first occurrence
+     * @param from first day of the window
+     * @param to last day of the window
+     * @return dates in order
+     */
+    public List<LocalDate> occurrencesBetween(LocalDate start, LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate date;
+        for (long index = firstIndexFrom(start, from); (date = occurrence(start, index)) != null && !date.isAfter(to); index++) {
+            dates.add(date);
+        }
+        return dates;
+    }
+
+    /**
+     * Rule in the format read by parse
+     * @return FREQUENCY/interval[/YYYY-MM-DD]
+     */
+    @Override
+    public String toString() {
+        return frequency + "/" + interval + (until == null ? "" : "/" + until);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Recurrence)) {
+            return false;
+        }
+        Recurrence rule = (Recurrence) other;
+        return frequency == rule.frequency && interval == rule.interval
+                && (until == null ? rule.until == null : until.equals(rule.until));
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * Division rounding up, for positive numbers
+     * @param a dividend
+     * @param b divisor
+     * @return smallest n with n * b >= a
+     */
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Class for a reminder fired by ReminderScheduler
+ * Says which Task (and for a repeating Task, which occurrence) became due or overdue and when
+ * Immutable
+ * @author Luke Gentri
+ */
+public class Reminder {
+
+    /** Kind of reminder */
+    public enum Type { DUE, OVERDUE }
+
+    /** Task the reminder is for */
+    private final Task task;
+
+    /** Due date of the occurrence */
+    private final LocalDate date;
+
+    /** Due or overdue */
+    private final Type type;
+
+    /** When the reminder was scheduled to fire */
+    private final Instant time;
+
+    /**
+     * Constructor
+     * @param task Task the reminder is for
+     * @param date due date of the occurrence
+     * @param type due or overdue
+     * @param time when the reminder was scheduled to fire
+     */
+    public Reminder(Task task, LocalDate date, Type type, Instant time) {
+        this.task = task;
+        this.date = date;
+        this.type = type;
+        this.time = time;
+    }
+
+    /**
+     * getTask
+     * @return Task the reminder is for
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * getDate
+     * @return due date of the occurrence
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * getType
+     * @return due or overdue
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * getTime
+     * @return when the reminder was scheduled to fire
+     */
+    public Instant getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return task.getName() + (type == Type.DUE ? " is due " : " is overdue since ") + date;
+    }
+}
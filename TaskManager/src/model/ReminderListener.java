@@ -0,0 +1,17 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Interface for receiving reminders from a ReminderScheduler
+ * @author Luke Gentri
+ */
+public interface ReminderListener {
+
+    /**
+     * Called with every reminder that came due at the same time
+     * Called on the scheduler's thread (or the caller of fireDue), not the GUI thread
+     * @param reminders reminders in firing order
+     */
+    void remindersFired(List<Reminder> reminders);
+}
@@ -0,0 +1,324 @@
+package model;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for firing reminders when Tasks come due and when they become overdue
+ * Keeps one pending reminder per Task in an IndexedHeap ordered by firing time, so adding,
+ * moving and cancelling a reminder are O(log n) and only reminders that are due are looked at
+ * Follows its TaskList through change events instead of polling it
+ * A Task is due from the start of its due date and overdue from the start of the next day, in the clock's zone
+ * Repeating Tasks are reminded about each occurrence in turn
+ * The Clock is injectable so tests can move time, fireDue can be called directly or start runs a thread
+ * Tasks are matched by identity, like TaskList
+ * @author Luke Gentri
+ */
+public class ReminderScheduler implements Closeable {
+
+    /** Longest the thread sleeps, so clock changes are noticed */
+    private static final long MAX_WAIT_MILLIS = 60 * 1000;
+
+    /**
+     * Pending reminder of one Task, moved through the heap as the Task changes
+     */
+    private static class Entry {
+
+        /** Task the reminder is for */
+        final Task task;
+
+        /** Occurrence the reminder is for */
+        LocalDate date;
+
+        /** Due or overdue */
+        Reminder.Type type;
+
+        /** When to fire */
+        Instant time;
+
+        /** Occurrence of the last fired reminder, so changes do not repeat it */
+        LocalDate firedDate;
+
+        /** Type of the last fired reminder */
+        Reminder.Type firedType;
+
+        /**
+         * Constructor
+         * @param task Task the reminder is for
+         */
+        Entry(Task task) {
+            this.task = task;
+        }
+    }
+
+    /** Source of the current time and zone */
+    private final Clock clock;
+
+    /** Receives reminders */
+    private final ReminderListener reminderListener;
+
+    /** Pending reminders, earliest first */
+    private final IndexedHeap<Entry> pending = new IndexedHeap<>(new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return e1.time.compareTo(e2.time);
+        }
+    });
+
+    /** Entry of every Task in the list, pending or not */
+    private final Map<Task, Entry> entries = new IdentityHashMap<>();
+
+    /** Follows the TaskList */
+    private final TaskListListener changeListener = new TaskListListener() {
+        @Override
+        public void taskListChanged(TaskListEvent event) {
+            handle(event);
+        }
+    };
+
+    /** TaskList being followed */
+    private TaskList taskList;
+
+    /** Thread started by start, null if not running */
+    private Thread thread;
+
+    /**
+     * Constructor, schedules reminders for every Task already in the list
+     * @param taskList TaskList to follow
+     * @param clock source of the current time and zone
+     * @param reminderListener receives reminders
+     */
+    public ReminderScheduler(TaskList taskList, Clock clock, ReminderListener reminderListener) {
+        this.clock = clock;
+        this.reminderListener = reminderListener;
+        setTaskList(taskList);
+    }
+
+    /**
+     * Follows another TaskList, replacing every pending reminder
+     * @param newList TaskList to follow
+     */
+    public synchronized void setTaskList(TaskList newList) {
+        if (taskList != null) {
+            taskList.removeTaskListListener(changeListener);
+        }
+        taskList = newList;
+        taskList.addTaskListListener(changeListener);
+        resync();
+    }
+
+    /**
+     * Fires every reminder whose time has come
+     * Reminders for Tasks or occurrences completed in the meantime are dropped
+     * @return number of reminders fired
+     */
+    public int fireDue() {
+        List<Reminder> fired = new ArrayList<>();
+        synchronized (this) {
+            Instant now = clock.instant();
+            LocalDate today = LocalDate.now(clock);
+            Entry entry;
+            while ((entry = pending.peek()) != null && !entry.time.isAfter(now)) {
+                pending.poll();
+                if (!entry.task.isCompleted(entry.date)) {
+                    fired.add(new Reminder(entry.task, entry.date, entry.type, entry.time));
+                    entry.firedDate = entry.date;
+                    entry.firedType = entry.type;
+                }
+
+                // Move on to the next stage or occurrence
+                if (plan(entry, today)) {
+                    pending.add(entry);
+                }
+            }
+        }
+
+        // Call out without holding the lock
+        if (!fired.isEmpty()) {
+            reminderListener.remindersFired(fired);
+        }
+        return fired.size();
+    }
+
+    /**
+     * Time of the next reminder
+     * @return when the next reminder fires, null if none are pending
+     */
+    public synchronized Instant getNextTime() {
+        Entry next = pending.peek();
+        return next == null ? null : next.time;
+    }
+
+    /**
+     * Number of pending reminders
+     * @return pending reminder count
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Starts a daemon thread that fires reminders as they come due
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runThread();
+            }
+        }, "reminder-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread and stops following the TaskList
+     */
+    @Override
+    public synchronized void close() {
+        taskList.removeTaskListListener(changeListener);
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Sleeps until the next reminder, woken early when an earlier one is added
+     */
+    private void runThread() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                fireDue();
+                synchronized (this) {
+                    Entry next = pending.peek();
+                    long wait = next == null ? MAX_WAIT_MILLIS : next.time.toEpochMilli() - clock.millis();
+                    if (wait > 0) {
+                        wait(Math.min(wait, MAX_WAIT_MILLIS));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Updates reminders for a change to the TaskList
+     * @param event change to the list
+     */
+    private synchronized void handle(TaskListEvent event) {
+        LocalDate today = LocalDate.now(clock);
+        Entry before = pending.peek();
+        switch (event.getType()) {
+            case INSERTED:
+            case UPDATED:
+                for (Task task : event.getTasks()) {
+                    schedule(task, today);
+                }
+                break;
+            case REMOVED:
+                for (Task task : event.getTasks()) {
+                    Entry entry = entries.remove(task);
+                    if (entry != null) {
+                        pending.remove(entry);
+                    }
+                }
+                break;
+            default:
+
+                // Cleared, or a batch of mixed changes
+                resync();
+                break;
+        }
+
+        // Wake the thread if the next reminder is now earlier
+        if (pending.peek() != before) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Adds, moves or cancels the reminder of one Task
+     * @param task Task that was added or changed
+     * @param today current date
+     */
+    private void schedule(Task task, LocalDate today) {
+        Entry entry = entries.get(task);
+        if (entry == null) {
+            entry = new Entry(task);
+            entries.put(task, entry);
+        }
+        if (plan(entry, today)) {
+            pending.add(entry);
+        } else {
+            pending.remove(entry);
+        }
+    }
+
+    /**
+     * Rebuilds every reminder from the TaskList in O(n)
+     */
+    private void resync() {
+        LocalDate today = LocalDate.now(clock);
+        Map<Task, Entry> old = new IdentityHashMap<>(entries);
+        entries.clear();
+        List<Entry> planned = new ArrayList<>();
+        for (Task task : taskList.getAllTasks()) {
+
+            // Keep what has already been fired for Tasks still in the list
+            Entry entry = old.get(task);
+            if (entry == null) {
+                entry = new Entry(task);
+            }
+            entries.put(task, entry);
+            if (plan(entry, today)) {
+                planned.add(entry);
+            }
+        }
+        pending.rebuild(planned);
+        notifyAll();
+    }
+
+    /**
+     * Works out the next reminder of a Task, skipping any already fired
+     * @param entry entry to fill in
+     * @param today current date
+     * @return false if the Task needs no reminder
+     */
+    private boolean plan(Entry entry, LocalDate today) {
+        Task task = entry.task;
+        if (task.isCompleted() || task.getDueDate() == null) {
+            return false;
+        }
+
+        // Next open occurrence, a one-off Task has only its due date
+        LocalDate date = task.isRecurring() ? task.getNextOccurrence(today) : task.getDueDate();
+        if (date == null) {
+            return false;
+        }
+        Reminder.Type type = today.isAfter(date) ? Reminder.Type.OVERDUE : Reminder.Type.DUE;
+
+        // Move past stages already fired for this occurrence
+        if (date.equals(entry.firedDate)) {
+            if (entry.firedType == Reminder.Type.OVERDUE) {
+                return false;
+            }
+            type = Reminder.Type.OVERDUE;
+        }
+        entry.date = date;
+        entry.type = type;
+        entry.time = (type == Reminder.Type.DUE ? date : date.plusDays(1)).atStartOfDay(clock.getZone()).toInstant();
+        return true;
+    }
+}
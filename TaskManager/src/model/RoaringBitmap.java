@@ -0,0 +1,589 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of Roaring bitmaps
+ * Values are split by their high 16 bits into chunks of 65536, each chunk is held by a container:
+ * a sorted array of the low 16 bits while it holds at most 4096 values, a 65536-bit bitmap above that
+ * So sparse sets cost about 2 bytes a value, dense sets 1 bit a value, and set operations
+ * work a whole container at a time, 64 values per step in bitmaps
+ * Binary operations return new bitmaps and leave both operands unchanged
+ * Not thread-safe
+ * @author Luke Gentri
+ */
+class RoaringBitmap {
+
+    /** Most values an array container holds before becoming a bitmap */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /** Words in a bitmap container */
+    private static final int WORDS = 1024;
+
+    /**
+     * Values sharing their high 16 bits
+     */
+    private abstract static class Container {
+
+        /**
+         * Adds a value
+         * @param low low 16 bits
+         * @return container holding the result, this or a replacement
+         */
+        abstract Container add(char low);
+
+        /**
+         * Removes a value
+         * @param low low 16 bits
+         * @return container holding the result, this or a replacement
+         */
+        abstract Container remove(char low);
+
+        /**
+         * Checks for a value
+         * @param low low 16 bits
+         * @return true if held
+         */
+        abstract boolean contains(char low);
+
+        /**
+         * cardinality
+         * @return number of values held
+         */
+        abstract int cardinality();
+
+        /**
+         * Writes every value in ascending order
+         * @param out destination
+         * @param offset first index to write
+         * @param high high 16 bits of every value
+         * @return index after the last written
+         */
+        abstract int fill(int[] out, int offset, int high);
+
+        /**
+         * Copy as a bitmap container
+         * @return new bitmap container
+         */
+        abstract BitmapContainer toBitmap();
+    }
+
+    /**
+     * Sorted array of up to ARRAY_LIMIT values
+     */
+    private static final class ArrayContainer extends Container {
+
+        /** Values, ascending, only the first cardinality in use */
+        char[] values;
+
+        /** Number of values */
+        int cardinality;
+
+        /**
+         * Constructor
+         * @param values ascending values, kept
+         * @param cardinality number in use
+         */
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int fill(int[] out, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                out[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * 65536 bits, used above ARRAY_LIMIT values
+     */
+    private static final class BitmapContainer extends Container {
+
+        /** Bits, value v is bit v % 64 of word v / 64 */
+        final long[] words;
+
+        /** Number of bits set */
+        int cardinality;
+
+        /**
+         * Constructor
+         * @param words bits, kept
+         * @param cardinality number of bits set
+         */
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality > ARRAY_LIMIT ? this : shrink(words, cardinality);
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int fill(int[] out, int offset, int high) {
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    out[offset++] = high | (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+
+    /** High 16 bits of each container, ascending */
+    private char[] keys = new char[4];
+
+    /** Containers matching keys */
+    private Container[] containers = new Container[4];
+
+    /** Number of containers in use */
+    private int size;
+
+    /**
+     * Bitmap of every value from 0 up to but not including end
+     * @param end first value not included
+     * @return new bitmap
+     */
+    static RoaringBitmap range(int end) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (int start = 0; start < end; start += 1 << 16) {
+            int count = Math.min(1 << 16, end - start);
+            long[] words = new long[WORDS];
+            Arrays.fill(words, 0, count >>> 6, -1L);
+            if ((count & 63) != 0) {
+                words[count >>> 6] = (1L << count) - 1;
+            }
+            result.append((char) (start >>> 16), shrink(words, count));
+        }
+        return result;
+    }
+
+    /**
+     * Adds a value
+     * @param value non-negative value
+     */
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int index = find(high);
+        if (index >= 0) {
+            containers[index] = containers[index].add((char) value);
+            return;
+        }
+        index = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = new ArrayContainer(new char[] { (char) value }, 1);
+        size++;
+    }
+
+    /**
+     * Removes a value
+     * @param value value to remove
+     */
+    void remove(int value) {
+        int index = find((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index].remove((char) value);
+        if (container.cardinality() > 0) {
+            containers[index] = container;
+            return;
+        }
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Checks for a value
+     * @param value value to look for
+     * @return true if held
+     */
+    boolean contains(int value) {
+        int index = find((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * getCardinality
+     * @return number of values held
+     */
+    int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * isEmpty
+     * @return true if no values are held
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Every value in ascending order
+     * @return new array
+     */
+    int[] toArray() {
+        int[] values = new int[getCardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].fill(values, offset, keys[i] << 16);
+        }
+        return values;
+    }
+
+    /**
+     * Values in both bitmaps
+     * @param other second bitmap
+     * @return new bitmap
+     */
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], and(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values in either bitmap
+     * @param other second bitmap
+     * @return new bitmap
+     */
+    RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.append(keys[i], copy(containers[i++]));
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], copy(other.containers[j++]));
+            } else {
+                result.append(keys[i], or(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values in this bitmap and not the other
+     * @param other bitmap of values to leave out
+     * @return new bitmap
+     */
+    RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], copy(containers[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Approximate memory used by the containers
+     * @return bytes
+     */
+    long getSizeInBytes() {
+        long bytes = size * 10L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof BitmapContainer ? WORDS * 8 : ((ArrayContainer) containers[i]).values.length * 2;
+        }
+        return bytes;
+    }
+
+    /**
+     * Position of a container
+     * @param high high 16 bits
+     * @return index, or -(insertion point) - 1 if there is no such container
+     */
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    /**
+     * Adds a container after every other, dropping it if empty
+     * @param high high 16 bits, above every key so far
+     * @param container container to add
+     */
+    private void append(char high, Container container) {
+        if (container.cardinality() == 0) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = high;
+        containers[size++] = container;
+    }
+
+    /**
+     * Bits as the smaller container type for their cardinality
+     * @param words bits, kept if a bitmap is returned
+     * @param cardinality number of bits set
+     * @return array container at or below ARRAY_LIMIT values, otherwise a bitmap container
+     */
+    private static Container shrink(long[] words, int cardinality) {
+        if (cardinality > ARRAY_LIMIT) {
+            return new BitmapContainer(words, cardinality);
+        }
+        char[] values = new char[cardinality];
+        int count = 0;
+        for (int w = 0; w < WORDS && count < cardinality; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[count++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(values, count);
+    }
+
+    /**
+     * Independent copy of a container
+     * @param container container to copy
+     * @return new container
+     */
+    private static Container copy(Container container) {
+        if (container instanceof BitmapContainer) {
+            return container.toBitmap();
+        }
+        ArrayContainer array = (ArrayContainer) container;
+        return new ArrayContainer(Arrays.copyOf(array.values, array.cardinality), array.cardinality);
+    }
+
+    /**
+     * Values in both containers
+     * @param c1 first container
+     * @param c2 second container
+     * @return new container
+     */
+    private static Container and(Container c1, Container c2) {
+        if (c1 instanceof BitmapContainer && c2 instanceof BitmapContainer) {
+            long[] w1 = ((BitmapContainer) c1).words;
+            long[] w2 = ((BitmapContainer) c2).words;
+            long[] words = new long[WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = w1[w] & w2[w];
+                cardinality += Long.bitCount(words[w]);
+            }
+            return shrink(words, cardinality);
+        }
+
+        // At least one array, keep its values found in the other
+        ArrayContainer array = (ArrayContainer) (c1 instanceof ArrayContainer ? c1 : c2);
+        Container other = array == c1 ? c2 : c1;
+        char[] values = new char[array.cardinality];
+        int count = 0;
+        for (int i = 0; i < array.cardinality; i++) {
+            if (other.contains(array.values[i])) {
+                values[count++] = array.values[i];
+            }
+        }
+        return new ArrayContainer(values, count);
+    }
+
+    /**
+     * Values in either container
+     * @param c1 first container
+     * @param c2 second container
+     * @return new container
+     */
+    private static Container or(Container c1, Container c2) {
+        if (c1 instanceof ArrayContainer && c2 instanceof ArrayContainer) {
+            ArrayContainer a1 = (ArrayContainer) c1;
+            ArrayContainer a2 = (ArrayContainer) c2;
+            if (a1.cardinality + a2.cardinality <= ARRAY_LIMIT) {
+
+                // Merge the sorted arrays
+                char[] values = new char[a1.cardinality + a2.cardinality];
+                int i = 0;
+                int j = 0;
+                int count = 0;
+                while (i < a1.cardinality || j < a2.cardinality) {
+                    if (j == a2.cardinality || i < a1.cardinality && a1.values[i] < a2.values[j]) {
+                        values[count++] = a1.values[i++];
+                    } else if (i == a1.cardinality || a1.values[i] > a2.values[j]) {
+                        values[count++] = a2.values[j++];
+                    } else {
+                        values[count++] = a1.values[i++];
+                        j++;
+                    }
+                }
+                return new ArrayContainer(values, count);
+            }
+        }
+
+        // Set the other's values in a bitmap copy
+        BitmapContainer result = (c1 instanceof BitmapContainer ? c1 : c2).toBitmap();
+        Container other = c1 instanceof BitmapContainer ? c2 : c1;
+        if (other instanceof BitmapContainer) {
+            long[] words = ((BitmapContainer) other).words;
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                result.words[w] |= words[w];
+                cardinality += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = cardinality;
+        } else {
+            ArrayContainer array = (ArrayContainer) other;
+            for (int i = 0; i < array.cardinality; i++) {
+                result.add(array.values[i]);
+            }
+        }
+        return shrink(result.words, result.cardinality);
+    }
+
+    /**
+     * Values in the first container and not the second
+     * @param c1 container to take values from
+     * @param c2 container of values to leave out
+     * @return new container
+     */
+    private static Container andNot(Container c1, Container c2) {
+        if (c1 instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) c1;
+            char[] values = new char[array.cardinality];
+            int count = 0;
+            for (int i = 0; i < array.cardinality; i++) {
+                if (!c2.contains(array.values[i])) {
+                    values[count++] = array.values[i];
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+        BitmapContainer result = c1.toBitmap();
+        if (c2 instanceof BitmapContainer) {
+            long[] words = ((BitmapContainer) c2).words;
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                result.words[w] &= ~words[w];
+                cardinality += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = cardinality;
+        } else {
+            ArrayContainer array = (ArrayContainer) c2;
+            for (int i = 0; i < array.cardinality; i++) {
+                long bit = 1L << array.values[i];
+                if ((result.words[array.values[i] >>> 6] & bit) != 0) {
+                    result.words[array.values[i] >>> 6] &= ~bit;
+                    result.cardinality--;
+                }
+            }
+        }
+        return shrink(result.words, result.cardinality);
+    }
+}
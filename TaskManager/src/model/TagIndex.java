@@ -0,0 +1,193 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Index from each tag to the positions of the Tasks carrying it, plus the positions of completed Tasks
+ * Positions are held in RoaringBitmaps so a tag filter is a few bitmap operations
+ * Follows the TaskList through its events: appended Tasks and edits are applied in place,
+ * changes that move Tasks (removals, sorts, mixed batches) mark the index stale and it is
+ * rebuilt from the list when next queried
+ * Not thread-safe
+ * @author Luke Gentri
+ */
+class TagIndex {
+
+    /** Positions of the Tasks carrying each tag */
+    private final Map<String, RoaringBitmap> positions = new HashMap<>();
+
+    /** Positions of completed Tasks */
+    private RoaringBitmap completed = new RoaringBitmap();
+
+    /** Number of positions indexed */
+    private int size;
+
+    /** True when positions no longer match the list */
+    private boolean stale;
+
+    /**
+     * Applies a change to the list
+     * @param event change reported by the TaskList, before batching
+     */
+    void apply(TaskListEvent event) {
+        if (stale) {
+            return;
+        }
+        switch (event.getType()) {
+            case INSERTED:
+                for (int i = 0; i < event.size(); i++) {
+
+                    // Only appends keep later positions unchanged
+                    if (event.getIndex(i) != size) {
+                        stale = true;
+                        return;
+                    }
+                    index(event.getTasks().get(i), size++);
+                }
+                break;
+            case UPDATED:
+                for (int i = 0; i < event.size(); i++) {
+                    unindex(event.getIndex(i));
+                    index(event.getTasks().get(i), event.getIndex(i));
+                }
+                break;
+            case CLEARED:
+                clear();
+                break;
+            default:
+                stale = true;
+                break;
+        }
+    }
+
+    /**
+     * Drops the index, it is rebuilt from the list when next queried
+     * Used for lists keeping their Tasks off the heap, so the index is held only while it is being used
+     */
+    void invalidate() {
+        if (!stale) {
+            positions.clear();
+            completed = new RoaringBitmap();
+            stale = true;
+        }
+    }
+
+    /**
+     * Empties the index
+     */
+    void clear() {
+        positions.clear();
+        completed = new RoaringBitmap();
+        size = 0;
+        stale = false;
+    }
+
+    /**
+     * Positions of the Tasks carrying a tag
+     * @param tag tag in normal form
+     * @param tasks every Task of the list, used if the index is stale
+     * @return bitmap of positions, not to be changed
+     */
+    RoaringBitmap withTag(String tag, List<Task> tasks) {
+        refresh(tasks);
+        RoaringBitmap result = positions.get(tag);
+        return result == null ? new RoaringBitmap() : result;
+    }
+
+    /**
+     * Positions of completed Tasks
+     * @param tasks every Task of the list, used if the index is stale
+     * @return bitmap of positions, not to be changed
+     */
+    RoaringBitmap completed(List<Task> tasks) {
+        refresh(tasks);
+        return completed;
+    }
+
+    /**
+     * Every position
+     * @param tasks every Task of the list, used if the index is stale
+     * @return new bitmap of positions
+     */
+    RoaringBitmap all(List<Task> tasks) {
+        refresh(tasks);
+        return RoaringBitmap.range(size);
+    }
+
+    /**
+     * Tags carried by at least one Task
+     * @param tasks every Task of the list, used if the index is stale
+     * @return new sorted set of tags
+     */
+    Set<String> tags(List<Task> tasks) {
+        refresh(tasks);
+        return new TreeSet<>(positions.keySet());
+    }
+
+    /**
+     * Approximate memory used by the bitmaps and the map holding them
+     * @return bytes
+     */
+    long getSizeInBytes() {
+        long bytes = completed.getSizeInBytes();
+        for (RoaringBitmap bitmap : positions.values()) {
+            bytes += MemoryStats.MAP_ENTRY + bitmap.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Rebuilds the index if it is stale
+     * @param tasks every Task of the list
+     */
+    private void refresh(List<Task> tasks) {
+        if (!stale && size == tasks.size()) {
+            return;
+        }
+        clear();
+        for (Task task : tasks) {
+            index(task, size++);
+        }
+    }
+
+    /**
+     * Adds a Task's tags and completion at a position
+     * @param task Task at the position
+     * @param position position in the list
+     */
+    private void index(Task task, int position) {
+        for (String tag : task.getTags()) {
+            RoaringBitmap bitmap = positions.get(tag);
+            if (bitmap == null) {
+                bitmap = new RoaringBitmap();
+                positions.put(tag, bitmap);
+            }
+            bitmap.add(position);
+        }
+        if (task.isCompleted()) {
+            completed.add(position);
+        }
+    }
+
+    /**
+     * Removes a position from every tag and from the completed set
+     * Tags are few compared to Tasks, so every tag is checked rather than storing each Task's old tags
+     * @param position position in the list
+     */
+    private void unindex(int position) {
+        Iterator<RoaringBitmap> bitmaps = positions.values().iterator();
+        while (bitmaps.hasNext()) {
+            RoaringBitmap bitmap = bitmaps.next();
+            bitmap.remove(position);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove();
+            }
+        }
+        completed.remove(position);
+    }
+}
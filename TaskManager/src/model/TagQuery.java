@@ -0,0 +1,350 @@
+package model;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class for a filter over tags and completion, such as "#backend AND #urgent AND NOT completed"
+ * Terms are #tag and the word completed, combined with NOT, AND and OR (in that order of precedence)
+ * and grouped with parentheses, words are case-insensitive
+ * Runs against a TaskList's TagIndex as bitmap operations, without looking at any Task
+ * @author Luke Gentri
+ */
+public final class TagQuery {
+
+    /**
+     * Part of a parsed query
+     */
+    private interface Node {
+
+        /**
+         * Positions matching this part
+         * @param index index of the list
+         * @param tasks every Task of the list
+         * @return bitmap of positions, may be shared with the index so not to be changed
+         */
+        RoaringBitmap evaluate(TagIndex index, List<Task> tasks);
+    }
+
+    /**
+     * Tasks carrying a tag
+     */
+    private static final class Tag implements Node {
+
+        /** Tag in normal form */
+        final String tag;
+
+        /**
+         * Constructor
+         * @param tag tag in normal form
+         */
+        Tag(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+            return index.withTag(tag, tasks);
+        }
+    }
+
+    /**
+     * Completed Tasks
+     */
+    private static final class Completed implements Node {
+        @Override
+        public RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+            return index.completed(tasks);
+        }
+    }
+
+    /**
+     * Tasks not matching a part
+     */
+    private static final class Not implements Node {
+
+        /** Part to negate */
+        final Node operand;
+
+        /**
+         * Constructor
+         * @param operand part to negate
+         */
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+            return index.all(tasks).andNot(operand.evaluate(index, tasks));
+        }
+    }
+
+    /**
+     * Tasks matching both parts
+     */
+    private static final class And implements Node {
+
+        /** Parts to combine */
+        final Node left;
+        final Node right;
+
+        /**
+         * Constructor
+         * @param left first part
+         * @param right second part
+         */
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+
+            // A AND NOT B needs no bitmap of every position
+            if (right instanceof Not) {
+                return left.evaluate(index, tasks).andNot(((Not) right).operand.evaluate(index, tasks));
+            }
+            if (left instanceof Not) {
+                return right.evaluate(index, tasks).andNot(((Not) left).operand.evaluate(index, tasks));
+            }
+            return left.evaluate(index, tasks).and(right.evaluate(index, tasks));
+        }
+    }
+
+    /**
+     * Tasks matching either part
+     */
+    private static final class Or implements Node {
+
+        /** Parts to combine */
+        final Node left;
+        final Node right;
+
+        /**
+         * Constructor
+         * @param left first part
+         * @param right second part
+         */
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+            return left.evaluate(index, tasks).or(right.evaluate(index, tasks));
+        }
+    }
+
+    /** Query as written */
+    private final String text;
+
+    /** Parsed query */
+    private final Node root;
+
+    /**
+     * Constructor
+     * @param text query as written
+     * @param root parsed query
+     */
+    private TagQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Parses a query
+     * @param text query such as "#backend AND (#urgent OR #today) AND NOT completed"
+     * @return parsed query
+     * @throws IllegalArgumentException if the query is invalid, with the column of the problem
+     */
+    public static TagQuery parse(String text) {
+        Parser parser = new Parser(text);
+        Node root = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return new TagQuery(text, root);
+    }
+
+    /**
+     * Positions of the Tasks matching this query
+     * @param index index of the list
+     * @param tasks every Task of the list
+     * @return bitmap of positions, not to be changed
+     */
+    RoaringBitmap evaluate(TagIndex index, List<Task> tasks) {
+        return root.evaluate(index, tasks);
+    }
+
+    /**
+     * Tags every matching Task must carry, so a list without one of them cannot match
+     * @return new set of tags in normal form, empty if the query needs no particular tag
+     */
+    public Set<String> getRequiredTags() {
+        return requiredTags(root);
+    }
+
+    /**
+     * Tags every Task matching a part must carry
+     * @param node part of the query
+     * @return new set of tags
+     */
+    private static Set<String> requiredTags(Node node) {
+        Set<String> tags = new HashSet<>();
+        if (node instanceof Tag) {
+            tags.add(((Tag) node).tag);
+        } else if (node instanceof And) {
+            tags.addAll(requiredTags(((And) node).left));
+            tags.addAll(requiredTags(((And) node).right));
+        } else if (node instanceof Or) {
+
+            // Only tags both sides need
+            tags.addAll(requiredTags(((Or) node).left));
+            tags.retainAll(requiredTags(((Or) node).right));
+        }
+        return tags;
+    }
+
+    /**
+     * Query as written
+     * @return text given to parse
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Recursive descent parser, one method per precedence level
+     */
+    private static final class Parser {
+
+        /** Query text */
+        final String text;
+
+        /** Next character to read */
+        int position;
+
+        /**
+         * Constructor
+         * @param text query text
+         */
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Terms joined by OR
+         * @return parsed part
+         */
+        Node expression() {
+            Node node = conjunction();
+            while (keyword("or")) {
+                node = new Or(node, conjunction());
+            }
+            return node;
+        }
+
+        /**
+         * Terms joined by AND
+         * @return parsed part
+         */
+        Node conjunction() {
+            Node node = term();
+            while (keyword("and")) {
+                node = new And(node, term());
+            }
+            return node;
+        }
+
+        /**
+         * A tag, completed, a negated term or a group
+         * @return parsed part
+         */
+        Node term() {
+            skipSpaces();
+            if (position == text.length()) {
+                throw error("Expected a #tag, completed, NOT or (");
+            }
+            if (keyword("not")) {
+                return new Not(term());
+            }
+            if (keyword("completed")) {
+                return new Completed();
+            }
+            char c = text.charAt(position);
+            if (c == '(') {
+                position++;
+                Node node = expression();
+                skipSpaces();
+                if (position == text.length() || text.charAt(position) != ')') {
+                    throw error("Expected )");
+                }
+                position++;
+                return node;
+            }
+            if (c == '#') {
+                int start = position;
+                position++;
+                while (position < text.length() && isWordChar(text.charAt(position))) {
+                    position++;
+                }
+                try {
+                    return new Tag(Task.normalizeTag(text.substring(start, position)));
+                } catch (IllegalArgumentException e) {
+                    position = start;
+                    throw error(e.getMessage());
+                }
+            }
+            throw error("Expected a #tag, completed, NOT or (");
+        }
+
+        /**
+         * Reads a keyword if it comes next
+         * @param word keyword in lower case
+         * @return true if the keyword was read
+         */
+        boolean keyword(String word) {
+            skipSpaces();
+            int end = position + word.length();
+            if (text.regionMatches(true, position, word, 0, word.length())
+                    && (end == text.length() || !isWordChar(text.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves past spaces
+         */
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * Error at the current position
+         * @param message reason
+         * @return exception to throw
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (position + 1));
+        }
+
+        /**
+         * Characters allowed in tags and keywords
+         * @param c character
+         * @return true if c is a letter, digit, - or _
+         */
+        static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package model;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
 
 /**
  * Class for managing Task objects
  * Tasks have an id, name, description, dueDate, and completion status
  * Ids are automatically set (ordered) by TaskList class, everything else is manual
+ * Priority defaults to Priority.NONE
+ * Tags are kept in normal form (lower case, no leading #), sorted and without repeats
+ * A Task with a Recurrence repeats from its due date, its occurrences are worked out on demand
+ * and completing one occurrence only sets one bit
+ * The collation key of the name is cached for locale-aware sorting and dropped when the name changes
  * @author Luke Gentri
  */
 public class Task {
@@ -24,6 +38,30 @@ public class Task {
     
     /** Completion status */
     private boolean isCompleted;
+    
+    /** Priority, never null */
+    private Priority priority = Priority.NONE;
+    
+    /** Tags in normal form, sorted, never changed in place so copies can share it */
+    private String[] tags = NO_TAGS;
+    
+    /** Estimated bytes of a LocalDate, for MemoryStats */
+    private static final long DATE_BYTES = MemoryStats.objectBytes(4 + 2 + 2);
+    
+    /** Tags of an untagged Task */
+    private static final String[] NO_TAGS = new String[0];
+    
+    /** Repeat rule, null for a one-off Task */
+    private Recurrence recurrence;
+    
+    /** Completed occurrence numbers of a repeating Task, null until one is completed */
+    private BitSet completedOccurrences;
+    
+    /** Collation key of the name, null until a collated sort needs it or after the name changes */
+    private CollationKey nameKey;
+    
+    /** Collator nameKey was made with, a key is only comparable to keys from the same collator */
+    private Collator nameKeyCollator;
 
     /**
      * Constructor
@@ -52,6 +90,12 @@ public class Task {
         setDescription(other.description);
         setDueDate(other.dueDate);
         setCompleted(other.isCompleted);
+        setPriority(other.priority);
+        tags = other.tags;
+        setRecurrence(other.recurrence);
+        if (other.completedOccurrences != null) {
+            completedOccurrences = (BitSet) other.completedOccurrences.clone();
+        }
     }
     
     /**
@@ -84,6 +128,54 @@ public class Task {
      */
     public void setName(String name) {
         this.name = name;
+        nameKey = null;
+        nameKeyCollator = null;
+    }
+    
+    /**
+     * Collation key of the name, made once per collator and name
+     * Used by TaskList so a collated sort compares bytes instead of running the collator on every comparison
+     * @param collator collator the key is for
+     * @return collation key of the name
+     */
+    CollationKey getNameKey(Collator collator) {
+        if (nameKeyCollator != collator) {
+            nameKey = collator.getCollationKey(name);
+            nameKeyCollator = collator;
+        }
+        return nameKey;
+    }
+
+    /**
+     * Counts this Task's fields for MemoryStats, each shared object once
+     * Used by MemoryStats.Counter when it first sees this Task
+     * @param counter counter of the part holding this Task
+     */
+    void countMemory(MemoryStats.Counter counter) {
+        counter.addTaskBytes(MemoryStats.objectBytes(4 + 9 * MemoryStats.REFERENCE + 1));
+        counter.addString(name);
+        counter.addString(description);
+        counter.addTaskObject(dueDate, DATE_BYTES);
+        if (tags.length > 0) {
+            counter.addTaskObject(tags, MemoryStats.arrayBytes(tags.length, MemoryStats.REFERENCE));
+            for (String tag : tags) {
+                counter.addString(tag);
+            }
+        }
+        if (recurrence != null) {
+            counter.addTaskObject(recurrence, MemoryStats.objectBytes(2 * MemoryStats.REFERENCE + 4));
+            counter.addTaskObject(recurrence.getUntil(), DATE_BYTES);
+        }
+        if (completedOccurrences != null) {
+            counter.addTaskObject(completedOccurrences, MemoryStats.objectBytes(MemoryStats.REFERENCE + 5)
+                    + MemoryStats.arrayBytes(completedOccurrences.size() / 64, 8));
+        }
+        if (nameKey != null) {
+            
+            // The key's own string is not visible, collation keys run to about three characters per character of the name
+            counter.addTaskObject(nameKey, MemoryStats.objectBytes(2 * MemoryStats.REFERENCE)
+                    + MemoryStats.objectBytes(MemoryStats.REFERENCE + 6) + MemoryStats.arrayBytes(name.length() * 3L + 2, 2));
+        }
     }
 
     /**
@@ -133,5 +225,196 @@ public class Task {
     public boolean isCompleted() {
         return isCompleted;
     }
+    
+    /**
+     * getPriority
+     * @return Task priority
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    /**
+     * setPriority
+     * @param priority Task priority, null means Priority.NONE
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority == null ? Priority.NONE : priority;
+    }
+    
+    /**
+     * getTags
+     * @return unmodifiable sorted list of tags in normal form
+     */
+    public List<String> getTags() {
+        return Collections.unmodifiableList(Arrays.asList(tags));
+    }
+    
+    /**
+     * setTags
+     * @param tags tags in any case, with or without a leading #, repeats are dropped
+     * @throws IllegalArgumentException if a tag is empty or has characters other than letters, digits, - and _
+     */
+    public void setTags(Collection<String> tags) {
+        TreeSet<String> normal = new TreeSet<>();
+        for (String tag : tags) {
+            normal.add(normalizeTag(tag));
+        }
+        this.tags = normal.isEmpty() ? NO_TAGS : normal.toArray(new String[normal.size()]);
+    }
+    
+    /**
+     * Checks for a tag
+     * @param tag tag in any case, with or without a leading #
+     * @return true if the Task carries the tag
+     */
+    public boolean hasTag(String tag) {
+        return Arrays.binarySearch(tags, normalizeTag(tag)) >= 0;
+    }
+    
+    /**
+     * Normal form of a tag, lower case without a leading #
+     * @param tag tag as typed
+     * @return tag in normal form
+     * @throws IllegalArgumentException if the tag is empty or has characters other than letters, digits, - and _
+     */
+    public static String normalizeTag(String tag) {
+        String normal = tag.trim().toLowerCase();
+        if (normal.startsWith("#")) {
+            normal = normal.substring(1);
+        }
+        if (normal.isEmpty()) {
+            throw new IllegalArgumentException("Tag is empty");
+        }
+        for (int i = 0; i < normal.length(); i++) {
+            char c = normal.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                throw new IllegalArgumentException("Invalid character '" + c + "' in tag '" + tag + "'");
+            }
+        }
+        return normal;
+    }
+    
+    /**
+     * getRecurrence
+     * @return repeat rule, null for a one-off Task
+     */
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+    
+    /**
+     * setRecurrence
+     * Completed occurrences are kept, so change the rule only before completing any
+     * @param recurrence repeat rule, null for a one-off Task
+     */
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+    
+    /**
+     * isRecurring
+     * @return true if the Task repeats
+     */
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+    
+    /**
+     * Completion status of one occurrence
+     * @param date date of the occurrence
+     * @return true if the whole Task, or the occurrence on that date, is completed
+     */
+    public boolean isCompleted(LocalDate date) {
+        if (isCompleted || recurrence == null || completedOccurrences == null) {
+            return isCompleted;
+        }
+        long index = recurrence.indexOf(dueDate, date);
+        return index >= 0 && index < Integer.MAX_VALUE && completedOccurrences.get((int) index);
+    }
+    
+    /**
+     * Sets the completion status of one occurrence of a repeating Task
+     * For a one-off Task this sets the completion status of the Task
+     * @param date date of the occurrence
+     * @param isCompleted occurrence completion status
+     * @throws IllegalArgumentException if no occurrence falls on that date
+     */
+    public void setCompleted(LocalDate date, boolean isCompleted) {
+        if (recurrence == null) {
+            setCompleted(isCompleted);
+            return;
+        }
+        long index = recurrence.indexOf(dueDate, date);
+        if (index < 0 || index >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("No occurrence on " + date);
+        }
+        if (completedOccurrences == null) {
+            completedOccurrences = new BitSet();
+        }
+        completedOccurrences.set((int) index, isCompleted);
+    }
+    
+    /**
+     * getCompletedOccurrences
+     * Used when copying a Task's state to storage
+     * @return copy of the completed occurrence numbers, empty for a one-off Task
+     */
+    public BitSet getCompletedOccurrences() {
+        return completedOccurrences == null ? new BitSet() : (BitSet) completedOccurrences.clone();
+    }
+    
+    /**
+     * setCompletedOccurrences
+     * Used when restoring a Task's state from storage
+     * @param completedOccurrences completed occurrence numbers, copied
+     */
+    public void setCompletedOccurrences(BitSet completedOccurrences) {
+        this.completedOccurrences = completedOccurrences.isEmpty() ? null : (BitSet) completedOccurrences.clone();
+    }
+    
+    /**
+     * Occurrences within a window, worked out only for that window
+     * @param from first day of the window
+     * @param to last day of the window
+     * @return occurrences in date order, a one-off Task has at most one
+     */
+    public List<Occurrence> getOccurrences(LocalDate from, LocalDate to) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        if (dueDate == null) {
+            return occurrences;
+        }
+        if (recurrence == null) {
+            if (!dueDate.isBefore(from) && !dueDate.isAfter(to)) {
+                occurrences.add(new Occurrence(this, dueDate));
+            }
+            return occurrences;
+        }
+        for (LocalDate date : recurrence.occurrencesBetween(dueDate, from, to)) {
+            occurrences.add(new Occurrence(this, date));
+        }
+        return occurrences;
+    }
+    
+    /**
+     * First occurrence on or after a date that is not completed
+     * @param from date to search from
+     * @return date of that occurrence, or null if there is none
+     */
+    public LocalDate getNextOccurrence(LocalDate from) {
+        if (isCompleted || dueDate == null) {
+            return null;
+        }
+        if (recurrence == null) {
+            return dueDate.isBefore(from) ? null : dueDate;
+        }
+        
+        // Skip completed occurrences using the bits
+        long index = recurrence.firstIndexFrom(dueDate, from);
+        if (completedOccurrences != null && index < Integer.MAX_VALUE) {
+            index = completedOccurrences.nextClearBit((int) index);
+        }
+        return recurrence.occurrence(dueDate, index);
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package model;
+
+/**
+ * Enum for the fields that make two Tasks duplicates of each other
+ * Each key reduces a Task to a 64-bit fingerprint, so duplicates can be found with a hash set of longs
+ * instead of keeping every Task's strings in a set
+ * Different Tasks share a fingerprint with probability around 2^-64 per pair
+ * @author Luke Gentri
+ */
+public enum TaskKey {
+
+    /** Same name */
+    NAME,
+
+    /** Same name and due date */
+    NAME_AND_DUE_DATE,
+
+    /** Same name, description and due date */
+    ALL_FIELDS;
+
+    /** FNV-1a offset basis */
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** FNV-1a prime */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * Fingerprint of the fields this key compares
+     * @param task Task to fingerprint
+     * @return 64-bit fingerprint, equal for Tasks this key treats as duplicates
+     */
+    public long fingerprint(Task task) {
+        long hash = hash(OFFSET_BASIS, task.getName());
+        if (this != NAME) {
+            hash = hash(hash, task.getDueDate().toEpochDay());
+        }
+        if (this == ALL_FIELDS) {
+            hash = hash(hash, task.getDescription());
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Adds a string and its length to a hash
+     * @param hash hash so far
+     * @param text string to add
+     * @return new hash
+     */
+    private static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * PRIME;
+        }
+        return hash(hash, text.length());
+    }
+
+    /**
+     * Adds a number to a hash, a byte at a time
+     * @param hash hash so far
+     * @param value number to add
+     * @return new hash
+     */
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xFF)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    /**
+     * Spreads the bits of a hash so every bit depends on every input char
+     * @param hash hash to finish
+     * @return finished fingerprint
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -1,14 +1,34 @@
 package model;
 
+import java.text.Collator;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Class for managing a list of Task objects
  * Has methods for adding, removing, removing all, reassigning IDs,
- * getting all, getting completed, getting incomplete, sorting by due date, and sorting by name
+ * removing or completing many Tasks in one step, getting all, getting completed, getting incomplete, sorting by due date, and sorting by name
+ * Tasks can be blocked by other Tasks, the dependencies never form a cycle and the Tasks ready to start are known at all times
+ * The ready Tasks are kept in a heap by priority and due date, so the next Tasks to work on are found without sorting
+ * Tags and completion are indexed as bitmaps of positions, so tag filters do not look at each Task
+ * Counts for a dashboard (completed, overdue, due per day...) are kept up to date in TaskStats
+ * Subclasses keeping their Tasks off the heap keep counts with no per-Task state and build the tag index only when queried
+ * memoryStats estimates the heap held by the Tasks, their strings and the indexes
+ * Sorting by name follows the rules of a locale, with each Task's collation key made once and kept until its name changes
+ * Notifies registered TaskListListeners of every change, changes inside a batch arrive as one event
+ * Read methods go through getAllTasks, so subclasses with other storage only need to override it and the mutators
  * Used directly by TaskManagerGUI
  * @author Luke Gentri
  */
@@ -16,25 +36,92 @@ public class TaskList {
 	
 	/** Store tasks using List class */
     private List<Task> taskList;
+    
+    /** IDs currently in use, so addTask finds the lowest free ID without scanning */
+    private BitSet usedIds;
+    
+    /** Listeners notified of changes */
+    private final List<TaskListListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /** Nesting depth of open batches */
+    private int batchDepth;
+    
+    /** Changes collected while a batch is open */
+    private EventBatch pendingEvents;
+    
+    /** Which Tasks block which */
+    private final DependencyGraph dependencies = new DependencyGraph();
+    
+    /** True if a subclass keeps the Tasks off the heap, so nothing kept for them may grow with their number */
+    private final boolean offHeap;
+    
+    /** Positions of the Tasks carrying each tag, follows every event unless offHeap */
+    private final TagIndex tagIndex = new TagIndex();
+    
+    /** Counts of the Tasks, follows every event */
+    private final TaskStats stats;
+    
+    /** One collator per locale, so Tasks keep their collation keys from one sort to the next */
+    private static final Map<Locale, Collator> COLLATORS = new ConcurrentHashMap<>();
 
     /**
      * Constructor
      */
     public TaskList() {
+        this(false);
+    }
+    
+    /**
+     * Constructor for subclasses, such as lists of a memory-mapped or paged file
+     * With offHeap the counts keep no state per Task and the tag index is built when queried and dropped on
+     * the next change, so the heap held does not grow with the number of Tasks
+     * Such a subclass calls uncount with the stored version of a Task before firing an UPDATED event for it
+     * @param offHeap true if the subclass keeps its Tasks off the heap
+     */
+    protected TaskList(boolean offHeap) {
         this.taskList = new ArrayList<>();
+        this.usedIds = new BitSet();
+        this.offHeap = offHeap;
+        this.stats = new TaskStats(this, !offHeap);
     }
     
     /**
      * Copy Constructor
      * Creates a new TaskList with same fields as input TaskList
+     * Listeners are not copied
      * Used by GUI for pushing TaskList to Stack before changing
      * @param other TaskList to copy
      */
     public TaskList(TaskList other) {
         this.taskList = new ArrayList<>();
+        this.usedIds = new BitSet();
+        this.offHeap = false;
+        this.stats = new TaskStats(this, true);
 
+        Map<Task, Task> copies = new IdentityHashMap<>();
+        for (Task task : other.getAllTasks()) {
+            Task copy = new Task(task);
+            copies.put(task, copy);
+            this.taskList.add(copy);
+            if (task.getId() > 0) {
+                usedIds.set(task.getId());
+            }
+        }
+        
+        // Copy dependencies, adding Tasks in dependency order so no edge needs reordering
+        if (other.getDependencyCount() == 0) {
+            for (Task copy : taskList) {
+                dependencies.add(copy);
+            }
+            return;
+        }
+        for (Task task : other.getDependencyOrder()) {
+            dependencies.add(copies.get(task));
+        }
         for (Task task : other.getAllTasks()) {
-            this.taskList.add(new Task(task));
+            for (Task blocker : other.getBlockers(task)) {
+                dependencies.addEdge(copies.get(task), copies.get(blocker));
+            }
         }
     }
 
@@ -45,58 +132,387 @@ public class TaskList {
      */
     public void addTask(Task task) {
     	
-    	// ID 1 by default
-        int id = 1;
-        
-        // Find lowest available ID
-        while (getTaskById(id) != null) {
-            id++;
-        }
+    	// Find lowest available ID, starting at 1
+        int id = usedIds.nextClearBit(1);
         
         // Set ID
         task.setId(id);
+        usedIds.set(id);
         
         // Add to list
         taskList.add(task);
+        dependencies.add(task);
+        
+        // Notify listeners
+        fireEvent(TaskListEvent.single(this, TaskListEvent.Type.INSERTED, taskList.size() - 1, task));
     }
     
     /**
-     * Private helper method used by addTask to find lowest available ID
-     * @param id ID to check if Task exists with that ID
-     * @return null if Task with that ID does not exist
+     * Adds many Tasks in one step
+     * Each Task gets an id as in addTask, listeners receive a single INSERTED event
+     * @param tasks Tasks to add, in order
      */
-    private Task getTaskById(int id) {
+    public void addTasks(Collection<Task> tasks) {
     	
-    	// Iterate through TaskList
-        for (Task task : taskList) {
-        	
-        	// If ID found, return task
-            if (task.getId() == id) {
-                return task;
+    	// Grow the list once for the whole collection
+        if (taskList instanceof ArrayList) {
+            ((ArrayList<Task>) taskList).ensureCapacity(taskList.size() + tasks.size());
+        }
+        beginBatch();
+        try {
+            for (Task task : tasks) {
+                addTask(task);
             }
+        } finally {
+            endBatch();
         }
-        
-        // If ID available, return null
-        return null;
     }
-
+    
     /**
      * Remove Task from list
      * Reassign IDs after removal to maintain ordering
      * @param task
      */
     public void removeTask(Task task) {
-        taskList.remove(task);
+    	
+    	// Ignore Tasks not in this list
+        int index = taskList.indexOf(task);
+        if (index == -1) {
+            return;
+        }
+        
+        taskList.remove(index);
+        dependencies.remove(task);
         resetIDs();
+        
+        // Notify listeners, the Tasks that moved up have new ids
+        fireEvent(new TaskListEvent(this, TaskListEvent.Type.REMOVED, new int[] { index }, Collections.singletonList(task), renumberedFrom(index)));
     }
     
     /**
      * Remove all Tasks from list
      */
     public void clear() {
-        taskList.clear();
+    	
+    	// Hand the old Tasks to listeners
+        List<Task> removed = taskList;
+        taskList = new ArrayList<>();
+        usedIds.clear();
+        dependencies.clear();
+        fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.CLEARED, removed));
+    }
+    
+    /**
+     * Remove many Tasks in one step
+     * IDs are reassigned once and listeners receive a single REMOVED event
+     * @param tasks Tasks to remove, Tasks not in this list and repeats are ignored
+     */
+    public void removeTasks(Collection<Task> tasks) {
+    	
+    	// Identity lookup, Tasks are matched by reference like removeTask
+        Set<Task> toRemove = identitySet(tasks);
+        
+        // Single pass keeping Tasks not being removed, marking the positions of those that are
+        List<Task> kept = new ArrayList<>(taskList.size());
+        List<Task> removed = new ArrayList<>();
+        BitSet positions = new BitSet(taskList.size());
+        for (int i = 0; i < taskList.size(); i++) {
+            Task task = taskList.get(i);
+            if (toRemove.contains(task)) {
+                positions.set(i);
+                removed.add(task);
+            } else {
+                kept.add(task);
+            }
+        }
+        
+        // Nothing matched
+        if (removed.isEmpty()) {
+            return;
+        }
+        
+        taskList = kept;
+        for (Task task : removed) {
+            dependencies.remove(task);
+        }
+        resetIDs();
+        
+        // Notify listeners once, with one index per Task found
+        int[] removedIndices = positions.stream().toArray();
+        fireEvent(new TaskListEvent(this, TaskListEvent.Type.REMOVED, removedIndices, removed, renumberedFrom(removedIndices[0])));
+    }
+    
+    /**
+     * Set completion status of many Tasks in one step
+     * Listeners receive a single UPDATED event
+     * @param tasks Tasks to change, Tasks not in this list and repeats are ignored
+     * @param isCompleted new completion status
+     */
+    public void setCompleted(Collection<Task> tasks, boolean isCompleted) {
+        Set<Task> toChange = identitySet(tasks);
+        
+        // Single pass marking the position of each changed Task
+        List<Task> changed = new ArrayList<>();
+        BitSet positions = new BitSet(taskList.size());
+        for (int i = 0; i < taskList.size(); i++) {
+            Task task = taskList.get(i);
+            if (toChange.contains(task)) {
+                task.setCompleted(isCompleted);
+                dependencies.updated(task);
+                positions.set(i);
+                changed.add(task);
+            }
+        }
+        
+        // Notify listeners once
+        if (!changed.isEmpty()) {
+            fireEvent(new TaskListEvent(this, TaskListEvent.Type.UPDATED, positions.stream().toArray(), changed));
+        }
+    }
+    
+    /**
+     * Private helper method for matching Tasks by reference
+     * @param tasks Tasks to put in the set
+     * @return identity-based set of the Tasks
+     */
+    private static Set<Task> identitySet(Collection<Task> tasks) {
+        Set<Task> set = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>(tasks.size() * 2));
+        set.addAll(tasks);
+        return set;
+    }
+    
+    /**
+     * Set completion status of a Task in this list
+     * Notifies listeners of the update
+     * @param task Task to change
+     * @param isCompleted new completion status
+     */
+    public void setCompleted(Task task, boolean isCompleted) {
+        task.setCompleted(isCompleted);
+        updateTask(task);
+    }
+    
+    /**
+     * Set completion status of one occurrence of a repeating Task in this list
+     * Only that occurrence changes, listeners receive an UPDATED event for the Task
+     * @param task repeating Task to change
+     * @param date date of the occurrence
+     * @param isCompleted new occurrence completion status
+     * @throws IllegalArgumentException if no occurrence of the Task falls on that date
+     */
+    public void setCompleted(Task task, LocalDate date, boolean isCompleted) {
+        task.setCompleted(date, isCompleted);
+        updateTask(task);
+    }
+    
+    /**
+     * Notify listeners that a Task in this list was edited
+     * Call after changing a Task's fields directly
+     * @param task edited Task
+     */
+    public void updateTask(Task task) {
+        int index = indexOf(task);
+        if (index != -1) {
+            dependencies.updated(task);
+            fireEvent(TaskListEvent.single(this, TaskListEvent.Type.UPDATED, index, task));
+        }
+    }
+    
+    /**
+     * Make a Task wait for another to be completed
+     * Only the Tasks ordered between the two are reordered, listeners receive an UPDATED event for task
+     * @param task Task that must wait
+     * @param blocker Task to complete first
+     * @throws IllegalArgumentException if either Task is not in this list or blocker already waits for task
+     */
+    public void addDependency(Task task, Task blocker) {
+        if (dependencies.addEdge(task, blocker)) {
+            fireEvent(TaskListEvent.single(this, TaskListEvent.Type.UPDATED, indexOf(task), task));
+        }
+    }
+    
+    /**
+     * Stop a Task waiting for another
+     * Listeners receive an UPDATED event for task
+     * @param task Task that waited
+     * @param blocker Task it waited for
+     */
+    public void removeDependency(Task task, Task blocker) {
+        if (dependencies.removeEdge(task, blocker)) {
+            fireEvent(TaskListEvent.single(this, TaskListEvent.Type.UPDATED, indexOf(task), task));
+        }
+    }
+    
+    /**
+     * Get the Tasks a Task waits for
+     * @param task Task to look up
+     * @return new ArrayList of blockers, complete or not
+     */
+    public List<Task> getBlockers(Task task) {
+        return dependencies.getBlockers(task);
+    }
+    
+    /**
+     * Get the Tasks waiting for a Task
+     * @param task Task to look up
+     * @return new ArrayList of dependents
+     */
+    public List<Task> getDependents(Task task) {
+        return dependencies.getDependents(task);
+    }
+    
+    /**
+     * Check whether a Task waits for an incomplete Task
+     * @param task Task to check
+     * @return true if blocked
+     */
+    public boolean isBlocked(Task task) {
+        return dependencies.isBlocked(task);
+    }
+    
+    /**
+     * Get the incomplete Tasks that wait for nothing, ready to start
+     * Kept up to date as Tasks change, so this costs O(k) for k Tasks returned
+     * @return new ArrayList of unblocked Tasks, in no particular order
+     */
+    public List<Task> getUnblockedTasks() {
+        return dependencies.getUnblocked();
+    }
+    
+    /**
+     * Get the most urgent Task that is ready to start
+     * @return incomplete, unblocked Task with the highest priority and then the earliest due date, null if none
+     */
+    public Task getNextTask() {
+        List<Task> next = getNextTasks(1);
+        return next.isEmpty() ? null : next.get(0);
+    }
+    
+    /**
+     * Get the most urgent Tasks that are ready to start
+     * Higher priority comes first, then the earlier due date (the first open occurrence for repeating Tasks),
+     * then Tasks with no due date
+     * Read from a heap kept up to date as Tasks change, so this costs O(n log n) for n Tasks returned
+     * @param n most Tasks to return
+     * @return new ArrayList of incomplete, unblocked Tasks, most urgent first
+     */
+    public List<Task> getNextTasks(int n) {
+        return dependencies.getMostUrgent(n);
+    }
+    
+    /**
+     * Selects the most urgent incomplete Tasks by scanning getAllTasks with a heap of n Tasks
+     * For subclasses that store Tasks elsewhere and keep no dependencies, costs O(size log n)
+     * @param n most Tasks to return
+     * @return new ArrayList of incomplete Tasks, most urgent first
+     */
+    protected List<Task> scanNextTasks(int n) {
+        List<Task> next = new ArrayList<>();
+        if (n <= 0) {
+            return next;
+        }
+        
+        // Keep the n most urgent seen so far, least urgent on top
+        PriorityQueue<Task> kept = new PriorityQueue<>(n, Collections.reverseOrder(DependencyGraph.TASKS_BY_URGENCY));
+        for (Task task : getAllTasks()) {
+            if (task.isCompleted()) {
+                continue;
+            }
+            if (kept.size() < n) {
+                kept.add(task);
+            } else if (DependencyGraph.TASKS_BY_URGENCY.compare(task, kept.peek()) < 0) {
+                kept.poll();
+                kept.add(task);
+            }
+        }
+        next.addAll(kept);
+        Collections.sort(next, DependencyGraph.TASKS_BY_URGENCY);
+        return next;
+    }
+    
+    /**
+     * Get the Tasks matching a tag filter
+     * Evaluated as bitmap operations on an index kept up to date as Tasks are added and edited,
+     * after a removal or sort the index is rebuilt once
+     * @param query filter such as "#backend AND #urgent AND NOT completed"
+     * @return new ArrayList of matching Tasks, in list order
+     */
+    public List<Task> filter(TagQuery query) {
+        List<Task> tasks = getAllTasks();
+        int[] positions = query.evaluate(tagIndex, tasks).toArray();
+        List<Task> matches = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            matches.add(tasks.get(position));
+        }
+        return matches;
+    }
+    
+    /**
+     * Get the Tasks matching a tag filter
+     * @param query filter as parsed by TagQuery.parse
+     * @return new ArrayList of matching Tasks, in list order
+     * @throws IllegalArgumentException if the filter is invalid
+     */
+    public List<Task> filter(String query) {
+        return filter(TagQuery.parse(query));
+    }
+    
+    /**
+     * Get every tag in use
+     * @return new sorted set of tags carried by at least one Task
+     */
+    public Set<String> getTags() {
+        return tagIndex.tags(getAllTasks());
+    }
+    
+    /**
+     * Get the counts of this list's Tasks
+     * The counts are kept up to date on every change, so reading them costs O(1)
+     * @return statistics of this list, the same object every time
+     */
+    public TaskStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Get every Task ordered so each comes after all of its blockers
+     * @return new ArrayList of Tasks in dependency order
+     */
+    public List<Task> getDependencyOrder() {
+        return dependencies.getOrder();
+    }
+    
+    /**
+     * getDependencyCount
+     * @return number of dependencies between Tasks in this list
+     */
+    public int getDependencyCount() {
+        return dependencies.getEdgeCount();
     }
 
+    /**
+     * Position of a Task in the list
+     * IDs normally equal position + 1, so that slot is checked before searching
+     * @param task Task to find
+     * @return index, -1 if not in the list
+     */
+    private int indexOf(Task task) {
+        int index = task.getId() - 1;
+        if (index >= 0 && index < taskList.size() && taskList.get(index) == task) {
+            return index;
+        }
+        return taskList.indexOf(task);
+    }
+
+    /**
+     * First index of a removal event whose Task was renumbered
+     * @param index first removed index, before the change
+     * @return index in the current list, or NOT_RENUMBERED if no Task followed the removed ones
+     */
+    protected int renumberedFrom(int index) {
+        return index < size() ? index : TaskListEvent.NOT_RENUMBERED;
+    }
+    
     /**
      * Reset Task IDs after removal
      */
@@ -109,6 +525,10 @@ public class TaskList {
         for (Task task : taskList) {
             task.setId(id++);
         }
+        
+        // IDs are now exactly 1 to size
+        usedIds.clear();
+        usedIds.set(1, id);
     }
 
     /**
@@ -120,6 +540,29 @@ public class TaskList {
         return taskList;
     }
 
+    /**
+     * Get every occurrence within a window
+     * Repeating Tasks are expanded only for the window, one-off Tasks appear on their due date
+     * @param from first day of the window
+     * @param to last day of the window
+     * @return new ArrayList of occurrences in date order, list order for the same date
+     */
+    public List<Occurrence> getOccurrences(LocalDate from, LocalDate to) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        for (Task task : getAllTasks()) {
+            occurrences.addAll(task.getOccurrences(from, to));
+        }
+        
+        // Stable sort keeps list order for equal dates
+        occurrences.sort(new Comparator<Occurrence>() {
+            @Override
+            public int compare(Occurrence o1, Occurrence o2) {
+                return o1.getDate().compareTo(o2.getDate());
+            }
+        });
+        return occurrences;
+    }
+
     /**
      * Get completed tasks
      * Used for GUI display
@@ -131,7 +574,7 @@ public class TaskList {
         List<Task> completedTasks = new ArrayList<>();
         
         // Iterate through all Tasks
-        for (Task task : taskList) {
+        for (Task task : getAllTasks()) {
         	
         	// If completed, add to new list
             if (task.isCompleted()) {
@@ -154,7 +597,7 @@ public class TaskList {
         List<Task> incompleteTasks = new ArrayList<>();
         
      // Iterate through all Tasks
-        for (Task task : taskList) {
+        for (Task task : getAllTasks()) {
         	
         	// If incomplete, add to new list
             if (!task.isCompleted()) {
@@ -185,30 +628,185 @@ public class TaskList {
         
         // Update IDs for display after ordering
         resetIDs();
+        
+        // Notify listeners
+        fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.REORDERED, Collections.<Task>emptyList()));
     }
     
     /**
-     * Sort Tasks by name using Collections class
+     * Sort Tasks by name in the order of the default locale
      * Used for GUI display
-     * @return new ArrayList of Tasks in natural order of name
      */
     public void sortByName() {
+        sortByName(Locale.getDefault());
+    }
+    
+    /**
+     * Sort Tasks by name in the order of a locale, so accents and case sort where its readers expect them
+     * Collation keys are made on the first sort and reused, so later sorts compare bytes
+     * @param locale locale whose order to follow
+     */
+    public void sortByName(Locale locale) {
     	
     	// Collections sort method for Comparator
-        Collections.sort(taskList, new Comparator<Task>() {
+        Collections.sort(taskList, nameOrder(locale));
+        
+        // Update IDs for display after ordering
+        resetIDs();
+        
+        // Notify listeners
+        fireEvent(TaskListEvent.whole(this, TaskListEvent.Type.REORDERED, Collections.<Task>emptyList()));
+    }
+    
+    /**
+     * Order of Task names in a locale, comparing the collation keys cached in each Task
+     * Shared by sortByName and other sorts by name so they agree
+     * @param locale locale whose order to follow
+     * @return comparator of Tasks by name
+     */
+    public static Comparator<Task> nameOrder(Locale locale) {
+        Collator collator = COLLATORS.get(locale);
+        if (collator == null) {
+            collator = Collator.getInstance(locale);
+            Collator existing = COLLATORS.putIfAbsent(locale, collator);
+            if (existing != null) {
+                collator = existing;
+            }
+        }
+        final Collator shared = collator;
+        return new Comparator<Task>() {
         	
-        	// Override Compare to compare names
+        	// Override Compare to compare collation keys of names
             @Override
             public int compare(Task t1, Task t2) {
-                return t1.getName().compareTo(t2.getName());
+                return t1.getNameKey(shared).compareTo(t2.getNameKey(shared));
             }
-        });
-        
-        // Update IDs for display after ordering
-        resetIDs();
+        };
+    }
+    
+    /**
+     * Estimated heap held by this list: its Tasks, their strings, and the list and indexes kept for it
+     * Walks the Tasks once and keeps nothing, so it can be polled
+     * @return figures for this list alone
+     */
+    public MemoryStats memoryStats() {
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+        MemoryStats result = memoryStats(counter);
+        counter.reset();
+        return result;
+    }
+    
+    /**
+     * Estimated heap held by this list, leaving out Tasks and strings the counter has already seen
+     * Subclasses keeping Tasks elsewhere count what they hold on the heap
+     * @param counter counter shared with the other parts being measured
+     * @return figures for this list
+     */
+    public MemoryStats memoryStats(MemoryStats.Counter counter) {
+        for (Task task : taskList) {
+            counter.addTask(task);
+        }
+        counter.addStructure(MemoryStats.objectBytes(3 * 4) + MemoryStats.arrayBytes(taskList.size(), MemoryStats.REFERENCE));
+        counter.addStructure(MemoryStats.arrayBytes(usedIds.size() / 64, 8));
+        counter.addStructure(getIndexBytes());
+        return counter.finish("Task list");
+    }
+    
+    /**
+     * Estimated heap held by the tag index, the counts and the dependency graph
+     * Subclasses counting their own heap in memoryStats add this
+     * @return bytes
+     */
+    protected long getIndexBytes() {
+        return tagIndex.getSizeInBytes() + stats.getSizeInBytes() + dependencies.getSizeInBytes();
     }
     
+    /**
+     * size
+     * @return number of Tasks
+     */
     public int size() {
-    	return taskList.size();
+    	return getAllTasks().size();
+    }
+    
+    /**
+     * Register a listener for changes to this list
+     * @param listener listener to add
+     */
+    public void addTaskListListener(TaskListListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregister a listener
+     * @param listener listener to remove
+     */
+    public void removeTaskListListener(TaskListListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Start a batch of changes
+     * Listeners receive one coalesced event when the outermost batch ends
+     * Batches nest, every call must be matched by endBatch (use try/finally)
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            pendingEvents = new EventBatch();
+        }
+    }
+    
+    /**
+     * End a batch of changes
+     * Fires the coalesced event if this closes the outermost batch
+     */
+    public void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch in progress");
+        }
+        if (--batchDepth == 0) {
+            EventBatch batch = pendingEvents;
+            pendingEvents = null;
+            if (!batch.isEmpty()) {
+                dispatch(batch.toEvent(this));
+            }
+        }
+    }
+    
+    /**
+     * Takes a Task about to be overwritten out of the counts
+     * Only for offHeap subclasses, whose counts cannot look up what an UPDATED event replaced
+     * @param stored version of the Task before the change
+     */
+    protected void uncount(Task stored) {
+        stats.uncount(stored);
+    }
+    
+    /**
+     * Send an event to listeners, or hold it until the current batch ends
+     * @param event change to report
+     */
+    protected void fireEvent(TaskListEvent event) {
+        if (offHeap) {
+            tagIndex.invalidate();
+        } else {
+            tagIndex.apply(event);
+        }
+        stats.apply(event);
+        if (batchDepth > 0) {
+            pendingEvents.add(event);
+        } else {
+            dispatch(event);
+        }
+    }
+    
+    /**
+     * Deliver an event to every listener
+     * @param event change to report
+     */
+    private void dispatch(TaskListEvent event) {
+        for (TaskListListener listener : listeners) {
+            listener.taskListChanged(event);
+        }
     }
 }
\ No newline at end of file
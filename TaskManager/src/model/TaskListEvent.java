@@ -0,0 +1,161 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class describing a single change to a TaskList
+ * Has a type, the affected indices, and the affected Tasks (same order as the indices)
+ * INSERTED indices refer to the list after the change
+ * REMOVED indices refer to the list before the change, and getRenumberedFrom tells where ids changed after it
+ * UPDATED indices refer to the current list
+ * REORDERED and CLEARED carry no indices, listeners should re-read the whole list
+ * Changes made inside TaskList.beginBatch/endBatch arrive as one coalesced event
+ * @author Luke Gentri
+ */
+public class TaskListEvent {
+
+    /**
+     * Kinds of change
+     * REORDERED is also used when a batch makes mixed changes that cannot be described by one type
+     */
+    public enum Type {
+        INSERTED, REMOVED, UPDATED, REORDERED, CLEARED
+    }
+
+    /** getRenumberedFrom of an event that gave no Task a new id */
+    public static final int NOT_RENUMBERED = -1;
+
+    /** Empty index array for whole-list events */
+    private static final int[] NO_INDICES = new int[0];
+
+    /** TaskList that changed */
+    private final TaskList source;
+
+    /** Kind of change */
+    private final Type type;
+
+    /** Affected indices, ascending */
+    private final int[] indices;
+
+    /** Affected Tasks, one per index (removed Tasks for CLEARED) */
+    private final List<Task> tasks;
+
+    /** First index after the change from which Tasks have new ids, or NOT_RENUMBERED */
+    private final int renumberedFrom;
+
+    /**
+     * Constructor for a change that gives no Task a new id
+     * @param source TaskList that changed
+     * @param type kind of change
+     * @param indices affected indices in ascending order
+     * @param tasks affected Tasks, one per index
+     */
+    public TaskListEvent(TaskList source, Type type, int[] indices, List<Task> tasks) {
+        this(source, type, indices, tasks, NOT_RENUMBERED);
+    }
+
+    /**
+     * Constructor
+     * @param source TaskList that changed
+     * @param type kind of change
+     * @param indices affected indices in ascending order
+     * @param tasks affected Tasks, one per index
+     * @param renumberedFrom first index in the list after the change from which every Task has a new id,
+     * or NOT_RENUMBERED
+     */
+    public TaskListEvent(TaskList source, Type type, int[] indices, List<Task> tasks, int renumberedFrom) {
+        this.source = source;
+        this.type = type;
+        this.indices = indices;
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.renumberedFrom = renumberedFrom;
+    }
+
+    /**
+     * Creates an event for a single index
+     * @param source TaskList that changed
+     * @param type kind of change
+     * @param index affected index
+     * @param task affected Task
+     * @return new event
+     */
+    public static TaskListEvent single(TaskList source, Type type, int index, Task task) {
+        return new TaskListEvent(source, type, new int[] { index }, Collections.singletonList(task));
+    }
+
+    /**
+     * Creates an event with no indices
+     * @param source TaskList that changed
+     * @param type REORDERED or CLEARED
+     * @param tasks affected Tasks (removed Tasks for CLEARED)
+     * @return new event
+     */
+    public static TaskListEvent whole(TaskList source, Type type, List<Task> tasks) {
+        return new TaskListEvent(source, type, NO_INDICES, tasks);
+    }
+
+    /**
+     * getSource
+     * @return TaskList that changed
+     */
+    public TaskList getSource() {
+        return source;
+    }
+
+    /**
+     * getType
+     * @return kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * getIndices
+     * @return copy of the affected indices, ascending
+     */
+    public int[] getIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * getIndex
+     * @param i position within this event
+     * @return affected index at position i
+     */
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * getTasks
+     * @return unmodifiable list of affected Tasks
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * getRenumberedFrom
+     * @return first index in the list after the change from which every Task has a new id,
+     * NOT_RENUMBERED if no id changed
+     */
+    public int getRenumberedFrom() {
+        return renumberedFrom;
+    }
+
+    /**
+     * size
+     * @return number of indices in this event
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    @Override
+    public String toString() {
+        return type + Arrays.toString(indices);
+    }
+}
@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Interface for objects that react to changes in a TaskList
+ * Registered with TaskList.addTaskListListener
+ * Used by the GUI list model, caches and persistence layers to update only what changed
+ * @author Luke Gentri
+ */
+public interface TaskListListener {
+
+    /**
+     * Called after the TaskList has changed
+     * During a batch this is called once, when the outermost batch ends
+     * @param event description of the change
+     */
+    void taskListChanged(TaskListEvent event);
+}
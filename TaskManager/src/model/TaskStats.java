@@ -0,0 +1,378 @@
+package model;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts of a TaskList's Tasks kept up to date as the list changes, so reading them does not scan the list
+ * Keeps total, completed, incomplete, overdue and due-this-week counts and the number of Tasks due on each day
+ * Follows the list through its events, with the due day and completion of each position stored so a
+ * removal or edit takes back exactly what was counted before, a sort recounts once
+ * For a list keeping its Tasks off the heap nothing is stored per position: removals take back the removed Tasks
+ * the event carries, edits are taken back by the list through uncount before the event, a sort changes no count
+ * A repeating Task counts as due on its first open occurrence from its due date
+ * Overdue and due-this-week are relative to today in the clock's zone and are recounted from the
+ * per-day counts only when the date changes
+ * Not thread-safe
+ * @author Luke Gentri
+ */
+public final class TaskStats {
+
+    /** Stored day of a Task with no due date */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Days counted as this week, today included */
+    private static final int WEEK_DAYS = 7;
+
+    /** Positions in a day's counts */
+    private static final int ALL = 0;
+    private static final int INCOMPLETE = 1;
+
+    /** TaskList being counted */
+    private final TaskList owner;
+
+    /** Source of today's date */
+    private Clock clock = Clock.systemDefaultZone();
+
+    /** Due day and completion of each position, as day * 2 + completed, null if not stored */
+    private long[] states;
+
+    /** Number of positions counted */
+    private int size;
+
+    /** Completed Tasks */
+    private int completed;
+
+    /** Tasks due on each epoch day, all and incomplete */
+    private final Map<Integer, int[]> days = new HashMap<>();
+
+    /** Epoch day overdue and dueThisWeek are counted for */
+    private long today;
+
+    /** Incomplete Tasks due before today */
+    private int overdue;
+
+    /** Incomplete Tasks due today or in the six days after */
+    private int dueThisWeek;
+
+    /**
+     * Constructor
+     * @param owner TaskList to count
+     * @param positional true to store each position's state, false for a list keeping its Tasks off the heap
+     */
+    TaskStats(TaskList owner, boolean positional) {
+        this.owner = owner;
+        this.states = positional ? new long[16] : null;
+        this.today = LocalDate.now(clock).toEpochDay();
+    }
+
+    /**
+     * setClock
+     * Used by tests to move today
+     * @param clock source of today's date
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * getTotal
+     * @return number of Tasks
+     */
+    public int getTotal() {
+        refresh();
+        return size;
+    }
+
+    /**
+     * getCompleted
+     * @return number of completed Tasks
+     */
+    public int getCompleted() {
+        refresh();
+        return completed;
+    }
+
+    /**
+     * getIncomplete
+     * @return number of incomplete Tasks
+     */
+    public int getIncomplete() {
+        refresh();
+        return size - completed;
+    }
+
+    /**
+     * getOverdue
+     * @return number of incomplete Tasks due before today
+     */
+    public int getOverdue() {
+        refresh();
+        return overdue;
+    }
+
+    /**
+     * getDueThisWeek
+     * @return number of incomplete Tasks due today or in the next six days
+     */
+    public int getDueThisWeek() {
+        refresh();
+        return dueThisWeek;
+    }
+
+    /**
+     * Number of Tasks due on a day, complete or not
+     * @param date day to look up
+     * @return number of Tasks
+     */
+    public int getDueOn(LocalDate date) {
+        refresh();
+        int[] counts = days.get((int) date.toEpochDay());
+        return counts == null ? 0 : counts[ALL];
+    }
+
+    /**
+     * Number of Tasks due on each of a run of days, complete or not
+     * @param from first day
+     * @param length number of days
+     * @return new array, element i counts the Tasks due i days after from
+     */
+    public int[] getHistogram(LocalDate from, int length) {
+        refresh();
+        int[] histogram = new int[length];
+        int first = (int) from.toEpochDay();
+        for (int i = 0; i < length; i++) {
+            int[] counts = days.get(first + i);
+            if (counts != null) {
+                histogram[i] = counts[ALL];
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Applies a change to the list
+     * @param event change reported by the TaskList, before batching
+     */
+    void apply(TaskListEvent event) {
+        if (states == null) {
+            applyCounts(event);
+            return;
+        }
+        switch (event.getType()) {
+            case INSERTED:
+
+                // Indices are ascending and refer to the new list
+                for (int i = 0; i < event.size(); i++) {
+                    int index = event.getIndex(i);
+                    if (index > size) {
+                        return;
+                    }
+                    ensureCapacity(size + 1);
+                    System.arraycopy(states, index, states, index + 1, size - index);
+                    states[index] = stateOf(event.getTasks().get(i));
+                    size++;
+                    count(states[index], 1);
+                }
+                break;
+            case REMOVED:
+
+                // Indices are ascending and refer to the old list, compact in one pass
+                int next = 0;
+                int kept = 0;
+                for (int i = 0; i < size; i++) {
+                    if (next < event.size() && event.getIndex(next) == i) {
+                        count(states[i], -1);
+                        next++;
+                    } else {
+                        states[kept++] = states[i];
+                    }
+                }
+                size = kept;
+                break;
+            case UPDATED:
+                for (int i = 0; i < event.size(); i++) {
+                    int index = event.getIndex(i);
+                    if (index >= 0 && index < size) {
+                        count(states[index], -1);
+                        states[index] = stateOf(event.getTasks().get(i));
+                        count(states[index], 1);
+                    }
+                }
+                break;
+            default:
+
+                // Cleared or sorted, recount
+                rebuild();
+                break;
+        }
+    }
+
+    /**
+     * Applies a change to the list without per-position states
+     * @param event change reported by the TaskList, before batching
+     */
+    private void applyCounts(TaskListEvent event) {
+        switch (event.getType()) {
+            case INSERTED:
+                for (Task task : event.getTasks()) {
+                    count(stateOf(task), 1);
+                    size++;
+                }
+                break;
+            case REMOVED:
+                for (Task task : event.getTasks()) {
+                    count(stateOf(task), -1);
+                    size--;
+                }
+                break;
+            case UPDATED:
+
+                // The stored versions were taken back by uncount
+                for (Task task : event.getTasks()) {
+                    count(stateOf(task), 1);
+                }
+                break;
+            case CLEARED:
+                size = 0;
+                completed = 0;
+                overdue = 0;
+                dueThisWeek = 0;
+                days.clear();
+                break;
+            default:
+
+                // A sort moves Tasks but changes no count
+                break;
+        }
+    }
+
+    /**
+     * Takes a Task's contribution out of the counts before an UPDATED event for it
+     * Only used without per-position states
+     * @param stored version of the Task being replaced
+     */
+    void uncount(Task stored) {
+        if (states == null) {
+            count(stateOf(stored), -1);
+        }
+    }
+
+    /**
+     * Recounts after a change to the date or to the list that was not reported
+     */
+    private void refresh() {
+        if (size != owner.getAllTasks().size()) {
+            rebuild();
+        }
+        long now = LocalDate.now(clock).toEpochDay();
+        if (now == today) {
+            return;
+        }
+
+        // Recount the date-relative counts from the per-day counts
+        today = now;
+        overdue = 0;
+        dueThisWeek = 0;
+        for (Map.Entry<Integer, int[]> entry : days.entrySet()) {
+            int day = entry.getKey();
+            if (day < today) {
+                overdue += entry.getValue()[INCOMPLETE];
+            } else if (day < today + WEEK_DAYS) {
+                dueThisWeek += entry.getValue()[INCOMPLETE];
+            }
+        }
+    }
+
+    /**
+     * Recounts every Task of the list
+     */
+    private void rebuild() {
+        size = 0;
+        completed = 0;
+        overdue = 0;
+        dueThisWeek = 0;
+        days.clear();
+        today = LocalDate.now(clock).toEpochDay();
+        for (Task task : owner.getAllTasks()) {
+            if (states == null) {
+                count(stateOf(task), 1);
+                size++;
+                continue;
+            }
+            ensureCapacity(size + 1);
+            states[size] = stateOf(task);
+            count(states[size++], 1);
+        }
+    }
+
+    /**
+     * Adds or takes back one position's contribution to every count
+     * @param state stored day and completion
+     * @param change 1 to add, -1 to take back
+     */
+    private void count(long state, int change) {
+        boolean isCompleted = (state & 1) != 0;
+        int day = (int) (state >> 1);
+        if (isCompleted) {
+            completed += change;
+        }
+        if (day == NO_DATE) {
+            return;
+        }
+        int[] counts = days.get(day);
+        if (counts == null) {
+            counts = new int[2];
+            days.put(day, counts);
+        }
+        counts[ALL] += change;
+        if (!isCompleted) {
+            counts[INCOMPLETE] += change;
+            if (day < today) {
+                overdue += change;
+            } else if (day < today + WEEK_DAYS) {
+                dueThisWeek += change;
+            }
+        }
+        if (counts[ALL] == 0) {
+            days.remove(day);
+        }
+    }
+
+    /**
+     * Approximate memory used by the stored states and the per-day counts
+     * @return bytes
+     */
+    long getSizeInBytes() {
+        long day = MemoryStats.MAP_ENTRY + MemoryStats.objectBytes(4) + MemoryStats.arrayBytes(2, 4);
+        return (states == null ? 0 : MemoryStats.arrayBytes(states.length, 8)) + days.size() * day;
+    }
+
+    /**
+     * Stored state of a Task
+     * @param task Task to store
+     * @return due day * 2 + completed
+     */
+    private static long stateOf(Task task) {
+        LocalDate due = task.getDueDate();
+        if (due != null && task.isRecurring() && !task.isCompleted()) {
+            LocalDate next = task.getNextOccurrence(due);
+            due = next == null ? due : next;
+        }
+        int day = due == null ? NO_DATE : (int) due.toEpochDay();
+        return (long) day << 1 | (task.isCompleted() ? 1 : 0);
+    }
+
+    /**
+     * Grows the state array
+     * @param capacity positions needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > states.length) {
+            states = Arrays.copyOf(states, Math.max(capacity, states.length * 2));
+        }
+    }
+}
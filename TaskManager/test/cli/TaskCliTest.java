@@ -0,0 +1,246 @@
+package cli;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing TaskCli commands end to end on temporary files
+ * @author Luke Gentri
+ */
+class TaskCliTest {
+
+    /** directory of the files for testing */
+    private File directory;
+
+    /** what the last command printed */
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    /**
+     * Create an empty directory
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("cli").toFile();
+    }
+
+    /**
+     * Delete the directory
+     */
+    @AfterEach
+    void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test filtering by date and tag, dropping repeats and sorting in one command
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testFilterDedupAndSort() throws IOException {
+        write("in.csv",
+                "Pay rent,,2026-03-01,tags=home",
+                "Call Bob,,2026-01-15,tags=work",
+                "Buy milk,,2026-02-10,tags=home",
+                "Pay rent,,2026-03-01,tags=home",
+                "Old task,,2025-12-01,tags=home",
+                "Dentist,,2026-02-01,tags=Home");
+
+        assertEquals(TaskCli.OK, run("filter", path("in.csv"), path("out.csv"), "--from", "2026-01-01", "--to", "2026-12-31",
+                "--tag", "HOME", "--key", "all", "--by", "due"));
+        assertEquals(Arrays.asList(
+                "Dentist,,2026-02-01,tags=home",
+                "Buy milk,,2026-02-10,tags=home",
+                "Pay rent,,2026-03-01,tags=home"), read("out.csv"));
+        assertTrue(out.toString().contains("Wrote 3 Tasks"));
+    }
+
+    /**
+     * Test an external sort over many small runs, merged in several passes, keeps the in-memory order
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testExternalSort() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("Task " + (i * 7919 % 1000) + ",Description " + i + "," + LocalDate.of(2026, 1, 1).plusDays(i * 31 % 90));
+        }
+        write("in.csv", lines.toArray(new String[0]));
+
+        assertEquals(TaskCli.OK, run("sort", path("in.csv"), path("memory.csv"), "--by", "due"));
+        assertEquals(TaskCli.OK, run("sort", path("in.csv"), path("external.csv"), "--by", "due", "--run-size", "3"));
+        assertEquals(read("memory.csv"), read("external.csv"));
+        assertEquals(1000, read("external.csv").size());
+
+        // Stable, so equal dates keep their input order
+        List<String> sorted = lines.stream()
+                .sorted((a, b) -> a.substring(a.lastIndexOf(',')).compareTo(b.substring(b.lastIndexOf(','))))
+                .collect(Collectors.toList());
+        assertEquals(sorted, read("external.csv"));
+        assertEquals(3, directory.list().length, "sort runs left behind");
+    }
+
+    /**
+     * Test merging files drops the Tasks repeated between them
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testMerge() throws IOException {
+        write("a.csv", "One,,2026-01-01", "Two,,2026-01-02");
+        write("b.csv", "Two,,2026-01-02", "Two,,2026-01-03", "Three,,2026-01-04");
+
+        assertEquals(TaskCli.OK, run("merge", path("all.csv"), path("a.csv"), path("b.csv")));
+        assertEquals(Arrays.asList("One,,2026-01-01", "Two,,2026-01-02", "Two,,2026-01-03", "Three,,2026-01-04"), read("all.csv"));
+        assertEquals(TaskCli.OK, run("merge", path("names.csv"), path("a.csv"), path("b.csv"), "--key", "name"));
+        assertEquals(Arrays.asList("One,,2026-01-01", "Two,,2026-01-02", "Three,,2026-01-04"), read("names.csv"));
+    }
+
+    /**
+     * Test dependencies follow their Tasks through merge, sort, import and export, renumbered to the rows written
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testDependencies() throws IOException {
+        write("a.csv", "One,,2026-01-03,after=2", "Two,,2026-01-01");
+        write("b.csv", "Four,,2026-01-05", "Three,,2026-01-02,after=1");
+
+        assertEquals(TaskCli.OK, run("merge", path("all.csv"), path("a.csv"), path("b.csv")));
+        assertEquals(Arrays.asList("One,,2026-01-03,after=2", "Two,,2026-01-01", "Four,,2026-01-05", "Three,,2026-01-02,after=3"), read("all.csv"));
+        assertEquals(TaskCli.OK, run("sort", path("all.csv"), path("sorted.csv"), "--by", "due", "--run-size", "2"));
+        assertEquals(Arrays.asList("Two,,2026-01-01", "Three,,2026-01-02,after=4", "One,,2026-01-03,after=1", "Four,,2026-01-05"), read("sorted.csv"));
+        assertEquals(TaskCli.OK, run("import", path("store.log"), path("a.csv"), path("b.csv")));
+        assertEquals(TaskCli.OK, run("export", path("store.log"), path("out.csv")));
+        assertEquals(read("all.csv"), read("out.csv"));
+
+        // A blocker filtered out takes its dependency with it
+        assertEquals(TaskCli.OK, run("filter", path("all.csv"), path("early.csv"), "--to", "2026-01-04"));
+        assertEquals(Arrays.asList("One,,2026-01-03,after=2", "Two,,2026-01-01", "Three,,2026-01-02"), read("early.csv"));
+        write("bad.csv", "One,,2026-01-01,after=3", "Two,,2026-01-02");
+        assertEquals(TaskCli.INVALID, run("convert", path("bad.csv"), path("bad-out.csv")));
+    }
+
+    /**
+     * Test converting through a compressed file and a task store gives back the same CSV
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testConvertImportExport() throws IOException {
+        write("in.csv", "One,First,2026-01-01,priority=HIGH", "Two,Second,2026-01-02,tags=a;b");
+
+        assertEquals(TaskCli.OK, run("convert", path("in.csv"), path("plain.csv")));
+        assertEquals(TaskCli.OK, run("convert", path("in.csv"), path("in.csv.gz")));
+        assertEquals(TaskCli.OK, run("import", path("store.log"), path("in.csv.gz")));
+        assertEquals(TaskCli.OK, run("import", path("store.log"), path("in.csv")));
+        assertEquals(TaskCli.OK, run("validate", path("store.log")));
+        assertTrue(out.toString().contains("4 Tasks"));
+        assertEquals(TaskCli.OK, run("export", path("store.log"), path("out.csv"), "--key", "all"));
+        assertEquals(read("plain.csv"), read("out.csv"));
+
+        // Tasks from CSV are incomplete
+        assertEquals(TaskCli.OK, run("export", path("store.log"), path("done.csv"), "--completed"));
+        assertEquals(0, read("done.csv").size());
+    }
+
+    /**
+     * Test invalid data and bad arguments give their exit codes
+     * @throws IOException if a file cannot be written
+     */
+    @Test
+    void testErrors() throws IOException {
+        write("bad.csv", "One,,2026-01-01", "Two,,2026-13-01");
+
+        assertEquals(TaskCli.INVALID, run("validate", path("bad.csv")));
+        assertTrue(out.toString().contains("1 invalid"));
+        assertEquals(TaskCli.INVALID, run("convert", path("bad.csv"), path("out.csv")));
+        assertFalse(new File(directory, "out.csv").exists());
+
+        assertEquals(TaskCli.USAGE, run());
+        assertEquals(TaskCli.USAGE, run("sort", path("bad.csv"), path("out.csv")));
+        assertEquals(TaskCli.USAGE, run("filter", path("bad.csv"), path("out.csv"), "--from", "yesterday"));
+        assertEquals(TaskCli.USAGE, run("import", path("out.csv"), path("bad.csv")));
+        assertTrue(err.toString().contains("Usage"));
+        assertEquals(1, directory.list().length, "files left behind");
+
+        // A missing store is an I/O error and is not created
+        assertEquals(TaskCli.IO_ERROR, run("validate", path("missing.log")));
+        assertEquals(TaskCli.IO_ERROR, run("export", path("missing.log"), path("out.csv")));
+        assertEquals(1, directory.list().length, "files left behind");
+    }
+
+    /**
+     * Test that a damaged task store is reported and left as it is
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    void testDamagedStore() throws IOException {
+        write("in.csv", "One,,2026-01-01", "Two,,2026-01-02");
+        assertEquals(TaskCli.OK, run("import", path("store.log"), path("in.csv")));
+        File store = new File(directory, "store.log");
+        byte[] bytes = Files.readAllBytes(store.toPath());
+
+        // Damage the first of two records
+        bytes[20] ^= 0xFF;
+        Files.write(store.toPath(), bytes);
+        assertEquals(TaskCli.INVALID, run("validate", path("store.log")));
+        assertEquals(TaskCli.INVALID, run("export", path("store.log"), path("out.csv")));
+        assertArrayEquals(bytes, Files.readAllBytes(store.toPath()));
+    }
+
+    /**
+     * Runs a command, keeping what it prints
+     * @param args command, files and options
+     * @return exit code
+     */
+    private int run(String... args) {
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        return TaskCli.run(args, new PrintStream(out), new PrintStream(err));
+    }
+
+    /**
+     * path
+     * @param name file in the directory
+     * @return its path
+     */
+    private String path(String name) {
+        return new File(directory, name).getPath();
+    }
+
+    /**
+     * Writes lines to a file in the directory
+     * @param name file name
+     * @param lines lines of the file
+     * @throws IOException if the file cannot be written
+     */
+    private void write(String name, String... lines) throws IOException {
+        Files.write(new File(directory, name).toPath(), Arrays.asList(lines));
+    }
+
+    /**
+     * Reads the lines of a file in the directory
+     * @param name file name
+     * @return lines of the file
+     * @throws IOException if the file cannot be read
+     */
+    private List<String> read(String name) throws IOException {
+        return Files.readAllLines(new File(directory, name).toPath());
+    }
+}
@@ -0,0 +1,167 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Priority;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing AsyncTaskReader against TaskReader
+ * @author Luke Gentri
+ */
+class AsyncTaskReaderTest {
+
+    /** directory of the files for testing */
+    private File directory;
+
+    /** reader for testing, two files open at a time */
+    private AsyncTaskReader reader;
+
+    /**
+     * Create an empty directory and a reader
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("async").toFile();
+        reader = new AsyncTaskReader(2, 2);
+    }
+
+    /**
+     * Close the reader and delete the directory
+     */
+    @AfterEach
+    void tearDown() {
+        reader.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test saving and loading plain and compressed files spanning many chunks, matching TaskReader
+     * @throws Exception if a file cannot be saved or loaded
+     */
+    @Test
+    void testRoundTrip() throws Exception {
+        TaskList list = new TaskList();
+        for (int i = 0; i < 5000; i++) {
+            Task task = new Task(0, "Task " + i, "Description \u00e9 " + i, LocalDate.of(2026, 1, 1).plusDays(i % 365));
+            task.setPriority(Priority.values()[i % 4]);
+            task.setTags(Arrays.asList("tag" + i % 7));
+            list.addTask(task);
+        }
+        list.addDependency(list.getAllTasks().get(10), list.getAllTasks().get(4000));
+
+        for (String name : Arrays.asList("tasks.csv", "tasks.csv.gz")) {
+            File file = new File(directory, name);
+            reader.save(list, file).get();
+            assertFalse(Arrays.toString(directory.list()).contains(".tmp"), "temporary file left behind");
+
+            // Same Tasks as the blocking reader sees, including the dependency
+            TaskList loaded = reader.load(file).get();
+            TaskList expected = new TaskReader().loadFromFile(file);
+            assertEquals(list.getAllTasks().size(), loaded.getAllTasks().size());
+            for (int i = 0; i < expected.getAllTasks().size(); i++) {
+                assertEquals(TaskReader.formatTask(expected.getAllTasks().get(i)), TaskReader.formatTask(loaded.getAllTasks().get(i)));
+            }
+            assertEquals(1, loaded.getDependencyCount());
+            assertSame(loaded.getAllTasks().get(4000), loaded.getBlockers(loaded.getAllTasks().get(10)).get(0));
+        }
+        assertEquals(0, reader.getOpenFiles());
+    }
+
+    /**
+     * Test errors are the ones TaskReader reports
+     * @throws IOException if a file cannot be written
+     * @throws InterruptedException never
+     */
+    @Test
+    void testErrors() throws IOException, InterruptedException {
+        File file = new File(directory, "invalid.csv");
+        Files.write(file.toPath(), "First,,2026-01-01\r\nSecond,,2026-13-01\n".getBytes("UTF-8"));
+        TaskFormatException invalid = (TaskFormatException) causeOf(reader.load(file));
+        assertEquals(2, invalid.getLine());
+        assertEquals(9, invalid.getColumn());
+
+        Files.write(file.toPath(), new byte[0]);
+        assertTrue(causeOf(reader.load(file)) instanceof DataFormatException);
+        assertTrue(causeOf(reader.load(new File(directory, "missing.csv"))) instanceof FileNotFoundException);
+    }
+
+    /**
+     * Test many loads share two open files and cancelled loads and saves release them
+     * @throws Exception if a file cannot be saved or loaded
+     */
+    @Test
+    void testBoundedAndCancelled() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            File file = new File(directory, "list" + i + ".csv");
+            TaskList list = new TaskList();
+            for (int j = 0; j <= i; j++) {
+                list.addTask(new Task(0, "Task " + j, "", LocalDate.of(2026, 2, 1)));
+            }
+            new TaskReader().saveToFile(list, file);
+            files.add(file);
+        }
+
+        // At most two files are open while the rest wait
+        CompletableFuture<List<TaskList>> all = reader.loadAll(files);
+        assertTrue(reader.getOpenFiles() <= 2);
+        List<TaskList> lists = all.get();
+        for (int i = 0; i < lists.size(); i++) {
+            assertEquals(i + 1, lists.get(i).getAllTasks().size());
+        }
+
+        // Cancelled work gives its file back and leaves the old file in place
+        TaskList big = new TaskList();
+        for (int i = 0; i < 20000; i++) {
+            big.addTask(new Task(0, "Task " + i, "Long description " + i, LocalDate.of(2026, 3, 1)));
+        }
+        long before = files.get(0).length();
+        reader.save(big, files.get(0)).cancel(false);
+        reader.load(files.get(1)).cancel(false);
+        assertEquals(2, reader.load(files.get(1)).get().getAllTasks().size());
+        for (int i = 0; i < 100 && reader.getOpenFiles() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, reader.getOpenFiles());
+        assertEquals(before, files.get(0).length());
+        assertEquals(20, directory.list().length);
+    }
+
+    /**
+     * Failure of a future
+     * @param future future expected to fail
+     * @return its cause
+     * @throws InterruptedException never
+     */
+    private static Throwable causeOf(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("Expected the future to fail");
+        return null;
+    }
+}
@@ -0,0 +1,259 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Recurrence;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing the memory-mapped off-heap TaskList
+ * @author Luke Gentri
+ */
+class MappedTaskListTest {
+	
+	/** database file for testing */
+    private File file;
+
+    /**
+     * Create an empty database file name
+     * @throws IOException if the temp file cannot be created
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        file = File.createTempFile("mapped", MappedTaskList.EXTENSION);
+        file.delete();
+    }
+    
+    /**
+     * Remove the database file
+     */
+    @AfterEach
+    void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test that Tasks and edits persist in the mapped file
+     * @throws IOException if the file cannot be mapped
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testPersistence() throws IOException, DataFormatException {
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            list.addTask(new Task(0, "Task 1", "Description 1", LocalDate.of(2026, 3, 6)));
+            list.addTask(new Task(0, "Task 2", "", LocalDate.of(2026, 4, 10)));
+            
+            Task task = list.getAllTasks().get(1);
+            list.setCompleted(task, true);
+            task.setName("Renamed");
+            list.updateTask(task);
+        }
+        
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            assertEquals(2, list.size());
+            Task task = list.getAllTasks().get(1);
+            assertEquals(2, task.getId());
+            assertEquals("Renamed", task.getName());
+            assertEquals("", task.getDescription());
+            assertEquals(LocalDate.of(2026, 4, 10), task.getDueDate());
+            assertTrue(task.isCompleted());
+            assertEquals(1, list.getCompletedTasks().size());
+        }
+    }
+    
+    /**
+     * Test growth past the initial capacity, removal, sorting and compaction
+     * @throws IOException if the file cannot be mapped
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testGrowRemoveSortCompact() throws IOException, DataFormatException {
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            for (int i = 0; i < 3000; i++) {
+                list.addTask(new Task(0, "Task " + i, "Description " + i, LocalDate.of(2026, 1, 1).plusDays(3000 - i)));
+            }
+            assertEquals(3000, list.size());
+            assertEquals("Task 2999", list.getAllTasks().get(2999).getName());
+            assertEquals("Description 0", list.getAllTasks().get(0).getDescription());
+            assertFalse(new File(file.getPath() + ".grow").exists());
+            
+            list.removeTask(list.getAllTasks().get(0));
+            list.removeTasks(Arrays.asList(list.getAllTasks().get(10), list.getAllTasks().get(20)));
+            assertEquals(2997, list.size());
+            assertEquals(11, list.getAllTasks().get(10).getId());
+            assertEquals("Task 12", list.getAllTasks().get(10).getName());
+            
+            list.sortByDueDate();
+            assertEquals("Task 2999", list.getAllTasks().get(0).getName());
+            assertEquals(1, list.getAllTasks().get(0).getId());
+            
+            list.sortByName();
+            assertEquals("Task 1", list.getAllTasks().get(0).getName());
+            
+            Task task = list.getAllTasks().get(5);
+            task.setDescription("Changed");
+            list.updateTask(task);
+            assertTrue(list.getGarbageBytes() > 0);
+            list.compact();
+            assertEquals(0, list.getGarbageBytes());
+            assertEquals("Changed", list.getAllTasks().get(5).getDescription());
+            assertFalse(new File(file.getPath() + ".compact").exists());
+
+            // Edits after compaction go to the new file
+            list.addTask(new Task(0, "After", "Compact", LocalDate.of(2026, 1, 1)));
+        }
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            assertEquals(2998, list.size());
+            assertEquals("Changed", list.getAllTasks().get(5).getDescription());
+            assertEquals("After", list.getAllTasks().get(2997).getName());
+        }
+    }
+
+    /**
+     * Test that a header claiming more records than a database can hold is refused
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testRecordLimit() throws IOException, DataFormatException {
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            list.addTask(new Task(0, "Task 1", "", LocalDate.of(2026, 3, 6)));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(12);
+            raw.writeInt(MappedTaskList.MAX_RECORDS + 1);
+        }
+        assertThrows(DataFormatException.class, () -> new MappedTaskList(file));
+    }
+    
+    /**
+     * Test that TaskReader and the TaskList copy constructor work with the mapped list
+     * @throws IOException if files cannot be read or written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testTaskReaderInterop() throws IOException, DataFormatException {
+        File csv = File.createTempFile("mapped", ".csv");
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            TaskReader reader = new TaskReader();
+            reader.loadInto(new File("validTasks.csv"), list);
+            assertEquals(2, list.size());
+            
+            reader.saveToFile(list, csv);
+            TaskList copy = new TaskList(reader.loadFromFile(csv));
+            assertEquals("Task 2", copy.getAllTasks().get(1).getName());
+        } finally {
+            csv.delete();
+        }
+    }
+    
+    /**
+     * Test that repeat rules are stored with the record and survive edits and compaction
+     * @throws IOException if the file cannot be read or written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testRecurrencePersistence() throws IOException, DataFormatException {
+        Recurrence weekly = new Recurrence(Recurrence.Frequency.WEEKLY, 2, LocalDate.of(2026, 12, 31));
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            Task task = new Task(0, "Standup", "Daily", LocalDate.of(2026, 3, 6));
+            task.setRecurrence(weekly);
+            list.addTask(task);
+            list.addTask(new Task(0, "One-off", "", LocalDate.of(2026, 3, 7)));
+            
+            Task snapshot = list.getAllTasks().get(0);
+            snapshot.setName("Planning");
+            list.updateTask(snapshot);
+            list.compact();
+            assertEquals(0, list.getGarbageBytes());
+        }
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            assertEquals(weekly, list.getAllTasks().get(0).getRecurrence());
+            assertEquals("Planning", list.getAllTasks().get(0).getName());
+            assertNull(list.getAllTasks().get(1).getRecurrence());
+
+            // Occurrences cannot be completed one at a time
+            Task task = list.getAllTasks().get(0);
+            assertThrows(UnsupportedOperationException.class, () -> list.setCompleted(task, LocalDate.of(2026, 3, 6), true));
+            assertFalse(list.getAllTasks().get(0).isCompleted(LocalDate.of(2026, 3, 6)));
+        }
+    }
+
+    /**
+     * Test that Tasks with tags are refused rather than stored without them
+     * @throws IOException if the file cannot be read or written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testTagsRefused() throws IOException, DataFormatException {
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            Task tagged = new Task(0, "Tagged", "", LocalDate.of(2026, 3, 6));
+            tagged.setTags(Arrays.asList("home"));
+            assertThrows(IllegalArgumentException.class, () -> list.addTask(tagged));
+            assertThrows(IllegalArgumentException.class,
+                    () -> list.addTasks(Arrays.asList(new Task(0, "Plain", "", LocalDate.of(2026, 3, 6)), tagged)));
+            assertEquals(0, list.size());
+
+            list.addTask(new Task(0, "Plain", "", LocalDate.of(2026, 3, 6)));
+            Task snapshot = list.getAllTasks().get(0);
+            snapshot.setTags(Arrays.asList("work"));
+            assertThrows(IllegalArgumentException.class, () -> list.updateTask(snapshot));
+            assertTrue(list.getAllTasks().get(0).getTags().isEmpty());
+        }
+    }
+
+    /**
+     * Test that the counts, kept without per-record state, follow edits, removals and sorts
+     * @throws IOException if the file cannot be read or written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testStatsFollowChanges() throws IOException, DataFormatException {
+        try (MappedTaskList list = new MappedTaskList(file)) {
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < 20; i++) {
+                list.addTask(new Task(0, "Task " + i, "", i % 4 == 0 ? null : today.plusDays(i - 10)));
+            }
+            list.setCompleted(list.getAllTasks().get(3), true);
+            list.setCompleted(Arrays.asList(list.getAllTasks().get(5), list.getAllTasks().get(12)), true);
+            Task moved = list.getAllTasks().get(7);
+            moved.setDueDate(today.plusDays(2));
+            list.updateTask(moved);
+            list.removeTask(list.getAllTasks().get(5));
+            list.removeTasks(Arrays.asList(list.getAllTasks().get(0), list.getAllTasks().get(9)));
+            list.sortByDueDate();
+            assertStatsEqual(new TaskList(list), list);
+
+            list.clear();
+            list.addTask(new Task(0, "Again", "", today));
+            assertStatsEqual(new TaskList(list), list);
+            assertEquals(1, list.getStats().getDueThisWeek());
+        }
+    }
+
+    /**
+     * Checks two lists report the same counts
+     * @param expected list counted with per-position state
+     * @param actual list counted without
+     */
+    private static void assertStatsEqual(TaskList expected, TaskList actual) {
+        assertEquals(expected.getStats().getTotal(), actual.getStats().getTotal());
+        assertEquals(expected.getStats().getCompleted(), actual.getStats().getCompleted());
+        assertEquals(expected.getStats().getOverdue(), actual.getStats().getOverdue());
+        assertEquals(expected.getStats().getDueThisWeek(), actual.getStats().getDueThisWeek());
+        LocalDate from = LocalDate.now().minusDays(12);
+        assertArrayEquals(expected.getStats().getHistogram(from, 30), actual.getStats().getHistogram(from, 30));
+    }
+}
@@ -0,0 +1,183 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskListEvent;
+
+/**
+ * Class for testing the line-offset index and paged reads with TaskFileIndex and PagedTaskList
+ * @author Luke Gentri
+ */
+class PagedTaskListTest {
+	
+	/** large task file for testing */
+    private File file;
+
+    /**
+     * Write a task file with 5000 rows
+     * @throws IOException if the file cannot be written
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        file = File.createTempFile("paged", ".csv");
+        writeRows(0, 5000, false);
+    }
+    
+    /**
+     * Remove the task file and its index
+     */
+    @AfterEach
+    void tearDown() {
+        file.delete();
+        TaskFileIndex.indexFileFor(file).delete();
+    }
+    
+    /**
+     * Writes numbered rows
+     * @param from first row number
+     * @param to row number to stop before
+     * @param append true to append to the file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRows(int from, int to, boolean append) throws IOException {
+        try (FileWriter writer = new FileWriter(file, append)) {
+            for (int i = from; i < to; i++) {
+                writer.write("Task " + i + ",Description " + i + ",2026-03-" + String.format("%02d", i % 28 + 1) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Test that the index is built, saved and covers every line
+     * @throws IOException if the file cannot be read
+     */
+    @Test
+    void testBuildIndex() throws IOException {
+        TaskFileIndex index = TaskFileIndex.open(file, 100);
+        
+        assertEquals(5000, index.getLineCount());
+        assertEquals(file.length(), index.getIndexedLength());
+        assertTrue(TaskFileIndex.indexFileFor(file).exists());
+        assertEquals(4200, index.entryLineFor(4250));
+    }
+    
+    /**
+     * Test that random rows are read correctly through pages
+     * @throws IOException if the file cannot be read
+     */
+    @Test
+    void testRandomAccess() throws IOException {
+        try (PagedTaskList list = new PagedTaskList(file, 64)) {
+            assertEquals(5000, list.size());
+            
+            Task task = list.getAllTasks().get(4321);
+            assertEquals("Task 4321", task.getName());
+            assertEquals(4322, task.getId());
+            assertEquals("Task 0", list.getAllTasks().get(0).getName());
+            assertEquals("Task 4999", list.getAllTasks().get(4999).getName());
+            
+            List<Task> page = list.getPage(1020, 10);
+            assertEquals(10, page.size());
+            assertEquals("Task 1029", page.get(9).getName());
+            
+            assertThrows(UnsupportedOperationException.class, () -> list.addTask(task));
+            assertThrows(UnsupportedOperationException.class, () -> list.updateTask(task));
+            assertThrows(UnsupportedOperationException.class, () -> list.setCompleted(task, true));
+            assertThrows(UnsupportedOperationException.class, () -> list.setCompleted(task, task.getDueDate(), true));
+            assertThrows(UnsupportedOperationException.class, () -> list.removeDependency(task, page.get(0)));
+        }
+    }
+    
+    /**
+     * Test that appending only scans new bytes and reports the new rows
+     * @throws IOException if the file cannot be read
+     */
+    @Test
+    void testIncrementalAppend() throws IOException {
+        try (PagedTaskList list = new PagedTaskList(file, 64)) {
+            long indexed = TaskFileIndex.open(file).getIndexedLength();
+            
+            List<TaskListEvent> events = new ArrayList<>();
+            list.addTaskListListener(events::add);
+            writeRows(5000, 5100, true);
+            
+            assertEquals(100, list.refresh());
+            assertEquals(5100, list.size());
+            assertEquals("Task 5050", list.getAllTasks().get(5050).getName());
+            assertEquals(1, events.size());
+            assertEquals(5000, events.get(0).getIndex(0));
+            
+            // Reopening reuses the saved index
+            TaskFileIndex index = TaskFileIndex.open(file);
+            assertTrue(index.getIndexedLength() > indexed);
+            assertEquals(5100, index.getLineCount());
+        }
+    }
+
+    /**
+     * Test that a shrunk or rewritten file is re-indexed and reported as cleared and refilled
+     * @throws IOException if the file cannot be read
+     */
+    @Test
+    void testShrinkAndRewrite() throws IOException {
+        try (PagedTaskList list = new PagedTaskList(file, 64)) {
+            List<TaskListEvent> events = new ArrayList<>();
+            list.addTaskListListener(events::add);
+            
+            writeRows(100, 400, false);
+            assertEquals(300, list.refresh());
+            assertEquals(300, list.size());
+            assertEquals("Task 100", list.getAllTasks().get(0).getName());
+            assertEquals(2, events.size());
+            assertEquals(TaskListEvent.Type.CLEARED, events.get(0).getType());
+            assertEquals(TaskListEvent.Type.INSERTED, events.get(1).getType());
+            assertEquals(300, events.get(1).size());
+            assertEquals("Task 399", events.get(1).getTasks().get(299).getName());
+            assertEquals(300, list.getStats().getTotal());
+            
+            // Same length, different bytes
+            events.clear();
+            writeRows(500, 800, false);
+            assertEquals(300, list.refresh());
+            assertEquals("Task 500", list.getAllTasks().get(0).getName());
+            assertEquals(TaskListEvent.Type.CLEARED, events.get(0).getType());
+        }
+    }
+    
+    /**
+     * Test that a damaged saved index is rebuilt instead of failing
+     * @throws IOException if the file cannot be read
+     */
+    @Test
+    void testDamagedIndex() throws IOException {
+        TaskFileIndex.open(file, 64);
+        File indexFile = TaskFileIndex.indexFileFor(file);
+        
+        // Stride, then entry count
+        int[][] damage = { { 8, 0 }, { 36, 0x7F }, { 36, 0xFF } };
+        for (int[] change : damage) {
+            try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+                raf.seek(change[0]);
+                raf.writeInt(change[1] << 24);
+            }
+            TaskFileIndex index = TaskFileIndex.open(file, 64);
+            assertEquals(5000, index.getLineCount());
+            assertEquals(64, index.getStride());
+        }
+        try (PagedTaskList list = new PagedTaskList(file, 64)) {
+            assertEquals("Task 4321", list.getAllTasks().get(4321).getName());
+        }
+    }
+}
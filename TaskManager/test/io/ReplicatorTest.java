@@ -0,0 +1,391 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing replication between instances on localhost using Replicator
+ * @author Luke Gentri
+ */
+class ReplicatorTest {
+
+    /** Longest wait for instances to converge */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * One instance: a TaskList, the thread that owns it and its Replicator
+     */
+    private static class Instance {
+
+        /** Thread that owns the list, like the GUI's event thread */
+        final ExecutorService thread = Executors.newSingleThreadExecutor();
+
+        /** Shared list */
+        final TaskList list = new TaskList();
+
+        /** Replicator for the list */
+        final Replicator replicator;
+
+        /**
+         * Constructor
+         * @param replicaId replica id
+         */
+        Instance(int replicaId) {
+            replicator = new Replicator(list, replicaId, thread);
+        }
+
+        /**
+         * Runs code on the owning thread and waits for it
+         * @param code code to run
+         * @return result of the code
+         * @throws Exception if the code fails
+         */
+        <T> T call(Callable<T> code) throws Exception {
+            return thread.submit(code).get();
+        }
+
+        /**
+         * Fields of every Task, sorted so order does not matter
+         * @return one line per Task
+         * @throws Exception if reading fails
+         */
+        List<String> state() throws Exception {
+            return call(() -> {
+                List<String> lines = new ArrayList<>();
+                for (Task task : list.getAllTasks()) {
+                    lines.add(task.getName() + "|" + task.getDescription() + "|" + task.getDueDate() + "|" + task.isCompleted());
+                }
+                Collections.sort(lines);
+                return lines;
+            });
+        }
+
+        /**
+         * Stops replicating and stops the thread
+         */
+        void close() {
+            replicator.close();
+            thread.shutdownNow();
+        }
+    }
+
+    /** instances for testing */
+    private Instance a;
+    private Instance b;
+    private Instance c;
+
+    /**
+     * Create three instances
+     */
+    @BeforeEach
+    void setUp() {
+        a = new Instance(1);
+        b = new Instance(2);
+        c = new Instance(3);
+    }
+
+    /**
+     * Stop the instances
+     */
+    @AfterEach
+    void tearDown() {
+        a.close();
+        b.close();
+        c.close();
+    }
+
+    /**
+     * Test that additions, edits and removals on any instance reach every other, including through a relay
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testConverge() throws Exception {
+        int port = a.replicator.listen(0);
+        b.replicator.connect("localhost", port);
+        c.replicator.connect("localhost", port);
+
+        a.call(() -> {
+            a.list.addTask(new Task(0, "From A", "First", LocalDate.of(2026, 1, 1)));
+            return null;
+        });
+        b.call(() -> {
+            b.list.addTask(new Task(0, "From B", "Second", LocalDate.of(2026, 1, 2)));
+            return null;
+        });
+        awaitSize(c, 2);
+
+        // c edits a's Task and removes b's, b only hears through a
+        c.call(() -> {
+            for (Task task : new ArrayList<>(c.list.getAllTasks())) {
+                if (task.getName().equals("From A")) {
+                    c.list.setCompleted(task, true);
+                } else {
+                    c.list.removeTask(task);
+                }
+            }
+            return null;
+        });
+        List<String> expected = Collections.singletonList("From A|First|2026-01-01|true");
+        awaitState(a, expected);
+        awaitState(b, expected);
+        assertEquals(expected, c.state());
+    }
+
+    /**
+     * Test that concurrent edits to one Task settle on the same winner everywhere
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testConcurrentEdits() throws Exception {
+        int port = a.replicator.listen(0);
+        b.replicator.connect("localhost", port);
+        a.call(() -> {
+            a.list.addTask(new Task(0, "Shared", "Original", null));
+            return null;
+        });
+        awaitSize(b, 1);
+        b.replicator.disconnect();
+        awaitPeers(a, 0);
+
+        // Both edit while apart, equal clocks so the higher replica id wins
+        a.call(() -> {
+            Task task = a.list.getAllTasks().get(0);
+            task.setDescription("Edited by A");
+            a.list.updateTask(task);
+            return null;
+        });
+        b.call(() -> {
+            Task task = b.list.getAllTasks().get(0);
+            task.setDescription("Edited by B");
+            b.list.updateTask(task);
+            return null;
+        });
+        b.replicator.connect("localhost", port);
+        List<String> expected = Collections.singletonList("Shared|Edited by B|null|false");
+        awaitState(a, expected);
+        awaitState(b, expected);
+    }
+
+    /**
+     * Test that a reconnecting instance is sent only the changes it missed
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testCatchUp() throws Exception {
+        int port = a.replicator.listen(0);
+        b.replicator.connect("localhost", port);
+        a.call(() -> {
+            a.list.beginBatch();
+            for (int i = 0; i < 50; i++) {
+                a.list.addTask(new Task(0, "Task " + i, "Description", null));
+            }
+            a.list.endBatch();
+            return null;
+        });
+        awaitSize(b, 50);
+        b.replicator.disconnect();
+        awaitPeers(a, 0);
+        long received = b.replicator.getReceivedCount();
+
+        // Five edits on a, one addition on b
+        a.call(() -> {
+            for (int i = 0; i < 5; i++) {
+                a.list.setCompleted(a.list.getAllTasks().get(i), true);
+            }
+            return null;
+        });
+        b.call(() -> {
+            b.list.addTask(new Task(0, "Offline", "Added apart", null));
+            return null;
+        });
+        b.replicator.connect("localhost", port);
+        awaitSize(a, 51);
+        awaitState(b, a.state());
+        assertEquals(5, b.replicator.getReceivedCount() - received);
+        assertEquals(1, a.replicator.getReceivedCount());
+
+        // Replaced operations are not kept
+        assertEquals(51, a.replicator.getLogSize());
+    }
+
+    /**
+     * Test that replacing the shared list sends only the difference
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testSetTaskList() throws Exception {
+        int port = a.replicator.listen(0);
+        b.replicator.connect("localhost", port);
+        a.call(() -> {
+            a.list.addTask(new Task(0, "Kept", "Same", null));
+            a.list.addTask(new Task(0, "Dropped", "Removed by undo", null));
+            return null;
+        });
+        awaitSize(b, 2);
+        long received = b.replicator.getReceivedCount();
+
+        // Like undo, a copy of an earlier list with one Task changed
+        final TaskList restored = a.call(() -> {
+            TaskList copy = new TaskList(a.list);
+            copy.removeTask(copy.getAllTasks().get(1));
+            copy.getAllTasks().get(0).setName("Renamed");
+            a.replicator.setTaskList(copy);
+            return copy;
+        });
+        List<String> expected = Collections.singletonList("Renamed|Same|null|false");
+        awaitState(b, expected);
+        assertEquals(2, b.replicator.getReceivedCount() - received);
+        assertEquals(1, restored.size());
+    }
+
+    /**
+     * Test that an address beyond this computer needs a secret and peers without it are closed
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testSecret() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> a.replicator.listen(null, 0, null));
+
+        int port = a.replicator.listen(InetAddress.getLoopbackAddress(), 0, "shared");
+        b.replicator.connect("localhost", port, "shared");
+        c.replicator.connect("localhost", port, "wrong");
+        a.call(() -> {
+            a.list.addTask(new Task(0, "From A", "Secret", null));
+            return null;
+        });
+        awaitSize(b, 1);
+        awaitPeers(a, 1);
+        awaitPeers(c, 0);
+        assertEquals(0, (int) c.call(() -> c.list.size()));
+    }
+
+    /**
+     * Test that invalid frames close the connection without being applied
+     * @throws Exception if an instance fails
+     */
+    @Test
+    void testInvalidFrames() throws Exception {
+        int port = a.replicator.listen(0);
+
+        // Hello without a vector
+        assertClosed(port, frame(1, 0, false));
+
+        // More operations than a frame can hold
+        assertClosed(port, frame(2, Integer.MAX_VALUE, false));
+
+        // Frame longer than allowed, before any of it arrives
+        assertClosed(port, new byte[] { 0x7F, 0, 0, 0 });
+        awaitPeers(a, 0);
+        assertEquals(0, a.replicator.getReceivedCount());
+    }
+
+    /**
+     * Builds a frame with no operations
+     * @param type frame type
+     * @param count operation count written
+     * @param hasVector vector flag written, no vector follows
+     * @return length and deflated contents
+     * @throws IOException should not happen
+     */
+    private static byte[] frame(int type, int count, boolean hasVector) throws IOException {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(deflated))) {
+            data.writeByte(type);
+            data.writeInt(count);
+            data.writeBoolean(hasVector);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(deflated.size());
+        deflated.writeTo(out);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends bytes to a listening instance and waits for it to close the connection
+     * @param port port it listens on
+     * @param bytes bytes to send
+     * @throws IOException if the connection fails or stays open
+     */
+    private static void assertClosed(int port, byte[] bytes) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout((int) TIMEOUT_MILLIS);
+            socket.getOutputStream().write(bytes);
+            socket.getOutputStream().flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) >= 0) {
+                // Its hello
+            }
+        }
+    }
+
+    /**
+     * Wait until an instance holds a number of Tasks
+     * @param instance instance to check
+     * @param size expected number of Tasks
+     * @throws Exception if the instance fails or the wait times out
+     */
+    private static void awaitSize(Instance instance, int size) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (instance.call(() -> instance.list.size()) != size) {
+            if (System.currentTimeMillis() > end) {
+                fail("Expected " + size + " tasks but found " + instance.call(() -> instance.list.size()));
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Wait until an instance holds exactly some Tasks
+     * @param instance instance to check
+     * @param expected expected state lines
+     * @throws Exception if the instance fails or the wait times out
+     */
+    private static void awaitState(Instance instance, List<String> expected) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!instance.state().equals(expected)) {
+            if (System.currentTimeMillis() > end) {
+                assertEquals(expected, instance.state());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Wait until an instance has a number of connections
+     * @param instance instance to check
+     * @param count expected connections
+     * @throws InterruptedException if interrupted
+     */
+    private static void awaitPeers(Instance instance, int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (instance.replicator.getPeerCount() != count) {
+            if (System.currentTimeMillis() > end) {
+                fail("Expected " + count + " connections");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing month-sharded storage with ShardedTaskStore
+ * @author Luke Gentri
+ */
+class ShardedTaskStoreTest {
+	
+	/** store directory for testing */
+    private File directory;
+    
+    /** taskList spanning three months */
+    private TaskList taskList;
+
+    /**
+     * Create a TaskList with Tasks in March, April and June
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("shards").toFile();
+        
+        taskList = new TaskList();
+        taskList.addTask(new Task(0, "Task 1", "Description 1", LocalDate.of(2026, 3, 6)));
+        taskList.addTask(new Task(0, "Task 2", "Description 2", LocalDate.of(2026, 4, 10)));
+        taskList.addTask(new Task(0, "Task 3", "", LocalDate.of(2026, 3, 20)));
+        taskList.addTask(new Task(0, "Task 4", "", LocalDate.of(2026, 6, 1)));
+    }
+    
+    /**
+     * Remove store files
+     */
+    @AfterEach
+    void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test that writing partitions Tasks by month and the manifest answers sizes without loading
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testCreateAndManifest() throws IOException, DataFormatException {
+        ShardedTaskStore.create(taskList, directory);
+        
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+        assertEquals(3, store.getMonths().size());
+        assertEquals(2, store.getShardSize(YearMonth.of(2026, 3)));
+        assertEquals(4, store.size());
+        assertFalse(store.isLoaded(YearMonth.of(2026, 3)));
+        
+        // Each shard is a normal task file
+        TaskList shard = new TaskReader().loadFromFile(new File(directory, "tasks-2026-04.csv"));
+        assertEquals("Task 2", shard.getAllTasks().get(0).getName());
+    }
+    
+    /**
+     * Test that loading a range only reads shards in that range
+     * @throws IOException if files cannot be read
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testLazyLoad() throws IOException, DataFormatException {
+        ShardedTaskStore.create(taskList, directory);
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+        
+        TaskList loaded = store.load(YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        assertEquals(3, loaded.size());
+        assertEquals(1, loaded.getAllTasks().get(0).getId());
+        assertTrue(store.isLoaded(YearMonth.of(2026, 3)));
+        assertFalse(store.isLoaded(YearMonth.of(2026, 6)));
+        
+        // Loading a third shard demotes the least recently used one, which can still be served
+        assertEquals(1, store.getShard(YearMonth.of(2026, 6)).size());
+        assertEquals(2, store.getShard(YearMonth.of(2026, 3)).size());
+    }
+    
+    /**
+     * Test saving an edited range, including a Task moved to a month outside the range
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testSaveRange() throws IOException, DataFormatException {
+        ShardedTaskStore.create(taskList, directory);
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+        
+        TaskList loaded = store.load(YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        Task moved = loaded.getAllTasks().get(2);
+        moved.setDueDate(LocalDate.of(2026, 6, 15));
+        loaded.removeTask(loaded.getAllTasks().get(0));
+        store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        
+        ShardedTaskStore reopened = new ShardedTaskStore(directory, 2);
+        assertEquals(1, reopened.getShardSize(YearMonth.of(2026, 3)));
+        assertEquals(0, reopened.getShardSize(YearMonth.of(2026, 4)));
+        assertEquals(2, reopened.getShardSize(YearMonth.of(2026, 6)));
+        assertEquals(3, reopened.size());
+        assertFalse(loaded.getAllTasks().contains(moved), "moved Task left in the loaded range");
+    }
+
+    /**
+     * Test that a save failing before its manifest is written leaves every shard the old manifest names
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testSaveFailureKeepsShards() throws IOException, DataFormatException {
+        ShardedTaskStore.create(taskList, directory);
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+
+        TaskList loaded = store.load(YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        loaded.removeTask(loaded.getAllTasks().get(2));
+
+        // The manifest's temporary file cannot be created
+        File blocker = new File(directory, ShardedTaskStore.MANIFEST_NAME + ".tmp");
+        assertTrue(blocker.mkdir());
+        assertThrows(IOException.class, () -> store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4)));
+        blocker.delete();
+
+        ShardedTaskStore reopened = new ShardedTaskStore(directory, 2);
+        assertEquals(1, reopened.getShardSize(YearMonth.of(2026, 4)));
+        for (YearMonth month : reopened.getMonths()) {
+            assertEquals(reopened.getShardSize(month), reopened.getShard(month).size());
+        }
+
+        // Once saved, the emptied month's file goes too
+        store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        assertFalse(new File(directory, "tasks-2026-04.csv").exists());
+        assertEquals(2, new ShardedTaskStore(directory, 2).getMonths().size());
+    }
+
+    /**
+     * Test saving the same range twice does not append a moved Task again
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testSaveTwice() throws IOException, DataFormatException {
+        ShardedTaskStore.create(taskList, directory);
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+        int size = store.size();
+
+        TaskList loaded = store.load(YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        loaded.getAllTasks().get(0).setDueDate(LocalDate.of(2026, 6, 15));
+        store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+
+        ShardedTaskStore reopened = new ShardedTaskStore(directory, 2);
+        assertEquals(size, reopened.size());
+        assertEquals(2, reopened.getShardSize(YearMonth.of(2026, 6)));
+    }
+
+    /**
+     * Test that dependencies within a month survive the shard files and those across months are refused
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testDependencies() throws IOException, DataFormatException {
+        taskList.addDependency(taskList.getAllTasks().get(2), taskList.getAllTasks().get(0));
+        ShardedTaskStore.create(taskList, directory);
+
+        ShardedTaskStore store = new ShardedTaskStore(directory, 2);
+        TaskList loaded = store.load(YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        assertEquals(1, loaded.getDependencyCount());
+        assertEquals("Task 1", loaded.getBlockers(loaded.getAllTasks().get(1)).get(0).getName());
+        store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4));
+        assertEquals(1, new ShardedTaskStore(directory, 2).load(YearMonth.of(2026, 3), YearMonth.of(2026, 3)).getDependencyCount());
+
+        // A month's shard cannot name a row of another month, nothing is written
+        loaded.addDependency(loaded.getAllTasks().get(2), loaded.getAllTasks().get(0));
+        File march = new File(directory, "tasks-2026-03.csv");
+        byte[] before = Files.readAllBytes(march.toPath());
+        assertThrows(IllegalArgumentException.class, () -> store.save(loaded, YearMonth.of(2026, 3), YearMonth.of(2026, 4)));
+        assertArrayEquals(before, Files.readAllBytes(march.toPath()));
+    }
+}
@@ -0,0 +1,203 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing single-pass validation and quarantine loading using TaskFileValidator
+ * @author Luke Gentri
+ */
+class TaskFileValidatorTest {
+
+    /** validator for testing */
+    private TaskFileValidator validator;
+
+    /** file with a mix of valid and invalid lines */
+    private File mixedFile;
+
+    /**
+     * Initialize testing files
+     * @throws IOException for file creation, should not happen
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+
+        validator = new TaskFileValidator();
+
+        mixedFile = File.createTempFile("tasks", ".csv");
+        mixedFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(mixedFile)) {
+            writer.write("Task 1,Description 1,2026-03-06\n");
+            writer.write("Task 2,Description 2\n");
+            writer.write("Task 3,Description 3,2026-13-01\n");
+            writer.write("Task 4,Description 4,2026-03-08\n");
+            writer.write(",Description 5,2026-03-09\n");
+        }
+    }
+
+    /**
+     * Test that every invalid line is reported with its line, column and reason
+     * @throws IOException if the file cannot be read
+     * @throws DataFormatException if the file is empty
+     */
+    @Test
+    void testValidateReportsEveryError() throws IOException, DataFormatException {
+
+        ValidationResult result = validator.validate(mixedFile);
+
+        assertFalse(result.isValid());
+        assertFalse(result.isTruncated());
+        assertEquals(5, result.getLineCount());
+        assertEquals(3, result.getErrorCount());
+        assertNull(result.getTasks());
+
+        List<TaskFormatException> errors = result.getErrors();
+        assertEquals(2, errors.get(0).getLine());
+        assertEquals(3, errors.get(1).getLine());
+        assertEquals(22, errors.get(1).getColumn());
+        assertTrue(errors.get(1).getReason().contains("2026-13-01"));
+        assertEquals(5, errors.get(2).getLine());
+        assertEquals(1, errors.get(2).getColumn());
+        assertTrue(errors.get(2).getMessage().startsWith("Invalid file format: line 5, column 1"));
+    }
+
+    /**
+     * Test loading keeps the valid lines and writes the invalid lines to the quarantine file
+     * @throws IOException if a file cannot be read or written
+     * @throws DataFormatException if the file is empty
+     */
+    @Test
+    void testLoadWithQuarantine() throws IOException, DataFormatException {
+
+        File quarantine = File.createTempFile("rejected", ".csv");
+        try {
+            ValidationResult result = validator.load(mixedFile, quarantine);
+
+            assertEquals(2, result.getTasks().size());
+            assertEquals("Task 4", result.getTasks().getAllTasks().get(1).getName());
+
+            List<String> rejected = Files.readAllLines(quarantine.toPath());
+            assertEquals(3, rejected.size());
+            assertEquals("Task 2,Description 2", rejected.get(0));
+            assertEquals(",Description 5,2026-03-09", rejected.get(2));
+        } finally {
+            quarantine.delete();
+        }
+    }
+
+    /**
+     * Test loading renumbers dependencies past the invalid lines and drops those on invalid lines
+     * @throws IOException if a file cannot be read or written
+     * @throws DataFormatException if the file is empty
+     */
+    @Test
+    void testLoadKeepsDependencies() throws IOException, DataFormatException {
+
+        File file = File.createTempFile("tasks", ".csv");
+        try {
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write("Task 1,Description 1,2026-03-06\n");
+                writer.write("Task 2,Description 2\n");
+                writer.write("Task 3,Description 3,2026-03-07,after=1\n");
+                writer.write("Task 4,Description 4,2026-03-08,after=2;3\n");
+            }
+            TaskList tasks = validator.load(file, null).getTasks();
+            List<Task> loaded = tasks.getAllTasks();
+            assertEquals(3, loaded.size());
+
+            Task task3 = find(loaded, "Task 3");
+            Task task4 = find(loaded, "Task 4");
+            assertEquals(Collections.singletonList(find(loaded, "Task 1")), tasks.getBlockers(task3));
+            assertEquals(Collections.singletonList(task3), tasks.getBlockers(task4));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Finds a Task by name
+     * @param tasks Tasks to search
+     * @param name name of the Task
+     * @return Task with that name
+     */
+    private static Task find(List<Task> tasks, String name) {
+        for (Task task : tasks) {
+            if (task.getName().equals(name)) {
+                return task;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    /**
+     * Test that a large file scanned in parallel chunks numbers lines in file order
+     * and that only the first problems are listed once the limit is reached
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is empty
+     */
+    @Test
+    void testLargeFileErrorLimit() throws IOException, DataFormatException {
+
+        File large = File.createTempFile("tasks", ".csv");
+        try {
+            try (Writer writer = new FileWriter(large)) {
+                for (int i = 1; i <= 150000; i++) {
+                    if (i % 1000 == 0) {
+                        writer.write("Task " + i + ",Description " + i + ",not a date\n");
+                    } else {
+                        writer.write("Task " + i + ",Description " + i + ",2026-03-06\n");
+                    }
+                }
+            }
+            assertTrue(large.length() > TaskFileValidator.PARALLEL_THRESHOLD);
+
+            ValidationResult result = new TaskFileValidator(100).validate(large);
+
+            assertEquals(150000, result.getLineCount());
+            assertEquals(150, result.getErrorCount());
+            assertEquals(100, result.getErrors().size());
+            assertTrue(result.isTruncated());
+            for (int i = 0; i < 100; i++) {
+                assertEquals((i + 1) * 1000L, result.getErrors().get(i).getLine());
+            }
+        } finally {
+            large.delete();
+        }
+    }
+
+    /**
+     * Test that compressed files are validated and a valid file has no problems
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is empty
+     */
+    @Test
+    void testValidCompressedFile() throws IOException, DataFormatException {
+
+        File compressed = File.createTempFile("tasks", ".csv.gz");
+        try {
+            TaskReader taskReader = new TaskReader();
+            taskReader.saveToFile(validator.load(mixedFile, null).getTasks(), compressed);
+
+            ValidationResult result = validator.validate(compressed);
+            assertTrue(result.isValid());
+            assertEquals(2, result.getLineCount());
+            assertTrue(result.getErrors().isEmpty());
+        } finally {
+            compressed.delete();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing incremental reloading of a watched task file using TaskFileWatcher
+ * @author Luke Gentri
+ */
+class TaskFileWatcherTest {
+
+    /** watched file */
+    private File file;
+
+    /** changes reported by the watcher, Lists for appends and TaskLists for reloads */
+    private BlockingQueue<Object> changes;
+
+    /** watcher for testing */
+    private TaskFileWatcher watcher;
+
+    /**
+     * Initialize the watched file and watcher
+     * @throws IOException for file creation, should not happen
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+
+        file = File.createTempFile("tasks", ".csv");
+        write("Task 1,Description 1,2026-03-06\nTask 2,Description 2,2026-03-07\n", false);
+
+        // Long quiet time so only direct check calls report changes
+        changes = new LinkedBlockingQueue<>();
+        watcher = watch(60000);
+    }
+
+    /**
+     * Starts a watcher that reports into changes
+     * @param debounceMillis quiet time before a burst of changes is handled
+     * @return new watcher
+     * @throws IOException if the file cannot be watched
+     */
+    private TaskFileWatcher watch(long debounceMillis) throws IOException {
+        return new TaskFileWatcher(file, new TaskFileWatcher.Listener() {
+            @Override
+            public void tasksAppended(List<Task> tasks) {
+                changes.add(tasks);
+            }
+
+            @Override
+            public void fileReloaded(TaskList tasks) {
+                changes.add(tasks);
+            }
+
+            @Override
+            public void watchFailed(Exception e) {
+                changes.add(e);
+            }
+        }, debounceMillis);
+    }
+
+    /**
+     * Stop watching and delete the file
+     * @throws IOException if the watcher cannot be closed
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.close();
+        file.delete();
+    }
+
+    /**
+     * Test that appended lines are parsed on their own and a partial last line waits
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testAppend() throws IOException, DataFormatException {
+
+        write("Task 3,Description 3,2026-03-08\nTask 4,Desc", true);
+        watcher.check();
+
+        List<?> appended = (List<?>) changes.poll();
+        assertEquals(1, appended.size());
+        assertEquals("Task 3", ((Task) appended.get(0)).getName());
+
+        // Rest of the partial line
+        write("ription 4,2026-03-09\n", true);
+        watcher.check();
+        appended = (List<?>) changes.poll();
+        assertEquals(1, appended.size());
+        assertEquals("Description 4", ((Task) appended.get(0)).getDescription());
+
+        watcher.check();
+        assertTrue(changes.isEmpty());
+    }
+
+    /**
+     * Test that a rewrite reloads the whole file and a resync hides our own save
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testRewriteAndResync() throws IOException, DataFormatException {
+
+        write("Other 1,Description 1,2026-03-06\n", false);
+        watcher.check();
+        TaskList reloaded = (TaskList) changes.poll();
+        assertEquals(1, reloaded.size());
+        assertEquals("Other 1", reloaded.getAllTasks().get(0).getName());
+
+        write("Saved 1,Description 1,2026-03-06\nSaved 2,Description 2,2026-03-06\n", false);
+        watcher.resync();
+        watcher.check();
+        assertTrue(changes.isEmpty());
+    }
+
+    /**
+     * Test that changes made while suspended are never reported, even if checked before the write ends
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testSuspend() throws IOException, DataFormatException {
+
+        watcher.suspend();
+        write("Saved 1,Description 1,2026-03-06\n", false);
+        watcher.check();
+        write("Saved 2,Description 2,2026-03-06\n", true);
+        watcher.resume();
+        watcher.check();
+        assertTrue(changes.isEmpty());
+
+        // Watching again once resumed
+        write("Task 3,Description 3,2026-03-08\n", true);
+        watcher.check();
+        assertEquals(1, ((List<?>) changes.poll()).size());
+    }
+
+    /**
+     * Test that dependencies survive a reload and an appended line waiting for another row reloads
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file is invalid
+     */
+    @Test
+    void testDependencies() throws IOException, DataFormatException {
+
+        write("Other 1,Description 1,2026-03-06\nOther 2,Description 2,2026-03-07,after=1\n", false);
+        watcher.check();
+        TaskList reloaded = (TaskList) changes.poll();
+        List<Task> tasks = reloaded.getAllTasks();
+        assertEquals(1, reloaded.getBlockers(tasks.get(1)).size());
+        assertSame(tasks.get(0), reloaded.getBlockers(tasks.get(1)).get(0));
+
+        write("Other 3,Description 3,2026-03-08,after=2\n", true);
+        watcher.check();
+        reloaded = (TaskList) changes.poll();
+        tasks = reloaded.getAllTasks();
+        assertEquals(3, tasks.size());
+        assertSame(tasks.get(1), reloaded.getBlockers(tasks.get(2)).get(0));
+    }
+
+    /**
+     * Test that an invalid appended line is reported with its line number
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    void testInvalidAppend() throws IOException {
+
+        write("Task 3,Description 3\n", true);
+        TaskFormatException e = assertThrows(TaskFormatException.class, () -> watcher.check());
+        assertEquals(3, e.getLine());
+    }
+
+    /**
+     * Test that the watch thread notices a burst of appends and reports them once settled
+     * @throws IOException if the file cannot be written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    void testWatchThread() throws IOException, InterruptedException {
+
+        watcher.close();
+        watcher = watch(50);
+        write("Task 3,Description 3,2026-03-08\n", true);
+        write("Task 4,Description 4,2026-03-09\n", true);
+
+        int seen = 0;
+        while (seen < 2) {
+            Object change = changes.poll(10, TimeUnit.SECONDS);
+            assertNotNull(change);
+            seen += ((List<?>) change).size();
+        }
+        assertEquals(2, seen);
+    }
+
+    /**
+     * Writes text to the watched file
+     * @param text text to write
+     * @param append true to append, false to replace
+     * @throws IOException if the file cannot be written
+     */
+    private void write(String text, boolean append) throws IOException {
+        try (FileWriter writer = new FileWriter(file, append)) {
+            writer.write(text);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Task;
+import model.TaskKey;
+import model.TaskList;
+
+/**
+ * Class for testing merging task files with deduplication using TaskMerger
+ * @author Luke Gentri
+ */
+class TaskMergerTest {
+
+    /** files to merge */
+    private List<File> files;
+
+    /**
+     * Initialize two overlapping files, the second compressed
+     * @throws IOException for file creation, should not happen
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+
+        files = new ArrayList<>();
+        files.add(write("Task 1,First copy,2026-03-06\nTask 2,Description 2,2026-03-07\nTask 1,Same file copy,2026-03-06\n"));
+
+        TaskList second = new TaskList();
+        second.addTask(new Task(0, "Task 1", "Second copy", LocalDate.of(2026, 3, 6)));
+        second.addTask(new Task(0, "Task 2", "Description 2", LocalDate.of(2026, 4, 1)));
+        second.addTask(new Task(0, "Task 3", "Description 3", LocalDate.of(2026, 3, 8)));
+        File compressed = File.createTempFile("tasks", ".csv.gz");
+        new TaskReader().saveToFile(second, compressed);
+        files.add(compressed);
+    }
+
+    /**
+     * Delete the files
+     */
+    @AfterEach
+    void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that the first copy of each duplicate is kept in file order
+     * @throws IOException if a file cannot be read
+     * @throws DataFormatException if a file is invalid
+     */
+    @Test
+    void testMergeByNameAndDueDate() throws IOException, DataFormatException {
+
+        TaskMerger merger = new TaskMerger(TaskKey.NAME_AND_DUE_DATE);
+        TaskList merged = merger.merge(files);
+
+        assertEquals(4, merged.size());
+        assertEquals("First copy", merged.getAllTasks().get(0).getDescription());
+        assertEquals(LocalDate.of(2026, 4, 1), merged.getAllTasks().get(2).getDueDate());
+        assertEquals("Task 3", merged.getAllTasks().get(3).getName());
+        assertEquals(4, merged.getAllTasks().get(3).getId());
+        assertEquals(6, merger.getRowCount());
+        assertEquals(2, merger.getDuplicateCount());
+
+        // By name only, the later Task 2 is a duplicate too
+        assertEquals(3, new TaskMerger(TaskKey.NAME).merge(files).size());
+    }
+
+    /**
+     * Test merging into a list skips Tasks it already has
+     * @throws IOException if a file cannot be read
+     * @throws DataFormatException if a file is invalid
+     */
+    @Test
+    void testMergeInto() throws IOException, DataFormatException {
+
+        TaskList list = new TaskList();
+        list.addTask(new Task(0, "Task 3", "Already here", LocalDate.of(2026, 3, 8)));
+
+        int added = new TaskMerger(TaskKey.NAME_AND_DUE_DATE).mergeInto(files, list);
+        assertEquals(3, added);
+        assertEquals(4, list.size());
+        assertEquals("Already here", list.getAllTasks().get(0).getDescription());
+    }
+
+    /**
+     * Test that an invalid file names the file and line and adds nothing
+     * @throws IOException if a file cannot be written
+     */
+    @Test
+    void testInvalidFile() throws IOException {
+
+        File invalid = write("Task 9,Description 9,2026-03-06\nTask 9,Description 9\n");
+        files.add(invalid);
+        TaskList list = new TaskList();
+
+        DataFormatException e = assertThrows(DataFormatException.class,
+                () -> new TaskMerger(TaskKey.NAME).mergeInto(files, list));
+        assertTrue(e.getMessage().startsWith(invalid.getName() + ": Invalid file format: line 2"));
+        assertEquals(0, list.size());
+    }
+
+    /**
+     * Test that dependencies follow their files, moving to the copy kept when they name a duplicate
+     * @throws IOException if a file cannot be read
+     * @throws DataFormatException if a file is invalid
+     */
+    @Test
+    void testDependencies() throws IOException, DataFormatException {
+
+        tearDown();
+        files.clear();
+        files.add(write("A,,2026-01-01\nB,,2026-01-02,after=1\n"));
+        files.add(write("B,,2026-01-02\nC,,2026-01-03,after=1\n"));
+        files.add(write("A,,2026-01-01,after=2\nB,,2026-01-02\n"));
+        TaskList merged = new TaskMerger(TaskKey.NAME_AND_DUE_DATE).merge(files);
+
+        List<Task> tasks = merged.getAllTasks();
+        assertEquals(3, tasks.size());
+        assertEquals(2, merged.getDependencyCount());
+        assertEquals(tasks.get(0), merged.getBlockers(tasks.get(1)).get(0));
+        assertEquals(tasks.get(1), merged.getBlockers(tasks.get(2)).get(0));
+        assertTrue(merged.getBlockers(tasks.get(0)).isEmpty(), "cycle through duplicates kept");
+
+        // A cycle within one file makes it invalid
+        File cycle = write("X,,2026-01-01,after=2\nY,,2026-01-02,after=1\n");
+        files.add(cycle);
+        TaskList list = new TaskList();
+        DataFormatException e = assertThrows(DataFormatException.class,
+                () -> new TaskMerger(TaskKey.NAME).mergeInto(files, list));
+        assertTrue(e.getMessage().startsWith(cycle.getName() + ": Invalid file format: line 2"));
+        assertEquals(0, list.size());
+    }
+
+    /**
+     * Test a large merge of many overlapping files
+     * @throws IOException if a file cannot be read
+     * @throws DataFormatException if a file is invalid
+     */
+    @Test
+    void testLargeMerge() throws IOException, DataFormatException {
+
+        // Eight files of 10000 rows, each overlapping the next by half
+        List<File> large = new ArrayList<>();
+        try {
+            for (int f = 0; f < 8; f++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = f * 5000; i < f * 5000 + 10000; i++) {
+                    text.append("Task ").append(i).append(",Description,2026-03-06\n");
+                }
+                large.add(write(text.toString()));
+            }
+            TaskMerger merger = new TaskMerger(TaskKey.ALL_FIELDS);
+            TaskList merged = merger.merge(large);
+            assertEquals(45000, merged.size());
+            assertEquals(35000, merger.getDuplicateCount());
+            assertEquals("Task 44999", merged.getAllTasks().get(44999).getName());
+        } finally {
+            for (File file : large) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a temporary task file
+     * @param text file contents
+     * @return new file
+     * @throws IOException if the file cannot be written
+     */
+    private File write(String text) throws IOException {
+        File file = File.createTempFile("tasks", ".csv");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(text);
+        }
+        return file;
+    }
+}
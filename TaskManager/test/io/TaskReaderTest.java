@@ -6,13 +6,20 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 import java.util.zip.DataFormatException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import model.Priority;
+import model.Recurrence;
 import model.Task;
 import model.TaskList;
 
@@ -151,4 +158,239 @@ class TaskReaderTest {
         
         scanner.close();
     }
+    
+    /**
+     * Test saving to a .gz file compresses it and loading reads it back
+     * Test that compressed files are detected by magic bytes regardless of name
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testCompressedRoundTrip() throws IOException, DataFormatException {
+    	
+        File compressed = File.createTempFile("tasks", ".csv.gz");
+        File renamed = File.createTempFile("tasks", ".dat");
+        try {
+            taskReader.saveToFile(taskList, compressed);
+            
+            byte[] bytes = Files.readAllBytes(compressed.toPath());
+            assertEquals((byte) 0x1f, bytes[0]);
+            assertEquals((byte) 0x8b, bytes[1]);
+            
+            Files.copy(compressed.toPath(), renamed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            TaskList loaded = taskReader.loadFromFile(renamed);
+            assertEquals(2, loaded.size());
+            assertEquals("Task 2", loaded.getAllTasks().get(1).getName());
+        } finally {
+            compressed.delete();
+            renamed.delete();
+        }
+    }
+    
+    /**
+     * Test parallel block compression produces a file the normal reader loads
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testParallelCompression() throws IOException, DataFormatException {
+    	
+        TaskList large = new TaskList();
+        for (int i = 0; i < 60000; i++) {
+            large.addTask(new Task(0, "Task " + i, "Description " + i, LocalDate.of(2026, 3, 6).plusDays(i % 365)));
+        }
+        
+        File compressed = File.createTempFile("tasks", ".gz");
+        try {
+            taskReader.saveToFile(large, compressed, true);
+            TaskList loaded = taskReader.loadFromFile(compressed);
+            assertEquals(60000, loaded.size());
+            assertEquals("Task 59999", loaded.getAllTasks().get(59999).getName());
+        } finally {
+            compressed.delete();
+        }
+    }
+    
+    /**
+     * Test a truncated compressed file is reported as invalid
+     * @throws IOException if files cannot be written
+     */
+    @Test
+    void testLoadCorruptCompressedFile() throws IOException {
+    	
+        File compressed = File.createTempFile("tasks", ".gz");
+        try {
+            taskReader.saveToFile(taskList, compressed);
+            byte[] bytes = Files.readAllBytes(compressed.toPath());
+            Files.write(compressed.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+            
+            assertThrows(DataFormatException.class, () -> taskReader.loadFromFile(compressed));
+        } finally {
+            compressed.delete();
+        }
+    }
+    
+    /**
+     * Test that stream parses lazily, splits for parallel use and matches loadFromFile
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testStream() throws IOException, DataFormatException {
+    	
+        TaskList large = new TaskList();
+        for (int i = 0; i < 20000; i++) {
+            large.addTask(new Task(0, "Task " + i, "Description " + i, LocalDate.of(2026, 1, 1).plusDays(i % 365)));
+        }
+        File file = File.createTempFile("tasks", ".csv");
+        File compressed = File.createTempFile("tasks", ".csv.gz");
+        try {
+            taskReader.saveToFile(large, file);
+            taskReader.saveToFile(large, compressed);
+            
+            try (Stream<Task> tasks = taskReader.stream(file)) {
+                assertEquals(20000, tasks.count());
+            }
+            
+            // Parallel traversal sees every line exactly once
+            try (Stream<Task> tasks = taskReader.stream(file)) {
+                assertEquals(20000, tasks.parallel().map(Task::getName).distinct().count());
+            }
+            try (Stream<Task> tasks = taskReader.stream(file)) {
+                assertEquals("Task 19999", tasks.parallel().reduce((a, b) -> b).get().getName());
+            }
+            
+            try (Stream<Task> tasks = taskReader.stream(compressed)) {
+                assertEquals(55, tasks.filter(t -> t.getDueDate().equals(LocalDate.of(2026, 1, 1))).count());
+            }
+        } finally {
+            file.delete();
+            compressed.delete();
+        }
+    }
+    
+    /**
+     * Test that an invalid line fails the stream
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    void testStreamInvalidLine() throws IOException {
+    	
+        invalidFile.createNewFile();
+        try (FileWriter writer = new FileWriter(invalidFile)) {
+            writer.write("Task 1,Description 1,2026-03-06\nTask 1,Description 1\n");
+        }
+        
+        assertThrows(IllegalStateException.class, () -> {
+            try (Stream<Task> tasks = taskReader.stream(invalidFile)) {
+                tasks.count();
+            }
+        });
+    }
+    
+    /**
+     * Test that repeat rules are saved as a repeat= field and loaded back
+     * Test that unknown and invalid optional fields are reported
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testRepeatField() throws IOException, DataFormatException {
+    	
+        taskList.getAllTasks().get(0).setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 3, LocalDate.of(2026, 6, 1)));
+        taskReader.saveToFile(taskList, saveFile);
+        
+        assertEquals("Task 1,Description 1,2026-03-06,repeat=DAILY/3/2026-06-01", Files.readAllLines(saveFile.toPath()).get(0));
+        TaskList loaded = taskReader.loadFromFile(saveFile);
+        assertEquals(new Recurrence(Recurrence.Frequency.DAILY, 3, LocalDate.of(2026, 6, 1)), loaded.getAllTasks().get(0).getRecurrence());
+        assertNull(loaded.getAllTasks().get(1).getRecurrence());
+        
+        TaskFormatException unknown = assertThrows(TaskFormatException.class, () -> TaskReader.parseTask("Task 1,Description 1,2026-03-06,colour=red"));
+        assertEquals(33, unknown.getColumn());
+        TaskFormatException invalid = assertThrows(TaskFormatException.class, () -> TaskReader.parseTask("Task 1,Description 1,2026-03-06,repeat=YEARLY/1"));
+        assertEquals(40, invalid.getColumn());
+    }
+    
+    /**
+     * Test that dependencies are saved as an after= field of rows and loaded back
+     * Test that rows past the end, cycles and lists without dependencies are reported at their line
+     * @throws IOException if files cannot be written
+     * @throws DataFormatException if files are invalid
+     */
+    @Test
+    void testAfterField() throws IOException, DataFormatException {
+    	
+        taskList.addTask(new Task(0, "Task 3", "Description 3", LocalDate.of(2026, 5, 1)));
+        List<Task> tasks = taskList.getAllTasks();
+        taskList.addDependency(tasks.get(0), tasks.get(2));
+        taskList.addDependency(tasks.get(0), tasks.get(1));
+        taskReader.saveToFile(taskList, saveFile);
+        
+        assertEquals("Task 1,Description 1,2026-03-06,after=3;2", Files.readAllLines(saveFile.toPath()).get(0));
+        TaskList loaded = taskReader.loadFromFile(saveFile);
+        List<Task> loadedTasks = loaded.getAllTasks();
+        assertEquals(2, loaded.getDependencyCount());
+        assertEquals(Arrays.asList(loadedTasks.get(2), loadedTasks.get(1)), loaded.getBlockers(loadedTasks.get(0)));
+        assertTrue(loaded.isBlocked(loadedTasks.get(0)));
+        
+        Files.write(saveFile.toPath(), Arrays.asList("A,,2026-01-01,after=2", "B,,2026-01-02,after=1"));
+        DataFormatException cycle = assertThrows(DataFormatException.class, () -> taskReader.loadFromFile(saveFile));
+        assertTrue(cycle.getMessage().contains("line 2"));
+        Files.write(saveFile.toPath(), Arrays.asList("A,,2026-01-01,after=5"));
+        assertThrows(DataFormatException.class, () -> taskReader.loadFromFile(saveFile));
+        TaskFormatException invalid = assertThrows(TaskFormatException.class, () -> TaskReader.parseTask("A,,2026-01-01,after=1;x"));
+        assertEquals(23, invalid.getColumn());
+
+        // Lists that cannot hold dependencies reject the file instead of dropping them
+        Files.write(saveFile.toPath(), Arrays.asList("A,,2026-01-01", "B,,2026-01-02,after=1"));
+        TaskList noDependencies = new TaskList() {
+            @Override
+            public void addDependency(Task task, Task blocker) {
+                throw new UnsupportedOperationException("No dependencies");
+            }
+        };
+        DataFormatException unsupported = assertThrows(DataFormatException.class, () -> taskReader.loadInto(saveFile, noDependencies));
+        assertTrue(unsupported.getMessage().contains("line 2"));
+    }
+
+    /**
+     * Test that priorities other than none are saved and loaded with the priority field
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file cannot be loaded
+     */
+    @Test
+    void testPriorityField() throws IOException, DataFormatException {
+    	
+        taskList.getAllTasks().get(1).setPriority(Priority.HIGH);
+        taskReader.saveToFile(taskList, saveFile);
+        
+        List<String> lines = Files.readAllLines(saveFile.toPath());
+        assertFalse(lines.get(0).contains("priority"));
+        assertTrue(lines.get(1).endsWith(",priority=high"));
+        TaskList loaded = taskReader.loadFromFile(saveFile);
+        assertEquals(Priority.NONE, loaded.getAllTasks().get(0).getPriority());
+        assertEquals(Priority.HIGH, loaded.getAllTasks().get(1).getPriority());
+        assertEquals(Priority.LOW, TaskReader.parseTask("A,,2026-01-01,priority=Low").getPriority());
+        TaskFormatException invalid = assertThrows(TaskFormatException.class, () -> TaskReader.parseTask("A,,2026-01-01,priority=top"));
+        assertEquals(24, invalid.getColumn());
+    }
+
+    /**
+     * Test that tags are saved and loaded with the tags field
+     * @throws IOException if the file cannot be written
+     * @throws DataFormatException if the file cannot be loaded
+     */
+    @Test
+    void testTagsField() throws IOException, DataFormatException {
+    	
+        taskList.getAllTasks().get(0).setTags(Arrays.asList("work", "#Home"));
+        taskReader.saveToFile(taskList, saveFile);
+        
+        assertEquals("Task 1,Description 1,2026-03-06,tags=home;work", Files.readAllLines(saveFile.toPath()).get(0));
+        TaskList loaded = taskReader.loadFromFile(saveFile);
+        assertEquals(Arrays.asList("home", "work"), loaded.getAllTasks().get(0).getTags());
+        assertEquals(1, loaded.filter("#home AND #work").size());
+        TaskFormatException invalid = assertThrows(TaskFormatException.class, () -> TaskReader.parseTask("A,,2026-01-01,tags=a;b c"));
+        assertEquals(20, invalid.getColumn());
+    }
 }
@@ -0,0 +1,360 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.Recurrence;
+import model.Task;
+
+/**
+ * Class for testing the log-structured store using TaskStore and StoredTaskList
+ * @author Luke Gentri
+ */
+class TaskStoreTest {
+
+    /** store file for testing */
+    private File file;
+
+    /** store for testing */
+    private TaskStore store;
+
+    /**
+     * Create an empty store
+     * @throws IOException if the file cannot be created
+     * @throws DataFormatException never for a new file
+     */
+    @BeforeEach
+    void setUp() throws IOException, DataFormatException {
+        file = File.createTempFile("tasks", TaskStore.EXTENSION);
+        file.delete();
+        store = new TaskStore(file);
+    }
+
+    /**
+     * Close and delete the store
+     * @throws IOException if the store cannot be closed
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        file.delete();
+    }
+
+    /**
+     * Test point reads, writes, deletes and range scans
+     * @throws IOException if the store fails
+     */
+    @Test
+    void testGetPutDeleteScan() throws IOException {
+        for (int id = 1; id <= 10; id++) {
+            store.put(new Task(id, "Task " + id, "Description", LocalDate.of(2026, 1, id)));
+        }
+        assertEquals(10, store.size());
+        assertEquals("Task 4", store.get(4).getName());
+        assertEquals(LocalDate.of(2026, 1, 4), store.get(4).getDueDate());
+
+        // Replace, delete and scan
+        store.put(new Task(4, "Renamed", "Description", null));
+        assertTrue(store.delete(5));
+        assertFalse(store.delete(5));
+        assertNull(store.get(5));
+        List<Task> range = store.scan(3, 6);
+        assertEquals(3, range.size());
+        assertEquals("Task 3", range.get(0).getName());
+        assertEquals("Renamed", range.get(1).getName());
+        assertNull(range.get(1).getDueDate());
+        assertEquals(6, range.get(2).getId());
+        assertTrue(store.getGarbageBytes() > 0);
+    }
+
+    /**
+     * Test that writing an unchanged Task appends nothing
+     * @throws IOException if the store fails
+     */
+    @Test
+    void testUnchangedPut() throws IOException {
+        Task task = new Task(1, "Task", "Description", null);
+        assertTrue(store.put(task));
+        long length = file.length();
+        assertFalse(store.put(new Task(task)));
+        assertEquals(length, file.length());
+        task.setCompleted(true);
+        assertTrue(store.put(task));
+    }
+
+    /**
+     * Test that every field survives reopening
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testReopen() throws IOException, DataFormatException {
+        Task task = new Task(7, "Weekly", "Repeats", LocalDate.of(2026, 3, 2));
+        task.setRecurrence(Recurrence.parse("WEEKLY/1"));
+        task.setCompleted(LocalDate.of(2026, 3, 9), true);
+        store.put(task);
+        store.put(new Task(8, "Gone", "Deleted", null));
+        store.delete(8);
+        store.close();
+
+        store = new TaskStore(file);
+        assertEquals(1, store.size());
+        Task read = store.get(7);
+        assertEquals("Weekly", read.getName());
+        assertEquals(task.getRecurrence(), read.getRecurrence());
+        assertTrue(read.isCompleted(LocalDate.of(2026, 3, 9)));
+        assertFalse(read.isCompleted(LocalDate.of(2026, 3, 2)));
+    }
+
+    /**
+     * Test that a record cut short by a crash is dropped on reopen
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testTornRecord() throws IOException, DataFormatException {
+        store.put(new Task(1, "Kept", "Complete record", null));
+        store.sync();
+        long complete = file.length();
+        store.put(new Task(2, "Torn", "Cut short", null));
+        store.close();
+
+        // Lose the end of the last record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        store = new TaskStore(file);
+        assertEquals(1, store.size());
+        assertEquals("Kept", store.get(1).getName());
+        assertEquals(complete, file.length());
+
+        // The store carries on after the cut
+        store.put(new Task(2, "Again", "Rewritten", null));
+        store.close();
+        store = new TaskStore(file);
+        assertEquals("Again", store.get(2).getName());
+    }
+
+    /**
+     * Test that a damaged record before the last fails the open and leaves the file alone
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testDamagedRecord() throws IOException, DataFormatException {
+        store.put(new Task(1, "First", "Damaged", null));
+        store.put(new Task(2, "Second", "Valid", null));
+        store.put(new Task(3, "Third", "Valid", null));
+        store.close();
+        long length = file.length();
+
+        // Flip a byte inside the first record's body
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(20);
+            int value = raf.read();
+            raf.seek(20);
+            raf.write(value ^ 0xFF);
+        }
+        assertThrows(DataFormatException.class, () -> new TaskStore(file));
+        assertEquals(length, file.length());
+
+        // A wrong length is refused too
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(20);
+            int value = raf.read();
+            raf.seek(20);
+            raf.write(value ^ 0xFF);
+            raf.seek(8);
+            raf.writeInt(2);
+        }
+        assertThrows(DataFormatException.class, () -> new TaskStore(file));
+        assertEquals(length, file.length());
+    }
+
+    /**
+     * Test that a store opened read-only never creates or changes its file
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testReadOnly() throws IOException, DataFormatException {
+        store.put(new Task(1, "Kept", "Complete record", null));
+        store.put(new Task(2, "Torn", "Cut short", null));
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        long length = file.length();
+
+        store = new TaskStore(file, true);
+        assertEquals(1, store.size());
+        assertThrows(IOException.class, () -> store.put(new Task(3, "New", "Refused", null)));
+        assertThrows(IOException.class, () -> store.delete(1));
+        store.close();
+        assertEquals(length, file.length());
+
+        // Missing and empty files are not stores
+        File missing = new File(file.getPath() + ".missing");
+        assertThrows(IOException.class, () -> new TaskStore(missing, true));
+        assertFalse(missing.exists());
+        File empty = File.createTempFile("tasks", TaskStore.EXTENSION);
+        assertThrows(DataFormatException.class, () -> new TaskStore(empty, true));
+        empty.delete();
+    }
+
+    /**
+     * Test that replaceAll writes one batch that is applied whole or not at all
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testReplaceAll() throws IOException, DataFormatException {
+        for (int id = 1; id <= 3; id++) {
+            store.put(new Task(id, "Task " + id, "Description", null));
+        }
+        store.sync();
+        long before = file.length();
+
+        // Renumber down by one and drop the last id
+        List<Task> tasks = List.of(new Task(1, "Task 2", "Description", null), new Task(2, "Task 3", "Description", null));
+        assertTrue(store.replaceAll(tasks, List.of(new int[0], new int[] {1})));
+        assertFalse(store.replaceAll(tasks, List.of(new int[0], new int[] {1})));
+        assertEquals(2, store.size());
+        assertNull(store.get(3));
+        store.close();
+
+        store = new TaskStore(file);
+        assertEquals("Task 3", store.get(2).getName());
+        assertArrayEquals(new int[] {1}, store.getBlockerIds(2));
+        assertNull(store.get(3));
+        store.compact();
+        store.close();
+        store = new TaskStore(file);
+        assertEquals("Task 2", store.get(1).getName());
+        assertEquals(2, store.size());
+        store.close();
+
+        // A torn batch leaves every Task as it was before it
+        file.delete();
+        store = new TaskStore(file);
+        for (int id = 1; id <= 3; id++) {
+            store.put(new Task(id, "Task " + id, "Description", null));
+        }
+        store.replaceAll(tasks, List.of(new int[0], new int[0]));
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        store = new TaskStore(file);
+        assertEquals(before, file.length());
+        assertEquals(3, store.size());
+        assertEquals("Task 1", store.get(1).getName());
+    }
+
+    /**
+     * Test that compaction drops garbage and keeps live records
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testCompact() throws IOException, DataFormatException {
+        for (int i = 0; i < 100; i++) {
+            store.put(new Task(1 + i % 5, "Version " + i, "Description", null));
+        }
+        long before = file.length();
+        store.compact();
+        assertEquals(0, store.getGarbageBytes());
+        assertTrue(file.length() < before);
+        assertEquals("Version 97", store.get(3).getName());
+
+        store.close();
+        store = new TaskStore(file);
+        assertEquals(5, store.size());
+        assertEquals("Version 99", store.get(5).getName());
+    }
+
+    /**
+     * Test that a file of another format is rejected
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    void testInvalidFile() throws IOException {
+        File other = File.createTempFile("tasks", ".csv");
+        try (RandomAccessFile raf = new RandomAccessFile(other, "rw")) {
+            raf.writeBytes("name,description,2026-01-01\n");
+        }
+        assertThrows(DataFormatException.class, () -> new TaskStore(other));
+        other.delete();
+    }
+
+    /**
+     * Test that edits to a StoredTaskList are on disk without saving
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testStoredTaskList() throws IOException, DataFormatException {
+        store.close();
+        StoredTaskList list = new StoredTaskList(file);
+        for (int i = 1; i <= 4; i++) {
+            list.addTask(new Task(0, "Task " + i, "Description", LocalDate.of(2026, 5, i)));
+        }
+        Task second = list.getAllTasks().get(1);
+        second.setDescription("Edited");
+        list.updateTask(second);
+        list.setCompleted(list.getAllTasks().get(3), true);
+
+        // Removal renumbers the Tasks after it
+        list.removeTask(list.getAllTasks().get(0));
+        list.close();
+
+        list = new StoredTaskList(file);
+        assertEquals(3, list.size());
+        assertEquals("Task 2", list.getAllTasks().get(0).getName());
+        assertEquals(1, list.getAllTasks().get(0).getId());
+        assertEquals("Edited", list.getAllTasks().get(0).getDescription());
+        assertTrue(list.getAllTasks().get(2).isCompleted());
+
+        list.clear();
+        list.close();
+        store = new TaskStore(file);
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Test that dependencies of a StoredTaskList survive reopening and follow renumbering
+     * @throws IOException if the store fails
+     * @throws DataFormatException if the store is not recognised
+     */
+    @Test
+    void testStoredDependencies() throws IOException, DataFormatException {
+        store.close();
+        StoredTaskList list = new StoredTaskList(file);
+        for (int i = 1; i <= 3; i++) {
+            list.addTask(new Task(0, "Task " + i, "Description", null));
+        }
+        List<Task> tasks = list.getAllTasks();
+        list.addDependency(tasks.get(2), tasks.get(1));
+
+        // Removal renumbers both ends of the edge
+        list.removeTask(tasks.get(0));
+        list.close();
+
+        list = new StoredTaskList(file);
+        tasks = list.getAllTasks();
+        assertEquals(1, list.getDependencyCount());
+        assertSame(tasks.get(0), list.getBlockers(tasks.get(1)).get(0));
+        assertTrue(list.isBlocked(tasks.get(1)));
+        list.close();
+    }
+}
@@ -0,0 +1,139 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.zip.DataFormatException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.MemoryStats;
+import model.Recurrence;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing tiered undo history using UndoHistory and TaskSerializer
+ * @author Luke Gentri
+ */
+class UndoHistoryTest {
+
+    /** history for testing, two states in memory */
+    private UndoHistory history;
+
+    /**
+     * Initialize the history
+     */
+    @BeforeEach
+    void setUp() {
+        history = new UndoHistory(2);
+    }
+
+    /**
+     * Delete the temporary file
+     * @throws IOException if the file cannot be closed
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        history.close();
+    }
+
+    /**
+     * Test that older states move to disk and come back in order
+     * @throws IOException if the temporary file fails
+     * @throws DataFormatException if the temporary file is damaged
+     */
+    @Test
+    void testSpillAndPop() throws IOException, DataFormatException {
+
+        for (int i = 1; i <= 50; i++) {
+            history.push(listOf(i));
+        }
+        assertEquals(50, history.size());
+        assertEquals(48, history.getSpilledCount());
+
+        for (int i = 50; i >= 1; i--) {
+            TaskList state = history.pop();
+            assertEquals(i, state.size());
+            assertEquals("Task " + (i - 1), state.getAllTasks().get(i - 1).getName());
+        }
+        assertTrue(history.isEmpty());
+        assertNull(history.pop());
+
+        // Pushing after popping from disk reuses the file
+        history.push(listOf(3));
+        history.push(listOf(4));
+        history.push(listOf(5));
+        history.push(listOf(6));
+        assertEquals(2, history.getSpilledCount());
+        history.pop();
+        history.pop();
+        assertEquals(4, history.pop().size());
+        assertEquals(3, history.pop().size());
+    }
+
+    /**
+     * Test that serialization keeps ids, completion and repeat rules
+     * @throws DataFormatException if the bytes are invalid
+     */
+    @Test
+    void testSerializerKeepsState() throws DataFormatException {
+
+        TaskList list = listOf(3);
+        list.sortByName();
+        list.getAllTasks().get(0).setCompleted(true);
+        Task standup = list.getAllTasks().get(1);
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1, null));
+        standup.setCompleted(standup.getDueDate().plusWeeks(2), true);
+        list.getAllTasks().get(2).setId(9);
+
+        TaskList copy = TaskSerializer.fromBytes(TaskSerializer.toBytes(list));
+        assertEquals(3, copy.size());
+        assertTrue(copy.getAllTasks().get(0).isCompleted());
+        assertEquals(standup.getRecurrence(), copy.getAllTasks().get(1).getRecurrence());
+        assertTrue(copy.getAllTasks().get(1).isCompleted(standup.getDueDate().plusWeeks(2)));
+        assertEquals(9, copy.getAllTasks().get(2).getId());
+
+        assertThrows(DataFormatException.class, () -> TaskSerializer.fromBytes(new byte[] { 1, 2, 3 }));
+    }
+
+    /**
+     * Test that only states in memory are counted and strings shared with the current list count as shared
+     * @throws IOException if the temporary file fails
+     */
+    @Test
+    void testMemoryStats() throws IOException {
+
+        TaskList current = listOf(100);
+        for (int i = 0; i < 5; i++) {
+            history.push(new TaskList(current));
+        }
+        MemoryStats alone = history.memoryStats();
+        assertEquals(200, alone.getTasks());
+        assertTrue(alone.getStringBytes() > 0);
+
+        // Copies share the current list's strings
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+        MemoryStats list = current.memoryStats(counter);
+        MemoryStats shared = history.memoryStats(counter);
+        assertEquals(0, shared.getStringBytes());
+        assertEquals(2 * (list.getStringBytes() + list.getSharedStringBytes()), shared.getSharedStringBytes());
+        assertTrue(shared.getRetainedBytes() < alone.getRetainedBytes());
+    }
+
+    /**
+     * Builds a list of Tasks
+     * @param size number of Tasks
+     * @return new TaskList
+     */
+    private static TaskList listOf(int size) {
+        TaskList list = new TaskList();
+        for (int i = 0; i < size; i++) {
+            list.addTask(new Task(0, "Task " + i, "Description " + i, LocalDate.of(2026, 3, 6).plusDays(i)));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,189 @@
+package io;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import model.TagQuery;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for testing Workspace queries, eviction and string sharing
+ * @author Luke Gentri
+ */
+class WorkspaceTest {
+
+    /** Clock moved by hand so lists become idle */
+    private static final class ManualClock extends Clock {
+
+        /** Current time */
+        long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    /** Milliseconds before a list is evicted */
+    private static final long IDLE = 1000;
+
+    /** Day the queries treat as today */
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    /** task files of the workspace */
+    private final List<File> files = new ArrayList<>();
+
+    /** clock of the workspace */
+    private ManualClock clock;
+
+    /** pool running the queries */
+    private ForkJoinPool pool;
+
+    /** workspace for testing */
+    private Workspace workspace;
+
+    /**
+     * Create a workspace of three task files
+     * @throws IOException if a file cannot be written
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        clock = new ManualClock();
+        pool = new ForkJoinPool(4);
+        workspace = new Workspace(IDLE, pool, clock);
+        TaskReader reader = new TaskReader();
+        for (String project : Arrays.asList("backend", "frontend", "ops")) {
+            TaskList list = new TaskList();
+            for (int id = 1; id <= 20; id++) {
+                Task task = new Task(id, "Review " + project + " " + id, "Weekly review", TODAY.plusDays(id - 10));
+                task.setTags(Arrays.asList(project, id % 2 == 0 ? "even" : "odd"));
+                list.addTask(task);
+            }
+            File file = File.createTempFile(project, ".csv");
+            reader.saveToFile(list, file);
+            files.add(file);
+            workspace.open(project, file);
+        }
+    }
+
+    /**
+     * Delete the task files
+     */
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test overdue, search and tag queries fanned out across lists come back merged in order
+     * @throws IOException if a list cannot be loaded
+     */
+    @Test
+    void testQueriesAcrossLists() throws IOException {
+        assertEquals(Arrays.asList("backend", "frontend", "ops"), workspace.getNames());
+        assertFalse(workspace.isLoaded("ops"));
+
+        // Nine Tasks of each list are due before today, ordered by date then list name
+        List<Workspace.Match> overdue = workspace.getOverdue(TODAY);
+        assertEquals(27, overdue.size());
+        assertEquals("backend", overdue.get(0).getListName());
+        assertEquals("frontend", overdue.get(1).getListName());
+        assertEquals("ops", overdue.get(2).getListName());
+        for (int i = 1; i < overdue.size(); i++) {
+            assertFalse(overdue.get(i).getTask().getDueDate().isBefore(overdue.get(i - 1).getTask().getDueDate()));
+        }
+
+        // Completing a Task takes it out of the next query
+        TaskList ops = workspace.get("ops");
+        ops.setCompleted(ops.getAllTasks().get(0), true);
+        assertEquals(26, workspace.getOverdue(TODAY).size());
+
+        List<Workspace.Match> found = workspace.search("FRONTEND 1");
+        assertEquals(11, found.size());
+        for (Workspace.Match match : found) {
+            assertEquals("frontend", match.getListName());
+        }
+        assertEquals(3 * 20, workspace.search("weekly").size());
+
+        List<Workspace.Match> even = workspace.filter(TagQuery.parse("#even AND (#ops OR #backend)"));
+        assertEquals(20, even.size());
+        assertEquals("backend", even.get(0).getListName());
+        assertEquals(0, workspace.filter(TagQuery.parse("#missing")).size());
+    }
+
+    /**
+     * Test idle lists are saved, evicted, skipped when their summary cannot match and reloaded on use
+     * @throws IOException if a list cannot be loaded or saved
+     */
+    @Test
+    void testEviction() throws IOException {
+        TaskList backend = workspace.get("backend");
+        backend.addTask(new Task(21, "Fix build", "", TODAY.minusDays(30)));
+        workspace.get("frontend");
+        workspace.get("ops");
+        workspace.setCurrent("ops");
+
+        // Lists not used for the idle time are evicted, except the current one
+        clock.millis += IDLE;
+        assertEquals(2, workspace.evictIdle());
+        assertFalse(workspace.isLoaded("backend"));
+        assertFalse(workspace.isLoaded("frontend"));
+        assertTrue(workspace.isLoaded("ops"));
+
+        // An evicted list's tags say it cannot match, so it stays evicted
+        assertEquals(10, workspace.filter(TagQuery.parse("#ops AND #odd")).size());
+        assertFalse(workspace.isLoaded("backend"));
+        assertEquals(0, workspace.getOverdue(TODAY.minusDays(30)).size());
+        assertFalse(workspace.isLoaded("backend"));
+
+        // The edit was saved before eviction and is loaded back
+        List<Workspace.Match> overdue = workspace.getOverdue(TODAY.minusDays(29));
+        assertEquals(1, overdue.size());
+        assertEquals("Fix build", overdue.get(0).getTask().getName());
+        assertTrue(workspace.isLoaded("backend"));
+        assertEquals(21, workspace.get("backend").getAllTasks().size());
+    }
+
+    /**
+     * Test equal strings loaded from different files share one instance
+     * @throws IOException if a list cannot be loaded
+     */
+    @Test
+    void testSharedStrings() throws IOException {
+        Task backend = workspace.get("backend").getAllTasks().get(0);
+        Task ops = workspace.get("ops").getAllTasks().get(0);
+        assertNotSame(backend, ops);
+        assertSame(backend.getDescription(), ops.getDescription());
+        assertSame(backend.getTags().get(backend.getTags().indexOf("odd")), ops.getTags().get(ops.getTags().indexOf("odd")));
+        assertTrue(workspace.getPooledStrings() < 2 * 2 * 20 + 3);
+    }
+}
@@ -0,0 +1,204 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing Task dependencies using TaskList and DependencyGraph
+ * @author Luke Gentri
+ */
+class DependencyGraphTest {
+
+    /** taskList for testing */
+    private TaskList taskList;
+
+    /** Tasks in taskList, in order */
+    private Task a;
+    private Task b;
+    private Task c;
+    private Task d;
+
+    /**
+     * Create a taskList with four Tasks and no dependencies
+     */
+    @BeforeEach
+    void setUp() {
+        taskList = new TaskList();
+        a = add("A");
+        b = add("B");
+        c = add("C");
+        d = add("D");
+    }
+
+    /**
+     * Test that an edge against the current order reorders only what it must and cycles are refused
+     */
+    @Test
+    void testOrderAndCycles() {
+        taskList.addDependency(a, d);
+        taskList.addDependency(d, c);
+        assertOrdered(taskList);
+
+        // c -> d -> a, so a cannot block c
+        assertThrows(IllegalArgumentException.class, () -> taskList.addDependency(c, a));
+        assertThrows(IllegalArgumentException.class, () -> taskList.addDependency(a, a));
+        assertThrows(IllegalArgumentException.class, () -> taskList.addDependency(a, new Task(0, "Other", "", null)));
+        assertEquals(2, taskList.getDependencyCount());
+        assertOrdered(taskList);
+
+        // Removing the middle edge allows it
+        taskList.removeDependency(d, c);
+        taskList.addDependency(c, a);
+        assertOrdered(taskList);
+        assertEquals(Arrays.asList(a), taskList.getBlockers(c));
+        assertEquals(Arrays.asList(c), taskList.getDependents(a));
+    }
+
+    /**
+     * Test that the unblocked Tasks follow completion, removal and new edges
+     */
+    @Test
+    void testUnblocked() {
+        taskList.addDependency(c, a);
+        taskList.addDependency(c, b);
+        taskList.addDependency(d, c);
+        assertEquals(set(a, b), set(taskList.getUnblockedTasks()));
+        assertTrue(taskList.isBlocked(c));
+
+        taskList.setCompleted(a, true);
+        assertEquals(set(b), set(taskList.getUnblockedTasks()));
+        taskList.setCompleted(Arrays.asList(b), true);
+        assertEquals(set(c), set(taskList.getUnblockedTasks()));
+        assertFalse(taskList.isBlocked(c));
+
+        // Reopening a blocker blocks again, removing it unblocks
+        taskList.setCompleted(b, false);
+        assertEquals(set(b), set(taskList.getUnblockedTasks()));
+        taskList.removeTask(b);
+        assertEquals(set(c), set(taskList.getUnblockedTasks()));
+        taskList.removeTask(c);
+        assertEquals(set(d), set(taskList.getUnblockedTasks()));
+        assertEquals(0, taskList.getDependencyCount());
+
+        taskList.clear();
+        assertTrue(taskList.getUnblockedTasks().isEmpty());
+    }
+
+    /**
+     * Test that copies keep dependencies between the copied Tasks
+     */
+    @Test
+    void testCopy() {
+        taskList.addDependency(a, d);
+        taskList.addDependency(b, a);
+        TaskList copy = new TaskList(taskList);
+        List<Task> tasks = copy.getAllTasks();
+        assertEquals(2, copy.getDependencyCount());
+        assertEquals(Arrays.asList(tasks.get(3)), copy.getBlockers(tasks.get(0)));
+        assertEquals(Arrays.asList(tasks.get(0)), copy.getBlockers(tasks.get(1)));
+        assertOrdered(copy);
+    }
+
+    /**
+     * Test a large random graph, edges in any direction, keeping a valid order throughout
+     */
+    @Test
+    void testLargeGraph() {
+        TaskList large = new TaskList();
+        large.beginBatch();
+        for (int i = 0; i < 100000; i++) {
+            large.addTask(new Task(0, "Task " + i, "", null));
+        }
+        List<Task> tasks = large.getAllTasks();
+
+        // Edges follow a hidden ranking so there is never a cycle, shuffled within blocks of 200
+        // so many go against insertion order and must be reordered
+        Random random = new Random(7);
+        int[] rank = new int[tasks.size()];
+        for (int i = 0; i < rank.length; i++) {
+            rank[i] = i;
+        }
+        for (int i = rank.length - 1; i > 0; i--) {
+            int j = i - random.nextInt(i % 200 + 1);
+            int swap = rank[i];
+            rank[i] = rank[j];
+            rank[j] = swap;
+        }
+        int[] byRank = new int[rank.length];
+        for (int i = 0; i < rank.length; i++) {
+            byRank[rank[i]] = i;
+        }
+        for (int i = 0; i < 500000; i++) {
+            int from = random.nextInt(rank.length - 1);
+            int to = from + 1 + random.nextInt(Math.min(50, rank.length - 1 - from));
+            large.addDependency(tasks.get(byRank[to]), tasks.get(byRank[from]));
+        }
+        large.endBatch();
+        assertOrdered(large);
+
+        // Only Tasks with no blockers are ready
+        int ready = 0;
+        for (Task task : tasks) {
+            if (large.getBlockers(task).isEmpty()) {
+                ready++;
+            }
+        }
+        assertEquals(ready, large.getUnblockedTasks().size());
+    }
+
+    /**
+     * Adds a Task to taskList
+     * @param name Task name
+     * @return new Task
+     */
+    private Task add(String name) {
+        Task task = new Task(0, name, "", LocalDate.of(2026, 1, 1));
+        taskList.addTask(task);
+        return task;
+    }
+
+    /**
+     * Asserts every Task comes after its blockers in the dependency order
+     * @param list list to check
+     */
+    private static void assertOrdered(TaskList list) {
+        Map<Task, Integer> positions = new IdentityHashMap<>();
+        for (Task task : list.getDependencyOrder()) {
+            positions.put(task, positions.size());
+        }
+        assertEquals(list.size(), positions.size());
+        for (Task task : list.getAllTasks()) {
+            for (Task blocker : list.getBlockers(task)) {
+                assertTrue(positions.get(blocker) < positions.get(task));
+            }
+        }
+    }
+
+    /**
+     * Set of Tasks for order-free comparison
+     * @param tasks Tasks
+     * @return new set
+     */
+    private static HashSet<Task> set(Task... tasks) {
+        return new HashSet<>(Arrays.asList(tasks));
+    }
+
+    /**
+     * Set of Tasks for order-free comparison
+     * @param tasks Tasks
+     * @return new set
+     */
+    private static HashSet<Task> set(List<Task> tasks) {
+        return new HashSet<>(tasks);
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing MemoryStats estimates of TaskLists
+ * @author Luke Gentri
+ */
+class MemoryStatsTest {
+
+    /**
+     * Test string sizes follow the compact string layout
+     */
+    @Test
+    void testStringBytes() {
+        assertEquals(48, MemoryStats.stringBytes("abcdefgh"));
+        assertEquals(48, MemoryStats.stringBytes("\u00e9bcdefgh"));
+        assertEquals(56, MemoryStats.stringBytes("\u0100bcdefgh"));
+        assertEquals(24, MemoryStats.objectBytes(8));
+        assertEquals(24, MemoryStats.arrayBytes(2, 4));
+    }
+
+    /**
+     * Test a list's estimate grows with its Tasks and stays in a plausible range per Task
+     */
+    @Test
+    void testTaskList() {
+        TaskList list = listOf(1000);
+        MemoryStats stats = list.memoryStats();
+        assertEquals("Task list", stats.getName());
+        assertEquals(1000, stats.getTasks());
+        assertEquals(stats.getTaskBytes() + stats.getStringBytes() + stats.getStructureBytes(), stats.getRetainedBytes());
+        assertTrue(stats.getBytesPerTask() > 100 && stats.getBytesPerTask() < 1000, "bytes per task " + stats.getBytesPerTask());
+
+        // Tags and collation keys are counted once made
+        list.getAllTasks().get(0).setTags(Arrays.asList("home", "work"));
+        list.sortByName(Locale.ENGLISH);
+        MemoryStats later = list.memoryStats();
+        assertTrue(later.getTaskBytes() > stats.getTaskBytes());
+        assertTrue(later.getStringBytes() > stats.getStringBytes());
+    }
+
+    /**
+     * Test Tasks and strings counted by an earlier part are not counted again
+     */
+    @Test
+    void testShared() {
+        TaskList list = listOf(100);
+        TaskList copy = new TaskList(list);
+        MemoryStats.Counter counter = new MemoryStats.Counter();
+        MemoryStats first = list.memoryStats(counter);
+        MemoryStats again = list.memoryStats(counter);
+        MemoryStats copied = copy.memoryStats(counter);
+
+        // Same Tasks, only the list structures count
+        assertEquals(100, again.getTasks());
+        assertEquals(0, again.getTaskBytes());
+        assertEquals(0, again.getStringBytes());
+        assertEquals(first.getStructureBytes(), again.getStructureBytes());
+
+        // Copied Tasks share their strings and dates
+        assertEquals(first.getTaskBytes(), copied.getTaskBytes() + 100 * 24);
+        assertEquals(0, copied.getStringBytes());
+        assertEquals(first.getStringBytes() + first.getSharedStringBytes(), copied.getSharedStringBytes());
+
+        MemoryStats total = MemoryStats.total("Total", Arrays.asList(first, again, copied));
+        assertEquals(300, total.getTasks());
+        assertEquals(first.getRetainedBytes() + again.getRetainedBytes() + copied.getRetainedBytes(), total.getRetainedBytes());
+
+        // After reset nothing is shared
+        counter.reset();
+        assertEquals(first.getStringBytes(), copy.memoryStats(counter).getStringBytes());
+    }
+
+    /**
+     * Builds a list of Tasks
+     * @param size number of Tasks
+     * @return new TaskList
+     */
+    private static TaskList listOf(int size) {
+        TaskList list = new TaskList();
+        for (int i = 0; i < size; i++) {
+            list.addTask(new Task(0, "Task " + i, "Description " + i, LocalDate.of(2026, 3, 6).plusDays(i)));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing repeat rules and lazily expanded occurrences of Tasks
+ * @author Luke Gentri
+ */
+class RecurrenceTest {
+	
+	/** first due date */
+	LocalDate start;
+	
+	/** repeating task */
+	Task standup;
+
+	/**
+	 * Set up a Task repeating every 2 days
+	 */
+	@BeforeEach
+	void setUp() {
+		start = LocalDate.of(2026, 3, 6);
+		standup = new Task(0, "Standup", "", start);
+		standup.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 2, null));
+	}
+
+	/**
+	 * Test occurrence dates are worked out directly from the rule
+	 * Test monthly rules stay on the 31st where the month has one
+	 */
+	@Test
+	void testOccurrences() {
+		Recurrence daily = standup.getRecurrence();
+		assertEquals(LocalDate.of(2026, 3, 8), daily.occurrence(start, 1));
+		assertEquals(500, daily.firstIndexFrom(start, start.plusDays(999)));
+		assertEquals(-1, daily.indexOf(start, start.plusDays(1)));
+		
+		Recurrence monthly = new Recurrence(Recurrence.Frequency.MONTHLY, 1, LocalDate.of(2026, 5, 31));
+		LocalDate end = LocalDate.of(2026, 1, 31);
+		List<LocalDate> dates = monthly.occurrencesBetween(end, LocalDate.of(2026, 2, 1), LocalDate.of(2026, 12, 31));
+		assertEquals(4, dates.size());
+		assertEquals(LocalDate.of(2026, 2, 28), dates.get(0));
+		assertEquals(LocalDate.of(2026, 3, 31), dates.get(1));
+		assertEquals(LocalDate.of(2026, 5, 31), dates.get(3));
+		assertNull(monthly.occurrence(end, 5));
+		
+		Recurrence weekly = Recurrence.parse("WEEKLY/1/2026-03-20");
+		assertEquals("WEEKLY/1/2026-03-20", weekly.toString());
+		assertEquals(3, weekly.occurrencesBetween(start, start, start.plusYears(10)).size());
+		assertThrows(IllegalArgumentException.class, () -> Recurrence.parse("WEEKLY/0"));
+	}
+
+	/**
+	 * Test completing one occurrence leaves the rest of the series open
+	 */
+	@Test
+	void testCompleteOccurrence() {
+		LocalDate second = start.plusDays(2);
+		standup.setCompleted(second, true);
+		
+		assertTrue(standup.isCompleted(second));
+		assertFalse(standup.isCompleted(start));
+		assertFalse(standup.isCompleted());
+		assertEquals(start, standup.getNextOccurrence(start));
+		assertEquals(start.plusDays(4), standup.getNextOccurrence(start.plusDays(1)));
+		assertThrows(IllegalArgumentException.class, () -> standup.setCompleted(start.plusDays(1), true));
+		
+		Task copy = new Task(standup);
+		copy.setCompleted(second, false);
+		assertTrue(standup.isCompleted(second));
+	}
+
+	/**
+	 * Test TaskList expands repeating Tasks only within the window, in date order
+	 */
+	@Test
+	void testTaskListOccurrences() {
+		TaskList taskList = new TaskList();
+		taskList.addTask(standup);
+		taskList.addTask(new Task(0, "Review", "", start.plusDays(3)));
+		taskList.addTask(new Task(0, "Later", "", start.plusYears(1)));
+		
+		List<Occurrence> window = taskList.getOccurrences(start.plusYears(5), start.plusYears(5).plusDays(6));
+		assertEquals(4, window.size());
+		
+		window = taskList.getOccurrences(start, start.plusDays(4));
+		assertEquals(4, window.size());
+		assertEquals("Review", window.get(2).getTask().getName());
+		assertEquals(start.plusDays(4), window.get(3).getDate());
+		
+		taskList.setCompleted(standup, start.plusDays(4), true);
+		assertTrue(taskList.getOccurrences(start, start.plusDays(4)).get(3).isCompleted());
+	}
+}
@@ -0,0 +1,195 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing due and overdue reminders using ReminderScheduler with a test clock
+ * @author Luke Gentri
+ */
+class ReminderSchedulerTest {
+	
+	/** clock moved by the tests */
+	TestClock clock;
+	
+	/** reminders received */
+	List<Reminder> fired;
+	
+	/** taskList being followed */
+	TaskList taskList;
+	
+	/** scheduler for testing */
+	ReminderScheduler scheduler;
+	
+	/** today according to the clock */
+	LocalDate today;
+
+	/**
+	 * Set up an empty list followed by a scheduler at noon on 2026-03-06 UTC
+	 */
+	@BeforeEach
+	void setUp() {
+		today = LocalDate.of(2026, 3, 6);
+		clock = new TestClock(today.atTime(12, 0).toInstant(ZoneOffset.UTC));
+		fired = new ArrayList<>();
+		taskList = new TaskList();
+		scheduler = new ReminderScheduler(taskList, clock, fired::addAll);
+	}
+
+	/**
+	 * Test a Task is reminded when it comes due and again when it becomes overdue
+	 * Test overdue Tasks added later are reminded at once, and completed Tasks are not
+	 */
+	@Test
+	void testDueAndOverdue() {
+		Task tomorrow = new Task(0, "Tomorrow", "", today.plusDays(1));
+		Task late = new Task(0, "Late", "", today.minusDays(3));
+		Task done = new Task(0, "Done", "", today.minusDays(3));
+		done.setCompleted(true);
+		taskList.addTasks(Arrays.asList(tomorrow, late, done));
+		
+		assertEquals(2, scheduler.size());
+		assertEquals(1, scheduler.fireDue());
+		assertEquals(Reminder.Type.OVERDUE, fired.get(0).getType());
+		assertSame(late, fired.get(0).getTask());
+		assertEquals(today.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant(), scheduler.getNextTime());
+		
+		// Nothing else until tomorrow
+		assertEquals(0, scheduler.fireDue());
+		clock.advance(Duration.ofHours(12));
+		assertEquals(1, scheduler.fireDue());
+		assertEquals(Reminder.Type.DUE, fired.get(1).getType());
+		clock.advance(Duration.ofDays(1));
+		assertEquals(1, scheduler.fireDue());
+		assertEquals(Reminder.Type.OVERDUE, fired.get(2).getType());
+		assertEquals(0, scheduler.size());
+	}
+
+	/**
+	 * Test that edits move reminders, removal cancels them and updates do not repeat fired ones
+	 */
+	@Test
+	void testChangesAndCancel() {
+		Task task = new Task(0, "Task", "", today.plusDays(5));
+		Task other = new Task(0, "Other", "", today.plusDays(2));
+		taskList.addTask(task);
+		taskList.addTask(other);
+		
+		task.setDueDate(today.plusDays(1));
+		taskList.updateTask(task);
+		assertEquals(today.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant(), scheduler.getNextTime());
+		
+		taskList.removeTask(task);
+		assertEquals(1, scheduler.size());
+		assertEquals(today.plusDays(2).atStartOfDay(ZoneOffset.UTC).toInstant(), scheduler.getNextTime());
+		
+		clock.advance(Duration.ofDays(2));
+		assertEquals(1, scheduler.fireDue());
+		other.setName("Renamed");
+		taskList.updateTask(other);
+		assertEquals(0, scheduler.fireDue());
+		
+		taskList.setCompleted(other, true);
+		assertEquals(0, scheduler.size());
+		
+		// Clearing drops everything, a sort keeps everything
+		taskList.addTask(new Task(0, "New", "", today.plusDays(9)));
+		taskList.sortByName();
+		assertEquals(1, scheduler.size());
+		taskList.clear();
+		assertEquals(0, scheduler.size());
+	}
+
+	/**
+	 * Test that a repeating Task is reminded about each open occurrence in turn
+	 */
+	@Test
+	void testRecurring() {
+		Task standup = new Task(0, "Standup", "", today);
+		standup.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1, today.plusDays(2)));
+		standup.setCompleted(today.plusDays(1), true);
+		taskList.addTask(standup);
+		
+		// Due today, overdue tomorrow, tomorrow's occurrence is done, due the day after
+		assertEquals(1, scheduler.fireDue());
+		clock.advance(Duration.ofDays(1));
+		assertEquals(1, scheduler.fireDue());
+		assertEquals(Reminder.Type.OVERDUE, fired.get(1).getType());
+		assertEquals(today.plusDays(2).atStartOfDay(ZoneOffset.UTC).toInstant(), scheduler.getNextTime());
+		clock.advance(Duration.ofDays(1));
+		assertEquals(1, scheduler.fireDue());
+		assertEquals(today.plusDays(2), fired.get(2).getDate());
+	}
+
+	/**
+	 * Test a large list is scheduled in bulk and fired in due order
+	 */
+	@Test
+	void testManyTasks() {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			tasks.add(new Task(0, "Task " + i, "", today.plusDays(1 + (i * 7919L) % 365)));
+		}
+		taskList.addTasks(tasks);
+		assertEquals(100000, scheduler.size());
+		
+		clock.advance(Duration.ofDays(30));
+		int count = scheduler.fireDue();
+		assertTrue(count > 0);
+		for (int i = 1; i < fired.size(); i++) {
+			assertFalse(fired.get(i).getTime().isBefore(fired.get(i - 1).getTime()));
+		}
+	}
+
+	/**
+	 * Clock that only moves when told to
+	 */
+	private static class TestClock extends Clock {
+		
+		/** current time */
+		private Instant now;
+		
+		/**
+		 * Constructor
+		 * @param now starting time
+		 */
+		TestClock(Instant now) {
+			this.now = now;
+		}
+		
+		/**
+		 * Move time forward
+		 * @param duration how far
+		 */
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class for testing RoaringBitmap against BitSet
+ * @author Luke Gentri
+ */
+class RoaringBitmapTest {
+
+    /**
+     * Test adding, removing and checking values across array and bitmap containers
+     */
+    @Test
+    void testAddRemoveContains() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet expected = new BitSet();
+        Random random = new Random(3);
+
+        // Dense first chunk becomes a bitmap, the rest stay arrays
+        for (int i = 0; i < 20000; i++) {
+            int value = i % 2 == 0 ? random.nextInt(10000) : random.nextInt(1 << 20);
+            bitmap.add(value);
+            expected.set(value);
+        }
+        assertEquals(expected.cardinality(), bitmap.getCardinality());
+        assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+
+        // Removing most of the dense chunk turns it back into an array
+        for (int i = 0; i < 9900; i++) {
+            bitmap.remove(i);
+            expected.clear(i);
+        }
+        assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+        for (int i = 0; i < 1 << 20; i += 7) {
+            assertEquals(expected.get(i), bitmap.contains(i));
+        }
+        for (int value : bitmap.toArray()) {
+            bitmap.remove(value);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    /**
+     * Test and, or, andNot and range on mixes of sparse and dense sets
+     */
+    @Test
+    void testSetOperations() {
+        Random random = new Random(11);
+        int limit = 1 << 18;
+        BitSet dense = new BitSet();
+        BitSet sparse = new BitSet();
+        RoaringBitmap denseBitmap = new RoaringBitmap();
+        RoaringBitmap sparseBitmap = new RoaringBitmap();
+        for (int i = 0; i < limit / 2; i++) {
+            int value = random.nextInt(limit);
+            dense.set(value);
+            denseBitmap.add(value);
+        }
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(limit);
+            sparse.set(value);
+            sparseBitmap.add(value);
+        }
+
+        BitSet and = (BitSet) dense.clone();
+        and.and(sparse);
+        assertArrayEquals(and.stream().toArray(), denseBitmap.and(sparseBitmap).toArray());
+        assertArrayEquals(and.stream().toArray(), sparseBitmap.and(denseBitmap).toArray());
+
+        BitSet or = (BitSet) dense.clone();
+        or.or(sparse);
+        assertArrayEquals(or.stream().toArray(), denseBitmap.or(sparseBitmap).toArray());
+        assertArrayEquals(or.stream().toArray(), sparseBitmap.or(denseBitmap).toArray());
+
+        BitSet andNot = (BitSet) dense.clone();
+        andNot.andNot(sparse);
+        assertArrayEquals(andNot.stream().toArray(), denseBitmap.andNot(sparseBitmap).toArray());
+        andNot = (BitSet) sparse.clone();
+        andNot.andNot(dense);
+        assertArrayEquals(andNot.stream().toArray(), sparseBitmap.andNot(denseBitmap).toArray());
+
+        // Operands are unchanged
+        assertArrayEquals(dense.stream().toArray(), denseBitmap.toArray());
+
+        RoaringBitmap range = RoaringBitmap.range(100000);
+        assertEquals(100000, range.getCardinality());
+        assertTrue(range.contains(99999));
+        assertFalse(range.contains(100000));
+        assertEquals(0, range.andNot(RoaringBitmap.range(100000)).getCardinality());
+    }
+}
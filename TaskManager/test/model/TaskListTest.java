@@ -2,7 +2,15 @@ package model;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.text.Collator;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -104,6 +112,29 @@ class TaskListTest {
 		assertEquals(1, task.getId());
 	}
 	
+	/**
+	 * Test that sortByName follows the locale for accents and case, reuses collation keys and
+	 * makes a new key when a name changes
+	 */
+	@Test
+	void testSortByNameCollated() {
+		for (String name : Arrays.asList("Zebra", "\u00c9clair", "banana", "eclair", "apple")) {
+			taskList.addTask(new Task(0, name, "", dueDate));
+		}
+		taskList.sortByName(Locale.ENGLISH);
+		assertEquals(Arrays.asList("apple", "banana", "eclair", "\u00c9clair", "Zebra"), names(taskList.getAllTasks()));
+		
+		// Keys are kept until the name changes
+		Collator collator = Collator.getInstance(Locale.ENGLISH);
+		Task apple = taskList.getAllTasks().get(0);
+		assertSame(apple.getNameKey(collator), apple.getNameKey(collator));
+		apple.setName("zoo");
+		assertEquals("zoo", apple.getNameKey(collator).getSourceString());
+		taskList.sortByName(Locale.ENGLISH);
+		assertEquals(Arrays.asList("banana", "eclair", "\u00c9clair", "Zebra", "zoo"), names(taskList.getAllTasks()));
+		assertEquals(5, taskList.getAllTasks().get(4).getId());
+	}
+	
 	/**
 	 * Test that sortByDueDate sorts correctly
 	 */
@@ -120,5 +151,301 @@ class TaskListTest {
 		assertEquals(2, task2.getId());
 		assertEquals(1, task.getId());
 	}
+	
+	/**
+	 * Test that each operation notifies listeners with the matching event
+	 */
+	@Test
+	void testListenerEvents() {
+		List<TaskListEvent> events = new ArrayList<>();
+		taskList.addTaskListListener(events::add);
+		
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		assertEquals(TaskListEvent.Type.INSERTED, events.get(1).getType());
+		assertEquals(1, events.get(1).getIndex(0));
+		assertSame(task2, events.get(1).getTasks().get(0));
+		
+		taskList.setCompleted(task2, true);
+		assertEquals(TaskListEvent.Type.UPDATED, events.get(2).getType());
+		assertTrue(task2.isCompleted());
+		
+		taskList.removeTask(task);
+		assertEquals(TaskListEvent.Type.REMOVED, events.get(3).getType());
+		assertEquals(0, events.get(3).getIndex(0));
+		
+		taskList.sortByName();
+		assertEquals(TaskListEvent.Type.REORDERED, events.get(4).getType());
+		
+		taskList.clear();
+		assertEquals(TaskListEvent.Type.CLEARED, events.get(5).getType());
+		assertSame(task2, events.get(5).getTasks().get(0));
+		assertEquals(6, events.size());
+	}
+	
+	/**
+	 * Test that changes inside a batch arrive as a single coalesced event
+	 * Test that a coalesced removal reports where ids changed
+	 */
+	@Test
+	void testBatchCoalescing() {
+		List<TaskListEvent> events = new ArrayList<>();
+		taskList.addTaskListListener(events::add);
+		
+		taskList.beginBatch();
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		assertEquals(0, events.size());
+		taskList.endBatch();
+		
+		assertEquals(1, events.size());
+		assertEquals(TaskListEvent.Type.INSERTED, events.get(0).getType());
+		assertArrayEquals(new int[] { 0, 1 }, events.get(0).getIndices());
+		
+		Task task3 = new Task(0, "task3", "", dueDate);
+		taskList.addTask(task3);
+		events.clear();
+		
+		taskList.beginBatch();
+		taskList.removeTask(task2);
+		taskList.removeTask(task3);
+		taskList.endBatch();
+		
+		assertEquals(1, events.size());
+		assertEquals(TaskListEvent.Type.REMOVED, events.get(0).getType());
+		assertArrayEquals(new int[] { 1, 2 }, events.get(0).getIndices());
+		assertEquals(TaskListEvent.NOT_RENUMBERED, events.get(0).getRenumberedFrom());
+		
+		// Removing the first and then the new first renumbers everything left
+		taskList.addTask(task2);
+		taskList.addTask(task3);
+		events.clear();
+		taskList.beginBatch();
+		taskList.removeTask(task);
+		taskList.removeTask(task2);
+		taskList.endBatch();
+		assertArrayEquals(new int[] { 0, 1 }, events.get(0).getIndices());
+		assertEquals(0, events.get(0).getRenumberedFrom());
+		assertEquals(1, task3.getId());
+		taskList.removeTask(task3);
+		taskList.addTask(task);
+		
+		events.clear();
+		taskList.beginBatch();
+		taskList.addTask(task2);
+		taskList.setCompleted(task, true);
+		taskList.endBatch();
+		assertEquals(TaskListEvent.Type.REORDERED, events.get(0).getType());
+	}
+	
+	/**
+	 * Test that removeTasks removes many Tasks with one event and one renumbering
+	 * Test that setCompleted on a collection updates every Task with one event
+	 */
+	@Test
+	void testRemoveTasksSetCompletedBatch() {
+		Task task3 = new Task(0, "task3", "", dueDate);
+		Task task4 = new Task(0, "task4", "", dueDate2);
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		taskList.addTask(task3);
+		taskList.addTask(task4);
+		
+		List<TaskListEvent> events = new ArrayList<>();
+		taskList.addTaskListListener(events::add);
+		
+		taskList.setCompleted(Arrays.asList(task2, task4), true);
+		assertEquals(1, events.size());
+		assertArrayEquals(new int[] { 1, 3 }, events.get(0).getIndices());
+		assertEquals(2, taskList.getCompletedTasks().size());
+		
+		taskList.removeTasks(Arrays.asList(task4, task, new Task(0, "other", "", dueDate)));
+		assertEquals(2, events.size());
+		assertEquals(TaskListEvent.Type.REMOVED, events.get(1).getType());
+		assertArrayEquals(new int[] { 0, 3 }, events.get(1).getIndices());
+		assertEquals(0, events.get(1).getRenumberedFrom());
+		assertEquals(2, taskList.size());
+		assertEquals(1, task2.getId());
+		assertEquals(2, task3.getId());
+		
+		taskList.addTask(task);
+		assertEquals(3, task.getId());
+	}
+	
+	/**
+	 * Test that removeTasks and setCompleted ignore repeated and foreign Tasks in their argument
+	 * and report one index per position found, even for a Task the list holds twice
+	 */
+	@Test
+	void testRemoveTasksRepeatsAndForeign() {
+		Task task3 = new Task(0, "task3", "", dueDate);
+		Task foreign = new Task(0, "foreign", "", dueDate);
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		taskList.addTask(task3);
+		
+		List<TaskListEvent> events = new ArrayList<>();
+		taskList.addTaskListListener(events::add);
+		
+		taskList.setCompleted(Arrays.asList(task3, task3, foreign, task, task, foreign), true);
+		assertArrayEquals(new int[] { 0, 2 }, events.get(0).getIndices());
+		
+		taskList.removeTasks(Arrays.asList(task2, task2, foreign, task2, new Task(0, "other", "", dueDate2)));
+		assertArrayEquals(new int[] { 1 }, events.get(1).getIndices());
+		assertEquals(Arrays.asList(task, task3), taskList.getAllTasks());
+		
+		// A Task added twice sits at two positions
+		taskList.addTask(task);
+		taskList.removeTasks(Arrays.asList(task, task));
+		assertArrayEquals(new int[] { 0, 2 }, events.get(3).getIndices());
+		assertEquals(2, events.get(3).getTasks().size());
+		assertEquals(Arrays.asList(task3), taskList.getAllTasks());
+	}
+	
+	/**
+	 * Test that addTasks assigns ids in order and fires one INSERTED event
+	 * Test that TaskKey fingerprints match exactly the Tasks each key treats as duplicates
+	 */
+	@Test
+	void testAddTasksTaskKey() {
+		taskList.addTask(task);
+		List<TaskListEvent> events = new ArrayList<>();
+		taskList.addTaskListListener(events::add);
+		
+		Task copy = new Task(0, "task1", "other description", dueDate);
+		taskList.addTasks(Arrays.asList(task2, copy));
+		assertEquals(1, events.size());
+		assertEquals(TaskListEvent.Type.INSERTED, events.get(0).getType());
+		assertArrayEquals(new int[] { 1, 2 }, events.get(0).getIndices());
+		assertEquals(3, copy.getId());
+		
+		assertEquals(TaskKey.NAME.fingerprint(task), TaskKey.NAME.fingerprint(copy));
+		assertEquals(TaskKey.NAME_AND_DUE_DATE.fingerprint(task), TaskKey.NAME_AND_DUE_DATE.fingerprint(copy));
+		assertNotEquals(TaskKey.ALL_FIELDS.fingerprint(task), TaskKey.ALL_FIELDS.fingerprint(copy));
+		copy.setDueDate(dueDate2);
+		assertNotEquals(TaskKey.NAME_AND_DUE_DATE.fingerprint(task), TaskKey.NAME_AND_DUE_DATE.fingerprint(copy));
+	}
+
+	/**
+	 * Test that the next tasks come by priority then due date, skip completed and blocked tasks,
+	 * and move when a task is edited
+	 */
+	@Test
+	void testNextTasks() {
+		assertNull(taskList.getNextTask());
+		Task high = new Task(0, "high", "", dueDate2);
+		high.setPriority(Priority.HIGH);
+		Task undated = new Task(0, "undated", "", null);
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		taskList.addTask(high);
+		taskList.addTask(undated);
+		assertEquals(Arrays.asList(high, task, task2, undated), taskList.getNextTasks(10));
+		assertEquals(Arrays.asList(high, task), taskList.getNextTasks(2));
+		
+		// Completing or blocking a task drops it, editing it moves it
+		taskList.setCompleted(high, true);
+		taskList.addDependency(task, undated);
+		assertEquals(Arrays.asList(task2, undated), taskList.getNextTasks(10));
+		undated.setPriority(Priority.LOW);
+		taskList.updateTask(undated);
+		assertSame(undated, taskList.getNextTask());
+		taskList.setCompleted(undated, true);
+		assertEquals(Arrays.asList(task, task2), taskList.getNextTasks(10));
+		
+		// Copies keep the order
+		assertEquals(Arrays.asList("task1", "task2"), names(new TaskList(taskList).getNextTasks(10)));
+	}
+	
+	/**
+	 * Test that tag filters follow additions, edits, completion and removals
+	 */
+	@Test
+	void testFilterTags() {
+		task.setTags(Arrays.asList("#Backend", "urgent"));
+		task2.setTags(Arrays.asList("backend"));
+		Task frontend = new Task(0, "frontend", "", dueDate);
+		frontend.setTags(Arrays.asList("frontend", "urgent"));
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		taskList.addTask(frontend);
+		
+		assertEquals(Arrays.asList("backend", "frontend", "urgent"), new ArrayList<>(taskList.getTags()));
+		assertEquals(Arrays.asList(task), taskList.filter("#backend AND #urgent AND NOT completed"));
+		assertEquals(Arrays.asList(task, frontend), taskList.filter("#urgent or (#backend and not #urgent) and completed"));
+		assertEquals(Arrays.asList(task2), taskList.filter("NOT #urgent"));
+		
+		// Edits and completion are applied in place
+		taskList.setCompleted(task, true);
+		task2.setTags(Arrays.asList("urgent"));
+		taskList.updateTask(task2);
+		assertEquals(Arrays.asList(task2, frontend), taskList.filter("#urgent AND NOT completed"));
+		assertEquals(Arrays.asList(task), taskList.filter("completed"));
+		
+		// Removal moves positions, the index is rebuilt
+		taskList.removeTask(task);
+		assertEquals(Arrays.asList(task2, frontend), taskList.filter("#urgent"));
+		assertTrue(taskList.filter("#backend").isEmpty());
+		
+		IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class, () -> taskList.filter("#urgent AND (#a"));
+		assertTrue(invalid.getMessage().contains("column 16"));
+		assertThrows(IllegalArgumentException.class, () -> task.setTags(Arrays.asList("two words")));
+	}
+	
+	/**
+	 * Test that stats follow additions, completion, date edits, removals and sorting without scanning,
+	 * and that overdue and due this week follow the date
+	 */
+	@Test
+	void testStats() {
+		TaskStats stats = taskList.getStats();
+		stats.setClock(Clock.fixed(Instant.parse("2026-03-05T12:00:00Z"), ZoneOffset.UTC));
+		taskList.addTask(task);
+		taskList.addTask(task2);
+		taskList.addTask(new Task(0, "undated", "", null));
+		taskList.addTask(new Task(0, "old", "", LocalDate.of(2026, 3, 1)));
+		assertEquals(4, stats.getTotal());
+		assertEquals(0, stats.getCompleted());
+		assertEquals(1, stats.getOverdue());
+		assertEquals(1, stats.getDueThisWeek());
+		assertArrayEquals(new int[] { 1, 0, 0 }, stats.getHistogram(dueDate, 3));
+		
+		// Completion and date edits move counts
+		taskList.setCompleted(task, true);
+		assertEquals(1, stats.getCompleted());
+		assertEquals(3, stats.getIncomplete());
+		assertEquals(0, stats.getDueThisWeek());
+		assertEquals(1, stats.getDueOn(dueDate));
+		task2.setDueDate(dueDate.plusDays(2));
+		taskList.updateTask(task2);
+		assertEquals(1, stats.getDueThisWeek());
+		assertArrayEquals(new int[] { 1, 0, 1 }, stats.getHistogram(dueDate, 3));
+		
+		// Removal and sorting
+		taskList.removeTask(taskList.getAllTasks().get(3));
+		assertEquals(0, stats.getOverdue());
+		taskList.removeTask(taskList.getAllTasks().get(2));
+		taskList.sortByDueDate();
+		assertEquals(2, stats.getTotal());
+		assertEquals(1, stats.getCompleted());
+		
+		// A later day makes task2 overdue
+		stats.setClock(Clock.fixed(Instant.parse("2026-03-20T12:00:00Z"), ZoneOffset.UTC));
+		assertEquals(1, stats.getOverdue());
+		assertEquals(0, stats.getDueThisWeek());
+	}
+	
+	/**
+	 * Names of some tasks
+	 * @param tasks tasks
+	 * @return names in the same order
+	 */
+	private static List<String> names(List<Task> tasks) {
+		List<String> names = new ArrayList<>();
+		for (Task t : tasks) {
+			names.add(t.getName());
+		}
+		return names;
+	}
 
 }
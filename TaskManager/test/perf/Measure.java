@@ -0,0 +1,136 @@
+package perf;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures CPU time and allocated bytes of the calling thread, and fits how a cost grows with size
+ * Uses com.sun.management.ThreadMXBean, available on HotSpot and OpenJ9
+ * @author Luke Gentri
+ */
+final class Measure {
+
+    /**
+     * An operation measured at one size
+     */
+    interface Sample {
+
+        /**
+         * Builds the input for one run, not measured
+         * @param n size of the input
+         * @return operation to measure
+         * @throws Exception if the input cannot be built
+         */
+        Op prepare(int n) throws Exception;
+    }
+
+    /**
+     * The measured part of a Sample
+     */
+    interface Op {
+
+        /**
+         * Runs once
+         * @throws Exception if the operation fails
+         */
+        void run() throws Exception;
+    }
+
+    /** Runs per size, the cheapest counts, so one garbage collection or context switch does not */
+    private static final int REPEATS = 5;
+
+    /** Thread counters, null if the JVM has none */
+    private static final com.sun.management.ThreadMXBean THREADS;
+
+    static {
+        com.sun.management.ThreadMXBean threads = null;
+        try {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadAllocatedMemorySupported()) {
+                threads = null;
+            } else {
+                threads.setThreadCpuTimeEnabled(true);
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+        } catch (ClassCastException | NoClassDefFoundError | UnsupportedOperationException e) {
+            threads = null;
+        }
+        THREADS = threads;
+    }
+
+    /**
+     * Not instantiated
+     */
+    private Measure() {
+    }
+
+    /**
+     * isSupported
+     * @return true if this JVM counts CPU time and allocations per thread
+     */
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Bytes allocated by one run, the fewest of several
+     * @param sample operation to measure
+     * @param n size of the input
+     * @return bytes allocated on this thread
+     * @throws Exception if the operation fails
+     */
+    static long allocatedBytes(Sample sample, int n) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i++) {
+            Op op = sample.prepare(n);
+            long id = Thread.currentThread().getId();
+            long before = THREADS.getThreadAllocatedBytes(id);
+            op.run();
+            best = Math.min(best, THREADS.getThreadAllocatedBytes(id) - before);
+        }
+        return best;
+    }
+
+    /**
+     * CPU time of one run, the least of several
+     * @param sample operation to measure
+     * @param n size of the input
+     * @return nanoseconds of CPU time on this thread
+     * @throws Exception if the operation fails
+     */
+    static long cpuNanos(Sample sample, int n) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i++) {
+            Op op = sample.prepare(n);
+            long before = THREADS.getCurrentThreadCpuTime();
+            op.run();
+            best = Math.min(best, THREADS.getCurrentThreadCpuTime() - before);
+        }
+        return best;
+    }
+
+    /**
+     * Exponent k of cost ~ n^k, fitted by least squares on log cost against log n
+     * Runs the largest size first so the compiler has warmed up before anything counts
+     * @param sample operation to measure
+     * @param sizes input sizes, ascending
+     * @return fitted exponent, about 1 for linear and 2 for quadratic work
+     * @throws Exception if the operation fails
+     */
+    static double exponent(Sample sample, int... sizes) throws Exception {
+        cpuNanos(sample, sizes[sizes.length - 1]);
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (int n : sizes) {
+            double x = Math.log(n);
+            double y = Math.log(Math.max(1, cpuNanos(sample, n)));
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        int count = sizes.length;
+        return (count * sumXY - sumX * sumY) / (count * sumXX - sumX * sumX);
+    }
+}
@@ -0,0 +1,251 @@
+package perf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.TaskReader;
+import model.Task;
+import model.TaskList;
+
+/**
+ * Class for catching performance regressions in TaskList and TaskReader
+ * Each operation has a budget of bytes allocated per Task and a bound on how its CPU time grows
+ * with the number of Tasks, so an accidental quadratic loop or a copy per call fails the build
+ * Budgets are about twice what the operations allocate today, and the bounds sit between linear
+ * and quadratic, so ordinary noise from the machine or the garbage collector does not fail a run
+ * @author Luke Gentri
+ */
+class PerformanceTest {
+
+    /** Sizes the growth of CPU time is fitted over */
+    private static final int[] SIZES = { 5000, 10000, 20000, 40000 };
+
+    /** Size allocation budgets are checked at */
+    private static final int BUDGET_SIZE = 20000;
+
+    /** Largest exponent for operations linear or n log n in the number of Tasks, quadratic work fits about 2 */
+    private static final double LINEAR = 1.6;
+
+    /** Tasks removed one by one from each list */
+    private static final int REMOVALS = 100;
+
+    /** Tag filter queries run on each list */
+    private static final int QUERIES = 10;
+
+    /** Temporary files of the load and save samples */
+    private final List<File> files = new ArrayList<>();
+
+    /**
+     * Skip on JVMs without per-thread counters
+     */
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(Measure.isSupported(), "No per-thread CPU time and allocation counters");
+    }
+
+    /**
+     * Delete the temporary files
+     */
+    @AfterEach
+    void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test addTask allocates little beyond the list's own growth and stays linear
+     * @throws Exception if the operation fails
+     */
+    @Test
+    void testAddTask() throws Exception {
+        Measure.Sample add = n -> {
+            final List<Task> tasks = tasks(n);
+            return () -> {
+                TaskList list = new TaskList();
+                for (Task task : tasks) {
+                    list.addTask(task);
+                }
+            };
+        };
+        assertBudget("addTask", add, BUDGET_SIZE, BUDGET_SIZE, 1000);
+        assertLinear("addTask", add);
+    }
+
+    /**
+     * Test removeTask allocates a bounded amount per removal and costs no more than linear in the list size
+     * @throws Exception if the operation fails
+     */
+    @Test
+    void testRemoveTask() throws Exception {
+        Measure.Sample remove = n -> {
+            final TaskList list = list(n);
+            final List<Task> removed = new ArrayList<>();
+            for (int i = 0; i < REMOVALS; i++) {
+                removed.add(list.getAllTasks().get(i * (n / REMOVALS)));
+            }
+            return () -> {
+                for (Task task : removed) {
+                    list.removeTask(task);
+                }
+            };
+        };
+
+        assertBudget("removeTask", remove, BUDGET_SIZE, REMOVALS, 500);
+        assertLinear("removeTask", remove);
+    }
+
+    /**
+     * Test both sorts stay within n log n and allocate at most a merge buffer once collation keys are made,
+     * and making the keys costs a bounded amount per Task
+     * @throws Exception if the operation fails
+     */
+    @Test
+    void testSorts() throws Exception {
+        Measure.Sample byDueDate = n -> {
+            final TaskList list = list(n);
+            return () -> list.sortByDueDate();
+        };
+        Measure.Sample byName = n -> {
+            final TaskList list = list(n);
+
+            // Keys made by an earlier sort, then shuffled by date
+            list.sortByName();
+            list.sortByDueDate();
+            return () -> list.sortByName();
+        };
+        Measure.Sample byNameFirst = n -> {
+            final TaskList list = list(n);
+            return () -> list.sortByName();
+        };
+        assertBudget("sortByDueDate", byDueDate, BUDGET_SIZE, BUDGET_SIZE, 50);
+        assertBudget("sortByName", byName, BUDGET_SIZE, BUDGET_SIZE, 50);
+        assertBudget("first sortByName", byNameFirst, BUDGET_SIZE, BUDGET_SIZE, 1800);
+        assertLinear("sortByDueDate", byDueDate);
+        assertLinear("sortByName", byName);
+        assertLinear("first sortByName", byNameFirst);
+    }
+
+    /**
+     * Test tag and completion filters stay linear and allocate little more than their results
+     * @throws Exception if the operation fails
+     */
+    @Test
+    void testFilters() throws Exception {
+        Measure.Sample filter = n -> {
+            final TaskList list = list(n);
+
+            // First query builds the index, later ones use it
+            list.filter("#tag1");
+            return () -> {
+                for (int i = 0; i < QUERIES; i++) {
+                    list.filter("(#tag" + i + " OR #tag" + (i + 1) + ") AND NOT completed");
+                    list.getIncompleteTasks();
+                }
+            };
+        };
+        assertBudget("filter", filter, BUDGET_SIZE, BUDGET_SIZE, 25 * QUERIES);
+        assertLinear("filter", filter);
+    }
+
+    /**
+     * Test loading and saving files stay linear with a bounded allocation per line
+     * @throws Exception if the operation fails
+     */
+    @Test
+    void testLoadAndSave() throws Exception {
+        final TaskReader reader = new TaskReader();
+        Measure.Sample load = n -> {
+            final File file = file();
+            reader.saveToFile(list(n), file);
+            return () -> reader.loadFromFile(file);
+        };
+        Measure.Sample save = n -> {
+            final File file = file();
+            final TaskList list = list(n);
+            return () -> reader.saveToFile(list, file);
+        };
+        assertBudget("load", load, BUDGET_SIZE, BUDGET_SIZE, 4000);
+        assertBudget("save", save, BUDGET_SIZE, BUDGET_SIZE, 600);
+        assertLinear("load", load);
+        assertLinear("save", save);
+    }
+
+    /**
+     * Fails if an operation allocates more than a budget per unit of work
+     * @param name operation, for the message
+     * @param sample operation to measure
+     * @param n number of Tasks
+     * @param units Tasks or calls the operation handles
+     * @param bytesPerUnit budget
+     * @throws Exception if the operation fails
+     */
+    private static void assertBudget(String name, Measure.Sample sample, int n, int units, long bytesPerUnit) throws Exception {
+        long bytes = Measure.allocatedBytes(sample, n);
+        assertTrue(bytes <= bytesPerUnit * units, name + " allocated " + bytes / units + " bytes per unit, budget " + bytesPerUnit);
+    }
+
+    /**
+     * Fails if an operation's CPU time grows faster than about n log n
+     * @param name operation, for the message
+     * @param sample operation to measure
+     * @throws Exception if the operation fails
+     */
+    private static void assertLinear(String name, Measure.Sample sample) throws Exception {
+        double exponent = Measure.exponent(sample, SIZES);
+        assertTrue(exponent <= LINEAR, String.format("%s grows as n^%.2f, bound n^%.2f", name, exponent, LINEAR));
+    }
+
+    /**
+     * Tasks with random names, due dates, tags and completion, the same for every run of a size
+     * @param n number of Tasks
+     * @return new Tasks
+     */
+    private static List<Task> tasks(int n) {
+        Random random = new Random(n);
+        List<Task> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Task task = new Task(0, "Task " + random.nextInt(n), "Description " + i, LocalDate.of(2026, 1, 1).plusDays(random.nextInt(730)));
+            task.setTags(Arrays.asList("tag" + random.nextInt(20), "tag" + random.nextInt(20)));
+            task.setCompleted(random.nextInt(3) == 0);
+            tasks.add(task);
+        }
+        Collections.shuffle(tasks, random);
+        return tasks;
+    }
+
+    /**
+     * TaskList of random Tasks
+     * @param n number of Tasks
+     * @return new TaskList
+     */
+    private static TaskList list(int n) {
+        TaskList list = new TaskList();
+        list.addTasks(tasks(n));
+        return list;
+    }
+
+    /**
+     * New temporary task file, deleted after the test
+     * @return file
+     * @throws IOException if the file cannot be created
+     */
+    private File file() throws IOException {
+        File file = File.createTempFile("perf", ".csv");
+        files.add(file);
+        return file;
+    }
+}